@@ -0,0 +1,174 @@
+package dmapf.agents;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.log4j.Logger;
+
+import dmapf.model.ScheduleMessage;
+
+/**
+ * This class runs the activations of the AgentActors. Each activation is run on its own
+ * virtual thread when the JVM supports them (Java 21+), else on a work-stealing pool
+ * of platform threads, so that any number of agents can be run without a platform
+ * thread per agent.
+ *
+ * The runtime counts the pending activations, so that the PO, acting as the router,
+ * can wait till all the agents which were sent msgs have reacted to them. The actors
+ * which completed an activation are collected for the PO to pick up their responses.
+ *
+ * If a Router is given, the responses of an activation are instead routed by the
+ * activating thread as soon as they are produced. Since an actor is told of a msg
+ * before the activation sending it completes, no msg is in transit when no activation
+ * is pending. Hence waiting for quiescence also detects the termination of the
+ * asynchronous negotiation.
+ *
+ * @author st
+ *
+ */
+class ActorRuntime
+{
+	public static final Logger log = Logger.getLogger(ActorRuntime.class);
+
+	/**
+	 * Routes the msgs returned by an agent to the actors of their receivers.
+	 */
+	interface Router
+	{
+		void route(AgentActor<?> sender, ArrayList<ScheduleMessage> alMsgs);
+	}
+
+	private final ExecutorService executor;
+	private final Router router; //null if the responses are collected for the PO
+	private final ConcurrentLinkedQueue<AgentActor<?>> completedActors = new ConcurrentLinkedQueue<AgentActor<?>>();
+	private final Object lock = new Object();
+	private int iPending = 0; //activations spawned and not yet finished. guarded by lock
+	private Throwable failure; //first exception thrown by an activation. guarded by lock
+
+	ActorRuntime()
+	{
+		this(null);
+	}
+
+	ActorRuntime(Router router)
+	{
+		this.router = router;
+		executor = createExecutor();
+	}
+
+	/**
+	 * @return an executor creating a virtual thread per task if available, else a work-stealing pool.
+	 */
+	private static ExecutorService createExecutor()
+	{
+		try
+		{
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService)method.invoke(null);
+		}
+		catch(ReflectiveOperationException e)
+		{
+			log.debug("Virtual threads not available. Running the actors on a work-stealing pool");
+			return new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+					ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		}
+	}
+
+	void spawn(final Runnable activation)
+	{
+		synchronized (lock)
+		{
+			iPending++;
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try
+				{
+					activation.run();
+				}
+				catch(Throwable t)
+				{
+					log.error("Actor activation failed", t);
+					synchronized (lock)
+					{
+						if(failure == null)
+							failure = t;
+					}
+				}
+				finally
+				{
+					synchronized (lock)
+					{
+						if(--iPending == 0)
+							lock.notifyAll();
+					}
+				}
+			}
+		});
+	}
+
+	void completed(AgentActor<?> actor, ArrayList<ScheduleMessage> alMsgs)
+	{
+		if(router != null)
+			router.route(actor, alMsgs);
+		else
+		{
+			actor.setOutput(alMsgs);
+			completedActors.add(actor);
+		}
+	}
+
+	/**
+	 * Waits till there is no pending activation, ie. all msgs posted have been reacted to.
+	 */
+	void awaitQuiescence()
+	{
+		synchronized (lock)
+		{
+			while(iPending > 0)
+			{
+				try
+				{
+					lock.wait();
+				}
+				catch(InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for the agents", e);
+				}
+			}
+			if(failure != null)
+				throw new IllegalStateException("Agent failed while processing its msgs", failure);
+		}
+	}
+
+	/**
+	 * @return the actors which have completed an activation since the last call, in the order of their agent ids.
+	 */
+	ArrayList<AgentActor<?>> drainCompleted()
+	{
+		ArrayList<AgentActor<?>> alActors = new ArrayList<AgentActor<?>>();
+		AgentActor<?> actor;
+		while((actor = completedActors.poll()) != null)
+			alActors.add(actor);
+		Collections.sort(alActors, new Comparator<AgentActor<?>>() {
+			@Override
+			public int compare(AgentActor<?> a1, AgentActor<?> a2) {
+				return Integer.compare(a1.getAgentId(), a2.getAgentId());
+			}
+		});
+		return alActors;
+	}
+
+	void shutdown()
+	{
+		executor.shutdown();
+	}
+}
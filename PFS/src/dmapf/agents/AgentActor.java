@@ -0,0 +1,126 @@
+package dmapf.agents;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dmapf.model.ScheduleMessage;
+
+/**
+ * This class runs a Location or Traveller agent as an actor. Msgs for the agent are
+ * posted into the agent's mailbox; posting to an idle actor schedules one activation of
+ * it on the ActorRuntime. In an activation, the agent drains its mailbox, processes the
+ * msgs as one batch, and the actor hands the agent's response msgs to the runtime.
+ *
+ * An actor is never run on two threads at the same time, and an actor whose mailbox is
+ * empty is not scheduled at all, so idle agents cost nothing per round.
+ *
+ * An actor can be made to await a number of msgs, eg. a traveller awaiting the responses
+ * of all the locations it has sent msgs to. It is then not scheduled till as many msgs
+ * have been posted since its last activation.
+ *
+ * @author st
+ *
+ */
+class AgentActor<T>
+{
+	private final T agent;
+	private final int iAgentId;
+	private final Mailbox mailbox; //mailbox of the agent
+	private final SuperstepExecutor.AgentStep<T> step; //processing of the msgs in the mailbox by the agent
+	private final ActorRuntime runtime;
+	private final AtomicBoolean bScheduled = new AtomicBoolean(false); //true while an activation is pending or running
+	private final AtomicInteger iPosted = new AtomicInteger(); //msgs posted since the last activation started
+	private volatile int iAwaited = 0; //msgs to be posted before the next activation. 0 for any msg
+	private ArrayList<ScheduleMessage> alOutput; //response of the last activation. Read by the PO after the phase.
+
+	AgentActor(T agent, int iAgentId, Mailbox mailbox, SuperstepExecutor.AgentStep<T> step, ActorRuntime runtime)
+	{
+		this.agent = agent;
+		this.iAgentId = iAgentId;
+		this.mailbox = mailbox;
+		this.step = step;
+		this.runtime = runtime;
+	}
+
+	T getAgent() {
+		return agent;
+	}
+
+	int getAgentId() {
+		return iAgentId;
+	}
+
+	/**
+	 * Posts the msgs to the mailbox and schedules the actor if it is idle.
+	 */
+	void tell(List<ScheduleMessage> alMsgs)
+	{
+		mailbox.post(alMsgs);
+		iPosted.addAndGet(alMsgs.size());
+		if(isReady())
+			schedule();
+	}
+
+	/**
+	 * Sets the number of msgs to be posted before the actor is activated again. To be called
+	 * before the msgs which are to be responded to are sent out.
+	 */
+	void await(int iMsgs)
+	{
+		iAwaited = iMsgs;
+	}
+
+	/**
+	 * @return true if the actor has been activated since it was last told to await msgs, and
+	 * not all of them have been posted.
+	 */
+	boolean isAwaiting()
+	{
+		return iPosted.get() < iAwaited;
+	}
+
+	private boolean isReady()
+	{
+		return !mailbox.isEmpty() && iPosted.get() >= iAwaited;
+	}
+
+	/**
+	 * @return the msgs returned by the agent in its last activation, and clears them.
+	 */
+	ArrayList<ScheduleMessage> takeOutput()
+	{
+		ArrayList<ScheduleMessage> alMsgs = alOutput;
+		alOutput = null;
+		return alMsgs;
+	}
+
+	void setOutput(ArrayList<ScheduleMessage> alMsgs)
+	{
+		alOutput = alMsgs;
+	}
+
+	private void schedule()
+	{
+		if(bScheduled.compareAndSet(false, true))
+			runtime.spawn(this::activate);
+	}
+
+	private void activate()
+	{
+		try
+		{
+			//the awaited msgs are all in the mailbox, no further msg is posted till the agent responds
+			iPosted.set(0);
+			runtime.completed(this, step.process(agent));
+		}
+		finally
+		{
+			bScheduled.set(false);
+			//msgs posted while the batch was being processed
+			if(isReady())
+				schedule();
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package dmapf.agents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * This class maintains the Location and Traveller agents known to the PO, indexed
+ * by their ids, so that the PO can find the receiver of a msg in constant time instead
+ * of scanning the list of all agents for every receiver.
+ *
+ * The location ids are the edge ids of the road network and the traveller ids are
+ * the traveller numbers, both of which are dense. Hence the agents are held in arrays
+ * indexed by id, which are grown as larger ids are seen.
+ *
+ * The list of location agents, in the order of their creation, is also maintained
+ * for the PO to iterate on.
+ *
+ * A location agent is never deleted. Once all the travellers have withdrawn from it, it
+ * is passivated, ie. its negotiation state is dropped while the agent is retained, and it
+ * is revived when it is next sent msgs.
+ *
+ * In the actor mode, the actor running each agent is held against the agent's id as well.
+ *
+ * The registry also keeps the active set of the lockstep rounds: the locations which have
+ * pending work in the next location phase, and the travellers which have not yet finalised
+ * or terminated. A retired traveller is dropped from the list of active travellers, so the
+ * cost of a round is in the number of agents still negotiating, not of all the agents.
+ *
+ * @author st
+ *
+ */
+class AgentRegistry
+{
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private LocationAgent[] arrLocations = new LocationAgent[INITIAL_CAPACITY]; //indexed by location id
+	private Travelers[] arrTravellers = new Travelers[INITIAL_CAPACITY]; //indexed by traveller id
+	private AgentActor<?>[] arrLocationActors = new AgentActor<?>[INITIAL_CAPACITY]; //indexed by location id
+	private AgentActor<?>[] arrTravellerActors = new AgentActor<?>[INITIAL_CAPACITY]; //indexed by traveller id
+	private ArrayList<LocationAgent> alLocationAgents = new ArrayList<LocationAgent>(); //list of location agents instantiated.
+	private ArrayList<Travelers> alTravellers = new ArrayList<Travelers>();
+	private int iLocationCount = 0; //number of location agents not passivated
+	private BitSet bsDormantLocations = new BitSet(); //ids of the passivated locations
+	private int[] arrLocationOrder = new int[INITIAL_CAPACITY]; //order of creation or revival of each location, indexed by location id
+	private int iLocationsCreated = 0; //number of locations created or revived
+	private BitSet bsActiveLocations = new BitSet(); //ids of the locations with pending work in the next location phase
+	private ArrayList<LocationAgent> alActiveLocations = new ArrayList<LocationAgent>(); //locations in bsActiveLocations
+	private ArrayList<Travelers> alActiveTravellers = new ArrayList<Travelers>(); //travellers not retired, in the order of addition
+	private BitSet bsRetiredTravellers = new BitSet(); //ids of the travellers which have finalised or terminated
+	private boolean bTravellerRetired = false; //maintains whether alActiveTravellers has to be compacted
+	private int iHorizon = Integer.MIN_VALUE; //earliest start date of the active travellers
+	private boolean bHorizonStale = false; //maintains whether iHorizon has to be recomputed
+
+	/**
+	 * @return the location agent with the given id, null if it has not been created.
+	 */
+	LocationAgent getLocation(int iLocationId)
+	{
+		if(iLocationId < 0 || iLocationId >= arrLocations.length)
+			return null;
+		return arrLocations[iLocationId];
+	}
+
+	void addLocation(LocationAgent locAgent)
+	{
+		int iLocationId = locAgent.getLocationId();
+		if(iLocationId >= arrLocations.length)
+		{
+			arrLocations = Arrays.copyOf(arrLocations, grow(arrLocations.length, iLocationId));
+			arrLocationOrder = Arrays.copyOf(arrLocationOrder, arrLocations.length);
+		}
+		if(arrLocations[iLocationId] == null)
+			iLocationCount++;
+		arrLocations[iLocationId] = locAgent;
+		arrLocationOrder[iLocationId] = iLocationsCreated++;
+		alLocationAgents.add(locAgent);
+	}
+
+	/**
+	 * Passivates the location, once all the travellers have withdrawn from it. The agent
+	 * is retained, along with its actor if any, to be revived by activateLocation.
+	 */
+	void passivateLocation(int iLocationId)
+	{
+		LocationAgent locAgent = getLocation(iLocationId);
+		if(locAgent != null && !bsDormantLocations.get(iLocationId))
+		{
+			locAgent.passivate();
+			bsDormantLocations.set(iLocationId);
+			iLocationCount--;
+		}
+	}
+
+	boolean isDormant(int iLocationId)
+	{
+		return bsDormantLocations.get(iLocationId);
+	}
+
+	/**
+	 * @return list of the location agents in the order of their creation, including the passivated ones.
+	 */
+	ArrayList<LocationAgent> getLocations()
+	{
+		return alLocationAgents;
+	}
+
+	int getLocationCount()
+	{
+		return iLocationCount;
+	}
+
+	/**
+	 * Revives the location if it has been passivated. A revived location is ordered as if it
+	 * had just been created.
+	 */
+	void reviveLocation(int iLocationId)
+	{
+		if(getLocation(iLocationId) != null && bsDormantLocations.get(iLocationId))
+		{
+			bsDormantLocations.clear(iLocationId);
+			arrLocationOrder[iLocationId] = iLocationsCreated++;
+			iLocationCount++;
+		}
+	}
+
+	/**
+	 * Marks the location as having pending work in the next location phase, reviving it if
+	 * it has been passivated.
+	 */
+	void activateLocation(int iLocationId)
+	{
+		reviveLocation(iLocationId);
+		LocationAgent locAgent = getLocation(iLocationId);
+		if(locAgent != null && !bsActiveLocations.get(iLocationId))
+		{
+			bsActiveLocations.set(iLocationId);
+			alActiveLocations.add(locAgent);
+		}
+	}
+
+	/**
+	 * Takes the locations marked active since the last call, leaving none marked. Locations
+	 * passivated meanwhile are left out.
+	 * @return list of the active location agents in the order of their creation or revival.
+	 */
+	ArrayList<LocationAgent> takeActiveLocations()
+	{
+		ArrayList<LocationAgent> alActive = new ArrayList<LocationAgent>(alActiveLocations.size());
+		for(LocationAgent locAgent:alActiveLocations)
+		{
+			if(!bsDormantLocations.get(locAgent.getLocationId()))
+				alActive.add(locAgent);
+		}
+		alActive.sort((loc1, loc2) -> Integer.compare(arrLocationOrder[loc1.getLocationId()], arrLocationOrder[loc2.getLocationId()]));
+		alActiveLocations.clear();
+		bsActiveLocations.clear();
+		return alActive;
+	}
+
+	/**
+	 * @return the traveller with the given id, null if it is not known.
+	 */
+	Travelers getTraveller(int iAgentId)
+	{
+		if(iAgentId < 0 || iAgentId >= arrTravellers.length)
+			return null;
+		return arrTravellers[iAgentId];
+	}
+
+	void addTraveller(Travelers traveller)
+	{
+		int iAgentId = traveller.getAgentId();
+		if(iAgentId >= arrTravellers.length)
+			arrTravellers = Arrays.copyOf(arrTravellers, grow(arrTravellers.length, iAgentId));
+		arrTravellers[iAgentId] = traveller;
+		alTravellers.add(traveller);
+		alActiveTravellers.add(traveller);
+		bHorizonStale = true;
+	}
+
+	ArrayList<Travelers> getTravellers()
+	{
+		return alTravellers;
+	}
+
+	/**
+	 * Drops the traveller from the active travellers, once it has finalised or terminated.
+	 */
+	void retireTraveller(int iAgentId)
+	{
+		bsRetiredTravellers.set(iAgentId);
+		bTravellerRetired = true;
+		bHorizonStale = true;
+	}
+
+	boolean isRetired(int iAgentId)
+	{
+		return bsRetiredTravellers.get(iAgentId);
+	}
+
+	/**
+	 * @return list of the travellers which have not been retired, in the order of their addition.
+	 */
+	ArrayList<Travelers> getActiveTravellers()
+	{
+		if(bTravellerRetired)
+		{
+			alActiveTravellers.removeIf(traveller -> bsRetiredTravellers.get(traveller.getAgentId()));
+			bTravellerRetired = false;
+		}
+		return alActiveTravellers;
+	}
+
+	/**
+	 * No active traveller can request a location before its start date, so the horizon is the
+	 * earliest time at which a location can still be requested. It is recomputed only after a
+	 * traveller has been added or retired, and is left as is once all the travellers have retired.
+	 * @return the earliest start date of the active travellers.
+	 */
+	int getHorizon()
+	{
+		if(bHorizonStale)
+		{
+			int iEarliest = Integer.MAX_VALUE;
+			for(Travelers traveller:getActiveTravellers())
+				iEarliest = Math.min(iEarliest, traveller.getStartDate());
+			if(iEarliest != Integer.MAX_VALUE)
+				iHorizon = iEarliest;
+			bHorizonStale = false;
+		}
+		return iHorizon;
+	}
+
+	/**
+	 * @return the actor running the location agent, null if none has been set.
+	 */
+	@SuppressWarnings("unchecked")
+	AgentActor<LocationAgent> getLocationActor(int iLocationId)
+	{
+		if(iLocationId < 0 || iLocationId >= arrLocationActors.length)
+			return null;
+		return (AgentActor<LocationAgent>)arrLocationActors[iLocationId];
+	}
+
+	void setLocationActor(int iLocationId, AgentActor<LocationAgent> actor)
+	{
+		if(iLocationId >= arrLocationActors.length)
+			arrLocationActors = Arrays.copyOf(arrLocationActors, grow(arrLocationActors.length, iLocationId));
+		arrLocationActors[iLocationId] = actor;
+	}
+
+	/**
+	 * @return the actor running the traveller, null if none has been set.
+	 */
+	@SuppressWarnings("unchecked")
+	AgentActor<Travelers> getTravellerActor(int iAgentId)
+	{
+		if(iAgentId < 0 || iAgentId >= arrTravellerActors.length)
+			return null;
+		return (AgentActor<Travelers>)arrTravellerActors[iAgentId];
+	}
+
+	void setTravellerActor(int iAgentId, AgentActor<Travelers> actor)
+	{
+		if(iAgentId >= arrTravellerActors.length)
+			arrTravellerActors = Arrays.copyOf(arrTravellerActors, grow(arrTravellerActors.length, iAgentId));
+		arrTravellerActors[iAgentId] = actor;
+	}
+
+	private static int grow(int iCapacity, int iId)
+	{
+		while(iCapacity <= iId)
+			iCapacity <<= 1;
+		return iCapacity;
+	}
+}
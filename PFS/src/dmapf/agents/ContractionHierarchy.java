@@ -0,0 +1,504 @@
+package dmapf.agents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+import org.apache.log4j.Logger;
+
+import dmapf.constants.ConstantsDefinition;
+
+/**
+ * This class finds shortest paths on a large road network by a contraction hierarchy, so
+ * that the initial paths of many travellers are found without a search of the network
+ * each. The network is preprocessed once:
+ *
+ * The nodes are contracted one at a time, in the order of their importance. Contracting
+ * a node v removes it from the network, and for every pair of arcs u->v->w adds a shortcut
+ * u->w of the same length, unless a path from u to w without v is no longer (a witness).
+ * The rank of a node is its position in the order. Every shortest path then has a form
+ * which rises in rank and then falls, so a query searches only the arcs to higher ranks,
+ * forwards from the source and backwards from the destination, which meet at the highest
+ * node of the path. The shortcuts hold the two arcs they replace, and are unpacked into
+ * the edges of the network.
+ *
+ * A node is more important the more shortcuts its contraction adds in place of its arcs
+ * (the edge difference), and the more of its neighbours have been contracted, so that the
+ * contraction spreads evenly over the network. The witness searches are limited to
+ * WITNESS_SETTLE_LIMIT nodes, which may add a shortcut which is not needed, but never
+ * omits one which is.
+ *
+ * The hierarchy holds the network without exclusions. A path which has to avoid edges is
+ * found by a LifelongPlanner instead. The hierarchy is not changed once built, and the
+ * state of a query is kept per thread, so it is shared by all the travellers.
+ *
+ * @author st
+ *
+ */
+class ContractionHierarchy
+{
+	public static final Logger log = Logger.getLogger(ContractionHierarchy.class);
+	private static final double INFINITE = Double.POSITIVE_INFINITY;
+	private static final int WITNESS_SETTLE_LIMIT = 200; //nodes settled by a witness search, beyond which a shortcut is added
+	private static final int NONE = -1;
+
+	private final HashMap<String, Integer> hmNodeIndex = new HashMap<String, Integer>(); //index of each node, by node id
+	private final String[] arrNodes; //node ids, by index
+	private final String[] arrEdges; //edge ids, by index
+	private final double[] arrEdgeWeights; //length of each edge, by index
+
+	//arcs of the network and the shortcuts, by arc index. An arc of the network has its edge, a shortcut its two arcs.
+	private int iArcs = 0;
+	private int[] arrArcFrom = new int[64];
+	private int[] arrArcTo = new int[64];
+	private double[] arrArcWeight = new double[64];
+	private int[] arrArcEdge = new int[64];
+	private int[] arrArcFirst = new int[64];
+	private int[] arrArcSecond = new int[64];
+
+	private final int[] arrRank; //position of each node in the order of contraction
+	//arcs to higher ranks: out of each node in arrUpOut, into each node in arrUpIn. The arcs of node v are at arrOffsets[v] till arrOffsets[v+1].
+	private final int[] arrUpOutOffsets, arrUpOut, arrUpInOffsets, arrUpIn;
+
+	private final ThreadLocal<Query> query;
+
+	ContractionHierarchy(RoadNetwork network)
+	{
+		long lStart = System.currentTimeMillis();
+		arrNodes = network.vertexSet().toArray(new String[0]);
+		for(int i=0; i<arrNodes.length; i++)
+			hmNodeIndex.put(arrNodes[i], i);
+
+		//the arcs of the network. An undirected edge gives an arc either way.
+		HashMap<String, Integer> hmEdgeIndex = new HashMap<String, Integer>();
+		ArrayList<String> alEdges = new ArrayList<String>();
+		ArrayList<Double> alWeights = new ArrayList<Double>();
+		for(int v=0; v<arrNodes.length; v++)
+		{
+			for(String strEdge:network.outgoingEdgesOf(arrNodes[v]))
+			{
+				Integer iEdge = hmEdgeIndex.get(strEdge);
+				if(iEdge == null)
+				{
+					iEdge = alEdges.size();
+					hmEdgeIndex.put(strEdge, iEdge);
+					alEdges.add(strEdge);
+					alWeights.add(network.getEdgeWeight(strEdge));
+				}
+				addArc(v, hmNodeIndex.get(network.getOppositeNode(strEdge, arrNodes[v])), alWeights.get(iEdge), iEdge, NONE, NONE);
+			}
+		}
+		arrEdges = alEdges.toArray(new String[0]);
+		arrEdgeWeights = new double[arrEdges.length];
+		for(int i=0; i<arrEdgeWeights.length; i++)
+			arrEdgeWeights[i] = alWeights.get(i);
+		int iNetworkArcs = iArcs;
+
+		arrRank = new Contraction().contract();
+
+		//keep the arcs to higher ranks, for the queries
+		arrUpOutOffsets = new int[arrNodes.length + 1];
+		arrUpInOffsets = new int[arrNodes.length + 1];
+		for(int a=0; a<iArcs; a++)
+		{
+			if(arrRank[arrArcTo[a]] > arrRank[arrArcFrom[a]])
+				arrUpOutOffsets[arrArcFrom[a] + 1]++;
+			else if(arrRank[arrArcFrom[a]] > arrRank[arrArcTo[a]])
+				arrUpInOffsets[arrArcTo[a] + 1]++;
+		}
+		for(int v=0; v<arrNodes.length; v++)
+		{
+			arrUpOutOffsets[v+1] += arrUpOutOffsets[v];
+			arrUpInOffsets[v+1] += arrUpInOffsets[v];
+		}
+		arrUpOut = new int[arrUpOutOffsets[arrNodes.length]];
+		arrUpIn = new int[arrUpInOffsets[arrNodes.length]];
+		int[] arrOutFill = Arrays.copyOf(arrUpOutOffsets, arrNodes.length);
+		int[] arrInFill = Arrays.copyOf(arrUpInOffsets, arrNodes.length);
+		for(int a=0; a<iArcs; a++)
+		{
+			if(arrRank[arrArcTo[a]] > arrRank[arrArcFrom[a]])
+				arrUpOut[arrOutFill[arrArcFrom[a]]++] = a;
+			else if(arrRank[arrArcFrom[a]] > arrRank[arrArcTo[a]])
+				arrUpIn[arrInFill[arrArcTo[a]]++] = a;
+		}
+
+		int iNodes = arrNodes.length;
+		query = ThreadLocal.withInitial(() -> new Query(iNodes));
+		log.info("Contracted "+iNodes+" nodes with "+(iArcs - iNetworkArcs)+" shortcuts over "+iNetworkArcs+" arcs in "+(System.currentTimeMillis()-lStart)+"msec");
+	}
+
+	/**
+	 * @return the shortest path from strSource to strDest, in the form returned by JGraphTUtil.getPath:
+	 * node%edge%node...%distance. null if the destination cannot be reached, or a node is not in the network.
+	 */
+	String getPath(String strSource, String strDest)
+	{
+		Integer iSource = hmNodeIndex.get(strSource);
+		Integer iDest = hmNodeIndex.get(strDest);
+		if(iSource == null || iDest == null)
+			return null;
+		return query.get().run(iSource, iDest);
+	}
+
+	private int addArc(int iFrom, int iTo, double dWeight, int iEdge, int iFirst, int iSecond)
+	{
+		if(iArcs == arrArcFrom.length)
+		{
+			int iCapacity = iArcs << 1;
+			arrArcFrom = Arrays.copyOf(arrArcFrom, iCapacity);
+			arrArcTo = Arrays.copyOf(arrArcTo, iCapacity);
+			arrArcWeight = Arrays.copyOf(arrArcWeight, iCapacity);
+			arrArcEdge = Arrays.copyOf(arrArcEdge, iCapacity);
+			arrArcFirst = Arrays.copyOf(arrArcFirst, iCapacity);
+			arrArcSecond = Arrays.copyOf(arrArcSecond, iCapacity);
+		}
+		arrArcFrom[iArcs] = iFrom;
+		arrArcTo[iArcs] = iTo;
+		arrArcWeight[iArcs] = dWeight;
+		arrArcEdge[iArcs] = iEdge;
+		arrArcFirst[iArcs] = iFirst;
+		arrArcSecond[iArcs] = iSecond;
+		return iArcs++;
+	}
+
+	/**
+	 * The state of the preprocessing: the arcs of each node not contracted yet, and the
+	 * scratch arrays of the witness searches.
+	 */
+	private final class Contraction
+	{
+		private final int iNodes = arrNodes.length;
+		private int[][] arrOut = new int[iNodes][]; //arcs out of each node
+		private int[] arrOutCount = new int[iNodes];
+		private int[][] arrIn = new int[iNodes][]; //arcs into each node
+		private int[] arrInCount = new int[iNodes];
+		private boolean[] arrContracted = new boolean[iNodes];
+		private int[] arrContractedNeighbours = new int[iNodes];
+
+		private double[] arrWitnessDistance = new double[iNodes];
+		private int[] arrTouched = new int[iNodes]; //nodes whose arrWitnessDistance is set
+		private int iTouched = 0;
+		private int[] arrNearestArc = new int[iNodes]; //least arc to each neighbour, in the contraction of a node. See shortcuts.
+
+		Contraction()
+		{
+			for(int v=0; v<iNodes; v++)
+			{
+				arrOut[v] = new int[4];
+				arrIn[v] = new int[4];
+			}
+			for(int a=0; a<iArcs; a++)
+				link(a);
+			Arrays.fill(arrWitnessDistance, INFINITE);
+			Arrays.fill(arrNearestArc, NONE);
+		}
+
+		/**
+		 * @return rank of each node
+		 */
+		int[] contract()
+		{
+			int[] arrRank = new int[iNodes];
+			PriorityQueue<long[]> queue = new PriorityQueue<long[]>((a, b) -> Long.compare(a[0], b[0])); //priority, node
+			for(int v=0; v<iNodes; v++)
+				queue.add(new long[] {priority(v), v});
+
+			int iRank = 0;
+			while(!queue.isEmpty())
+			{
+				int v = (int)queue.poll()[1];
+				//the priority is updated lazily: a node whose priority has risen is put back
+				long lPriority = priority(v);
+				if(!queue.isEmpty() && lPriority > queue.peek()[0])
+				{
+					queue.add(new long[] {lPriority, v});
+					continue;
+				}
+				shortcuts(v, true);
+				arrContracted[v] = true;
+				arrRank[v] = iRank++;
+				for(int i=0; i<arrOutCount[v]; i++)
+					arrContractedNeighbours[arrArcTo[arrOut[v][i]]]++;
+				for(int i=0; i<arrInCount[v]; i++)
+					arrContractedNeighbours[arrArcFrom[arrIn[v][i]]]++;
+			}
+			return arrRank;
+		}
+
+		private long priority(int v)
+		{
+			int iArcsRemoved = 0;
+			for(int i=0; i<arrOutCount[v]; i++)
+				if(!arrContracted[arrArcTo[arrOut[v][i]]])
+					iArcsRemoved++;
+			for(int i=0; i<arrInCount[v]; i++)
+				if(!arrContracted[arrArcFrom[arrIn[v][i]]])
+					iArcsRemoved++;
+			return shortcuts(v, false) - iArcsRemoved + arrContractedNeighbours[v];
+		}
+
+		/**
+		 * Finds the shortcuts needed to contract v, ie. the arcs u->v->w with no witness.
+		 * @param bAdd: true to add them, false only to count them
+		 * @return number of shortcuts
+		 */
+		private int shortcuts(int v, boolean bAdd)
+		{
+			int[] arrInArcs = nearestArcs(arrIn[v], arrInCount[v], true);
+			int[] arrOutArcs = nearestArcs(arrOut[v], arrOutCount[v], false);
+			double dMaxOut = 0;
+			for(int a:arrOutArcs)
+				dMaxOut = Math.max(dMaxOut, arrArcWeight[a]);
+
+			int iShortcuts = 0;
+			for(int aIn:arrInArcs)
+			{
+				int u = arrArcFrom[aIn];
+				witnessSearch(u, v, arrArcWeight[aIn] + dMaxOut);
+				for(int aOut:arrOutArcs)
+				{
+					int w = arrArcTo[aOut];
+					double dVia = arrArcWeight[aIn] + arrArcWeight[aOut];
+					if(w == u || arrWitnessDistance[w] <= dVia)
+						continue;
+					iShortcuts++;
+					if(bAdd)
+						link(addArc(u, w, dVia, NONE, aIn, aOut));
+				}
+				clearWitness();
+			}
+			return iShortcuts;
+		}
+
+		/**
+		 * @param bFrom: true for arcs into the node, whose neighbour is their start
+		 * @return the least arc to each neighbour not contracted
+		 */
+		private int[] nearestArcs(int[] arrArcs, int iCount, boolean bFrom)
+		{
+			int[] arrNearest = new int[iCount];
+			int iNearest = 0;
+			for(int i=0; i<iCount; i++)
+			{
+				int a = arrArcs[i];
+				int iNeighbour = bFrom?arrArcFrom[a]:arrArcTo[a];
+				if(arrContracted[iNeighbour])
+					continue;
+				if(arrNearestArc[iNeighbour] == NONE)
+				{
+					arrNearestArc[iNeighbour] = a;
+					arrNearest[iNearest++] = a;
+				}
+				else if(arrArcWeight[a] < arrArcWeight[arrNearestArc[iNeighbour]])
+				{
+					for(int j=0; j<iNearest; j++)
+						if(arrNearest[j] == arrNearestArc[iNeighbour])
+							arrNearest[j] = a;
+					arrNearestArc[iNeighbour] = a;
+				}
+			}
+			for(int j=0; j<iNearest; j++)
+				arrNearestArc[bFrom?arrArcFrom[arrNearest[j]]:arrArcTo[arrNearest[j]]] = NONE;
+			return Arrays.copyOf(arrNearest, iNearest);
+		}
+
+		/**
+		 * Dijkstra's search from u over the nodes not contracted other than v, up to dLimit.
+		 */
+		private void witnessSearch(int u, int v, double dLimit)
+		{
+			PriorityQueue<double[]> queue = new PriorityQueue<double[]>((a, b) -> Double.compare(a[0], b[0])); //distance, node
+			touch(u, 0);
+			queue.add(new double[] {0, u});
+			int iSettled = 0;
+			while(!queue.isEmpty() && iSettled < WITNESS_SETTLE_LIMIT)
+			{
+				double[] entry = queue.poll();
+				int x = (int)entry[1];
+				if(entry[0] > arrWitnessDistance[x])
+					continue;
+				if(entry[0] > dLimit)
+					break;
+				iSettled++;
+				for(int i=0; i<arrOutCount[x]; i++)
+				{
+					int a = arrOut[x][i];
+					int y = arrArcTo[a];
+					if(y == v || arrContracted[y])
+						continue;
+					double dDistance = entry[0] + arrArcWeight[a];
+					if(dDistance < arrWitnessDistance[y])
+					{
+						touch(y, dDistance);
+						queue.add(new double[] {dDistance, y});
+					}
+				}
+			}
+		}
+
+		private void touch(int x, double dDistance)
+		{
+			if(arrWitnessDistance[x] == INFINITE)
+				arrTouched[iTouched++] = x;
+			arrWitnessDistance[x] = dDistance;
+		}
+
+		private void clearWitness()
+		{
+			for(int i=0; i<iTouched; i++)
+				arrWitnessDistance[arrTouched[i]] = INFINITE;
+			iTouched = 0;
+		}
+
+		private void link(int a)
+		{
+			int iFrom = arrArcFrom[a];
+			int iTo = arrArcTo[a];
+			if(arrOutCount[iFrom] == arrOut[iFrom].length)
+				arrOut[iFrom] = Arrays.copyOf(arrOut[iFrom], arrOutCount[iFrom] << 1);
+			arrOut[iFrom][arrOutCount[iFrom]++] = a;
+			if(arrInCount[iTo] == arrIn[iTo].length)
+				arrIn[iTo] = Arrays.copyOf(arrIn[iTo], arrInCount[iTo] << 1);
+			arrIn[iTo][arrInCount[iTo]++] = a;
+		}
+	}
+
+	/**
+	 * The state of a query: the distances and the arcs by which the nodes were reached, from
+	 * the source and to the destination. The nodes touched are reset after the query.
+	 */
+	private final class Query
+	{
+		private final double[] arrForward;
+		private final double[] arrBackward;
+		private final int[] arrForwardArc;
+		private final int[] arrBackwardArc;
+		private final int[] arrTouched;
+		private int iTouched = 0;
+
+		Query(int iNodes)
+		{
+			arrForward = new double[iNodes];
+			arrBackward = new double[iNodes];
+			arrForwardArc = new int[iNodes];
+			arrBackwardArc = new int[iNodes];
+			arrTouched = new int[iNodes];
+			Arrays.fill(arrForward, INFINITE);
+			Arrays.fill(arrBackward, INFINITE);
+		}
+
+		String run(int iSource, int iDest)
+		{
+			PriorityQueue<double[]> forward = new PriorityQueue<double[]>((a, b) -> Double.compare(a[0], b[0])); //distance, node
+			PriorityQueue<double[]> backward = new PriorityQueue<double[]>((a, b) -> Double.compare(a[0], b[0]));
+			reach(arrForward, arrForwardArc, iSource, 0, NONE);
+			forward.add(new double[] {0, iSource});
+			reach(arrBackward, arrBackwardArc, iDest, 0, NONE);
+			backward.add(new double[] {0, iDest});
+
+			double dBest = INFINITE;
+			int iMeet = NONE;
+			if(iSource == iDest)
+			{
+				dBest = 0;
+				iMeet = iSource;
+			}
+			while(true)
+			{
+				//a search is stopped once it cannot reach a node nearer than the best meeting so far
+				boolean bForwardOpen = !forward.isEmpty() && forward.peek()[0] < dBest;
+				boolean bBackwardOpen = !backward.isEmpty() && backward.peek()[0] < dBest;
+				if(!bForwardOpen && !bBackwardOpen)
+					break;
+				boolean bForward = bForwardOpen && (!bBackwardOpen || forward.peek()[0] <= backward.peek()[0]);
+				PriorityQueue<double[]> queue = bForward?forward:backward;
+				double[] arrDistance = bForward?arrForward:arrBackward;
+				double[] arrOther = bForward?arrBackward:arrForward;
+				int[] arrArc = bForward?arrForwardArc:arrBackwardArc;
+
+				double[] entry = queue.poll();
+				int x = (int)entry[1];
+				if(entry[0] > arrDistance[x])
+					continue;
+				if(arrOther[x] != INFINITE && entry[0] + arrOther[x] < dBest)
+				{
+					dBest = entry[0] + arrOther[x];
+					iMeet = x;
+				}
+				int[] arrUpOffsets = bForward?arrUpOutOffsets:arrUpInOffsets;
+				int[] arrUp = bForward?arrUpOut:arrUpIn;
+				for(int i=arrUpOffsets[x]; i<arrUpOffsets[x+1]; i++)
+				{
+					int a = arrUp[i];
+					int y = bForward?arrArcTo[a]:arrArcFrom[a];
+					double dDistance = entry[0] + arrArcWeight[a];
+					if(dDistance < arrDistance[y])
+					{
+						reach(arrDistance, arrArc, y, dDistance, a);
+						queue.add(new double[] {dDistance, y});
+					}
+				}
+			}
+
+			String path = iMeet == NONE?null:unpack(iSource, iDest, iMeet);
+			for(int i=0; i<iTouched; i++)
+			{
+				arrForward[arrTouched[i]] = INFINITE;
+				arrBackward[arrTouched[i]] = INFINITE;
+			}
+			iTouched = 0;
+			return path;
+		}
+
+		private void reach(double[] arrDistance, int[] arrArc, int x, double dDistance, int a)
+		{
+			if(arrForward[x] == INFINITE && arrBackward[x] == INFINITE)
+				arrTouched[iTouched++] = x;
+			arrDistance[x] = dDistance;
+			arrArc[x] = a;
+		}
+
+		/**
+		 * @return the path through iMeet, with the shortcuts replaced by the edges they stand for.
+		 */
+		private String unpack(int iSource, int iDest, int iMeet)
+		{
+			//arcs from the source up to the meeting node, then down to the destination
+			ArrayList<Integer> alArcs = new ArrayList<Integer>();
+			for(int x = iMeet; x != iSource; x = arrArcFrom[arrForwardArc[x]])
+				alArcs.add(arrForwardArc[x]);
+			Collections.reverse(alArcs);
+			for(int x = iMeet; x != iDest; x = arrArcTo[arrBackwardArc[x]])
+				alArcs.add(arrBackwardArc[x]);
+
+			StringBuilder sbPath = new StringBuilder(arrNodes[iSource]);
+			double dDistance = 0;
+			int[] arrStack = new int[16];
+			for(int aPath:alArcs)
+			{
+				int iStack = 0;
+				arrStack[iStack++] = aPath;
+				while(iStack > 0)
+				{
+					int a = arrStack[--iStack];
+					if(arrArcEdge[a] != NONE)
+					{
+						sbPath.append(ConstantsDefinition.PATH_DELIMITOR).append(arrEdges[arrArcEdge[a]])
+								.append(ConstantsDefinition.PATH_DELIMITOR).append(arrNodes[arrArcTo[a]]);
+						dDistance += arrEdgeWeights[arrArcEdge[a]];
+						continue;
+					}
+					if(iStack + 2 > arrStack.length)
+						arrStack = Arrays.copyOf(arrStack, arrStack.length << 1);
+					//the second arc is unpacked after the first
+					arrStack[iStack++] = arrArcSecond[a];
+					arrStack[iStack++] = arrArcFirst[a];
+				}
+			}
+			return sbPath.append(ConstantsDefinition.PATH_DELIMITOR).append(dDistance).toString();
+		}
+	}
+}
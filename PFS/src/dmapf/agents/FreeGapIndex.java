@@ -0,0 +1,183 @@
+package dmapf.agents;
+
+import java.util.Arrays;
+
+/**
+ * This class indexes the free windows of a location, so that the earliest start at which
+ * a request can be allocated is found by a single search, instead of shifting the request
+ * past one allocation at a time and checking it again.
+ *
+ * An allocation holds the location for iHold from its start, and so does a request. A
+ * request can therefore start at s only if no allocation starts in the open window
+ * (s - iHold, s + iHold). Conversely each allocation at o blocks the starts in the open
+ * window (o - iHold, o + iHold). The blocked windows are held merged, in the order of
+ * their start, hence the windows in between them are exactly the free windows which can
+ * hold a request, and the earliest start from s is either s or the end of the blocked
+ * window containing s.
+ *
+ * Finding the earliest start takes O(log n). Adding an allocation takes O(log n) to find
+ * the blocked windows it merges with, and a copy of the windows after them.
+ *
+ * @author st
+ *
+ */
+class FreeGapIndex
+{
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final int iHold;
+	private int[] arrBlockStarts = new int[INITIAL_CAPACITY]; //exclusive start of each blocked window, sorted
+	private int[] arrBlockEnds = new int[INITIAL_CAPACITY]; //exclusive end of each blocked window, in the same order
+	private int iSize = 0;
+
+	/**
+	 * @param iHold: time for which an allocation holds the location from its start
+	 */
+	FreeGapIndex(int iHold)
+	{
+		this.iHold = iHold;
+	}
+
+	/**
+	 * Marks the location as held by an allocation from iStart.
+	 */
+	void add(int iStart)
+	{
+		int iBlockStart = iStart - iHold;
+		int iBlockEnd = iStart + iHold;
+
+		//the blocked windows from iFirst to iLast-1 overlap the new window, and are merged with it
+		int iFirst = lastBlockBefore(iBlockStart + 1);
+		if(iFirst < 0 || arrBlockEnds[iFirst] <= iBlockStart)
+			iFirst++;
+		int iLast = lastBlockBefore(iBlockEnd) + 1;
+		if(iFirst < iLast)
+		{
+			iBlockStart = Math.min(iBlockStart, arrBlockStarts[iFirst]);
+			iBlockEnd = Math.max(iBlockEnd, arrBlockEnds[iLast-1]);
+		}
+
+		int iMerged = iLast - iFirst;
+		if(iMerged == 0 && iSize == arrBlockStarts.length)
+		{
+			arrBlockStarts = Arrays.copyOf(arrBlockStarts, iSize << 1);
+			arrBlockEnds = Arrays.copyOf(arrBlockEnds, iSize << 1);
+		}
+		//keep one slot for the merged window
+		int iShift = 1 - iMerged;
+		if(iShift != 0)
+		{
+			System.arraycopy(arrBlockStarts, iLast, arrBlockStarts, iLast + iShift, iSize - iLast);
+			System.arraycopy(arrBlockEnds, iLast, arrBlockEnds, iLast + iShift, iSize - iLast);
+			iSize += iShift;
+		}
+		arrBlockStarts[iFirst] = iBlockStart;
+		arrBlockEnds[iFirst] = iBlockEnd;
+	}
+
+	/**
+	 * @return the earliest start from iStart at which the request does not overlap the hold of any allocation.
+	 */
+	int earliestStart(int iStart)
+	{
+		int iBlock = lastBlockBefore(iStart);
+		if(iBlock >= 0 && iStart < arrBlockEnds[iBlock])
+			return arrBlockEnds[iBlock];
+		return iStart;
+	}
+
+	/**
+	 * Drops the blocked windows which end at or before iHorizon. They cannot delay a request
+	 * which starts at or after iHorizon, since a request is only ever shifted later.
+	 * @return number of blocked windows dropped
+	 */
+	int dropBefore(int iHorizon)
+	{
+		//the windows are disjoint and sorted, so their ends are sorted as well
+		int iLow = 0;
+		int iHigh = iSize;
+		while(iLow < iHigh)
+		{
+			int iMid = (iLow + iHigh) >>> 1;
+			if(arrBlockEnds[iMid] <= iHorizon)
+				iLow = iMid + 1;
+			else
+				iHigh = iMid;
+		}
+		if(iLow > 0)
+		{
+			System.arraycopy(arrBlockStarts, iLow, arrBlockStarts, 0, iSize - iLow);
+			System.arraycopy(arrBlockEnds, iLow, arrBlockEnds, 0, iSize - iLow);
+			iSize -= iLow;
+		}
+		return iLow;
+	}
+
+	/**
+	 * Replaces the blocked windows by those of the given index, which has the same hold.
+	 */
+	void copyFrom(FreeGapIndex other)
+	{
+		if(arrBlockStarts.length < other.iSize)
+		{
+			arrBlockStarts = new int[other.arrBlockStarts.length];
+			arrBlockEnds = new int[other.arrBlockStarts.length];
+		}
+		System.arraycopy(other.arrBlockStarts, 0, arrBlockStarts, 0, other.iSize);
+		System.arraycopy(other.arrBlockEnds, 0, arrBlockEnds, 0, other.iSize);
+		iSize = other.iSize;
+	}
+
+	int size() {
+		return iSize;
+	}
+
+	/**
+	 * @return exclusive start of the i-th blocked window, in the order of their start.
+	 */
+	int getBlockStart(int i) {
+		return arrBlockStarts[i];
+	}
+
+	/**
+	 * @return exclusive end of the i-th blocked window.
+	 */
+	int getBlockEnd(int i) {
+		return arrBlockEnds[i];
+	}
+
+	void clear()
+	{
+		iSize = 0;
+	}
+
+	/**
+	 * Releases the capacity beyond the current size, down to the initial capacity.
+	 */
+	void trimToSize()
+	{
+		if(arrBlockStarts.length > INITIAL_CAPACITY && arrBlockStarts.length > iSize)
+		{
+			arrBlockStarts = Arrays.copyOf(arrBlockStarts, Math.max(iSize, INITIAL_CAPACITY));
+			arrBlockEnds = Arrays.copyOf(arrBlockEnds, Math.max(iSize, INITIAL_CAPACITY));
+		}
+	}
+
+	/**
+	 * @return position of the last blocked window starting before iValue. -1 if none.
+	 */
+	private int lastBlockBefore(int iValue)
+	{
+		int iLow = 0;
+		int iHigh = iSize;
+		while(iLow < iHigh)
+		{
+			int iMid = (iLow + iHigh) >>> 1;
+			if(arrBlockStarts[iMid] < iValue)
+				iLow = iMid + 1;
+			else
+				iHigh = iMid;
+		}
+		return iLow - 1;
+	}
+}
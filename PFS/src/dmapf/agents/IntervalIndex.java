@@ -0,0 +1,137 @@
+package dmapf.agents;
+
+import java.util.Arrays;
+
+/**
+ * This class indexes the periods of a schedule of a location, in the order in which they
+ * have been scheduled, so that the first period conflicting with a request is found
+ * without scanning the schedule and parsing every entry of it.
+ *
+ * A requested period conflicts with a scheduled one unless it starts at or after the end
+ * of the scheduled one, ie. unless DateUtil.compareTimePeriod finds it AFTER or
+ * MEETS_INVERSE. The periods are taken to be of positive length. Hence the first conflict
+ * after a position is the first period whose end is later than the requested start.
+ *
+ * The ends are held in a segment tree over the positions, where each node holds the
+ * latest end in its range. Adding a period and finding the first conflict from a position
+ * both take O(log n).
+ *
+ * @author st
+ *
+ */
+class IntervalIndex
+{
+	private static final int INITIAL_CAPACITY = 16;
+	private static final int NONE = -1;
+
+	private int iCapacity = INITIAL_CAPACITY; //number of leaves of the tree
+	private int[] arrStarts = new int[INITIAL_CAPACITY]; //start of each period, by position
+	private int[] arrEnds = new int[INITIAL_CAPACITY]; //end of each period, by position
+	private int[] arrMaxEnds = newTree(INITIAL_CAPACITY); //node i has the children 2i and 2i+1. The leaves begin at iCapacity.
+	private int iSize = 0;
+
+	void add(int iStart, int iEnd)
+	{
+		if(iSize == iCapacity)
+			grow();
+		arrStarts[iSize] = iStart;
+		arrEnds[iSize] = iEnd;
+		int iNode = iCapacity + iSize;
+		arrMaxEnds[iNode] = iEnd;
+		for(iNode >>= 1; iNode > 0 && arrMaxEnds[iNode] < iEnd; iNode >>= 1)
+			arrMaxEnds[iNode] = iEnd;
+		iSize++;
+	}
+
+	void clear()
+	{
+		if(iSize > 0)
+			Arrays.fill(arrMaxEnds, Integer.MIN_VALUE);
+		iSize = 0;
+	}
+
+	/**
+	 * Drops the periods from position iSize onwards. Only the nodes above the dropped
+	 * positions are updated.
+	 */
+	void truncate(int iSize)
+	{
+		if(iSize >= this.iSize)
+			return;
+		Arrays.fill(arrMaxEnds, iCapacity + iSize, iCapacity + this.iSize, Integer.MIN_VALUE);
+		for(int iLow = (iCapacity + iSize) >> 1, iHigh = (iCapacity + this.iSize - 1) >> 1; iHigh > 0; iLow >>= 1, iHigh >>= 1)
+			for(int iNode = iLow; iNode <= iHigh; iNode++)
+				arrMaxEnds[iNode] = Math.max(arrMaxEnds[iNode << 1], arrMaxEnds[(iNode << 1) + 1]);
+		this.iSize = iSize;
+	}
+
+	int size() {
+		return iSize;
+	}
+
+	int getStart(int iIndex) {
+		return arrStarts[iIndex];
+	}
+
+	int getEnd(int iIndex) {
+		return arrEnds[iIndex];
+	}
+
+	/**
+	 * @param iStart: start of the requested period
+	 * @param iFromIndex: first position to be checked
+	 * @return the first position, from iFromIndex, of a period conflicting with the request. -1 if none.
+	 */
+	int firstConflict(int iStart, int iFromIndex)
+	{
+		if(iFromIndex >= iSize)
+			return NONE;
+		return find(1, 0, iCapacity, Math.max(iFromIndex, 0), iStart);
+	}
+
+	private int find(int iNode, int iLow, int iHigh, int iFromIndex, int iStart)
+	{
+		if(iHigh <= iFromIndex || arrMaxEnds[iNode] <= iStart)
+			return NONE;
+		if(iHigh - iLow == 1)
+			return iLow;
+		int iMid = (iLow + iHigh) >>> 1;
+		int iIndex = find(iNode << 1, iLow, iMid, iFromIndex, iStart);
+		return iIndex != NONE?iIndex:find((iNode << 1) + 1, iMid, iHigh, iFromIndex, iStart);
+	}
+
+	/**
+	 * Releases the capacity beyond the periods held, down to the least power of two holding them.
+	 */
+	void trimToSize()
+	{
+		int iTrimmed = INITIAL_CAPACITY;
+		while(iTrimmed < iSize)
+			iTrimmed <<= 1;
+		if(iTrimmed < iCapacity)
+			resize(iTrimmed);
+	}
+
+	private void grow()
+	{
+		resize(iCapacity << 1);
+	}
+
+	private void resize(int iCapacity)
+	{
+		this.iCapacity = iCapacity;
+		arrStarts = Arrays.copyOf(arrStarts, iCapacity);
+		arrEnds = Arrays.copyOf(arrEnds, iCapacity);
+		arrMaxEnds = newTree(iCapacity);
+		System.arraycopy(arrEnds, 0, arrMaxEnds, iCapacity, iSize);
+		for(int iNode = iCapacity - 1; iNode > 0; iNode--)
+			arrMaxEnds[iNode] = Math.max(arrMaxEnds[iNode << 1], arrMaxEnds[(iNode << 1) + 1]);
+	}
+
+	private static int[] newTree(int iCapacity)
+	{
+		int[] arrTree = new int[iCapacity << 1];
+		Arrays.fill(arrTree, Integer.MIN_VALUE);
+		return arrTree;
+	}
+}
@@ -0,0 +1,111 @@
+package dmapf.agents;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.function.Function;
+
+import org.jgrapht.Graph;
+
+/**
+ * This class adapts a road network held in a JGraphT graph, as the one JGraphTUtil finds its
+ * paths on, to the RoadNetwork used by the travellers' own searches. The functions delegate
+ * to the graph, with the nodes and the edges named by the ids used in the paths of
+ * JGraphTUtil, as given by nodeId and edgeId.
+ *
+ * The ids are mapped to the nodes and the edges of the graph once, here, and so are the
+ * adjacent edges of each node, which the searches ask for at every node they expand. The
+ * maps are only read afterwards, so the travellers may search on several threads. Hence the
+ * graph is not to change once it is adapted.
+ *
+ * @author st
+ *
+ * @param <V>: node of the graph
+ * @param <E>: edge of the graph
+ */
+public class JGraphTNetwork<V, E> implements RoadNetwork
+{
+	private final Graph<V, E> graph;
+	private final Function<V, String> nodeId;
+	private final Function<E, String> edgeId;
+	private final HashMap<String, V> hmNodes = new HashMap<String, V>(); //node of the graph, by id
+	private final HashMap<String, E> hmEdges = new HashMap<String, E>(); //edge of the graph, by id
+	private final HashMap<String, Collection<String>> hmOutgoing = new HashMap<String, Collection<String>>(); //ids of the outgoing edges, by node id
+	private final HashMap<String, Collection<String>> hmIncoming = new HashMap<String, Collection<String>>(); //ids of the incoming edges, by node id
+
+	/**
+	 * @param graph: road network
+	 * @param nodeId: id of a node in the paths of JGraphTUtil
+	 * @param edgeId: id of an edge in the paths of JGraphTUtil, as passed to JGraphTUtil.getEdgeDetail
+	 */
+	public JGraphTNetwork(Graph<V, E> graph, Function<V, String> nodeId, Function<E, String> edgeId)
+	{
+		this.graph = graph;
+		this.nodeId = nodeId;
+		this.edgeId = edgeId;
+		for(E edge:graph.edgeSet())
+			hmEdges.put(edgeId.apply(edge), edge);
+		for(V node:graph.vertexSet())
+		{
+			String strNode = nodeId.apply(node);
+			hmNodes.put(strNode, node);
+			hmOutgoing.put(strNode, edgeIds(graph.outgoingEdgesOf(node)));
+			hmIncoming.put(strNode, edgeIds(graph.incomingEdgesOf(node)));
+		}
+	}
+
+	@Override
+	public Collection<String> vertexSet() {
+		return Collections.unmodifiableCollection(hmNodes.keySet());
+	}
+
+	@Override
+	public Collection<String> outgoingEdgesOf(String strNode) {
+		return adjacent(hmOutgoing, strNode);
+	}
+
+	@Override
+	public Collection<String> incomingEdgesOf(String strNode) {
+		return adjacent(hmIncoming, strNode);
+	}
+
+	@Override
+	public String getEdgeSource(String strEdge) {
+		return nodeId.apply(graph.getEdgeSource(edge(strEdge)));
+	}
+
+	@Override
+	public String getEdgeTarget(String strEdge) {
+		return nodeId.apply(graph.getEdgeTarget(edge(strEdge)));
+	}
+
+	@Override
+	public double getEdgeWeight(String strEdge) {
+		return graph.getEdgeWeight(edge(strEdge));
+	}
+
+	private static Collection<String> adjacent(HashMap<String, Collection<String>> hmAdjacent, String strNode)
+	{
+		Collection<String> alEdges = hmAdjacent.get(strNode);
+		if(alEdges == null)
+			throw new IllegalArgumentException("No node "+strNode+" in the road network");
+		return alEdges;
+	}
+
+	private E edge(String strEdge)
+	{
+		E edge = hmEdges.get(strEdge);
+		if(edge == null)
+			throw new IllegalArgumentException("No edge "+strEdge+" in the road network");
+		return edge;
+	}
+
+	private Collection<String> edgeIds(Collection<E> edges)
+	{
+		ArrayList<String> alEdges = new ArrayList<String>(edges.size());
+		for(E edge:edges)
+			alEdges.add(edgeId.apply(edge));
+		return Collections.unmodifiableList(alEdges);
+	}
+}
@@ -0,0 +1,124 @@
+package dmapf.agents;
+
+import java.util.Arrays;
+
+/**
+ * This class orders entries by an int key, in place of the TreeMaps of lists in which the
+ * locations and the travellers sorted their schedules every round. An entry is a sort key,
+ * a long holding the key in its upper int and the index of the entry in its lower int, so
+ * the entries are sorted without boxing the keys and without a node per entry.
+ *
+ * The sort is stable: the entries with the same key are kept in the order in which they
+ * were added, as they were in the lists of the TreeMaps. It is a counting sort on each byte
+ * of the key, from the lowest, which skips the bytes that are the same for all the entries.
+ * A few entries are sorted by insertion instead.
+ *
+ * The buffers are retained between sorts, so a KeySort is kept by its agent and is not
+ * shared across threads.
+ *
+ * @author st
+ *
+ */
+final class KeySort
+{
+	private static final int INSERTION_SORT_SIZE = 32; //entries up to which the insertion sort is used
+	private static final int RADIX = 256;
+
+	private long[] arrScratch = new long[0];
+	private final int[] arrCounts = new int[4 * RADIX]; //number of entries with each value of each byte of the key
+
+	static long sortKey(int iKey, int iEntry)
+	{
+		return ((long)iKey << 32) | (iEntry & 0xFFFFFFFFL);
+	}
+
+	static int getKey(long lSortKey)
+	{
+		return (int)(lSortKey >> 32);
+	}
+
+	static int getEntry(long lSortKey)
+	{
+		return (int)lSortKey;
+	}
+
+	/**
+	 * Sorts the first iSize sort keys in the increasing order of their key.
+	 */
+	void sort(long[] arrKeys, int iSize)
+	{
+		if(iSize <= INSERTION_SORT_SIZE)
+		{
+			insertionSort(arrKeys, iSize);
+			return;
+		}
+		if(arrScratch.length < iSize)
+			arrScratch = new long[Math.max(iSize, arrScratch.length << 1)];
+
+		Arrays.fill(arrCounts, 0);
+		for(int i=0; i<iSize; i++)
+		{
+			int iKey = unsignedKey(arrKeys[i]);
+			for(int iByte=0; iByte<4; iByte++)
+				arrCounts[iByte * RADIX + ((iKey >>> (iByte << 3)) & 0xFF)]++;
+		}
+
+		long[] arrFrom = arrKeys;
+		long[] arrTo = arrScratch;
+		for(int iByte=0; iByte<4; iByte++)
+		{
+			int iOffset = iByte * RADIX;
+			int iShift = iByte << 3;
+			//the byte is the same for all the entries, so they are in order of it already
+			if(arrCounts[iOffset + ((unsignedKey(arrFrom[0]) >>> iShift) & 0xFF)] == iSize)
+				continue;
+			//turn the counts into the position of the first entry with each value
+			int iPosition = 0;
+			for(int i=iOffset; i<iOffset + RADIX; i++)
+			{
+				int iCount = arrCounts[i];
+				arrCounts[i] = iPosition;
+				iPosition += iCount;
+			}
+			for(int i=0; i<iSize; i++)
+				arrTo[arrCounts[iOffset + ((unsignedKey(arrFrom[i]) >>> iShift) & 0xFF)]++] = arrFrom[i];
+			long[] arrSwap = arrFrom;
+			arrFrom = arrTo;
+			arrTo = arrSwap;
+		}
+		if(arrFrom != arrKeys)
+			System.arraycopy(arrFrom, 0, arrKeys, 0, iSize);
+	}
+
+	/**
+	 * Releases the scratch buffer, for an agent which is passivated.
+	 */
+	void trimToSize()
+	{
+		arrScratch = new long[0];
+	}
+
+	private static void insertionSort(long[] arrKeys, int iSize)
+	{
+		for(int i=1; i<iSize; i++)
+		{
+			long lSortKey = arrKeys[i];
+			int iKey = getKey(lSortKey);
+			int j = i - 1;
+			while(j >= 0 && getKey(arrKeys[j]) > iKey)
+			{
+				arrKeys[j+1] = arrKeys[j];
+				j--;
+			}
+			arrKeys[j+1] = lSortKey;
+		}
+	}
+
+	/**
+	 * @return the key with its sign bit flipped, so that its bytes order the negative keys before the positive.
+	 */
+	private static int unsignedKey(long lSortKey)
+	{
+		return getKey(lSortKey) ^ Integer.MIN_VALUE;
+	}
+}
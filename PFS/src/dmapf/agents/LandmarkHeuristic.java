@@ -0,0 +1,183 @@
+package dmapf.agents;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+import org.apache.log4j.Logger;
+
+/**
+ * This class estimates the distance between two nodes by landmarks (ALT: A*, landmarks and
+ * the triangle inequality). The distances from and to a few landmarks are found once, when
+ * the network is loaded. For a landmark L, the distance from v to t is at least
+ * d(L,t) - d(L,v) and at least d(v,L) - d(t,L), and the estimate is the largest of these
+ * over the landmarks. It is consistent, and it stays so when edges are excluded, since an
+ * excluded edge only lengthens the distances.
+ *
+ * The landmarks are chosen farthest first: each landmark is the node farthest from the
+ * landmarks chosen before it, so that they lie around the edge of the network, where the
+ * bounds are tightest.
+ *
+ * The distances are held in arrays by node index, and are not changed once found, so the
+ * heuristic is shared by all the travellers.
+ *
+ * @author st
+ *
+ */
+class LandmarkHeuristic implements LifelongPlanner.Heuristic
+{
+	public static final Logger log = Logger.getLogger(LandmarkHeuristic.class);
+	static final int DEFAULT_LANDMARKS = 8;
+	private static final double INFINITE = Double.POSITIVE_INFINITY;
+
+	private final HashMap<String, Integer> hmNodeIndex = new HashMap<String, Integer>(); //index of each node, by node id
+	private final double[][] arrFromLandmark; //distance from each landmark to each node, by node index
+	private final double[][] arrToLandmark; //distance from each node to each landmark, by node index
+
+	//the network held as adjacency arrays while the distances are found. Edge i of node v is at arrOffsets[v]+i.
+	private int[] arrOutOffsets, arrOutNodes, arrInOffsets, arrInNodes;
+	private double[] arrOutWeights, arrInWeights;
+
+	LandmarkHeuristic(RoadNetwork network, int iLandmarks)
+	{
+		long lStart = System.currentTimeMillis();
+		String[] arrNodes = network.vertexSet().toArray(new String[0]);
+		for(int i=0; i<arrNodes.length; i++)
+			hmNodeIndex.put(arrNodes[i], i);
+		buildAdjacency(network, arrNodes);
+
+		iLandmarks = Math.min(iLandmarks, arrNodes.length);
+		arrFromLandmark = new double[iLandmarks][];
+		arrToLandmark = new double[iLandmarks][];
+		//least distance of each node from the landmarks chosen, in either direction
+		double[] arrNearest = new double[arrNodes.length];
+		Arrays.fill(arrNearest, INFINITE);
+		int iLandmark = iLandmarks > 0?farthest(distances(0, arrOutOffsets, arrOutNodes, arrOutWeights), false):0;
+		for(int l=0; l<iLandmarks; l++)
+		{
+			arrFromLandmark[l] = distances(iLandmark, arrOutOffsets, arrOutNodes, arrOutWeights);
+			arrToLandmark[l] = distances(iLandmark, arrInOffsets, arrInNodes, arrInWeights);
+			for(int v=0; v<arrNodes.length; v++)
+				arrNearest[v] = Math.min(arrNearest[v], Math.min(arrFromLandmark[l][v], arrToLandmark[l][v]));
+			iLandmark = farthest(arrNearest, true);
+		}
+
+		arrOutOffsets = arrOutNodes = arrInOffsets = arrInNodes = null;
+		arrOutWeights = arrInWeights = null;
+		log.info(iLandmarks+" landmarks on "+arrNodes.length+" nodes in "+(System.currentTimeMillis()-lStart)+"msec");
+	}
+
+	@Override
+	public double estimate(String strNode, String strDest)
+	{
+		Integer iNode = hmNodeIndex.get(strNode);
+		Integer iDest = hmNodeIndex.get(strDest);
+		if(iNode == null || iDest == null)
+			return 0;
+		double dEstimate = 0;
+		for(int l=0; l<arrFromLandmark.length; l++)
+		{
+			//a bound with an unreachable end is skipped rather than taken as infinite
+			double dFromNode = arrFromLandmark[l][iNode];
+			double dFromDest = arrFromLandmark[l][iDest];
+			if(dFromNode != INFINITE && dFromDest != INFINITE)
+				dEstimate = Math.max(dEstimate, dFromDest - dFromNode);
+			double dToNode = arrToLandmark[l][iNode];
+			double dToDest = arrToLandmark[l][iDest];
+			if(dToNode != INFINITE && dToDest != INFINITE)
+				dEstimate = Math.max(dEstimate, dToNode - dToDest);
+		}
+		return dEstimate;
+	}
+
+	int getLandmarkCount() {
+		return arrFromLandmark.length;
+	}
+
+	/**
+	 * Holds the outgoing and the incoming edges of each node as arrays of the node at their other end and their length.
+	 */
+	private void buildAdjacency(RoadNetwork network, String[] arrNodes)
+	{
+		int iNodes = arrNodes.length;
+		arrOutOffsets = new int[iNodes + 1];
+		arrInOffsets = new int[iNodes + 1];
+		for(int v=0; v<iNodes; v++)
+		{
+			arrOutOffsets[v+1] = arrOutOffsets[v] + network.outgoingEdgesOf(arrNodes[v]).size();
+			arrInOffsets[v+1] = arrInOffsets[v] + network.incomingEdgesOf(arrNodes[v]).size();
+		}
+		arrOutNodes = new int[arrOutOffsets[iNodes]];
+		arrOutWeights = new double[arrOutOffsets[iNodes]];
+		arrInNodes = new int[arrInOffsets[iNodes]];
+		arrInWeights = new double[arrInOffsets[iNodes]];
+		for(int v=0; v<iNodes; v++)
+		{
+			int iOut = arrOutOffsets[v];
+			for(String strEdge:network.outgoingEdgesOf(arrNodes[v]))
+			{
+				arrOutNodes[iOut] = hmNodeIndex.get(network.getOppositeNode(strEdge, arrNodes[v]));
+				arrOutWeights[iOut++] = network.getEdgeWeight(strEdge);
+			}
+			int iIn = arrInOffsets[v];
+			for(String strEdge:network.incomingEdgesOf(arrNodes[v]))
+			{
+				arrInNodes[iIn] = hmNodeIndex.get(network.getOppositeNode(strEdge, arrNodes[v]));
+				arrInWeights[iIn++] = network.getEdgeWeight(strEdge);
+			}
+		}
+	}
+
+	/**
+	 * Dijkstra's search from the node over the given edges.
+	 * @return distance of each node from iSource, by node index. INFINITE if it cannot be reached.
+	 */
+	private static double[] distances(int iSource, int[] arrOffsets, int[] arrAdjacent, double[] arrWeights)
+	{
+		double[] arrDistance = new double[arrOffsets.length - 1];
+		Arrays.fill(arrDistance, INFINITE);
+		arrDistance[iSource] = 0;
+		PriorityQueue<double[]> queue = new PriorityQueue<double[]>((a, b) -> Double.compare(a[0], b[0])); //distance, node
+		queue.add(new double[] {0, iSource});
+		while(!queue.isEmpty())
+		{
+			double[] entry = queue.poll();
+			int v = (int)entry[1];
+			if(entry[0] > arrDistance[v])
+				continue;
+			for(int i=arrOffsets[v]; i<arrOffsets[v+1]; i++)
+			{
+				double dDistance = entry[0] + arrWeights[i];
+				if(dDistance < arrDistance[arrAdjacent[i]])
+				{
+					arrDistance[arrAdjacent[i]] = dDistance;
+					queue.add(new double[] {dDistance, arrAdjacent[i]});
+				}
+			}
+		}
+		return arrDistance;
+	}
+
+	/**
+	 * @param bUnreached: true to take a node which has not been reached at all, if any, so that
+	 * every part of a disconnected network gets a landmark
+	 * @return index of the node with the largest distance.
+	 */
+	private static int farthest(double[] arrDistance, boolean bUnreached)
+	{
+		int iFarthest = 0;
+		double dFarthest = -1;
+		for(int v=0; v<arrDistance.length; v++)
+		{
+			double dDistance = arrDistance[v];
+			if(dDistance == INFINITE)
+				dDistance = bUnreached?Double.MAX_VALUE:-1;
+			if(dDistance > dFarthest)
+			{
+				dFarthest = dDistance;
+				iFarthest = v;
+			}
+		}
+		return iFarthest;
+	}
+}
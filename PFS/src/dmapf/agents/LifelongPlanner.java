@@ -0,0 +1,327 @@
+package dmapf.agents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.log4j.Logger;
+
+import dmapf.constants.ConstantsDefinition;
+
+/**
+ * This class finds the path of a traveller by Lifelong Planning A* (LPA*), which retains
+ * the search between the calls. As the traveller excludes edges, only the nodes whose
+ * distance from the source depended on those edges are searched again, instead of the
+ * whole network.
+ *
+ * Each node holds g, its distance from the source as last searched, and rhs, its distance
+ * as computed from the g of its predecessors. A node with g != rhs is inconsistent and is
+ * queued, in the order of min(g, rhs) + the estimate of its distance to the destination.
+ * Excluding or restoring an edge changes only the rhs of its ends, so only they, and the
+ * nodes which their changes propagate to, are queued again.
+ *
+ * Nodes are indexed as they are reached, so the planner holds only the part of the network
+ * it has searched. A planner is kept by its traveller and is not shared across threads.
+ *
+ * @author st
+ *
+ */
+class LifelongPlanner
+{
+	public static final Logger log = Logger.getLogger(LifelongPlanner.class);
+	private static final double INFINITE = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Estimate of the distance from a node to the destination. It must not be more than the
+	 * distance, nor more than the length of an edge plus the estimate from its other end.
+	 */
+	interface Heuristic
+	{
+		double estimate(String strNode, String strDest);
+	}
+
+	static final Heuristic NO_ESTIMATE = (strNode, strDest) -> 0;
+
+	private final RoadNetwork network;
+	private final Heuristic heuristic;
+	private final String strSource;
+	private final String strDest;
+
+	private HashMap<String, Integer> hmNodeIndex = new HashMap<String, Integer>(); //index of each node reached, by node id
+	private ArrayList<String> alNodes = new ArrayList<String>(); //node ids, by index
+	private double[] arrG = new double[16];
+	private double[] arrRhs = new double[16];
+	private double[] arrEstimate = new double[16]; //estimate of the distance to the destination, by index
+	private double[] arrQueuedKey = new double[16]; //key with which each node was queued last. See QueueEntry.
+	private boolean[] arrQueued = new boolean[16]; //whether the node is inconsistent and hence queued
+	private PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+	private HashSet<String> hsExcludedEdges = new HashSet<String>();
+	private boolean bSearched = false;
+	private int iExpanded = 0; //number of nodes expanded in the last call
+
+	LifelongPlanner(RoadNetwork network, String strSource, String strDest, Heuristic heuristic)
+	{
+		this.network = network;
+		this.strSource = strSource;
+		this.strDest = strDest;
+		this.heuristic = heuristic;
+	}
+
+	/**
+	 * This function finds the shortest path which does not use the excluded edges. The first
+	 * call searches the network, the later calls repair the search for the edges excluded or
+	 * restored since the last call.
+	 * @param alExcludedEdges: edges which the path must not use. null if none.
+	 * @return the path, in the form returned by JGraphTUtil.getPath: node%edge%node...%distance.
+	 * null if the destination cannot be reached.
+	 */
+	String getPath(List<String> alExcludedEdges)
+	{
+		iExpanded = 0;
+		if(!bSearched)
+		{
+			if(alExcludedEdges != null)
+				hsExcludedEdges.addAll(alExcludedEdges);
+			int iSource = indexOf(strSource);
+			arrRhs[iSource] = 0;
+			enqueue(iSource);
+			bSearched = true;
+		}
+		else
+			updateExcludedEdges(alExcludedEdges);
+
+		computeShortestPath();
+		log.debug("Path from "+strSource+" to "+strDest+" expanded "+iExpanded+" of "+alNodes.size()+" nodes");
+		return extractPath();
+	}
+
+	int getExpandedCount() {
+		return iExpanded;
+	}
+
+	/**
+	 * Updates the ends of the edges which have been excluded or restored since the last call.
+	 */
+	private void updateExcludedEdges(List<String> alExcludedEdges)
+	{
+		HashSet<String> hsExcluded = alExcludedEdges == null?new HashSet<String>():new HashSet<String>(alExcludedEdges);
+		ArrayList<String> alChanged = new ArrayList<String>();
+		for(String strEdge:hsExcluded)
+		{
+			if(!hsExcludedEdges.contains(strEdge))
+				alChanged.add(strEdge);
+		}
+		for(String strEdge:hsExcludedEdges)
+		{
+			if(!hsExcluded.contains(strEdge))
+				alChanged.add(strEdge);
+		}
+		hsExcludedEdges = hsExcluded;
+
+		for(String strEdge:alChanged)
+		{
+			//an end which has not been reached is not affected by the edge
+			Integer iSource = hmNodeIndex.get(network.getEdgeSource(strEdge));
+			Integer iTarget = hmNodeIndex.get(network.getEdgeTarget(strEdge));
+			if(iSource != null)
+				updateNode(iSource);
+			if(iTarget != null)
+				updateNode(iTarget);
+		}
+	}
+
+	private void computeShortestPath()
+	{
+		int iDest = indexOf(strDest);
+		while(true)
+		{
+			QueueEntry top = peekValid();
+			//the destination is consistent and no queued node can lead to it by a shorter path
+			if(top == null || (arrRhs[iDest] == arrG[iDest] && top.compareTo(new QueueEntry(key(iDest), Math.min(arrG[iDest], arrRhs[iDest]), iDest)) >= 0))
+				break;
+			queue.poll();
+			int iNode = top.iNode;
+			arrQueued[iNode] = false;
+			iExpanded++;
+			if(arrG[iNode] > arrRhs[iNode])
+			{
+				arrG[iNode] = arrRhs[iNode];
+				updateSuccessors(iNode);
+			}
+			else
+			{
+				arrG[iNode] = INFINITE;
+				updateNode(iNode);
+				updateSuccessors(iNode);
+			}
+		}
+	}
+
+	private void updateSuccessors(int iNode)
+	{
+		String strNode = alNodes.get(iNode);
+		for(String strEdge:network.outgoingEdgesOf(strNode))
+			updateNode(indexOf(network.getOppositeNode(strEdge, strNode)));
+	}
+
+	/**
+	 * Recomputes the rhs of the node from its predecessors, and queues it if it is inconsistent.
+	 */
+	private void updateNode(int iNode)
+	{
+		String strNode = alNodes.get(iNode);
+		if(!strNode.equals(strSource))
+		{
+			double dRhs = INFINITE;
+			for(String strEdge:network.incomingEdgesOf(strNode))
+			{
+				if(hsExcludedEdges.contains(strEdge))
+					continue;
+				Integer iPredecessor = hmNodeIndex.get(network.getOppositeNode(strEdge, strNode));
+				//a node which has not been reached has g infinite
+				if(iPredecessor != null)
+					dRhs = Math.min(dRhs, arrG[iPredecessor] + network.getEdgeWeight(strEdge));
+			}
+			arrRhs[iNode] = dRhs;
+		}
+		arrQueued[iNode] = false;
+		if(arrG[iNode] != arrRhs[iNode])
+			enqueue(iNode);
+	}
+
+	/**
+	 * This function follows the predecessors from the destination which give its distance.
+	 */
+	private String extractPath()
+	{
+		int iDest = indexOf(strDest);
+		if(arrG[iDest] == INFINITE)
+		{
+			log.debug("No path from "+strSource+" to "+strDest+" without "+hsExcludedEdges);
+			return null;
+		}
+
+		LinkedList<String> llPath = new LinkedList<String>();
+		String strNode = strDest;
+		llPath.addFirst(strNode);
+		while(!strNode.equals(strSource))
+		{
+			double dG = arrG[hmNodeIndex.get(strNode)];
+			String strBestEdge = null;
+			String strBestNode = null;
+			double dBest = INFINITE;
+			for(String strEdge:network.incomingEdgesOf(strNode))
+			{
+				if(hsExcludedEdges.contains(strEdge))
+					continue;
+				String strPredecessor = network.getOppositeNode(strEdge, strNode);
+				Integer iPredecessor = hmNodeIndex.get(strPredecessor);
+				if(iPredecessor == null)
+					continue;
+				double dDistance = arrG[iPredecessor] + network.getEdgeWeight(strEdge);
+				if(dDistance < dBest)
+				{
+					dBest = dDistance;
+					strBestEdge = strEdge;
+					strBestNode = strPredecessor;
+				}
+			}
+			if(strBestEdge == null || dBest > dG || llPath.size() > 2 * alNodes.size())
+			{
+				log.error("Path from "+strSource+" to "+strDest+" broken at "+strNode);
+				return null;
+			}
+			llPath.addFirst(strBestEdge);
+			llPath.addFirst(strBestNode);
+			strNode = strBestNode;
+		}
+
+		StringBuilder sbPath = new StringBuilder();
+		for(String strElement:llPath)
+			sbPath.append(strElement).append(ConstantsDefinition.PATH_DELIMITOR);
+		return sbPath.append(arrG[iDest]).toString();
+	}
+
+	private double key(int iNode)
+	{
+		return Math.min(arrG[iNode], arrRhs[iNode]) + arrEstimate[iNode];
+	}
+
+	private void enqueue(int iNode)
+	{
+		double dKey = key(iNode);
+		arrQueued[iNode] = true;
+		arrQueuedKey[iNode] = dKey;
+		queue.add(new QueueEntry(dKey, Math.min(arrG[iNode], arrRhs[iNode]), iNode));
+	}
+
+	/**
+	 * @return the queued entry with the least key, after dropping the entries superseded since they were queued.
+	 */
+	private QueueEntry peekValid()
+	{
+		QueueEntry top = queue.peek();
+		while(top != null && (!arrQueued[top.iNode] || arrQueuedKey[top.iNode] != top.dKey))
+		{
+			queue.poll();
+			top = queue.peek();
+		}
+		return top;
+	}
+
+	/**
+	 * @return index of the node, indexing it if it has not been reached before.
+	 */
+	private int indexOf(String strNode)
+	{
+		Integer iIndex = hmNodeIndex.get(strNode);
+		if(iIndex != null)
+			return iIndex;
+		int iNode = alNodes.size();
+		if(iNode == arrG.length)
+		{
+			int iCapacity = iNode << 1;
+			arrG = Arrays.copyOf(arrG, iCapacity);
+			arrRhs = Arrays.copyOf(arrRhs, iCapacity);
+			arrEstimate = Arrays.copyOf(arrEstimate, iCapacity);
+			arrQueuedKey = Arrays.copyOf(arrQueuedKey, iCapacity);
+			arrQueued = Arrays.copyOf(arrQueued, iCapacity);
+		}
+		hmNodeIndex.put(strNode, iNode);
+		alNodes.add(strNode);
+		arrG[iNode] = INFINITE;
+		arrRhs[iNode] = INFINITE;
+		arrEstimate[iNode] = heuristic.estimate(strNode, strDest);
+		arrQueued[iNode] = false;
+		return iNode;
+	}
+
+	/**
+	 * Entry of the queue. The entries are ordered by the key min(g, rhs) + estimate, and by
+	 * min(g, rhs) among the same key.
+	 */
+	private static final class QueueEntry implements Comparable<QueueEntry>
+	{
+		private final double dKey;
+		private final double dDistance;
+		private final int iNode;
+
+		QueueEntry(double dKey, double dDistance, int iNode)
+		{
+			this.dKey = dKey;
+			this.dDistance = dDistance;
+			this.iNode = iNode;
+		}
+
+		@Override
+		public int compareTo(QueueEntry entry)
+		{
+			int iCompare = Double.compare(dKey, entry.dKey);
+			return iCompare != 0?iCompare:Double.compare(dDistance, entry.dDistance);
+		}
+	}
+}
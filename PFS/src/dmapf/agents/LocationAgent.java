@@ -31,6 +31,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
@@ -43,19 +44,14 @@ import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
 
 import dmapf.constants.ConstantsDefinition;
-import dmapf.model.Constraint;
 import dmapf.model.Message;
-import dmapf.utils.DateUtil;
+import dmapf.model.ScheduleMessage;
 //TODO Handle the DW message
 public class LocationAgent {
 
 	private int iLocationId;
 	private int iDWSize; //duration of the deliberation window. Setup at initialisation.
 	private PostOffice postOffice;
-	private static final int TPP = 4;
-	private static final int GAP = 2;
-	int iOverLapIndex; //maintains the first index with the proposed schedule where overlap takes place
-	int iOverlapConstraintIndex; //maintains the first index with the constraints where overlap takes place
 	private static final int INVALID = -1;
 
 
@@ -63,15 +59,25 @@ public class LocationAgent {
 	private ArrayList<Integer> alExpectedStatus = new ArrayList<Integer>(); //index of alExpectedStatus is same as alAgents.
 	private ArrayList<String> alFinalisedAgents = new ArrayList<String>(); //list of agents which are finalised. should not have anything is common with alAgents.
 
-	private ArrayList<String> alReservations = new ArrayList<String>(); //list of 	reservations received in current tic 
-	private ArrayList<String> alRejections = new	ArrayList<String>(); //list of rejections reveived in current tic private
+	private LocationSchedule schedule; //reservations received in current tic, constraints and the proposed schedule
+	private LocationScheduler scheduler; //strategy by which the schedule is generated
+	private ScheduleStore rejections = new ScheduleStore(); //rejections reveived in current tic
 	private ArrayList<String> alAcceptance = new ArrayList<String>(); //list of acceptances received in current tic
-	private ArrayList<String> alFinalise = new ArrayList<String>(); //list of finalises received in current tic
+	private ScheduleStore finalisations = new ScheduleStore(); //finalises received in current tic, till they are moved to the constraints
 	private ArrayList<String> alDWs = new ArrayList<String>(); //list of DWs received in current tic
-	ArrayList<String> alProposedSchedule = new ArrayList<String>();//list of proposed Schedule
 
-	private ArrayList<Constraint> alConstraints = new ArrayList<Constraint>(); //list of confirmed schedules.
-	private List<Message> alRxdMsg = new ArrayList<Message>();//list of rxd msgs from all agents
+	private List<ScheduleMessage> alRxdMsg = new ArrayList<ScheduleMessage>();//list of rxd msgs from all agents
+	private Mailbox mailbox = new Mailbox(); //msgs posted by the PO, taken in processMsg
+	private ArrayList<ScheduleMessage> alReservationMsgs = new ArrayList<ScheduleMessage>(); //rxd msgs corresponding to reservations, in the same order
+	private boolean bStandingRequests = false; //set in the asynchronous mode, where a batch need not have msgs from all the travellers
+	private LinkedHashMap<Integer, ScheduleMessage> hmStandingMsgs = new LinkedHashMap<Integer, ScheduleMessage>(); //last msg of each traveller not rejected, indexed by traveller id
+	private ArrayList<ScheduleMessage> alBatchReservationMsgs = new ArrayList<ScheduleMessage>(); //msgs other than REJECT in the current batch, to be responded to
+	private boolean bLeasedReservations = false; //set in the lease mode, where a DW msg holds the reservation till the DW lapses
+	private int iTick = 0; //number of calls to processMsg. Used in the lease mode.
+	private LinkedHashMap<Integer, ScheduleMessage> hmLeases = new LinkedHashMap<Integer, ScheduleMessage>(); //last DW msg of each traveller holding a lease, indexed by traveller id
+	private HashMap<Integer, Integer> hmLeaseExpiry = new HashMap<Integer, Integer>(); //last tick of each lease, indexed by traveller id
+	private volatile int iHorizon = Integer.MIN_VALUE; //earliest start which can still be requested from the location. Set by the PO.
+	private int iCompactedHorizon = Integer.MIN_VALUE; //horizon up to which the constraints have been dropped
 	/*
 	 * private ArrayList<> alSchedule = new ArrayList<E>(); //list of generated
 	 * Schedule based on current statuses
@@ -81,7 +87,13 @@ public class LocationAgent {
 
 	private int iAllocStrategy; //maintains the allocation strategy
 	public static final Logger log = Logger.getLogger(LocationAgent.class);
-	private HashMap<String, Integer> hmTravellerProperty = new HashMap<String, Integer>();
+
+	static
+	{
+		//configured once, and not by every location agent created.
+		PropertyConfigurator.configure("resources/config-properties/log4j.properties");
+	}
+
 	/**
 	 * Constructor
 	 * @param iAgentId
@@ -92,9 +104,9 @@ public class LocationAgent {
 		iLocationId = iAgentId;
 		iDWSize = dwSize;
 		this.postOffice = poAgent;
-		PropertyConfigurator.configure("resources/config-properties/log4j.properties");
 		this.iAllocStrategy = iAllocStrat;
-
+		schedule = new LocationSchedule(iAgentId);
+		scheduler = LocationSchedulers.get(iAllocStrat);
 
 	}
 
@@ -107,25 +119,80 @@ public class LocationAgent {
 	 *   
 	 *  @param alRxdMsg: list of all messages to this location. There should only be one message from any traveller.
 	 */
-	public void receiveMessage(ArrayList<Message> alRxdMsgFromPO)
+	public void receiveMessage(ArrayList<ScheduleMessage> alRxdMsgFromPO)
 	{
 		log.debug("L"+this.getLocationId()+" receive Msg");
-		//	alRxdMsg =  Collections.synchronizedList(alRxdMsg);
+		//The list is handed over to the mailbox, it is not copied.
+		mailbox.post(alRxdMsgFromPO);
+	}
 
-		//synchronized (alRxdMsg) 
-		{
-			alRxdMsg.clear();
-			alRxdMsg.addAll(alRxdMsgFromPO);
+	Mailbox getMailbox() {
+		return mailbox;
+	}
+
+	/**
+	 * In the asynchronous mode, the PO routes the msgs of each traveller as soon as they are
+	 * sent, so a batch only has the msgs of some of the travellers. The last msg of every
+	 * traveller is then retained, and scheduled with every batch till it is rejected.
+	 */
+	void setStandingRequests(boolean bStanding) {
+		bStandingRequests = bStanding;
+	}
 
-			//Check if the msg is sent by a known agent or new agent
-			//if (validateMsg(alRxdMsg))
-			//return processMsg(alRxdMsg);
-			//else
-			//return null;
-			//alRxdMsg.addAll(alRxdMsgFromPO);
-			//log.debug("Location"+iLocationId+": Msg List:"+alRxdMsg);
+	/**
+	 * In the lease mode, a DW msg is a request to hold the reservation till the DW of the
+	 * traveller lapses. The traveller does not send the DW msg again, and the location
+	 * responds to it only to revoke the lease, ie when the reservation has to be changed.
+	 * The DW size of the location is taken to be the same as that of the travellers.
+	 */
+	void setLeasedReservations(boolean bLeases) {
+		bLeasedReservations = bLeases;
+	}
 
-		}
+	/**
+	 * The horizon is the earliest start date of the travellers still negotiating. None of them
+	 * can request the location before it, so the confirmed schedules which end before it are
+	 * dropped. It only rises, so a location may be sent a horizon lagging the travellers.
+	 */
+	void setHorizon(int iHorizon) {
+		if(iHorizon > this.iHorizon)
+			this.iHorizon = iHorizon;
+	}
+
+	/**
+	 * Adds the confirmed and the proposed holds of the location to the snapshot, which the PO
+	 * shares with the travellers between the phases. A passivated location has only its
+	 * confirmed holds.
+	 */
+	void addHolds(ReservationSnapshot.Builder builder) {
+		schedule.addHolds(builder);
+	}
+
+	boolean holdsLeases() {
+		return !hmLeases.isEmpty();
+	}
+
+	/**
+	 * This function is invoked once all the travellers have withdrawn from the location. The
+	 * pending msgs and the negotiation state of the travellers are dropped, and the lists are
+	 * trimmed, while the confirmed schedules are retained. The location is revived as is by
+	 * the next msg posted to it.
+	 */
+	void passivate()
+	{
+		mailbox.drain();
+		alRxdMsg = new ArrayList<ScheduleMessage>();
+		schedule.release();
+		alReservationMsgs.clear();
+		alReservationMsgs.trimToSize();
+		rejections.clear();
+		rejections.trimToSize();
+		alBatchReservationMsgs.clear();
+		alBatchReservationMsgs.trimToSize();
+		hmStandingMsgs.clear();
+		hmLeases.clear();
+		hmLeaseExpiry.clear();
+		bRescheduled = false;
 	}
 
 
@@ -138,40 +205,64 @@ public class LocationAgent {
 	 *  
 	 * @param msg: valid Message List from traveller to be processed.
 	 */
-	public ArrayList<Message> processMsg(/*List<Message> alRxdMsg*/) 
+	public ArrayList<ScheduleMessage> processMsg(/*List<Message> alRxdMsg*/) 
 	{
 		//		log.debug("process Msg");
+		//In the lease mode, only the msgs posted since the last call are taken, along with the leases held.
+		if(bLeasedReservations)
+			return processLeases();
+
+		//Take the msgs posted since the last call. If none, the last msgs are processed again.
+		if(!mailbox.isEmpty())
+			alRxdMsg = mailbox.drain();
+
+		List<ScheduleMessage> alMsgs = alRxdMsg;
+		if(bStandingRequests)
+		{
+			alMsgs = mergeStandingRequests();
+			updateConstraints();
+			//nothing to respond to, the schedule is redone with the next reservation
+			if(alBatchReservationMsgs.isEmpty())
+				return new ArrayList<ScheduleMessage>();
+		}
+
+		return binMsgs(alMsgs);
+	}//end processMsg
+
+	/**
+	 * This function puts the msgs into their bins and reschedules.
+	 * @param alMsgs: msgs to be scheduled, with the REJECTs
+	 */
+	private ArrayList<ScheduleMessage> binMsgs(List<ScheduleMessage> alMsgs)
+	{
+
 		//if (validateMsg(alRxdMsg))
 		{
-			alReservations.clear();
+			ScheduleStore reservations = schedule.getReservations();
+			reservations.clear();
+			alReservationMsgs.clear();
 			//	alAcceptance.clear();
-			alRejections.clear();
+			rejections.clear();
 			//	alDWs.clear();
 			//	alFinalise.clear();
 			//Put all msgs into their corresponding bins.
-			for(Message msg:alRxdMsg)
+			for(ScheduleMessage msg:alMsgs)
 			{
 				//Get the status of the msg and update the corresponding list
-				Integer status = Integer.parseInt(msg.getBody().split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.STATUS_INDEX]);
-				String[] splitMsg = msg.getBody().split(ConstantsDefinition.MSGBODY_DELIMITER);
-				String senderId = msg.getSender().split(ConstantsDefinition.SENDER_DELIMITER)[0];
-				String content = splitMsg[ConstantsDefinition.STATUS_INDEX]
-						.concat(ConstantsDefinition.MSGBODY_DELIMITER)
-						.concat(splitMsg[ConstantsDefinition.PERIOD_INDEX])
-						.concat(ConstantsDefinition.MSGBODY_DELIMITER)
-						.concat(senderId)
-						.concat(ConstantsDefinition.MSGBODY_DELIMITER)
-						.concat(splitMsg[2]);
-				log.debug("L"+this.iLocationId+ " rxd msg from sender"+msg.getSender());
-
-				if(iAllocStrategy == ConstantsDefinition.LOCATION_SCHEDULE_LENGTH || iAllocStrategy == ConstantsDefinition.LOCATION_SCHEDULE_SPEED)
-					hmTravellerProperty.put(senderId,Integer.parseInt(msg.getSender().split(ConstantsDefinition.SENDER_DELIMITER)[1]));
-
-				log.debug("L"+this.iLocationId+ " rxd msg body"+msg.getBody()+" generated content "+content);
-				if(status!=ConstantsDefinition.REJECT)
-					alReservations.add(content);
-				else 
-					alRejections.add(content);
+				int status = msg.getStatus();
+				if(log.isDebugEnabled())
+					log.debug("L"+this.iLocationId+ " rxd msg "+msg);
+
+				//the property of the traveller is its length or speed, used by the corresponding strategies
+				if(status==ConstantsDefinition.REJECT)
+					rejections.add(status, msg.getStartTime(), msg.getEndTime(), msg.getSenderId(), msg.getDWCount(), msg.getProperty());
+				else if(status==ConstantsDefinition.FINALIZE)
+					finalisations.add(status, msg.getStartTime(), msg.getEndTime(), msg.getSenderId(), msg.getDWCount(), msg.getProperty());
+				else
+				{
+					reservations.add(status, msg.getStartTime(), msg.getEndTime(), msg.getSenderId(), msg.getDWCount(), msg.getProperty());
+					alReservationMsgs.add(msg);
+				}
 
 			}
 
@@ -180,7 +271,119 @@ public class LocationAgent {
 		}
 		//	return null;	
 
-	}//end processMsg
+	}
+
+	/**
+	 * This function processes the msgs in the lease mode. A new msg from a traveller
+	 * supersedes its lease, and a DW msg grants a lease till the DW of the traveller lapses.
+	 * The new msgs are scheduled along with the leases held, and responded to. A lease is
+	 * responded to only if it is revoked by the new schedule, in which case it is dropped.
+	 * If there is no new msg and no lease has lapsed, the schedule stands and nothing is sent.
+	 */
+	private ArrayList<ScheduleMessage> processLeases()
+	{
+		iTick++;
+		List<ScheduleMessage> alNewMsgs = mailbox.drain();
+
+		//drop the lapsed leases
+		boolean bLapsed = false;
+		Iterator<Map.Entry<Integer, Integer>> itExpiry = hmLeaseExpiry.entrySet().iterator();
+		while(itExpiry.hasNext())
+		{
+			Map.Entry<Integer, Integer> lease = itExpiry.next();
+			if(lease.getValue() < iTick)
+			{
+				hmLeases.remove(lease.getKey());
+				itExpiry.remove();
+				bLapsed = true;
+			}
+		}
+		if(alNewMsgs.isEmpty() && !bLapsed)
+			return new ArrayList<ScheduleMessage>();
+
+		ArrayList<ScheduleMessage> alRejectMsgs = new ArrayList<ScheduleMessage>();
+		alBatchReservationMsgs.clear();
+		for(ScheduleMessage msg:alNewMsgs)
+		{
+			hmLeases.remove(msg.getSenderId());
+			hmLeaseExpiry.remove(msg.getSenderId());
+			if(msg.getStatus() == ConstantsDefinition.REJECT)
+				alRejectMsgs.add(msg);
+			else if(msg.getStatus() == ConstantsDefinition.FINALIZE)
+				addFinalisation(msg);
+			else
+				alBatchReservationMsgs.add(msg);
+		}
+		updateConstraints();
+		//nothing to schedule, the schedule is redone with the next reservation
+		if(alBatchReservationMsgs.isEmpty() && hmLeases.isEmpty())
+			return new ArrayList<ScheduleMessage>();
+
+		ArrayList<ScheduleMessage> alMsgs = new ArrayList<ScheduleMessage>(hmLeases.values());
+		alMsgs.addAll(alBatchReservationMsgs);
+		alMsgs.addAll(alRejectMsgs);
+		ArrayList<ScheduleMessage> alMsgToTransmit = binMsgs(alMsgs);
+
+		//revoke the leases whose reservation has been changed
+		Iterator<ScheduleMessage> itLeases = hmLeases.values().iterator();
+		while(itLeases.hasNext())
+		{
+			ScheduleMessage respMsg = composeResponse(itLeases.next());
+			if(respMsg.getStatus() != ConstantsDefinition.DW)
+			{
+				alMsgToTransmit.add(respMsg);
+				hmLeaseExpiry.remove(respMsg.getReceiverId());
+				itLeases.remove();
+			}
+		}
+
+		//grant a lease on the DW msgs confirmed by the schedule. The responses to the batch are
+		//in the order of the batch. The traveller sends its last DW msg with the count iDWSize-1.
+		for(int i=0; i<alBatchReservationMsgs.size(); i++)
+		{
+			ScheduleMessage msg = alBatchReservationMsgs.get(i);
+			if(msg.getStatus() == ConstantsDefinition.DW && alMsgToTransmit.get(i).getStatus() == ConstantsDefinition.DW)
+			{
+				hmLeases.put(msg.getSenderId(), msg);
+				hmLeaseExpiry.put(msg.getSenderId(), iTick + iDWSize - 1 - msg.getDWCount());
+			}
+		}
+		return alMsgToTransmit;
+	}
+
+	/**
+	 * This function merges the rxd batch into the standing msgs of the travellers. A REJECT
+	 * withdraws the standing msg of the traveller, and so does a FINALIZE, which is put into
+	 * the finalisations. The other msgs of the batch are collected in alBatchReservationMsgs,
+	 * as only they are to be responded to.
+	 * @return the standing msgs, followed by the REJECTs of the batch.
+	 */
+	private List<ScheduleMessage> mergeStandingRequests()
+	{
+		ArrayList<ScheduleMessage> alRejectMsgs = new ArrayList<ScheduleMessage>();
+		alBatchReservationMsgs.clear();
+		for(ScheduleMessage msg:alRxdMsg)
+		{
+			if(msg.getStatus() == ConstantsDefinition.REJECT)
+			{
+				hmStandingMsgs.remove(msg.getSenderId());
+				alRejectMsgs.add(msg);
+			}
+			else if(msg.getStatus() == ConstantsDefinition.FINALIZE)
+			{
+				hmStandingMsgs.remove(msg.getSenderId());
+				addFinalisation(msg);
+			}
+			else
+			{
+				hmStandingMsgs.put(msg.getSenderId(), msg);
+				alBatchReservationMsgs.add(msg);
+			}
+		}
+		ArrayList<ScheduleMessage> alMsgs = new ArrayList<ScheduleMessage>(hmStandingMsgs.values());
+		alMsgs.addAll(alRejectMsgs);
+		return alMsgs;
+	}
 
 	/**
 	 * This function will take in the list of rejections and delete the entries
@@ -188,13 +391,16 @@ public class LocationAgent {
 	 * The reserves, accepts, dw will be taken and if reserves > 0, rescheduled. 
 	 * Before rescheduling, what has to be done about the dw.. 
 	 */
-	private ArrayList<Message> updateScheduleList() 
+	private ArrayList<ScheduleMessage> updateScheduleList() 
 	{
 		//remove the rejections from the list.
-		//removeRejects();
+		removeRejects();
 
 		//move the finalises to the constraints.
-		//updateConstraints();
+		updateConstraints();
+
+		//drop the constraints which cannot overlap a request any more.
+		compactConstraints();
 
 		//validate the dws. 
 		//validateDW();
@@ -205,6 +411,22 @@ public class LocationAgent {
 
 	}
 
+	/**
+	 * This function drops the confirmed schedules which end at or before the horizon, so that
+	 * the constraints of a location do not grow over the whole run. It is done only when the
+	 * horizon has risen since the last time.
+	 */
+	private void compactConstraints()
+	{
+		int iHorizon = this.iHorizon;
+		if(iHorizon <= iCompactedHorizon)
+			return;
+		iCompactedHorizon = iHorizon;
+		int iDropped = schedule.compact(iHorizon);
+		if(iDropped > 0)
+			log.debug("L"+this.iLocationId+" dropped "+iDropped+" constraint windows before "+iHorizon);
+	}
+
 	/**
 	 *  This function will send msgs to the PO. The msgs sent by the LocationAgent
 	 *  will contain the following fields as status: PROPOSE,DW_INIT, NOCHANGE, COMPLETE.
@@ -213,12 +435,12 @@ public class LocationAgent {
 	 *  to compute which status msg should be inserted. Then it will add the revised or
 	 *  same schedule and then set the sender and receiver fields and transmit to the PO.
 	 */
-	private ArrayList<Message> transmit(ArrayList<String>alSchedules) 
+	private ArrayList<ScheduleMessage> transmit(ArrayList<ScheduleMessage>alSchedules) 
 	{
-		ArrayList<Message>alMsgToTransmit = new ArrayList<>();
+		ArrayList<ScheduleMessage>alMsgToTransmit = new ArrayList<>();
 		if(bRescheduled)
 		{
-			for(String msg:alSchedules)
+			for(ScheduleMessage msg:alSchedules)
 			{
 				alMsgToTransmit.add(composeResponse(msg));
 			}
@@ -234,7 +456,7 @@ public class LocationAgent {
 				alMsgToTransmit.add(redraftResponse(msg));
 			}*/
 		}
-		if(alFinalise.size() > 0)
+		if(finalisations.size() > 0)
 		{
 			log.error("L"+this.iLocationId+" Shouldnt come here");
 			/*
@@ -296,99 +518,73 @@ public class LocationAgent {
 					.concat(rxdMsgSplit[ConstantsDefinition.DWCOUNT_INDEX]);
 
 			msg.setBody(msgBody);
-			log.debug("L"+iLocationId+" composed:"+msg.getBody()+" for "+msg.getReceiver());
+			if(log.isDebugEnabled())
+				log.debug("L"+iLocationId+" composed:"+msg.getBody()+" for "+msg.getReceiver());
 			return msg;
 		}
 		else
 		{
 			log.debug("Rxd msg with status "+Integer.parseInt(rxdMsgSplit[ConstantsDefinition.STATUS_INDEX])+" which is not handled.");
 		}
-		log.debug("Returning "+msg);
+		if(log.isDebugEnabled())
+			log.debug("Returning "+msg);
 		return msg;
 	}
 	/**
 	 *  This function will look into the rxdstatus msg and compose the response msg accordingly.
-	 * @param strRxdMsg : Received msgbody in the form status#timePeriod#AgentId
+	 * @param rxdMsg : Received msg from the traveller
 	 * 
-	 * @return Message msg with body in the format statusMSGBODYDELIMITERTimePeriod
+	 * @return ScheduleMessage msg with the status and the proposed time period
 	 */
-	private Message composeResponse(String strRxdMsg)
+	private ScheduleMessage composeResponse(ScheduleMessage rxdMsg)
 	{
-		log.debug("compose Response:>>"+strRxdMsg+" alProposedSchedule"+alProposedSchedule);
-		Message msg = new Message();
-		String rxdMsgSplit[] = strRxdMsg.split(ConstantsDefinition.MSGBODY_DELIMITER);
-
-		msg.setSender(ConstantsDefinition.LOCATION.concat(String.valueOf(this.iLocationId)));
-		msg.setReceiver(rxdMsgSplit[ConstantsDefinition.AGENTID_INDEX]);
-
-		String msgBody = "";
-		//Iterate thru the proposed schedule to find out what should be sent as msg body
-		//Each strMsg ois of the form timePeriod#AgentId
-		for(String strMsg:alProposedSchedule)
+		ScheduleStore proposed = schedule.getProposed();
+		if(log.isDebugEnabled())
+			log.debug("compose Response:>>"+rxdMsg+" proposed"+proposed);
+		int rxdStatus = rxdMsg.getStatus();
+
+		//Look up the proposed schedule for the current agent, to find out what should be sent as msg body
+		int i = proposed.indexOfAgent(rxdMsg.getSenderId());
+		if(i != -1)
 		{
-			log.debug("L"+iLocationId+" strMsg: "+strMsg);
+			log.debug("L"+iLocationId+" "+proposed.toString(i) +" is for T"+rxdMsg.getSenderId());
 
-			//Check whether the proposed schedule is for the current agent
-			if(strMsg.endsWith(rxdMsgSplit[ConstantsDefinition.AGENTID_INDEX]))
+			//get the proposed time period
+			int iProposedStart = proposed.getStart(i);
+			int iProposedEnd = proposed.getEnd(i);
+			int status = INVALID;
+			if(rxdStatus == ConstantsDefinition.RESERVE)
 			{
-				log.debug("L"+iLocationId+" "+strMsg +" contains "+rxdMsgSplit[ConstantsDefinition.AGENTID_INDEX]);
-
-				//get the proposed time period
-				String msgSplit[] = strMsg.split(ConstantsDefinition.MSGBODY_DELIMITER);
-				if(Integer.parseInt(rxdMsgSplit[ConstantsDefinition.STATUS_INDEX]) == ConstantsDefinition.RESERVE)
-				{
-					msgBody = String.valueOf(ConstantsDefinition.PROPOSE)
-							.concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(msgSplit[1])
-							.concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(rxdMsgSplit[ConstantsDefinition.DWCOUNT_INDEX]);
-					msg.setBody(msgBody);
-					log.debug("L"+iLocationId+" composed:"+msg.getBody()+" for "+msg.getReceiver());
-					return msg;
-				}
-				else if(Integer.parseInt(rxdMsgSplit[ConstantsDefinition.STATUS_INDEX]) == ConstantsDefinition.ACCEPT)
-				{
-					//Check if the timePeriod accepted by the Traveller is the same as the timePeriod reproposed by
-					//the location. If yes, send accept, if no, then send propose with new timeperiod
-					String rxdTimePeriod = rxdMsgSplit[1];
-					if(rxdTimePeriod.equalsIgnoreCase(msgSplit[1]))
-						msgBody = String.valueOf(ConstantsDefinition.ACCEPT).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-						.concat(msgSplit[1]).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-						.concat(rxdMsgSplit[ConstantsDefinition.DWCOUNT_INDEX]);
-					else
-						msgBody = String.valueOf(ConstantsDefinition.PROPOSE).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-						.concat(msgSplit[1]).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-						.concat(rxdMsgSplit[ConstantsDefinition.DWCOUNT_INDEX]);
-
-					msg.setBody(msgBody);
-					log.debug("L"+iLocationId+" composed:"+msg.getBody()+" for "+msg.getReceiver());
-					return msg;
-				}
-				else if(Integer.parseInt(rxdMsgSplit[ConstantsDefinition.STATUS_INDEX]) == ConstantsDefinition.DW)
-				{
-					//Check whether the proposed solution is same as the earlier commited version, if so 
-					//increment the DW count, else reset to PROPOSE
-					if(msgSplit[1].equalsIgnoreCase(rxdMsgSplit[1]))
-					{
-
-						msgBody = String.valueOf(ConstantsDefinition.DW)
-								.concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(msgSplit[1])
-								.concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(rxdMsgSplit[ConstantsDefinition.DWCOUNT_INDEX]);
-						msg.setBody(msgBody);
-					}
-					else
-					{
+				status = ConstantsDefinition.PROPOSE;
+			}
+			else if(rxdStatus == ConstantsDefinition.ACCEPT)
+			{
+				//Check if the timePeriod accepted by the Traveller is the same as the timePeriod reproposed by
+				//the location. If yes, send accept, if no, then send propose with new timeperiod
+				status = rxdMsg.samePeriod(iProposedStart, iProposedEnd)?ConstantsDefinition.ACCEPT:ConstantsDefinition.PROPOSE;
+			}
+			else if(rxdStatus == ConstantsDefinition.DW)
+			{
+				//Check whether the proposed solution is same as the earlier commited version, if so 
+				//increment the DW count, else reset to PROPOSE
+				status = rxdMsg.samePeriod(iProposedStart, iProposedEnd)?ConstantsDefinition.DW:ConstantsDefinition.PROPOSE;
+			}
 
-						msgBody = String.valueOf(ConstantsDefinition.PROPOSE)
-								.concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(msgSplit[1])
-								.concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(rxdMsgSplit[ConstantsDefinition.DWCOUNT_INDEX]);
-						msg.setBody(msgBody);
-					}
-					log.debug("L"+iLocationId+" composed:"+msg.getBody()+" for "+msg.getReceiver());
-					return msg;
-				}
+			if(status != INVALID)
+			{
+				ScheduleMessage msg = new ScheduleMessage(ConstantsDefinition.LOCATION, this.iLocationId, rxdMsg.getSenderId(),
+						status, iProposedStart, iProposedEnd, rxdMsg.getDWCount());
+				if(log.isDebugEnabled())
+					log.debug("L"+iLocationId+" composed:"+msg);
+				return msg;
 			}
 		}
 
-		log.debug("Msg composed"+msg);
+		//No proposal for the agent. Send back the received status and period.
+		ScheduleMessage msg = new ScheduleMessage(ConstantsDefinition.LOCATION, this.iLocationId, rxdMsg.getSenderId(),
+				rxdStatus, rxdMsg.getStartTime(), rxdMsg.getEndTime(), rxdMsg.getDWCount());
+		if(log.isDebugEnabled())
+			log.debug("Msg composed"+msg);
 		return msg;
 	}
 
@@ -441,31 +637,20 @@ public class LocationAgent {
 	 * This function will take the list of all the reserves and accepts and will
 	 * reschedule.
 	 */
-	private ArrayList<Message> scheduleAndTransmit() 
+	private ArrayList<ScheduleMessage> scheduleAndTransmit() 
 	{
-		ArrayList<String> alSchedules = new ArrayList<String>(); //tmp list to hold elements to be scheduled
-
-		//Add the reserves to the alSchedules
-		alSchedules.addAll(alReservations);
-
-		//Add the accepts to the alSchedules
-		//alSchedules.addAll(alAcceptance);
-
-		//Add the dws to the alSchedules
-		//alSchedules.addAll(alDWs);
+		//The reserves are scheduled. The accepts and dws are received as reserves.
 
 		//Regenerate the schedule only if new reservations have been received or new rejections
 		//have occured, else the old schedule is fine. //TODO Verify that it is so.
-		if(alReservations.size() > 0 )
+		if(schedule.getReservations().size() > 0 )
 		{
-			//generateSchedule(alSchedules, ConstantsDefinition.LOCATION_SCHEDULE_SPT );
-			//generateSchedule(alSchedules, ConstantsDefinition.LOCATION_SCHEDULE_LENGTH );
-			//generateSchedule(alSchedules, ConstantsDefinition.LOCATION_SCHEDULE_SPEED );
-			generateSchedule(alSchedules);	
+			generateSchedule();	
 			bRescheduled = true;
 		}
 
-		return transmit(alSchedules);
+		//In the asynchronous and the lease modes, only the travellers in the current batch await a response.
+		return transmit(bStandingRequests||bLeasedReservations?alBatchReservationMsgs:alReservationMsgs);
 	}
 
 	/**
@@ -474,690 +659,48 @@ public class LocationAgent {
 	 *  handles earlier, finalises moved to constraints. So in this function,
 	 *  based on available constraints, it should do the scheduling to optimise maximum
 	 *  satisfaction.
-	 *  @param alSchedules: Each string is of the format status#startTime%endTime#AgentId#DWcount
-	 *  @param iScheduleStrategy: either  LOCATION_SCHEDULE_OPTIMISE or LOCATION_SCHEDULE_SATISFYMAX
+	 *  The requests are in the reservations of the schedule and are scheduled by the
+	 *  LocationScheduler of the location, registered in LocationSchedulers against iAllocStrategy.
 	 */
-	private void generateSchedule(ArrayList<String> alSchedules)
+	private void generateSchedule()
 	{
 
-		log.debug("L"+this.iLocationId+" generateSchedule"+alSchedules+" iAllocStrateggy:"+iAllocStrategy);
-		alProposedSchedule.clear();
-		if(iAllocStrategy == ConstantsDefinition.LOCATION_SCHEDULE_SPT)
-			alProposedSchedule.addAll(sptSchedule(alSchedules));
-		else if(iAllocStrategy == ConstantsDefinition.LOCATION_SCHEDULE_SATISFYMAX)
-			alProposedSchedule.addAll(maximiseSatisfy(alSchedules));
-		else if(iAllocStrategy == ConstantsDefinition.LOCATION_SCHEDULE_SATISFY_PRTY)
-			alProposedSchedule.addAll(prtySatisfy(alSchedules));
-		else if(iAllocStrategy == ConstantsDefinition.LOCATION_SCHEDULE_SPEED)
-			alProposedSchedule.addAll(speedSatisfy(alSchedules));
-		else if(iAllocStrategy == ConstantsDefinition.LOCATION_SCHEDULE_LENGTH)
-			alProposedSchedule.addAll(lengthSatisfy(alSchedules));
-
+		log.debug("L"+this.iLocationId+" generateSchedule"+schedule.getReservations()+" iAllocStrateggy:"+iAllocStrategy);
+		if(scheduler != null)
+			schedule.generate(scheduler);
 		else
 			log.error("Undefined schedule strategy for location");
 
 	}
-	private ArrayList<String> prtySatisfy(ArrayList<String> alSchedules) 
-	{
-		//Sort all the schedules by the shortest processing time. 
-		//Beginning with the first, keep allocating each request till it overlaps with
-		//either a constraint or previous allocation. If the previous allocation had the same starting 
-		//time, then shift the conflicting allocation after completion of the previous one.  
-		TreeMap<Integer, ArrayList<String>>sortedSchedules = new TreeMap<Integer, ArrayList<String>>();
-		sortedSchedules.putAll(sortByPrty(alSchedules));
-		return generateSortedSchedule(sortedSchedules);
-	}
-
-
-
-
-
-	private ArrayList<String> lengthSatisfy(ArrayList<String> alSchedules) 
-	{
-		//Sort all the schedules by the shortest processing time. 
-		//Beginning with the first, keep allocating each request till it overlaps with
-		//either a constraint or previous allocation. If the previous allocation had the same starting 
-		//time, then shift the conflicting allocation after completion of the previous one.
-		log.debug("Schedule by Length");
-		TreeMap<Integer, ArrayList<String>>sortedSchedules = new TreeMap<Integer, ArrayList<String>>();
-		sortedSchedules.putAll(sortByLength(alSchedules));
-
-		return generateSortedSchedule(sortedSchedules);
-	}
-
-
-
-
-	private ArrayList<String> speedSatisfy(ArrayList<String> alSchedules) 
-	{
-		//Sort all the schedules by their speed. 
-		//Beginning with the first, keep allocating each request till it overlaps with
-		//either a constraint or previous allocation. If the previous allocation had the same starting 
-		//time, then shift the conflicting allocation after completion of the previous one.  
-		TreeMap<Integer, ArrayList<String>>sortedSchedules = new TreeMap<Integer, ArrayList<String>>();
-		sortedSchedules.putAll(sortBySpeed(alSchedules));
-		return generateSortedSchedule(sortedSchedules);
-	}
-
-	/**
-	 * 
-	 *  The agent prty is implicitly assumed in its agent id. ie agent id 1 > agent id 2
-	 * @param alSchedules : list of schedule comprising  0#2017-04-24:1700%2017-04-24:1806#-1#T1 status#timePeriod#DW#AgentId
-	 * @return
-	 */
-
-	private TreeMap<Integer, ArrayList<String>> sortByPrty(ArrayList<String> alSchedules)
-	{
-		//Keep a hashmap indexed by agent prty
-		TreeMap<Integer, ArrayList<String>> mapSchedules = new TreeMap<Integer, ArrayList<String>>();
-
-
-		//Populate the sortedhashmap indexed with duration, 
-		for(String msg:alSchedules)
-		{
-			//log.debug("L"+this.iLocationId+" "+ msg);
-			String msgSplit[] = msg.split(ConstantsDefinition.MSGBODY_DELIMITER);
-			String agentPrty = msgSplit[ConstantsDefinition.AGENTID_INDEX].replace("T", "");
-			Integer iPrty = Integer.parseInt(agentPrty);	
-
-
-			//Check if mapSchedule already contains an entry for that duration
-			if(mapSchedules.containsKey(iPrty))
-			{
-				//Should not occur, because we are assuming agents to be of the same prty
-				log.error("L"+this.iLocationId+" Duplicate instances with same prty "+iPrty);
-			}
-			else
-			{
-				//Create an arraylist, add msg to it and add the entry, value to the map
-				ArrayList<String> listMsg = new ArrayList<String>();
-				listMsg.add(msg);
-				mapSchedules.put(iPrty, listMsg);
-			}
-		}//end for all msg
-		return mapSchedules;
-	}
-
-
-	/**
-	 *  The agent speed is maintained in the hashmap for agent properties. The treemap maintains entries in the
-	 *  natural sorting order of the key field. Since we want the sorting of the speeds in the descending order
-	 *  hence we are making the key of the treemap as (MAX_SPEED - speed)
-	 * @param alSchedules : list of schedule comprising  0#2017-04-24:1700%2017-04-24:1806#-1#T1 status#timePeriod#DW#AgentId
-	 * @return
-	 */
-
-	private TreeMap<Integer, ArrayList<String>> sortBySpeed(ArrayList<String> alSchedules)
-	{
-		//Keep a hashmap indexed by agent prty
-		TreeMap<Integer, ArrayList<String>> mapSchedules = new TreeMap<Integer, ArrayList<String>>();
-
-
-		//Populate the sortedhashmap indexed with duration, 
-		for(String msg:alSchedules)
-		{
-			//log.debug("L"+this.iLocationId+" "+ msg);
-			String msgSplit[] = msg.split(ConstantsDefinition.MSGBODY_DELIMITER);
-			Integer iSpeed = hmTravellerProperty.get(msgSplit[ConstantsDefinition.AGENTID_INDEX]);	
-
-
-			//Check if mapSchedule already contains an entry for that duration
-			if(mapSchedules.containsKey((ConstantsDefinition.MAX_SPEED -iSpeed)))
-			{
-				//Could could occur, because we are assuming agents to be of the same speed. So we will generate an incremental speed 
-				//and add it to the map.
-				mapSchedules.get((ConstantsDefinition.MAX_SPEED -iSpeed)).add(msg);
-			}
-			else
-			{
-				//Create an arraylist, add msg to it and add the entry, value to the map
-				ArrayList<String> listMsg = new ArrayList<String>();
-				listMsg.add(msg);
-				mapSchedules.put((ConstantsDefinition.MAX_SPEED -iSpeed), listMsg);
-			}
-		}//end for all msg
-		log.debug(alSchedules+" sorted by Speed is: "+mapSchedules);
-
-		return mapSchedules;
-	}
-	/*
-	 * This function will sort the scedules by the length of the agent such that shortest length agent is first.
-	 * ie in ascending order of length
-	 */
-	private Map<Integer, ArrayList<String>> sortByLength(ArrayList<String> alSchedules) 
-	{
-		//Keep a hashmap indexed by agent lenght
-		TreeMap<Integer, ArrayList<String>> mapSchedules = new TreeMap<Integer, ArrayList<String>>();
-
-
-		//Populate the sortedhashmap indexed with duration, 
-		for(String msg:alSchedules)
-		{
-			//log.debug("L"+this.iLocationId+" "+ msg);
-			String msgSplit[] = msg.split(ConstantsDefinition.MSGBODY_DELIMITER);
-			Integer iLength = hmTravellerProperty.get(msgSplit[ConstantsDefinition.AGENTID_INDEX]);	
-
-
-			//Check if mapSchedule already contains an entry for that duration
-			if(mapSchedules.containsKey(iLength))
-			{
-				//Could could occur, because we are assuming agents to be of the same length. 
-				mapSchedules.get(iLength).add(msg);
-			}
-			else
-			{
-				//Create an arraylist, add msg to it and add the entry, value to the map
-				ArrayList<String> listMsg = new ArrayList<String>();
-				listMsg.add(msg);
-				mapSchedules.put(iLength, listMsg);
-			}
-		}//end for all msg
-		log.debug(alSchedules+" sorted by Length is: "+mapSchedules);
-		return mapSchedules;
-	}
-	private ArrayList<String> generateSortedSchedule(TreeMap<Integer, ArrayList<String>> sortedSchedules) 
-	{
-
-		//This will maintain the schedule which is being generated by the location.
-		ArrayList<String>alTmpProposedSchedule = new ArrayList<String>();
-
-		alProposedSchedule.clear();
-
-		//iterate thru each date-key
-		for(Integer prtyList:sortedSchedules.keySet())
-		{
-			//get schedule-request to be allocated
-			ArrayList<String> alRequestSchedule =  sortedSchedules.get(prtyList);
-
-			//alRequestSchedule can have only one entry.
-			for(int indexRequestSchedule = 0; indexRequestSchedule < alRequestSchedule.size(); indexRequestSchedule++)
-			{
-				log.debug(alRequestSchedule.get(indexRequestSchedule));
-				String timePeriod = alRequestSchedule.get(indexRequestSchedule).split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.PERIOD_INDEX];
-				log.debug("L"+this.iLocationId+" split timePeriod"+timePeriod);
-
-				boolean bOverlap = checkOverlap(timePeriod, alProposedSchedule, -1);
-
-				log.debug("L"+this.iLocationId+" bOverlap "+bOverlap );
-				while(bOverlap)
-				{
-					log.debug("L"+this.iLocationId+" overlap"+ bOverlap);
-					//The elements should be scheduled after the overlap period. The revised schedule could still overlap.
-					//so keep checking.
-					//In this case, the overlap is with the proposed schedule.
-					//Since the proposed schedule is being created by the earliest start date,
-					//it implies, that the current timeperiod is overlapping with some event, which
-					//was actually scheduled earlier. In this case, find the event with the smaller
-					//duration and schedule it first and then the other later.
-					//log.debug("NOT HANDLEDDDDDDDDDDDDDDDDD Index:"+iOverLapIndex);
-					//get the constraint with which the overlap is identified. The overlap
-					//can be resolved by ensuring that the start of the overlap and the start 
-					//of the time period are separated by TPP+GAP. If the separation exists then
-					//add the time-period as is, else update the timeperiod to allow for the separation
-					String overlappingAllocation = alProposedSchedule.get(iOverLapIndex);
-
-					int calStartTime=0, calAllocStartTime = 0;
-					try
-					{
-						calStartTime = Integer.parseInt(timePeriod.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]);
-						calAllocStartTime = Integer.parseInt(overlappingAllocation.split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.PERIOD_INDEX].split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]);
-					}
-					catch(Exception e)
-					{
-						log.error("L"+this.iLocationId+ " Error parsing "+timePeriod.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]);
-						e.printStackTrace();
-					}
-					long lDiff = calAllocStartTime- calStartTime;
-
-					if(Math.abs(lDiff) < TPP+GAP)
-					{
-						//update the timePeriod
-						calStartTime = calAllocStartTime;
-						calStartTime+= (TPP+GAP);
-
-						int calEndTime = 0;
-
-						try
-						{
-							calEndTime = Integer.parseInt(timePeriod.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[1]);
-							calEndTime += (TPP+GAP);
-						}
-
-						catch(Exception e)
-						{
-							log.error("L"+this.iLocationId+ " Error parsing "+timePeriod.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[1]);
-						}
-
-						timePeriod = String.valueOf(calStartTime)
-								.concat(ConstantsDefinition.TIMEDURATION_DELIMITER)
-								.concat(String.valueOf(calEndTime));
-
-					}
-					else
-					{
-						log.debug("L"+this.iLocationId+" Gap exists between the constraint and timeperiod. Exiting");
-						//break;
-					}
-
-
-
-					bOverlap = checkOverlap(timePeriod, alProposedSchedule, iOverLapIndex);
-				}			
-
-				//Add the schedules to the tmpProposedSchedule
-				log.debug("L"+this.iLocationId+" Adding::"+ alRequestSchedule.get(indexRequestSchedule).split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.STATUS_INDEX].concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(timePeriod).concat(ConstantsDefinition.MSGBODY_DELIMITER).concat( alRequestSchedule.get(indexRequestSchedule).split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.AGENTID_INDEX]));
-				alProposedSchedule.add(alRequestSchedule.get(indexRequestSchedule).split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.STATUS_INDEX].concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(timePeriod).concat(ConstantsDefinition.MSGBODY_DELIMITER).concat( alRequestSchedule.get(indexRequestSchedule).split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.AGENTID_INDEX]));
-			}
-
-		}//end for duration
-
-
-		return alTmpProposedSchedule; //This is going to return an empty array. Keeping it to retain similarity with older code.
-
-	}
-	/**
-	 * This function will create a schedule to attempt to maintain the schedules as much as possible.
-	 * The logic to be followed is yet to be captured here.
-	 * @param alSchedules: Each string is of the format status#startTime%endTime#AgentId#DWcount	 
-	 * */
-	private ArrayList<String> maximiseSatisfy(ArrayList<String> alSchedules) {
-		// TODO Auto-generated method stub
-		return null;
-	}
-
-	/**
-	 *  This function will create a schedule by shortest processing time
-	 *  The method will look into each request, sorted by start time. And will keep allocating
-	 *  each request, if there are no overlaps. In case of overlaps, the solution which ensures
-	 *  least lateness will be adopted. The optimality of this solution remains to be proven.
-	 *  
-	 * @param alSchedules: Each string is of the format status#startTime%endTime#AgentId#DWcount
-	 * @return arrayList of revised schedules in the form timePeriod#agentId .
-	 */
-	private ArrayList<String> sptSchedule(ArrayList<String> alSchedules) 
-	{
-		//Sort all the schedules by the shortest processing time. 
-		//Beginning with the first, keep allocating each request till it overlaps with
-		//either a constraint or previous allocation. If the previous allocation had the same starting 
-		//time, then shift the conflicting allocation after completion of the previous one.  
-		TreeMap<Integer, ArrayList<String>>sortedSchedules = new TreeMap<Integer, ArrayList<String>>();
-		sortedSchedules.putAll(sortByStartingTime(alSchedules));
-
-		//This will maintain the schedule which is being generated by the location.
-		ArrayList<String>alTmpProposedSchedule = new ArrayList<String>();
-
-		//iterate thru each date-key
-		for(Integer startingDate:sortedSchedules.keySet())
-		{
-			//get the list of msgs which begin on the same date
-			ArrayList<String> alSameStartDateRequests = sortedSchedules.get(startingDate);
-			//			log.debug(alSameStartDateRequests);
-
-			//schedule the same date events 
-			positionRequests(alSameStartDateRequests, alTmpProposedSchedule);
-		}//end for duration
-
-		log.debug("alProposedSchedule:"+alTmpProposedSchedule);
-		return alTmpProposedSchedule;
-	}
 	/**
-	 *  This function will work according to optimiseSchedule strategy. It will 
-	 *  receive a set of requests which have the same start date. It will check 
-	 *  and try to optimally schedule them wrt the already scheduled events.
-	 *  
-	 *  TODO how and when to check for constraints. 
-	 * @param alSameStartDateRequests: list of msgs with the same startdate 
-	 * @param alProposedSchedule: list of msgs scheduled till now. This is not the constraints
+	 * This function records the FINALIZE msgs of a list as constraints. It is invoked by the PO for
+	 * a location which has been sent only REJECT and FINALIZE msgs, and is passivated instead of
+	 * being run.
 	 */
-	private void positionRequests(ArrayList<String> alSameStartDateRequests, ArrayList<String> alProposedSchedule) 
+	void finalise(List<ScheduleMessage> msgList)
 	{
-		//First arrange the events wrt time durations. for events with same start time, the shortest-processing-time-first
-		//gives the best solution.
-		TreeMap<Integer, ArrayList<String>>mapSorted = sortByProcessingTime(alSameStartDateRequests);
-		//SimpleDateFormat sdf = new SimpleDateFormat(ConstantsDefinition.DATE_FORMAT);
-
-		log.debug("L"+this.iLocationId+ " sorted map"+mapSorted);
-		//If one element from alSameStartDateRequest overlaps with the alProposedSchedule then all overlap, because they have the same starttime
-		String smallestProcessingTimeElement = mapSorted.get(mapSorted.firstKey()).get(0);
-		String timePeriod = smallestProcessingTimeElement.split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.PERIOD_INDEX];
-
-		boolean bOverlap = checkOverlap(timePeriod, alProposedSchedule,-1);
-		boolean bConstraintOverlap = checkConstraintOverlap(timePeriod);
-		log.debug("L"+this.iLocationId+" Overlap >>"+bOverlap+ " overlap with finalised duration:"+bConstraintOverlap);
-		//If overlap exists then
-		while(bOverlap || bConstraintOverlap)
+		for(ScheduleMessage msg:msgList)
 		{
-			log.debug("L"+this.iLocationId+" overlap"+ bOverlap +" or ConstraintOverlap "+bConstraintOverlap);
-			//The elements should be scheduled after the overlap period. The revised schedule could still overlap.
-			//so keep checking.
-			if(bConstraintOverlap)
-			{
-
-				//get the constraint with which the overlap is identified. The overlap
-				//can be resolved by ensuring that the start of the overlap and the start 
-				//of the time period are separated by TPP+GAP. If the separation exists then
-				//add the time-period as is, else update the timeperiod to allow for the separation
-				Constraint overlappingConstraint = alConstraints.get(iOverlapConstraintIndex);
-				log.debug("L"+this.iLocationId+" overlapping constraint:"+overlappingConstraint+" with timePeriod "+timePeriod);
-				//Calendar calStartTime = Calendar.getInstance();
-				Integer calStartTime =  Integer.parseInt(timePeriod.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]);
-				/*try
-				{
-					calStartTime.setTime(sdf.parse(timePeriod.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]));
-				}
-				catch(Exception e)
-				{
-					log.error("L"+this.iLocationId+" Error parsing "+timePeriod.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]);
-				}
-				 */
-				//long lDiff = overlappingConstraint.getStartDate().getTime() - calStartTime.getTimeInMillis();
-				long lDiff = overlappingConstraint.getStartDate() - calStartTime;
-
-				if(Math.abs(lDiff) < TPP+GAP)
-				{
-					//update the timePeriod
-					calStartTime = overlappingConstraint.getStartDate();
-					calStartTime += TPP+GAP;
-
-					Integer calEndTime = Integer.parseInt(timePeriod.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[1]);
-
-					calEndTime += TPP+GAP;
-
-					log.debug("L"+this.iLocationId+" Original timePeriod"+timePeriod);
-					timePeriod = String.valueOf(calStartTime)
-							.concat(ConstantsDefinition.TIMEDURATION_DELIMITER)
-							.concat(String.valueOf(calEndTime));
-					log.debug("L"+this.iLocationId+" Revised timePeriod"+timePeriod);
-				}
-				else
-				{
-					log.debug("L"+this.iLocationId+" Gap exists between the constraint and timeperiod. Exiting");
-					break;
-				}
-
-			}
-			if (bOverlap)
-			{
-				//In this case, the overlap is with the proposed schedule.
-				//Since the proposed schedule is being created by the earliest start date,
-				//it implies, that the current timeperiod is overlapping with some event, which
-				//was actually scheduled earlier. In this case, find the event with the smaller
-				//duration and schedule it first and then the other later.
-				log.debug("L"+this.iLocationId+" NOT HANDLEDDDDDDDDDDDDDDDDD Index:"+iOverLapIndex);
-				String constraint = alProposedSchedule.get(iOverLapIndex);
-				log.debug("L"+this.iLocationId+" overlapping schedule:"+constraint+" with timePeriod "+timePeriod);
-				String strScheduledTimePeriod = constraint.split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.PERIOD_INDEX];
-
-				//Calendar calStartTime = Calendar.getInstance();
-				Integer calStartTime =  Integer.parseInt(timePeriod.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]);
-				Integer calScheduledStartTime =  Integer.parseInt(strScheduledTimePeriod.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]);
-
-				long lDiff = calScheduledStartTime - calStartTime;
-
-				if(Math.abs(lDiff) < TPP+GAP)
-				{
-					//update the timePeriod
-					calStartTime = calScheduledStartTime;
-					calStartTime += TPP+GAP;
-
-					Integer calEndTime = Integer.parseInt(timePeriod.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[1]);
-
-					calEndTime += TPP+GAP;
-
-					log.debug("L"+this.iLocationId+" Original timePeriod"+timePeriod);
-					timePeriod = String.valueOf(calStartTime)
-							.concat(ConstantsDefinition.TIMEDURATION_DELIMITER)
-							.concat(String.valueOf(calEndTime));
-					log.debug("L"+this.iLocationId+" Revised timePeriod"+timePeriod);
-				}
-				else
-				{
-					log.debug("L"+this.iLocationId+" Gap exists between the constraint and timeperiod. Exiting");
-					break;
-				}
-			}
-
-			bOverlap = checkOverlap(timePeriod, alProposedSchedule, -1);
-			bConstraintOverlap = checkConstraintOverlap(timePeriod);
+			if(msg.getStatus() == ConstantsDefinition.FINALIZE)
+				addFinalisation(msg);
 		}
-
-		//Add the sortedPorcessing list to the list of proposed schedule, in that order
-		//You may have to revise the starttime of the remaining elements in the sortedProcessing list
-		Iterator<Integer> iterSortedMap = mapSorted.keySet().iterator();
-		//Calendar nextDate = Calendar.getInstance();
-		Integer nextDate = 0;
-		boolean bFirst = true;
-		while(iterSortedMap.hasNext())
-		{
-			int duration = iterSortedMap.next();
-			ArrayList<String>alSameDurationSameStart = new ArrayList<String>();//events with same start n same duration
-			alSameDurationSameStart.addAll(mapSorted.get(duration));
-
-			for(String msg:alSameDurationSameStart)
-			{
-				log.debug(msg);
-				String strTimePeriod = msg.split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.PERIOD_INDEX];
-
-				if(bFirst)
-				{
-					bFirst = false;
-					try
-					{
-						//nextDate.setTime(sdf.parse(strTimePeriod.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]));
-						nextDate = Integer.parseInt(strTimePeriod.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]);
-					}
-					catch(Exception e)
-					{
-						log.error("L"+this.iLocationId+" Error parsing date string"+strTimePeriod.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]);
-					}
-					log.debug("L"+this.iLocationId+" Adding::"+msg.split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.STATUS_INDEX].concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(strTimePeriod).concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(msg.split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.AGENTID_INDEX]));
-					alProposedSchedule.add(msg.split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.STATUS_INDEX].concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(strTimePeriod).concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(msg.split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.AGENTID_INDEX]));
-				}
-				else
-				{
-					//Define the shifted start date and end date for the reserve request
-					/*					Calendar calStartDate = Calendar.getInstance();
-					calStartDate.setTime(nextDate.getTime());
-					calStartDate.add(Calendar.MINUTE, GAP+TPP);
-
-					Calendar calEndDate = Calendar.getInstance();
-					calEndDate.setTime(calStartDate.getTime());
-					calEndDate.add(Calendar.MINUTE, duration);*/
-
-					Integer calStartDate = nextDate;
-					calStartDate += GAP+TPP;
-
-					Integer calEndDate = calStartDate;
-					calEndDate += duration;
-
-					log.debug("L"+this.iLocationId+" start:"+calStartDate+" end:"+calEndDate);
-					/*String newSchedule = sdf.format(nextDate.getTime()).concat(ConstantsDefinition.TIMEDURATION_DELIMITER)
-										.concat(sdf.format(calEndDate.getTime()).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-												.concat(msg.split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.AGENTID_INDEX]));
-					 */
-					String newSchedule = String.valueOf(calStartDate).concat(ConstantsDefinition.TIMEDURATION_DELIMITER)
-							.concat(String.valueOf(calEndDate).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-									.concat(msg.split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.AGENTID_INDEX]));
-					log.debug("L"+this.iLocationId+" newSchedule"+newSchedule);
-
-					alProposedSchedule.add(msg.split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.STATUS_INDEX].concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(newSchedule));
-					//nextDate.setTime(calEndDate.getTime());
-					nextDate = calStartDate;
-					log.debug("L"+this.iLocationId+" next date:"+nextDate);
-				}//end else not the first entry
-
-			}//end for msg
-		}//end while iterSortedMap
-
-	}//end function
-	/**
-	 *  This function will check if the reserved timePeriod overlaps
-	 *  with a constrained duration.
-	 * @param timePeriod start%end
-	 * @return
-	 */
-	private boolean checkConstraintOverlap(String timePeriod) 
-	{
-		//SimpleDateFormat sdf = new SimpleDateFormat(ConstantsDefinition.DATE_FORMAT);
-		iOverlapConstraintIndex = INVALID;
-		for(Constraint constraint:alConstraints)
-		{
-			String strConstrainedTimePeriod = String.valueOf(constraint.getStartDate()).concat(ConstantsDefinition.TIMEDURATION_DELIMITER)
-					.concat(String.valueOf(constraint.getEndDate()));
-
-
-			int iCompare = DateUtil.compareTimePeriod(timePeriod, strConstrainedTimePeriod);
-			if(iCompare != ConstantsDefinition.AFTER && iCompare != ConstantsDefinition.MEETS_INVERSE)
-			{
-				iOverlapConstraintIndex = alConstraints.indexOf(constraint);
-				return true;
-			}
-
-		}//end for
-		return false;
+		updateConstraints();
 	}
 
-	/**
-	 * This function will check if the given timePeriod overlaps with any element in the alProposedSchedule. 
-	 * It is not sufficient to simply check with the last element of the alProposedSchedule. all elements must be 
-	 * checked for to confirm overlap or absence of it.
-	 * @param timePeriod : startPeriodTIMEPERIODLIMITERendPeriod (dates in DATE_FORMAT)
-	 * @param alProposedSchedule list of msgs which have been scheduled till now.
-	 * @return boolean true if overlap else false
-	 */
-	private boolean checkOverlap(String timePeriod, ArrayList<String> alProposedSchedule, int iStartIndex) 
+	private void addFinalisation(ScheduleMessage msg)
 	{
-		for(int i=iStartIndex+1; i<alProposedSchedule.size(); i++)
-		{
-			String msg = alProposedSchedule.get(i);
-			log.debug("L"+this.iLocationId+" Comparing "+timePeriod+" with "+msg);
-			String strScheduledTimePeriod = msg.split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.PERIOD_INDEX];
-			int iCompare = DateUtil.compareTimePeriod(timePeriod, strScheduledTimePeriod);
-			if(iCompare != ConstantsDefinition.AFTER && iCompare != ConstantsDefinition.MEETS_INVERSE)
-			{
-				iOverLapIndex = alProposedSchedule.indexOf(msg);
-				return true;
-			}
-		}//end for
-		return false;
+		finalisations.add(msg.getStatus(), msg.getStartTime(), msg.getEndTime(), msg.getSenderId(), msg.getDWCount(), msg.getProperty());
 	}
 
-	/**
-	 * This function will take a list of schedules and sort them in the increasing order of 
-	 * processing time required. Ideally the input list contains all msgs with the same startdate
-	 * @param alSchedules: Each string is of the format status#startTime%endTime#AgentId#DWcount
-	 */
-	private TreeMap<Integer, ArrayList<String>> sortByProcessingTime(ArrayList<String> alSameStartDateRequests) 
-	{
-		//Keep a hashmap indexed by duration
-		TreeMap<Integer, ArrayList<String>> mapSchedules = new TreeMap<>();
-
-		//SimpleDateFormat sdf = new SimpleDateFormat(ConstantsDefinition.DATE_FORMAT);
-
-		//Populate the sortedhashmap indexed with duration, 
-		for(String msg:alSameStartDateRequests)
-		{
-			String msgSplit[] = msg.split(ConstantsDefinition.MSGBODY_DELIMITER);
-			String timeDurationSplit[] = msgSplit[ConstantsDefinition.PERIOD_INDEX].split(ConstantsDefinition.TIMEDURATION_DELIMITER);
-			int duration = ConstantsDefinition.INVALID;
-			try 
-			{
-				//	Calendar calStartTime = Calendar.getInstance();
-				//	calStartTime.setTime(sdf.parse(timeDurationSplit[0]));
-				Integer calStartTime = Integer.parseInt(timeDurationSplit[0]);
-
-				//	Calendar calEndTime = Calendar.getInstance();
-				//	calEndTime.setTime(sdf.parse(timeDurationSplit[1]));
-				Integer calEndTime = Integer.parseInt(timeDurationSplit[1]);
-
-				//duration = (int)TimeUnit.MILLISECONDS.toMinutes(calEndTime.getTimeInMillis() - calStartTime.getTimeInMillis());
-				duration = calEndTime - calStartTime;
-			}
-			catch(Exception e)
-			{
-				log.error("Exception in parsing date "+timeDurationSplit[0]);
-			}
-			if(duration!=ConstantsDefinition.INVALID)
-			{
-				//Check if mapSchedule already contains an entry for that duration
-				if(mapSchedules.containsKey(duration))
-				{
-					//Insert into the entry
-					mapSchedules.get(duration).add(msg);
-				}
-				else
-				{
-					//Create an arraylist, add msg to it and add the entry, value to the map
-					ArrayList<String> listMsg = new ArrayList<>();
-					listMsg.add(msg);
-					mapSchedules.put(duration, listMsg);
-				}
-			}//end if !duration
-
-		}//end for all msg
-		return mapSchedules;
-	}
-
-	/**
-	 * This function will take a list of schedules and sort them in the increasing order of 
-	 * starting time required. 
-	 * @param alSchedules: Each string is of the format status#startTime%endTime#AgentId#DWcount
-	 */
-	private TreeMap<Integer, ArrayList<String>> sortByStartingTime(ArrayList<String> alSchedules) 
-	{
-
-		//Keep a hashmap indexed by duration
-		TreeMap<Integer, ArrayList<String>> mapSchedules = new TreeMap<Integer, ArrayList<String>>();
-
-		SimpleDateFormat sdf = new SimpleDateFormat(ConstantsDefinition.DATE_FORMAT);
-
-		//Populate the sortedhashmap indexed with duration, 
-		for(String msg:alSchedules)
-		{
-			String msgSplit[] = msg.split(ConstantsDefinition.MSGBODY_DELIMITER);
-			String timeDurationSplit[] = msgSplit[ConstantsDefinition.PERIOD_INDEX].split(ConstantsDefinition.TIMEDURATION_DELIMITER);
-
-			try 
-			{
-				//Calendar calStartTime = Calendar.getInstance();
-				int calStartTime = Integer.parseInt(timeDurationSplit[0]);
-				//calStartTime.setTime(sdf.parse(timeDurationSplit[0]));
-
-				//Check if mapSchedule already contains an entry for that duration
-				if(mapSchedules.containsKey(calStartTime))
-				{
-					//Insert into the entry
-					mapSchedules.get(calStartTime).add(msg);
-				}
-				else
-				{
-					//Create an arraylist, add msg to it and add the entry, value to the map
-					ArrayList<String> listMsg = new ArrayList<String>();
-					listMsg.add(msg);
-					mapSchedules.put(calStartTime, listMsg);
-				}
-			}
-			catch(Exception e)
-			{
-				log.error("Exception in parsing date "+timeDurationSplit[0]);
-			}
-
-		}//end for all msg
-
-		log.debug("Sorted map"+mapSchedules.keySet());
-		return mapSchedules;
-	}//end function
-
 	/**
 	 * This function will iterate through the list of finalises received and will push it into the list of constraints.
 	 *  It will also remove the entries for the finalises from the alAgents and corresponding status list.
 	 */
 	private void updateConstraints() 
 	{
-		for(String strFinalise:alFinalise)
+		for(int i=0; i<finalisations.size(); i++)
 		{
-			//Get the agent Id from the msg, remove the preceding "T" from it.
-			int iAgentId = Integer.parseInt(strFinalise.split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.AGENTID_INDEX].replace(ConstantsDefinition.TRAVELLER, ""));
+			int iAgentId = finalisations.getAgentId(i);
 			int iAgentIndex = alAgents.indexOf(iAgentId);
 			log.debug("Removing the "+iAgentIndex +" from status and list of agents");
 			if(iAgentIndex != -1)
@@ -1165,40 +708,26 @@ public class LocationAgent {
 				alAgents.remove(iAgentIndex);
 				alExpectedStatus.remove(iAgentIndex);
 			}
-			//Update the constraints list
-			String strPeriod = strFinalise.split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.PERIOD_INDEX];
-			String startPeriod = strPeriod.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0];
-			String endPeriod = strPeriod.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[1];
-			SimpleDateFormat sdf = new SimpleDateFormat(ConstantsDefinition.DATE_FORMAT);
-
-			try
-			{
-				Constraint constraint = new Constraint();
-				constraint.setStartDate(Integer.parseInt(startPeriod));
-				constraint.setEndDate(Integer.parseInt(endPeriod));
-				constraint.setAgentId(iAgentId);
-				alConstraints.add(constraint);
-			}
-			catch(Exception e)
-			{
-				log.error("parsing exception ");
-				e.printStackTrace();
-			}
+			//Update the constraints of the schedule
+			schedule.withdraw(iAgentId);
+			schedule.addConstraint(finalisations.getStart(i));
+			log.debug("L"+this.iLocationId+" finalised "+finalisations.toString(i));
 		}
+		finalisations.clear();
 	}
 
 	/**
 	 *  This method will iteration through the listRejects and will
 	 *  remove the entries from the known agents and their corresponding status
 	 *  
-	 *  It should also iterate through the list of previous schedule and delete entries from it. TODO
+	 *  The requests of the rejecting travellers are withdrawn from the schedule, which is
+	 *  redone from the first of them.
 	 */
 	private void removeRejects() 
 	{
-		for(String strReject:alRejections)
+		for(int i=0; i<rejections.size(); i++)
 		{
-			//Get the agent Id from the msg, remove the preceding "T" from it.
-			int iAgentId = Integer.parseInt(strReject.split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.AGENTID_INDEX].replace(ConstantsDefinition.TRAVELLER, ""));
+			int iAgentId = rejections.getAgentId(i);
 			int iAgentIndex = alAgents.indexOf(iAgentId);
 			log.debug("Removing the "+iAgentIndex +" from status and list of agents");
 			if(iAgentIndex >= 0)
@@ -1206,7 +735,7 @@ public class LocationAgent {
 				alAgents.remove(iAgentIndex);
 				alExpectedStatus.remove(iAgentIndex);
 			}
-			//TODO Remove from scheduled list.
+			schedule.withdraw(iAgentId);
 		}
 
 	}
@@ -1223,7 +752,8 @@ public class LocationAgent {
 	 */
 	private boolean validateMsg(List<Message> alRxdMsg) 
 	{
-		log.debug("validate Msg"+alRxdMsg);
+		if(log.isDebugEnabled())
+			log.debug("validate Msg"+alRxdMsg);
 
 		ArrayList<Integer> alRxdMsgFromAgent = new ArrayList<Integer>(); //temp list to maintain the list of all agents from whom msg is rxd in current tic. Will be cleared at every tic.
 
@@ -1427,19 +957,6 @@ public class LocationAgent {
 		this.iLocationId = iLocationId;
 	}
 
-	//@Override
-	/*public void run() {
-		alRxdMsg = Collections.synchronizedList(alRxdMsg);
-
-		synchronized (alRxdMsg) 
-		{
-			//Check if the msg is sent by a known agent or new agent
-			if (validateMsg(alRxdMsg))
-				processMsg(alRxdMsg);		
-		}
-
-	}
-	 */
 
 
 }
@@ -0,0 +1,540 @@
+package dmapf.agents;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+
+import dmapf.constants.ConstantsDefinition;
+import dmapf.model.ScheduleMessage;
+
+/**
+ * This class holds the schedule of a location: the requests received in the current tic,
+ * the constraints, and the proposed schedule generated for the requests. The strategies
+ * by which the schedule is generated are LocationSchedulers, which work on this class,
+ * so that a strategy can be run on a schedule without a LocationAgent around it.
+ *
+ * The strategies provided, which are registered in LocationSchedulers against the
+ * LOCATION_SCHEDULE ids, are the package-private functions sptSchedule, maximiseSatisfy,
+ * prtySatisfy, speedSatisfy and lengthSatisfy.
+ *
+ * @author st
+ *
+ */
+class LocationSchedule
+{
+	static final int TPP = 4;
+	static final int GAP = 2;
+	private static final int INVALID = -1;
+	public static final Logger log = Logger.getLogger(LocationSchedule.class);
+
+	private int iLocationId;
+
+	private ScheduleStore reservations = new ScheduleStore(); //reservations received in current tic 
+	private ScheduleStore proposed = new ScheduleStore();//proposed Schedule
+	private IntervalIndex proposedIndex = new IntervalIndex(); //periods of the proposed schedule, in the same order
+	private FreeGapIndex constraintGaps = new FreeGapIndex(TPP+GAP); //holds of the confirmed schedules, merged into blocked windows
+	private long[] arrSortKeys = new long[16]; //reservations in the order in which they are scheduled. See KeySort.
+	private long[] arrGroupSortKeys = new long[16]; //positions in arrSortKeys of the reservations with the same start, in the order of their processing time
+	private ScheduleStore scheduledRequests = new ScheduleStore(); //requests of the proposed schedule, in the order in which they were scheduled
+	private int[] arrPlacedCount = new int[16]; //size of the proposed schedule after each of scheduledRequests was scheduled
+	private int[] arrProposedFrom = new int[16]; //position in scheduledRequests of the request of each allocation in proposed
+	private int iEditFrom = Integer.MAX_VALUE; //position in scheduledRequests from which the schedule has to be redone, for the withdrawn travellers
+	private FreeGapIndex gapIndex = new FreeGapIndex(TPP+GAP); //holds of the constraints and of the allocations in proposed
+	private int[] arrUnhonoured = new int[16]; //positions in arrSortKeys of the requests to be shifted. Used in maximiseSatisfy.
+	private KeySort sorter = new KeySort(); //sorts arrSortKeys and arrGroupSortKeys
+
+	LocationSchedule(int iLocationId)
+	{
+		this.iLocationId = iLocationId;
+	}
+
+	/**
+	 * @return the requests to be scheduled. They are added by the location, as the msgs are received.
+	 */
+	ScheduleStore getReservations() {
+		return reservations;
+	}
+
+	/**
+	 * @return the proposed schedule, as generated last.
+	 */
+	ScheduleStore getProposed() {
+		return proposed;
+	}
+
+	/**
+	 * Adds a confirmed schedule, which the requests are scheduled around. Only its hold is
+	 * kept, merged with the holds of the adjacent confirmed schedules. The hold is added to
+	 * gapIndex as well, so the proposed schedule need not be redone for it, see repairFrom.
+	 */
+	void addConstraint(int iStart)
+	{
+		constraintGaps.add(iStart);
+		gapIndex.add(iStart);
+	}
+
+	/**
+	 * This function withdraws the request of a traveller which has rejected or finalised its
+	 * reservation. The allocations scheduled after its request depended on it, so the schedule
+	 * is to be redone from its request, or from the first request with the same start, which
+	 * sptSchedule has scheduled along with it. The allocations before it stand.
+	 */
+	void withdraw(int iAgentId)
+	{
+		int iScheduledIndex = scheduledRequests.indexOfAgent(iAgentId);
+		if(iScheduledIndex == -1)
+			return;
+		while(iScheduledIndex > 0 && scheduledRequests.getStart(iScheduledIndex-1) == scheduledRequests.getStart(iScheduledIndex))
+			iScheduledIndex--;
+		iEditFrom = Math.min(iEditFrom, iScheduledIndex);
+	}
+
+	/**
+	 * This function drops the holds of the confirmed schedules which end at or before the
+	 * horizon, ie. the earliest start which can still be requested from the location. The
+	 * allocations of the proposed schedule are not changed by it, as they start after the horizon,
+	 * and their holds end after it.
+	 * @return number of blocked windows dropped
+	 */
+	int compact(int iHorizon)
+	{
+		gapIndex.dropBefore(iHorizon);
+		return constraintGaps.dropBefore(iHorizon);
+	}
+
+	/**
+	 * Adds the holds of the location to a ReservationSnapshot: the blocked windows of the
+	 * confirmed schedules, and the window blocked by each allocation of the proposed schedule.
+	 */
+	void addHolds(ReservationSnapshot.Builder builder)
+	{
+		builder.startLocation(iLocationId);
+		for(int i=0; i<constraintGaps.size(); i++)
+			builder.addBlock(constraintGaps.getBlockStart(i), constraintGaps.getBlockEnd(i), ReservationSnapshot.CONFIRMED);
+		for(int i=0; i<proposed.size(); i++)
+			builder.addBlock(proposed.getStart(i) - (TPP+GAP), proposed.getStart(i) + (TPP+GAP), proposed.getAgentId(i));
+	}
+
+	/**
+	 * This function generates the proposed schedule for the reservations, by the given strategy.
+	 */
+	void generate(LocationScheduler scheduler)
+	{
+		if(arrSortKeys.length < reservations.size())
+		{
+			int iCapacity = Math.max(reservations.size(), arrSortKeys.length << 1);
+			arrSortKeys = new long[iCapacity];
+			arrPlacedCount = Arrays.copyOf(arrPlacedCount, iCapacity);
+			arrProposedFrom = Arrays.copyOf(arrProposedFrom, iCapacity);
+		}
+		scheduler.schedule(this);
+	}
+
+	/**
+	 * Drops the reservations and the proposed schedule, and releases their capacity. The
+	 * constraints are kept.
+	 */
+	void release()
+	{
+		reservations.clear();
+		reservations.trimToSize();
+		clearSchedule();
+		proposed.trimToSize();
+		scheduledRequests.trimToSize();
+		proposedIndex.trimToSize();
+		gapIndex.trimToSize();
+		constraintGaps.trimToSize();
+		sorter.trimToSize();
+	}
+
+	void prtySatisfy() 
+	{
+		//Sort all the schedules by the prty of the agent. 
+		//Beginning with the first, keep allocating each request till it overlaps with
+		//either a constraint or previous allocation. If the previous allocation had the same starting 
+		//time, then shift the conflicting allocation after completion of the previous one.  
+		generateSortedSchedule(sortByPrty());
+	}
+
+	void lengthSatisfy() 
+	{
+		//Sort all the schedules by the length of the agent. 
+		//Beginning with the first, keep allocating each request till it overlaps with
+		//either a constraint or previous allocation. If the previous allocation had the same starting 
+		//time, then shift the conflicting allocation after completion of the previous one.
+		log.debug("Schedule by Length");
+		generateSortedSchedule(sortByLength());
+	}
+
+	void speedSatisfy() 
+	{
+		//Sort all the schedules by their speed. 
+		//Beginning with the first, keep allocating each request till it overlaps with
+		//either a constraint or previous allocation. If the previous allocation had the same starting 
+		//time, then shift the conflicting allocation after completion of the previous one.  
+		generateSortedSchedule(sortBySpeed());
+	}
+
+	/**
+	 * 
+	 *  The agent prty is implicitly assumed in its agent id. ie agent id 1 > agent id 2
+	 * @return number of sort keys in arrSortKeys, in the order of the agent prty
+	 */
+	private int sortByPrty()
+	{
+		for(int i=0; i<reservations.size(); i++)
+			arrSortKeys[i] = KeySort.sortKey(reservations.getAgentId(i), i);
+		sorter.sort(arrSortKeys, reservations.size());
+
+		//Drop the requests with the same prty as an earlier one
+		int iSorted = 0;
+		for(int i=0; i<reservations.size(); i++)
+		{
+			if(iSorted > 0 && KeySort.getKey(arrSortKeys[i]) == KeySort.getKey(arrSortKeys[iSorted-1]))
+			{
+				//Should not occur, because we are assuming agents to be of the same prty
+				log.error("L"+this.iLocationId+" Duplicate instances with same prty "+KeySort.getKey(arrSortKeys[i]));
+				continue;
+			}
+			arrSortKeys[iSorted++] = arrSortKeys[i];
+		}
+		return iSorted;
+	}
+
+	/**
+	 *  The agent speed is received as the property of the msg. Since we want the sorting of the
+	 *  speeds in the descending order hence the sort key is (MAX_SPEED - speed)
+	 * @return number of sort keys in arrSortKeys, in the descending order of the speed
+	 */
+	private int sortBySpeed()
+	{
+		for(int i=0; i<reservations.size(); i++)
+			arrSortKeys[i] = KeySort.sortKey(ConstantsDefinition.MAX_SPEED - reservations.getProperty(i), i);
+		sorter.sort(arrSortKeys, reservations.size());
+		log.debug(reservations+" sorted by Speed");
+		return reservations.size();
+	}
+
+	/*
+	 * This function will sort the scedules by the length of the agent such that shortest length agent is first.
+	 * ie in ascending order of length
+	 */
+	private int sortByLength() 
+	{
+		for(int i=0; i<reservations.size(); i++)
+			arrSortKeys[i] = KeySort.sortKey(reservations.getProperty(i), i);
+		sorter.sort(arrSortKeys, reservations.size());
+		log.debug(reservations+" sorted by Length");
+		return reservations.size();
+	}
+
+	/**
+	 * This function allocates the requests in the sorted order. A request overlapping with an
+	 * allocation made earlier is shifted after that allocation. The allocations of the requests
+	 * unchanged since the last schedule are kept, see repairFrom.
+	 * @param iSorted: number of sort keys in arrSortKeys
+	 */
+	private void generateSortedSchedule(int iSorted) 
+	{
+		for(int iSortIndex = repairFrom(iSorted, false); iSortIndex < iSorted; iSortIndex++)
+		{
+			int iRequest = getRequest(iSortIndex);
+			int iStart = reservations.getStart(iRequest);
+			int iEnd = reservations.getEnd(iRequest);
+			log.debug("L"+this.iLocationId+" request "+reservations.toString(iRequest));
+
+			int iOverlapIndex = checkOverlap(iStart, -1);
+			while(iOverlapIndex != INVALID)
+			{
+				//The elements should be scheduled after the overlap period. The revised schedule could still overlap.
+				//so keep checking, with the allocations after the overlapping one.
+				//The overlap can be resolved by ensuring that the start of the overlapping allocation and the start
+				//of the time period are separated by TPP+GAP. If the separation exists then
+				//add the time-period as is, else update the timeperiod to allow for the separation
+				int iAllocStart = proposed.getStart(iOverlapIndex);
+				if(Math.abs(iAllocStart - iStart) < TPP+GAP)
+				{
+					//update the timePeriod
+					iStart = iAllocStart + TPP+GAP;
+					iEnd += TPP+GAP;
+					log.debug("L"+this.iLocationId+" overlap with "+proposed.toString(iOverlapIndex)+", shifted to "+iStart);
+				}
+				iOverlapIndex = checkOverlap(iStart, iOverlapIndex);
+			}
+
+			//Add the schedule to the proposed schedule
+			propose(iSortIndex, iStart, iEnd);
+			scheduled(iSortIndex);
+		}//end for requests
+	}
+
+	/**
+	 * This function will check if a time period starting at iStart overlaps with an allocation of
+	 * the proposed schedule, after iStartIndex. A time period overlaps with an allocation unless it
+	 * starts at or after the end of the allocation. The first such allocation is found in proposedIndex.
+	 * @return position in the proposed schedule of the first overlapping allocation. INVALID if none.
+	 */
+	private int checkOverlap(int iStart, int iStartIndex)
+	{
+		return proposedIndex.firstConflict(iStart, iStartIndex+1);
+	}
+
+	/**
+	 * This function will create a schedule to attempt to maintain the schedules as much as possible.
+	 * As in the other strategies, an allocation holds the location for TPP+GAP from its start, so
+	 * two allocations, or an allocation and a constraint, are compatible if their starts are at least
+	 * TPP+GAP apart.
+	 * 
+	 * Since every allocation holds the location for the same time, taking the requests by the earliest
+	 * start, which is the earliest end of their hold, and honouring each request compatible with those
+	 * honoured before it, honours the largest number of requests. The requests which cannot be honoured
+	 * are then shifted, in the order of their start, to the earliest start compatible with all the
+	 * allocations. The sort makes it O(n log n).
+	 * 
+	 * An allocation here depends on the requests after it, hence the schedule is generated anew each time.
+	 * */
+	void maximiseSatisfy() 
+	{
+		clearSchedule();
+		int iSorted = sortByStartingTime();
+		if(arrUnhonoured.length < iSorted)
+			arrUnhonoured = new int[arrSortKeys.length];
+
+		//honour the requests compatible with the constraints and with the requests honoured earlier
+		int iUnhonoured = 0;
+		for(int iSortIndex = 0; iSortIndex < iSorted; iSortIndex++)
+		{
+			int iRequest = getRequest(iSortIndex);
+			int iStart = reservations.getStart(iRequest);
+			if(gapIndex.earliestStart(iStart) == iStart)
+				propose(iSortIndex, iStart, reservations.getEnd(iRequest));
+			else
+				arrUnhonoured[iUnhonoured++] = iSortIndex;
+		}
+		log.debug("L"+this.iLocationId+" honoured "+proposed.size()+" of "+iSorted);
+
+		//shift the other requests by the least wait
+		for(int i=0; i<iUnhonoured; i++)
+		{
+			int iRequest = getRequest(arrUnhonoured[i]);
+			int iStart = gapIndex.earliestStart(reservations.getStart(iRequest));
+			int iShift = iStart - reservations.getStart(iRequest);
+			propose(arrUnhonoured[i], iStart, reservations.getEnd(iRequest) + iShift);
+		}
+	}
+
+	/**
+	 *  This function will create a schedule by shortest processing time
+	 *  The method will look into each request, sorted by start time. And will keep allocating
+	 *  each request, if there are no overlaps. In case of overlaps, the solution which ensures
+	 *  least lateness will be adopted. The optimality of this solution remains to be proven.
+	 */
+	void sptSchedule() 
+	{
+		//Sort all the schedules by the shortest processing time. 
+		//Beginning with the first, keep allocating each request till it overlaps with
+		//either a constraint or previous allocation. If the previous allocation had the same starting 
+		//time, then shift the conflicting allocation after completion of the previous one.  
+		int iSorted = sortByStartingTime();
+
+		//iterate thru each group of requests with the same start, from the first group changed since the last schedule
+		int iGroupStart = repairFrom(iSorted, true);
+		for(int i=iGroupStart+1; i<=iSorted; i++)
+		{
+			if(i == iSorted || KeySort.getKey(arrSortKeys[i]) != KeySort.getKey(arrSortKeys[iGroupStart]))
+			{
+				//schedule the same date events 
+				positionRequests(iGroupStart, i);
+				for(int iSortIndex = iGroupStart; iSortIndex < i; iSortIndex++)
+					scheduled(iSortIndex);
+				iGroupStart = i;
+			}
+		}//end for start
+
+		log.debug("proposed:"+proposed);
+	}
+	/**
+	 *  This function will work according to optimiseSchedule strategy. It will 
+	 *  receive a set of requests which have the same start date. It will check 
+	 *  and try to optimally schedule them wrt the already scheduled events.
+	 *  
+	 *  TODO how and when to check for constraints. 
+	 * @param iFrom, iTo: range of arrSortKeys with the requests with the same startdate 
+	 */
+	private void positionRequests(int iFrom, int iTo) 
+	{
+		//First arrange the events wrt time durations. for events with same start time, the shortest-processing-time-first
+		//gives the best solution.
+		int iSorted = sortByProcessingTime(iFrom, iTo);
+		if(iSorted == 0)
+			return;
+
+		//Add the requests to the proposed schedule, in the order of their processing time.
+		//The first is added with its requested period, and each of the others is started
+		//TPP+GAP after the start of the previous one.
+		int iNextStart = 0;
+		for(int iSortIndex = 0; iSortIndex < iSorted; iSortIndex++)
+		{
+			int iRequest = getRequest(KeySort.getEntry(arrGroupSortKeys[iSortIndex]));
+			int iScheduledStart = reservations.getStart(iRequest);
+			int iScheduledEnd = reservations.getEnd(iRequest);
+			if(iSortIndex > 0)
+			{
+				//Define the shifted start date and end date for the reserve request
+				iScheduledStart = iNextStart + GAP+TPP;
+				iScheduledEnd = iScheduledStart + KeySort.getKey(arrGroupSortKeys[iSortIndex]);
+			}
+			log.debug("L"+this.iLocationId+" start:"+iScheduledStart+" end:"+iScheduledEnd);
+			propose(KeySort.getEntry(arrGroupSortKeys[iSortIndex]), iScheduledStart, iScheduledEnd);
+			iNextStart = iScheduledStart;
+			log.debug("L"+this.iLocationId+" next date:"+iNextStart);
+		}//end for requests
+
+	}//end function
+
+	/**
+	 * Adds the allocation of a request to the proposed schedule and its index.
+	 * @param iSortIndex: position of the request in arrSortKeys
+	 */
+	private void propose(int iSortIndex, int iStart, int iEnd)
+	{
+		int iRequest = getRequest(iSortIndex);
+		log.debug("L"+this.iLocationId+" Adding::"+reservations.getStatus(iRequest)+" "+iStart+"%"+iEnd+" T"+reservations.getAgentId(iRequest));
+		arrProposedFrom[proposed.size()] = iSortIndex;
+		proposed.add(reservations.getStatus(iRequest), iStart, iEnd, reservations.getAgentId(iRequest), 0, ScheduleMessage.NO_PROPERTY);
+		proposedIndex.add(iStart, iEnd);
+		gapIndex.add(iStart);
+	}
+
+	/**
+	 * Records the request as scheduled, once its allocation has been added to the proposed schedule.
+	 * @param iSortIndex: position of the request in arrSortKeys, which is its position in scheduledRequests
+	 */
+	private void scheduled(int iSortIndex)
+	{
+		int iRequest = getRequest(iSortIndex);
+		scheduledRequests.add(reservations.getStatus(iRequest), reservations.getStart(iRequest), reservations.getEnd(iRequest),
+				reservations.getAgentId(iRequest), reservations.getDWCount(iRequest), reservations.getProperty(iRequest));
+		arrPlacedCount[iSortIndex] = proposed.size();
+	}
+
+	/**
+	 * This function repairs the proposed schedule instead of generating it anew. The allocation
+	 * of a request depends only on the requests scheduled before it. Hence if the requests, in the
+	 * order in which they are to be scheduled, begin with the same requests as in the last schedule,
+	 * the allocations of these requests stand. Only the allocations of the requests after them, or
+	 * after the first request withdrawn, are dropped, to be done again.
+	 * 
+	 * The constraints are not placed around by the strategies which repair their schedule, only by
+	 * maximiseSatisfy, which generates it anew. So a constraint added does not drop any allocation.
+	 * It is only added to gapIndex, which is rebuilt here only if allocations have been dropped.
+	 * 
+	 * The DW count and the status of a request do not change its allocation, so a traveller moving
+	 * from ACCEPT to DW keeps its allocation. The status of the kept allocations is updated.
+	 * @param iSorted: number of sort keys in arrSortKeys
+	 * @param bGroupByStart: true if the requests with the same start are scheduled together, as in sptSchedule
+	 * @return the position in arrSortKeys from which the requests are to be scheduled
+	 */
+	private int repairFrom(int iSorted, boolean bGroupByStart)
+	{
+		int iFrom = 0;
+		int iMax = Math.min(Math.min(iSorted, scheduledRequests.size()), iEditFrom);
+		while(iFrom < iMax && sameRequest(getRequest(iFrom), iFrom))
+			iFrom++;
+		//The group of requests with the same start is scheduled together, so it is redone if it has changed partly
+		if(bGroupByStart)
+		{
+			while(iFrom > 0 && ((iFrom < iSorted && KeySort.getKey(arrSortKeys[iFrom]) == KeySort.getKey(arrSortKeys[iFrom-1]))
+					|| (iFrom < scheduledRequests.size() && scheduledRequests.getStart(iFrom) == scheduledRequests.getStart(iFrom-1))))
+				iFrom--;
+		}
+		iEditFrom = Integer.MAX_VALUE;
+		log.debug("L"+this.iLocationId+" rescheduling from "+iFrom+" of "+iSorted);
+
+		int iPlaced = iFrom > 0?arrPlacedCount[iFrom-1]:0;
+		if(iPlaced < proposed.size())
+			resetGaps(iPlaced);
+		proposed.truncate(iPlaced);
+		proposedIndex.truncate(iPlaced);
+		scheduledRequests.truncate(iFrom);
+		for(int i=0; i<iPlaced; i++)
+			proposed.setStatus(i, reservations.getStatus(getRequest(arrProposedFrom[i])));
+		return iFrom;
+	}
+
+	/**
+	 * @return true if the request has the same period, traveller and property as the scheduled request at iScheduledIndex
+	 */
+	private boolean sameRequest(int iRequest, int iScheduledIndex)
+	{
+		return reservations.getStart(iRequest) == scheduledRequests.getStart(iScheduledIndex)
+				&& reservations.getEnd(iRequest) == scheduledRequests.getEnd(iScheduledIndex)
+				&& reservations.getAgentId(iRequest) == scheduledRequests.getAgentId(iScheduledIndex)
+				&& reservations.getProperty(iRequest) == scheduledRequests.getProperty(iScheduledIndex);
+	}
+
+	/**
+	 * Drops the proposed schedule, so that the next schedule is generated anew.
+	 */
+	private void clearSchedule()
+	{
+		proposed.clear();
+		proposedIndex.clear();
+		scheduledRequests.clear();
+		iEditFrom = Integer.MAX_VALUE;
+		resetGaps(0);
+	}
+
+	/**
+	 * Rebuilds gapIndex from the constraints and the first iPlaced allocations of the proposed schedule.
+	 */
+	private void resetGaps(int iPlaced)
+	{
+		gapIndex.copyFrom(constraintGaps);
+		for(int i=0; i<iPlaced; i++)
+			gapIndex.add(proposed.getStart(i));
+	}
+
+	/**
+	 * This function will take a range of requests sorted by their start, and sort their positions in the
+	 * increasing order of processing time required, into arrGroupSortKeys.
+	 * @param iFrom, iTo: range of arrSortKeys with the requests with the same startdate 
+	 * @return number of sort keys in arrGroupSortKeys
+	 */
+	private int sortByProcessingTime(int iFrom, int iTo) 
+	{
+		if(arrGroupSortKeys.length < iTo-iFrom)
+			arrGroupSortKeys = new long[arrSortKeys.length];
+		int iSorted = 0;
+		for(int i=iFrom; i<iTo; i++)
+		{
+			int iRequest = getRequest(i);
+			int duration = reservations.getEnd(iRequest) - reservations.getStart(iRequest);
+			if(duration != ConstantsDefinition.INVALID)
+				arrGroupSortKeys[iSorted++] = KeySort.sortKey(duration, i);
+		}
+		sorter.sort(arrGroupSortKeys, iSorted);
+		return iSorted;
+	}
+
+	/**
+	 * This function will sort the requests in the increasing order of 
+	 * starting time required, into arrSortKeys. 
+	 * @return number of sort keys in arrSortKeys
+	 */
+	private int sortByStartingTime() 
+	{
+		for(int i=0; i<reservations.size(); i++)
+			arrSortKeys[i] = KeySort.sortKey(reservations.getStart(i), i);
+		sorter.sort(arrSortKeys, reservations.size());
+		return reservations.size();
+	}
+
+	/**
+	 * @return index in reservations of the request at iSortIndex in arrSortKeys
+	 */
+	private int getRequest(int iSortIndex)
+	{
+		return KeySort.getEntry(arrSortKeys[iSortIndex]);
+	}
+}
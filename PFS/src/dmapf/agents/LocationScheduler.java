@@ -0,0 +1,17 @@
+package dmapf.agents;
+
+/**
+ * A strategy by which a location allocates the requests received in a tic. The strategy
+ * generates the proposed schedule of the LocationSchedule from its reservations and
+ * constraints. It is given the same LocationSchedule every tic, and may keep the proposed
+ * schedule of the last tic, as the strategies in LocationSchedule do.
+ *
+ * The strategies are registered in LocationSchedulers.
+ *
+ * @author st
+ *
+ */
+interface LocationScheduler
+{
+	void schedule(LocationSchedule schedule);
+}
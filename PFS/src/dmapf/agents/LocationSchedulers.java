@@ -0,0 +1,52 @@
+package dmapf.agents;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import dmapf.constants.ConstantsDefinition;
+
+/**
+ * This class registers the strategies by which the locations schedule their requests,
+ * against the strategy ids passed to the PO. The strategies of LocationSchedule are
+ * registered against the LOCATION_SCHEDULE ids of ConstantsDefinition. Another strategy
+ * is added by registering it against a new id, and is then used for all the locations by
+ * passing the id to the PO, or for some of them by PostOffice.setLocationStrategy.
+ *
+ * The registry is held per JVM, so a strategy used on the LocationShards has to be
+ * registered in the shards as well.
+ *
+ * @author st
+ *
+ */
+final class LocationSchedulers
+{
+	private static final ConcurrentHashMap<Integer, LocationScheduler> hmSchedulers = new ConcurrentHashMap<Integer, LocationScheduler>();
+
+	static
+	{
+		register(ConstantsDefinition.LOCATION_SCHEDULE_SPT, LocationSchedule::sptSchedule);
+		register(ConstantsDefinition.LOCATION_SCHEDULE_SATISFYMAX, LocationSchedule::maximiseSatisfy);
+		register(ConstantsDefinition.LOCATION_SCHEDULE_SATISFY_PRTY, LocationSchedule::prtySatisfy);
+		register(ConstantsDefinition.LOCATION_SCHEDULE_SPEED, LocationSchedule::speedSatisfy);
+		register(ConstantsDefinition.LOCATION_SCHEDULE_LENGTH, LocationSchedule::lengthSatisfy);
+	}
+
+	private LocationSchedulers()
+	{
+	}
+
+	/**
+	 * Registers the strategy against the id, replacing the strategy registered earlier if any.
+	 */
+	static void register(int iStrategy, LocationScheduler scheduler)
+	{
+		hmSchedulers.put(iStrategy, scheduler);
+	}
+
+	/**
+	 * @return the strategy registered against the id. null if none.
+	 */
+	static LocationScheduler get(int iStrategy)
+	{
+		return hmSchedulers.get(iStrategy);
+	}
+}
@@ -0,0 +1,137 @@
+package dmapf.agents;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+
+import dmapf.model.ScheduleMessage;
+
+/**
+ * This class hosts the Location agents of one partition of the road network, so that the
+ * locations of a large network can be spread across several JVMs. The PO connects to each
+ * shard over a loopback socket, forwards the msgs of the travellers to the shard hosting
+ * their receiver, and asks every shard to run the location phase of the round.
+ *
+ * A shard is run as a separate process:
+ *   java dmapf.agents.LocationShard port
+ * and is handed to the PO with PostOffice.setLocationShards. The shard exits once the PO
+ * has closed the connection.
+ *
+ * @author st
+ *
+ */
+public class LocationShard
+{
+	public static final Logger log = Logger.getLogger(LocationShard.class);
+
+	private AgentRegistry registry = new AgentRegistry(); //location agents of this shard
+	private SuperstepExecutor superstep;
+	private int iDWSize;
+	private int iAllocStrategy;
+	private HashMap<Integer, Integer> hmLocationStrategies = new HashMap<Integer, Integer>(); //strategies of the locations not scheduled by iAllocStrategy, indexed by location id
+
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length != 1)
+		{
+			System.err.println("Usage: LocationShard port");
+			System.exit(1);
+		}
+		PropertyConfigurator.configure("resources/config-properties/log4j.properties");
+		new LocationShard().serve(Integer.parseInt(args[0]));
+	}
+
+	/**
+	 * Accepts a connection from the PO on the loopback interface and serves it till the
+	 * PO shuts the shard down.
+	 */
+	public void serve(int iPort) throws IOException
+	{
+		try(ServerSocket server = new ServerSocket(iPort, 1, InetAddress.getLoopbackAddress());
+				Socket socket = server.accept())
+		{
+			socket.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			log.info("Shard on port "+iPort+" connected to the PO");
+
+			int iOpcode = in.readInt();
+			while(iOpcode != ShardProtocol.SHUTDOWN)
+			{
+				switch(iOpcode)
+				{
+				case ShardProtocol.INIT:
+					iDWSize = in.readInt();
+					iAllocStrategy = in.readInt();
+					int iLocationStrategies = in.readInt();
+					for(int i=0; i<iLocationStrategies; i++)
+						hmLocationStrategies.put(in.readInt(), in.readInt());
+					superstep = new SuperstepExecutor(in.readInt());
+					break;
+				case ShardProtocol.DELIVER:
+					int iHorizon = in.readInt();
+					int iLists = in.readInt();
+					for(int i=0; i<iLists; i++)
+						deliver(ShardProtocol.readMsgs(in), iHorizon);
+					break;
+				case ShardProtocol.PROCESS:
+					//only the locations which have been sent msgs are run
+					ArrayList<LocationAgent> alLocations = registry.takeActiveLocations();
+					ArrayList<ScheduleMessage> alMsgs = new ArrayList<ScheduleMessage>();
+					for(ArrayList<ScheduleMessage> alLocationMsgs:superstep.run(alLocations, LocationAgent::processMsg))
+						alMsgs.addAll(alLocationMsgs);
+					out.writeInt(alLocations.size());
+					ShardProtocol.writeMsgs(out, alMsgs);
+					out.flush();
+					break;
+				default:
+					throw new IOException("Unknown opcode "+iOpcode);
+				}
+				iOpcode = in.readInt();
+			}
+		}
+		finally
+		{
+			if(superstep != null)
+				superstep.shutdown();
+		}
+		log.info("Shard on port "+iPort+" shut down");
+	}
+
+	/**
+	 * Delivers the msgs to their location, creating the location if it does not exist. As in
+	 * the PO, a location which has been sent only REJECT and FINALIZE msgs holds the finalised
+	 * periods as constraints, and is passivated.
+	 * @param msgList: msgs for the same location
+	 * @param iHorizon: earliest start date of the travellers still negotiating
+	 */
+	private void deliver(ArrayList<ScheduleMessage> msgList, int iHorizon)
+	{
+		int iLocationId = msgList.get(0).getReceiverId();
+		LocationAgent locAgent = registry.getLocation(iLocationId);
+		if(locAgent == null)
+		{
+			locAgent = new LocationAgent(iLocationId, iDWSize, null, hmLocationStrategies.getOrDefault(iLocationId, iAllocStrategy));
+			registry.addLocation(locAgent);
+		}
+		else if(PostOffice.onlyWithdrawals(msgList))
+		{
+			locAgent.finalise(msgList);
+			registry.passivateLocation(iLocationId);
+			return;
+		}
+		locAgent.setHorizon(iHorizon);
+		locAgent.receiveMessage(msgList);
+		registry.activateLocation(iLocationId);
+	}
+}
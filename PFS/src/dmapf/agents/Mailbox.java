@@ -0,0 +1,89 @@
+package dmapf.agents;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import dmapf.model.ScheduleMessage;
+
+/**
+ * This class is the inbox of a Location or Traveller agent. Any number of producers
+ * (the PO, or the PO's router threads) may post batches of msgs concurrently, and the
+ * agent, which is the only consumer, drains everything posted so far in one go.
+ *
+ * The batches are pushed onto a lock-free stack with a compare-and-set on its head.
+ * A drain detaches the whole stack with a single atomic swap. Since the PO posts one
+ * batch per agent per round, a drain normally finds a single batch, which is handed to
+ * the agent as it is, without copying. Only when several batches have been posted are
+ * they concatenated, in the order in which they were posted.
+ *
+ * A posted batch is owned by the mailbox: the producer must not modify it thereafter.
+ *
+ * @author st
+ *
+ */
+class Mailbox
+{
+	private static final class Node
+	{
+		final List<ScheduleMessage> batch;
+		Node next; //node posted before this one
+
+		Node(List<ScheduleMessage> batch)
+		{
+			this.batch = batch;
+		}
+	}
+
+	private final AtomicReference<Node> head = new AtomicReference<Node>(); //last posted batch
+
+	/**
+	 * Appends the batch of msgs to the mailbox. Safe to be called from multiple threads.
+	 */
+	void post(List<ScheduleMessage> batch)
+	{
+		Node node = new Node(batch);
+		Node last;
+		do
+		{
+			last = head.get();
+			node.next = last;
+		}while(!head.compareAndSet(last, node));
+	}
+
+	boolean isEmpty()
+	{
+		return head.get() == null;
+	}
+
+	/**
+	 * Removes and returns all the msgs posted so far, in the order of posting.
+	 * To be called only by the agent owning the mailbox.
+	 * @return the msgs, an empty list if nothing has been posted.
+	 */
+	List<ScheduleMessage> drain()
+	{
+		Node node = head.getAndSet(null);
+		if(node == null)
+			return Collections.emptyList();
+		if(node.next == null)
+			return node.batch;
+
+		//reverse the stack to get the batches in the order of posting
+		Node first = null;
+		int iSize = 0;
+		while(node != null)
+		{
+			Node next = node.next;
+			node.next = first;
+			first = node;
+			iSize += node.batch.size();
+			node = next;
+		}
+		ArrayList<ScheduleMessage> alMsgs = new ArrayList<ScheduleMessage>(iSize);
+		for(node = first; node != null; node = node.next)
+			alMsgs.addAll(node.batch);
+		return alMsgs;
+	}
+}
@@ -0,0 +1,121 @@
+package dmapf.agents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import dmapf.model.ScheduleMessage;
+
+/**
+ * This class groups the msgs collected by the PO in a half round by their receiver, for
+ * them to be sent as a single block to each receiver. It is used in place of a map keyed
+ * by the receiver names, which hashed a String per msg and allocated a new list per
+ * receiver in every half round.
+ *
+ * The grouping is done in two passes. The first pass counts the msgs per receiver id and
+ * notes the receivers in the order of their first msg. The second pass sizes the bucket
+ * of each receiver and copies the msgs into it, preserving their order.
+ *
+ * The counts and the receivers are held in arrays reused by every grouping. The buckets
+ * are not: a bucket is handed to its receiver as is, and the Mailbox of the receiver, or
+ * the receiver itself, owns it from then on. Hence each grouping allocates new buckets,
+ * each sized to its msgs, and never touches a bucket handed over before.
+ *
+ * @author st
+ *
+ */
+class MessageBuckets
+{
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private ArrayList<ArrayList<ScheduleMessage>> alBuckets = new ArrayList<ArrayList<ScheduleMessage>>(Collections.<ArrayList<ScheduleMessage>>nCopies(INITIAL_CAPACITY, null)); //buckets of the last grouping, indexed by receiver id
+	private int[] arrCounts = new int[INITIAL_CAPACITY]; //msgs per receiver id. All zero outside group.
+	private int[] arrReceivers = new int[INITIAL_CAPACITY]; //receivers of the last grouping, in the order of their first msg
+	private int iReceiverCount = 0;
+
+	/**
+	 * Groups the msgs by their receiver, replacing the last grouping.
+	 * @param alMsgLists: lists of msgs, each from one sender
+	 */
+	void group(List<ArrayList<ScheduleMessage>> alMsgLists)
+	{
+		iReceiverCount = 0;
+
+		//Pass 1: count the msgs per receiver
+		for(int i=0; i<alMsgLists.size(); i++)
+		{
+			ArrayList<ScheduleMessage> msgList = alMsgLists.get(i);
+			for(int j=0; j<msgList.size(); j++)
+			{
+				int iReceiverId = msgList.get(j).getReceiverId();
+				if(iReceiverId >= arrCounts.length)
+					grow(iReceiverId);
+				if(arrCounts[iReceiverId]++ == 0)
+				{
+					if(iReceiverCount == arrReceivers.length)
+						arrReceivers = Arrays.copyOf(arrReceivers, iReceiverCount << 1);
+					arrReceivers[iReceiverCount++] = iReceiverId;
+				}
+			}
+		}
+
+		//allocate the buckets of the receivers, sized to their msgs
+		for(int i=0; i<iReceiverCount; i++)
+		{
+			int iReceiverId = arrReceivers[i];
+			alBuckets.set(iReceiverId, new ArrayList<ScheduleMessage>(arrCounts[iReceiverId]));
+			arrCounts[iReceiverId] = 0;
+		}
+
+		//Pass 2: copy the msgs into the buckets
+		for(int i=0; i<alMsgLists.size(); i++)
+		{
+			ArrayList<ScheduleMessage> msgList = alMsgLists.get(i);
+			for(int j=0; j<msgList.size(); j++)
+			{
+				ScheduleMessage msg = msgList.get(j);
+				alBuckets.get(msg.getReceiverId()).add(msg);
+			}
+		}
+	}
+
+	/**
+	 * @return number of receivers in the last grouping.
+	 */
+	int getReceiverCount() {
+		return iReceiverCount;
+	}
+
+	/**
+	 * @return id of the i-th receiver of the last grouping.
+	 */
+	int getReceiverId(int i) {
+		return arrReceivers[i];
+	}
+
+	/**
+	 * @return msgs for the i-th receiver of the last grouping. The list is the receiver's to keep.
+	 */
+	ArrayList<ScheduleMessage> getBucket(int i) {
+		return alBuckets.get(arrReceivers[i]);
+	}
+
+	/**
+	 * @return ids of the receivers of the last grouping, for logging.
+	 */
+	String receiversToString() {
+		return Arrays.toString(Arrays.copyOf(arrReceivers, iReceiverCount));
+	}
+
+	private void grow(int iReceiverId)
+	{
+		int iCapacity = arrCounts.length;
+		while(iCapacity <= iReceiverId)
+			iCapacity <<= 1;
+		arrCounts = Arrays.copyOf(arrCounts, iCapacity);
+		alBuckets.ensureCapacity(iCapacity);
+		while(alBuckets.size() < iCapacity)
+			alBuckets.add(null);
+	}
+}
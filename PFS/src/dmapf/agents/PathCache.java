@@ -0,0 +1,187 @@
+package dmapf.agents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import dmapf.utils.JGraphTUtil;
+
+/**
+ * This class caches the paths found by JGraphTUtil.getPath, which the travellers otherwise
+ * find anew every time they plan or replan. Many travellers share the same source and
+ * destination, and a traveller excluding the same edges finds the same path every round.
+ *
+ * A path is cached against its source, its destination and the set of excluded edges. The
+ * set is held sorted and without duplicates, so the order in which the constraint edges were
+ * added does not matter. The cache holds at most iCapacity paths, and drops the path used
+ * least recently beyond it. It is shared by all the travellers, which may run on several
+ * threads; the path is found outside the lock of the cache, so a miss does not hold up the
+ * hits of the other travellers. A search of JGraphTUtil with excluded edges takes them out of
+ * its graph for the search, so it runs alone, under the write lock of graphLock. A search
+ * without exclusions, as the initial path of a traveller, only reads the graph, as
+ * getEdgeDetail does, so such searches run together under the read lock.
+ *
+ * @author st
+ *
+ */
+final class PathCache
+{
+	static final int DEFAULT_CAPACITY = 4096;
+	private static final PathCache instance = new PathCache(DEFAULT_CAPACITY);
+
+	private final JGraphTUtil sUtil = JGraphTUtil.getInstance();
+	private final ReentrantReadWriteLock graphLock = new ReentrantReadWriteLock(); //write lock for the searches which change the graph of sUtil
+	private final LinkedHashMap<PathKey, String> hmPaths = new LinkedHashMap<PathKey, String>(16, 0.75f, true); //paths in the order of their last use
+	private int iCapacity; //maximum number of paths held. 0 disables the cache.
+	private long lHits = 0;
+	private long lMisses = 0;
+	private long lEvictions = 0;
+
+	private PathCache(int iCapacity)
+	{
+		this.iCapacity = iCapacity;
+	}
+
+	static PathCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @return the path from strSource to strDest which does not use the excluded edges, in the form returned by JGraphTUtil.getPath
+	 */
+	String getPath(String strSource, String strDest, ArrayList<String> alExcludedEdges)
+	{
+		PathKey key = new PathKey(strSource, strDest, alExcludedEdges);
+		synchronized(this)
+		{
+			String path = hmPaths.get(key);
+			if(path != null)
+			{
+				lHits++;
+				return path;
+			}
+			lMisses++;
+		}
+
+		String path;
+		Lock lock = alExcludedEdges == null || alExcludedEdges.isEmpty()?graphLock.readLock():graphLock.writeLock();
+		lock.lock();
+		try
+		{
+			path = sUtil.getPath(strSource, strDest, alExcludedEdges);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+		if(path != null)
+		{
+			synchronized(this)
+			{
+				if(iCapacity > 0)
+				{
+					hmPaths.put(key, path);
+					evict();
+				}
+			}
+		}
+		return path;
+	}
+
+	/**
+	 * Sets the maximum number of paths held, dropping the paths used least recently beyond it.
+	 */
+	synchronized void setCapacity(int iCapacity)
+	{
+		this.iCapacity = iCapacity;
+		evict();
+	}
+
+	synchronized void clear()
+	{
+		hmPaths.clear();
+		lHits = 0;
+		lMisses = 0;
+		lEvictions = 0;
+	}
+
+	synchronized long getHitCount() {
+		return lHits;
+	}
+
+	synchronized long getMissCount() {
+		return lMisses;
+	}
+
+	synchronized long getEvictionCount() {
+		return lEvictions;
+	}
+
+	synchronized int size() {
+		return hmPaths.size();
+	}
+
+	private void evict()
+	{
+		Iterator<Map.Entry<PathKey, String>> itPaths = hmPaths.entrySet().iterator();
+		while(hmPaths.size() > iCapacity && itPaths.hasNext())
+		{
+			itPaths.next();
+			itPaths.remove();
+			lEvictions++;
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "paths:"+hmPaths.size()+" hits:"+lHits+" misses:"+lMisses+" evictions:"+lEvictions;
+	}
+
+	/**
+	 * Source, destination and the excluded edges, sorted and without duplicates.
+	 */
+	private static final class PathKey
+	{
+		private final String strSource;
+		private final String strDest;
+		private final String[] arrExcludedEdges;
+		private final int iHash;
+
+		PathKey(String strSource, String strDest, ArrayList<String> alExcludedEdges)
+		{
+			this.strSource = strSource;
+			this.strDest = strDest;
+			String[] arrEdges = alExcludedEdges == null?new String[0]:alExcludedEdges.toArray(new String[0]);
+			Arrays.sort(arrEdges);
+			int iUnique = 0;
+			for(int i=0; i<arrEdges.length; i++)
+			{
+				if(iUnique == 0 || !arrEdges[i].equals(arrEdges[iUnique-1]))
+					arrEdges[iUnique++] = arrEdges[i];
+			}
+			arrExcludedEdges = iUnique == arrEdges.length?arrEdges:Arrays.copyOf(arrEdges, iUnique);
+			iHash = 31 * (31 * strSource.hashCode() + strDest.hashCode()) + Arrays.hashCode(arrExcludedEdges);
+		}
+
+		@Override
+		public int hashCode() {
+			return iHash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if(this == obj)
+				return true;
+			if(!(obj instanceof PathKey))
+				return false;
+			PathKey key = (PathKey)obj;
+			return iHash == key.iHash && strSource.equals(key.strSource) && strDest.equals(key.strDest)
+					&& Arrays.equals(arrExcludedEdges, key.arrExcludedEdges);
+		}
+	}
+}
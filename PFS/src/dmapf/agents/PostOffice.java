@@ -1,16 +1,18 @@
 package dmapf.agents;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
 
 import dmapf.constants.ConstantsDefinition;
-import dmapf.model.Message;
+import dmapf.model.ScheduleMessage;
 
 
 /**
@@ -25,30 +27,66 @@ import dmapf.model.Message;
  * requests and identify the number of locations it has to go to and
  * then it will check if those location agents exists, if not, it will create them.
  * 
+ * In the actor mode, each agent is run as an actor, which reacts only when msgs are
+ * posted to it. The PO then only routes the msgs of a round to the actors of their
+ * receivers and waits till those actors have responded, so the agents which have
+ * not been sent any msg in a round are not run at all.
+ * 
+ * In the asynchronous mode, there are no rounds. The msgs of an agent are routed as
+ * soon as they are sent and each agent reacts to its own inbox: a traveller once all
+ * the locations it has sent msgs to have responded, a location to whichever msgs it
+ * has rxd. The negotiation has terminated when no agent has any msg to react to.
+ * 
+ * In the sharded mode, the Location agents are hosted by LocationShards, each of which
+ * can run in its own JVM, partitioned by their edge id. The PO then forwards the msgs
+ * of the travellers to the shard hosting their receiver and runs the location phase on
+ * all the shards at the same time. The sharded mode runs in lockstep rounds.
+ * 
+ * In the lease mode, a location holds a reservation in the DW of a traveller till the DW
+ * lapses, unless it revokes the reservation. The DW msgs then do not travel every round,
+ * only the changes do, and an agent with nothing new to send is silent in the round.
+ * 
  * @author st
  *
  */
 public class PostOffice
 {
-	private ArrayList<LocationAgent> alLocationAgents = new ArrayList<>(); //list of location agents instantiated.
-	private ArrayList<Travelers> alTravellers = new ArrayList<Travelers>();
+	private AgentRegistry registry = new AgentRegistry(); //location and traveller agents, indexed by their ids.
 	private ArrayList<Integer> alStatus = new ArrayList<Integer>(); //This will maintain the status of each locationAgent
 	private int iTickCounter = ConstantsDefinition.ONE; //Time ticks counter
 	private int iNoTravellerAgents; //set during init
 	private int iNoLocationAgents; //This will have to be dynamically updated based on the msgs sent to,
 	boolean bRxFromTraveller = true; //maintain whether comm is expected from traveler or location. Comm is init from Traveller.
 	public static final Logger log = Logger.getLogger(PostOffice.class);
-	private ArrayList<Integer> alRxdMsgFrom = new ArrayList<Integer>(); //list of agents from which msg has been rxd in this cycle.
-	private ArrayList<ArrayList<Message>> alRxdMsgsFromAgents = new ArrayList<ArrayList<Message>>();//collection of all msgs rxd from agents in a cycle
-	private HashMap<String, ArrayList<Message>> mapMsgsForTx = new HashMap<String, ArrayList<Message>>();//collection of msgs to be tx in a cycle, indexed by receiver name
+	private BitSet bsRxdMsgFrom = new BitSet(); //ids of the agents from which msg has been rxd in this cycle.
+	private ArrayList<ArrayList<ScheduleMessage>> alRxdMsgsFromAgents = new ArrayList<ArrayList<ScheduleMessage>>();//collection of all msgs rxd from agents in a cycle
+	private MessageBuckets locationBuckets = new MessageBuckets(); //msgs from the travellers, grouped by location. reused every round
+	private MessageBuckets travellerBuckets = new MessageBuckets(); //msgs from the locations, grouped by traveller. reused every round
+	private MessageBuckets msgsForTx = locationBuckets; //collection of msgs to be tx in a cycle, grouped by receiver
 	private int iDWSize; //size of the Deliberation Window. to be set to Location agents.
 	long time;
 	private long totalAgentCost=0 , finalisedAgentInitialCost = 0;
-	private HashMap<Integer, Long> hmAgentCost = new HashMap<Integer, Long>();
 	private long timeNano;
 	private int iFinalisedCount=0, iTerminatedCount = 0, iTotalTravellers=0;
 	boolean bFinalisedRx = false;
 	private int iScheduleStrategy;
+	private int iParallelism = 1; //number of threads on which the location and traveller phases are run.
+	private SuperstepExecutor superstep;
+	private boolean bActorMode = false; //whether the agents are run as actors.
+	private boolean bAsyncMode = false; //whether the msgs are routed without the lockstep rounds.
+	private ActorRuntime actorRuntime; //set while the schedule is generated in the actor mode.
+	private List<InetSocketAddress> alShardAddresses; //addresses of the location shards. null if the locations are hosted by the PO.
+	private ArrayList<RemoteShard> alShards; //connections to the shards, while the schedule is generated.
+	private int iShardLocationCount = 0; //number of location agents run on all the shards, in the last location phase
+	private int iActiveLocationCount = 0; //number of location agents run in the last location phase
+	private boolean bLeasedReservations = false; //whether the locations hold the DW reservations as leases.
+	private boolean bTravellersWaiting = false; //whether a traveller was silent in the round, waiting on its leases.
+	private RoadNetwork roadNetwork = null; //network on which the travellers search their paths themselves. null to use JGraphTUtil.
+	private LifelongPlanner.Heuristic heuristic = LifelongPlanner.NO_ESTIMATE; //estimate guiding the searches on roadNetwork
+	private boolean bContractNetwork = false; //whether the paths without exclusions are found by a contraction hierarchy of roadNetwork
+	private ContractionHierarchy hierarchy = null; //built from roadNetwork by the first generateSchedule which needs it
+	private boolean bSpaceTimePlanning = false; //whether the travellers plan their alternates around a snapshot of the holds of the locations
+	private HashMap<Integer, Integer> hmLocationStrategies = new HashMap<Integer, Integer>(); //strategies of the locations not scheduled by iScheduleStrategy, indexed by location id
 	public PostOffice(int noTravellers, int iDW, int iScheduleStrat)
 	{
 		iNoTravellerAgents = noTravellers;
@@ -58,9 +96,139 @@ public class PostOffice
 		PropertyConfigurator.configure("resources/config-properties/log4j.properties");
 	}
 
+	/**
+	 * Sets the number of worker threads on which the location phase and the traveller
+	 * phase of every round are run. The solution is the same as that of the sequential
+	 * run, since the msgs produced in a phase are merged in the order of the agents.
+	 * @param iThreads: 1 (default) runs the phases sequentially.
+	 */
+	public void setParallelism(int iThreads)
+	{
+		iParallelism = iThreads;
+	}
+
+	/**
+	 * Sets whether each traveller and location agent is run as an actor, on a virtual thread
+	 * where the JVM supports them. The responses of a phase are merged in the order of the
+	 * agent ids.
+	 * @param bActors: false (default) runs every agent in every round.
+	 */
+	public void setActorMode(boolean bActors)
+	{
+		bActorMode = bActors;
+	}
+
+	/**
+	 * Sets whether the negotiation is run asynchronously, ie. without the lockstep rounds in
+	 * which every traveller waits for all the locations and vice versa. The agents are then
+	 * run as actors. The solution depends on the order in which the msgs are processed and
+	 * hence can vary between runs.
+	 * @param bAsync: false (default) runs the negotiation in lockstep rounds.
+	 */
+	public void setAsynchronous(boolean bAsync)
+	{
+		bAsyncMode = bAsync;
+	}
+
+	/**
+	 * Sets the LocationShards which are to host the location agents, instead of the PO. The
+	 * shards have to be listening at these addresses when generateSchedule is invoked.
+	 * @param alAddresses: loopback addresses of the shards. null to host the locations in the PO.
+	 */
+	public void setLocationShards(List<InetSocketAddress> alAddresses)
+	{
+		alShardAddresses = alAddresses;
+	}
+
+	/**
+	 * Sets whether the locations hold the reservation of a traveller in its DW as a lease,
+	 * which lapses with the DW unless revoked by the location. Neither side then repeats
+	 * a DW msg every round. Supported only in the lockstep rounds run by the PO itself.
+	 * @param bLeases: false (default) has the DW msgs exchanged in every round.
+	 */
+	public void setLeasedReservations(boolean bLeases)
+	{
+		bLeasedReservations = bLeases;
+	}
+
+	/**
+	 * Sets the strategy by which a location schedules its requests, in place of the strategy
+	 * given to the PO, eg. to run a costlier strategy on the bottleneck edges only. The
+	 * strategy is the id of a LocationScheduler registered in LocationSchedulers. It is
+	 * applied when the location is created, hence it is to be set before generateSchedule.
+	 */
+	public void setLocationStrategy(int iLocationId, int iStrategy)
+	{
+		hmLocationStrategies.put(iLocationId, iStrategy);
+	}
+
+	/**
+	 * Sets the number of paths held in the PathCache shared by the travellers. The paths used
+	 * least recently are dropped beyond it.
+	 * @param iPaths: PathCache.DEFAULT_CAPACITY by default. 0 disables the cache.
+	 */
+	public void setPathCacheSize(int iPaths)
+	{
+		PathCache.getInstance().setCapacity(iPaths);
+	}
+
+	/**
+	 * Sets the network on which each traveller searches its path by a LifelongPlanner, which
+	 * is repaired as the traveller excludes edges, instead of the paths being found anew by
+	 * JGraphTUtil at every replan. It is to be set before generateSchedule.
+	 * The searches are guided by a LandmarkHeuristic with LandmarkHeuristic.DEFAULT_LANDMARKS.
+	 * The graph JGraphTUtil finds its paths on is adapted by JGraphTNetwork.
+	 * @param network: null (default) has the paths found by JGraphTUtil.
+	 */
+	public void setRoadNetwork(RoadNetwork network)
+	{
+		setRoadNetwork(network, LandmarkHeuristic.DEFAULT_LANDMARKS);
+	}
+
+	/**
+	 * Sets the network as above, with the number of landmarks of the LandmarkHeuristic. The
+	 * distances from and to the landmarks are found here, once for all the travellers.
+	 * @param iLandmarks: 0 to search without an estimate, ie. as Dijkstra's search.
+	 */
+	public void setRoadNetwork(RoadNetwork network, int iLandmarks)
+	{
+		roadNetwork = network;
+		hierarchy = null;
+		if(network == null || iLandmarks <= 0)
+			heuristic = LifelongPlanner.NO_ESTIMATE;
+		else
+			heuristic = new LandmarkHeuristic(network, iLandmarks);
+	}
+
+	/**
+	 * Sets whether the paths which do not have to avoid any edge, as the initial paths of the
+	 * travellers, are found by a ContractionHierarchy of the road network. The hierarchy is
+	 * built once, by generateSchedule, and shared by the travellers. The paths which avoid
+	 * edges are still found by the LifelongPlanner of each traveller.
+	 * @param bContract: false (default) finds all the paths by the planners. Needs a road network.
+	 */
+	public void setContractionHierarchy(boolean bContract)
+	{
+		bContractNetwork = bContract;
+	}
+
+	/**
+	 * Sets whether the travellers plan their alternate paths around the holds of the locations:
+	 * after every location phase, the PO takes a ReservationSnapshot of the confirmed and the
+	 * proposed schedules of the locations, and the travellers time their alternates around it,
+	 * with the waits built in. On a road network the paths are searched by SpaceTimePlanner.
+	 * Supported only in the lockstep rounds run by the PO itself.
+	 * @param bSpaceTime: false (default) plans the alternates without regard to the holds.
+	 */
+	public void setSpaceTimePlanning(boolean bSpaceTime)
+	{
+		bSpaceTimePlanning = bSpaceTime;
+	}
+
 	public void setTravellers(ArrayList<Travelers> listTravellers)
 	{
-		alTravellers.addAll(listTravellers);
+		for(Travelers traveller:listTravellers)
+			registry.addTraveller(traveller);
 	}
 
 	/**
@@ -76,7 +244,7 @@ public class PostOffice
 	 *       
 	 *  @param alRxdMsg: list of all messages from an agent.
 	 */
-	public void receiveMessage(ArrayList<Message> alRxdMsg)
+	public void receiveMessage(ArrayList<ScheduleMessage> alRxdMsg)
 	{
 		log.debug("receive Msg:"+ bRxFromTraveller);
 		//Check if msg is expected from Traveller
@@ -89,29 +257,34 @@ public class PostOffice
 
 			//check if msgs have been rxd from all the agents expected from
 			if(allMsgsRxd(agentType))
-			{
-				//aggregate the msgs, and start sending to corresponding location agents.
-				aggregate();
-
-				//reset the bRxFromTraveller
-				bRxFromTraveller = !bRxFromTraveller;
-
-				//clear up the tmp store of received msgs.
-				alRxdMsgsFromAgents.clear();
+				dispatch(agentType);
+		}//end if msg is valid	 
+	}
 
-				//increment the time counter
-				if(agentType.equalsIgnoreCase(ConstantsDefinition.LOCATION))
-					iTickCounter++;
+	/**
+	 * This function will aggregate the msgs collected in this cycle from the agents of 
+	 * type agentType and send them to the respective receivers.
+	 * @param agentType : T or L, type of the senders
+	 */
+	private void dispatch(String agentType)
+	{
+		//aggregate the msgs, and start sending to corresponding location agents.
+		aggregate(agentType);
 
-				//send the msgs to respective Agents
-				transmitMessage(agentType);
+		//reset the bRxFromTraveller
+		bRxFromTraveller = !bRxFromTraveller;
 
+		//clear up the tmp store of received msgs.
+		alRxdMsgsFromAgents.clear();
 
+		//increment the time counter
+		if(agentType.equalsIgnoreCase(ConstantsDefinition.LOCATION))
+			iTickCounter++;
 
+		//send the msgs to respective Agents
+		transmitMessage(agentType);
 
-				log.debug(bRxFromTraveller);
-			}//end if all msgs have been received
-		}//end if msg is valid	 
+		log.debug(bRxFromTraveller);
 	}
 
 	/**
@@ -127,14 +300,15 @@ public class PostOffice
 		log.debug("allMsgRxd from "+agentType);
 		if(agentType.equalsIgnoreCase(ConstantsDefinition.LOCATION))
 		{
-			log.debug("Expecting "+alLocationAgents.size()+ " rxd "+alRxdMsgFrom.size());
-			if(alRxdMsgFrom.size() == alLocationAgents.size())
+			int iLocationCount = alShards==null?iActiveLocationCount:iShardLocationCount;
+			log.debug("Expecting "+iLocationCount+ " rxd "+bsRxdMsgFrom.cardinality());
+			if(bsRxdMsgFrom.cardinality() == iLocationCount)
 				return true;
 		}
 		else
 		{
-			log.debug("Expecting "+iNoTravellerAgents+ " rxd "+alRxdMsgFrom.size());
-			if(alRxdMsgFrom.size() == iNoTravellerAgents)
+			log.debug("Expecting "+iNoTravellerAgents+ " rxd "+bsRxdMsgFrom.cardinality());
+			if(bsRxdMsgFrom.cardinality() == iNoTravellerAgents)
 				return true;
 		}
 		log.debug("allMsgRxd:false");
@@ -143,16 +317,15 @@ public class PostOffice
 
 	/**
 	 *  This function will transmit the collected and aggregated messages to all
-	 *  the respective agents. The messages to be transmitted are in mapMsgsForTx.
-	 *  They are indexed by receiver id. Each index value is prepended with either
-	 *  T or L followed by agentId. 
+	 *  the respective agents. The messages to be transmitted are in msgsForTx,
+	 *  grouped by the receiver id.
 	 *  
 	 *  @param agentType: type of the sender of the msg
 	 */
 	private void transmitMessage(String senderAgentType) 
 	{
 		//Clear the rxdMsgFrom 
-		alRxdMsgFrom.clear();
+		bsRxdMsgFrom.clear();
 		//If the sender is the Traveller agent, then the transmit has to happen to Location
 		if(senderAgentType.equalsIgnoreCase(ConstantsDefinition.TRAVELLER))
 		{
@@ -175,95 +348,183 @@ public class PostOffice
 	 */
 	private void transmitToLocation()
 	{
-		log.debug("transmit to Location"+mapMsgsForTx.keySet());
-		boolean bDeleteAgent = true;
-		ArrayList<Integer>alDeleteAgents = new ArrayList<Integer>();
-		log.debug("location agents"+alLocationAgents.size()+" "+mapMsgsForTx.keySet());
+		log.debug("transmit to Location"+msgsForTx.receiversToString());
+		if(alShards != null)
+		{
+			transmitToShards();
+			return;
+		}
+		log.debug("location agents"+registry.getLocationCount()+" "+msgsForTx.receiversToString());
+		int iHorizon = registry.getHorizon();
 
-		for(String agent:mapMsgsForTx.keySet())
+		for(int i=0; i<msgsForTx.getReceiverCount(); i++)
 		{
-			boolean bAgentExists = false;
+			//All msgs in the list are for the same location
+			ArrayList<ScheduleMessage> msgList = msgsForTx.getBucket(i);
+			int agentId = msgsForTx.getReceiverId(i);
 
 			//Check if the agent exists, else create it
-			int agentId = Integer.parseInt(agent.replace(ConstantsDefinition.LOCATION, ""));
-
-			for (LocationAgent locAgent:alLocationAgents)
+			LocationAgent locAgent = registry.getLocation(agentId);
+			if (locAgent != null)
 			{
-				//				log.debug("Existing Agent"+locAgent.getLocationId()+" with "+agentId);
-
-				if (locAgent.getLocationId() == agentId)
+				//Check if the msgs are only REJECT or FINALIZE. If so, the finalised periods are held as
+				//constraints, and the agent is passivated rather than deleted, to be revived by the next msg.
+				//A location holding leases is kept active, as those travellers do not send msgs every round.
+				if(onlyWithdrawals(msgList) && !locAgent.holdsLeases())
 				{
-					bAgentExists = true;
-
-					//Check if the msgs are only REJECT. If so, mark the agent for deletion
-					ArrayList<Message> msgList = mapMsgsForTx.get(agent);
-					bDeleteAgent = true;
-
-					for(Message msg:msgList)
-					{
-						if(Integer.parseInt(msg.getBody().split(ConstantsDefinition.MSGBODY_DELIMITER)[ConstantsDefinition.STATUS_INDEX])!=ConstantsDefinition.REJECT)
-						{
-							bDeleteAgent = false;
-							break;
-						}//end if not reject
-					}//end for all msg
-
-					if(bDeleteAgent)
-						alDeleteAgents.add(agentId);
-					//		log.debug("Transmitted to location");
-					//transmit the msg to the locationAgent
-					locAgent.receiveMessage(mapMsgsForTx.get(agent));
-					break;
-				}//end if agentId
-			}//end for all location agents
-
-			//log.debug("Agent Exists"+bAgentExists);
-			if(!bAgentExists)
+					locAgent.finalise(msgList);
+					registry.passivateLocation(agentId);
+					continue;
+				}
+				//		log.debug("Transmitted to location");
+				//transmit the msg to the locationAgent
+				locAgent.setHorizon(iHorizon);
+				if(actorRuntime == null)
+				{
+					locAgent.receiveMessage(msgList);
+					registry.activateLocation(agentId);
+				}
+				else
+				{
+					registry.reviveLocation(agentId);
+					locationActor(locAgent).tell(msgList);
+				}
+			}
+			else
 			{
 				//	log.debug("Create Agent"+agentId);
-				//Create and add to the list
-				LocationAgent locAgent = new LocationAgent(agentId, iDWSize, this, iScheduleStrategy);
-				alLocationAgents.add(locAgent);
+				//Create and add to the registry
+				locAgent = createLocation(agentId);
 
 				log.debug("Transmitted to location");
 				//transmit the msg
-				locAgent.receiveMessage(mapMsgsForTx.get(agent));
+				locAgent.setHorizon(iHorizon);
+				if(actorRuntime == null)
+				{
+					locAgent.receiveMessage(msgList);
+					registry.activateLocation(agentId);
+				}
+				else
+					locationActor(locAgent).tell(msgList);
 			}
 
 		}
+		//receiveMessage(listMsgFromLocation);
 
-		/*
-		 * ArrayList<Message> listMsgFromLocation = new ArrayList<Message>();
-		 * 
-		 * for (LocationAgent locAgent:alLocationAgents)
-		 * listMsgFromLocation.addAll(locAgent.processMsg());
-		 * 
-		 */
-		/*ExecutorService executor = Executors.newFixedThreadPool(5);
-		for (LocationAgent loc: alLocationAgents)
+	}
+
+	/**
+	 * @return true if all the msgs in the list are REJECT or FINALIZE, ie. all their travellers
+	 * have withdrawn from the location.
+	 */
+	static boolean onlyWithdrawals(List<ScheduleMessage> msgList)
+	{
+		for(ScheduleMessage msg:msgList)
 		{
-			executor.execute(loc);
-		}
-		executor.shutdown();
-		while (!executor.isTerminated()) {
+			if(msg.getStatus()!=ConstantsDefinition.REJECT && msg.getStatus()!=ConstantsDefinition.FINALIZE)
+				return false;
+		}//end for all msg
+		return true;
+	}
+
+	/**
+	 * This function forwards the msgs from the Traveller agents to the shards hosting
+	 * their receivers. Each shard creates and deletes its location agents as the PO does.
+	 */
+	private void transmitToShards()
+	{
+		ArrayList<ArrayList<ArrayList<ScheduleMessage>>> alShardMsgs = new ArrayList<ArrayList<ArrayList<ScheduleMessage>>>();
+		for(int i=0; i<alShards.size(); i++)
+			alShardMsgs.add(new ArrayList<ArrayList<ScheduleMessage>>());
+
+		for(int i=0; i<msgsForTx.getReceiverCount(); i++)
+			alShardMsgs.get(ShardProtocol.shardOf(msgsForTx.getReceiverId(i), alShards.size())).add(msgsForTx.getBucket(i));
+
+		int iHorizon = registry.getHorizon();
+		for(int i=0; i<alShards.size(); i++)
+		{
+			if(alShardMsgs.get(i).isEmpty())
+				continue;
+			try
+			{
+				alShards.get(i).deliver(alShardMsgs.get(i), iHorizon);
+			}
+			catch(IOException e)
+			{
+				throw new IllegalStateException("Could not forward msgs to "+alShards.get(i), e);
+			}
 		}
-		 */
+	}
 
-		//After completion of the transmission, delete the agents which had only REJECT msgs
-		for(Integer agentId:alDeleteAgents)
+	/**
+	 * This function runs the location phase on all the shards. The phase is requested from
+	 * all of them before the msgs of any is read, so the shards process their locations
+	 * at the same time.
+	 * @return msgs from the locations, in the order of the shards.
+	 */
+	private ArrayList<ScheduleMessage> processOnShards()
+	{
+		ArrayList<ScheduleMessage> listMsgFromLocation = new ArrayList<ScheduleMessage>();
+		RemoteShard shard = null;
+		try
 		{
-			//Iterate through the alLocation to find the corresponding agentId and delete it
-			Iterator<LocationAgent> iter = alLocationAgents.iterator();
-			while(iter.hasNext())
+			for(RemoteShard remoteShard:alShards)
+			{
+				shard = remoteShard;
+				shard.requestProcess();
+			}
+			iShardLocationCount = 0;
+			for(RemoteShard remoteShard:alShards)
 			{
-				LocationAgent locAgent = iter.next();
-				if(locAgent.getLocationId() == agentId)
-					iter.remove();
+				shard = remoteShard;
+				listMsgFromLocation.addAll(shard.readProcessed());
+				iShardLocationCount += shard.getLocationCount();
+			}
+		}
+		catch(IOException e)
+		{
+			throw new IllegalStateException("Location phase failed on "+shard, e);
+		}
+		return listMsgFromLocation;
+	}
 
+	/**
+	 * This function connects to the location shards and initialises them.
+	 */
+	private void connectShards()
+	{
+		alShards = new ArrayList<RemoteShard>();
+		for(InetSocketAddress address:alShardAddresses)
+		{
+			try
+			{
+				RemoteShard shard = new RemoteShard(address);
+				shard.init(iDWSize, iScheduleStrategy, hmLocationStrategies, iParallelism);
+				alShards.add(shard);
+			}
+			catch(IOException e)
+			{
+				closeShards();
+				throw new IllegalStateException("Could not connect to the shard at "+address, e);
 			}
 		}
-		//receiveMessage(listMsgFromLocation);
+		iShardLocationCount = 0;
+	}
 
+	private void closeShards()
+	{
+		for(RemoteShard shard:alShards)
+		{
+			try
+			{
+				shard.close();
+			}
+			catch(IOException e)
+			{
+				log.error("Could not shut down "+shard, e);
+			}
+		}
+		alShards = null;
 	}
 
 	/**
@@ -272,35 +533,58 @@ public class PostOffice
 	 */
 	private void transmitToTraveller()
 	{
-		log.debug("Transmit to Traveller"+mapMsgsForTx.keySet());
-		for(String agent:mapMsgsForTx.keySet())
+		log.debug("Transmit to Traveller"+msgsForTx.receiversToString());
+		for(int i=0; i<msgsForTx.getReceiverCount(); i++)
 		{
-			int agentId = Integer.parseInt(agent.replace(ConstantsDefinition.TRAVELLER, ""));
-			for(Travelers traveller:alTravellers)
+			//All msgs in the list are for the same traveller
+			ArrayList<ScheduleMessage> msgList = msgsForTx.getBucket(i);
+			Travelers traveller = registry.getTraveller(msgsForTx.getReceiverId(i));
+			if(traveller != null)
 			{
-			//	log.debug(agentId+" "+traveller.getAgentId());
-				if(agentId == traveller.getAgentId())
-				{
-					log.debug(mapMsgsForTx.get(agent));
-					traveller.receive(mapMsgsForTx.get(agent));
-				}
+				log.debug(msgList);
+				if(actorRuntime == null)
+					traveller.receive(msgList);
+				else
+					travellerActor(traveller).tell(msgList);
 			}
 		}
+	}
 
+	private LocationAgent createLocation(int iLocationId)
+	{
+		LocationAgent locAgent = new LocationAgent(iLocationId, iDWSize, this, hmLocationStrategies.getOrDefault(iLocationId, iScheduleStrategy));
+		locAgent.setStandingRequests(bAsyncMode);
+		locAgent.setLeasedReservations(bLeasedReservations);
+		registry.addLocation(locAgent);
+		return locAgent;
+	}
 
-
-
-		/*ExecutorService executor = Executors.newFixedThreadPool(5);
-		for (Travelers traveler: alTravellers)
+	/**
+	 * @return the actor running the location agent. It is created on the first msg to the agent.
+	 */
+	private AgentActor<LocationAgent> locationActor(LocationAgent locAgent)
+	{
+		AgentActor<LocationAgent> actor = registry.getLocationActor(locAgent.getLocationId());
+		if(actor == null || actor.getAgent() != locAgent)
 		{
-			executor.execute(traveler);
+			actor = new AgentActor<LocationAgent>(locAgent, locAgent.getLocationId(), locAgent.getMailbox(), LocationAgent::processMsg, actorRuntime);
+			registry.setLocationActor(locAgent.getLocationId(), actor);
 		}
-		executor.shutdown();
-		while (!executor.isTerminated()) {
-		}
-		System.out.println("Finished all threads");
-		 */
+		return actor;
+	}
 
+	/**
+	 * @return the actor running the traveller. It is created on the first msg to the traveller.
+	 */
+	private AgentActor<Travelers> travellerActor(Travelers traveller)
+	{
+		AgentActor<Travelers> actor = registry.getTravellerActor(traveller.getAgentId());
+		if(actor == null)
+		{
+			actor = new AgentActor<Travelers>(traveller, traveller.getAgentId(), traveller.getMailbox(), Travelers::processMsg, actorRuntime);
+			registry.setTravellerActor(traveller.getAgentId(), actor);
+		}
+		return actor;
 	}
 
 
@@ -309,34 +593,16 @@ public class PostOffice
 	 * This function will collect all the msgs received and sort them into containers
 	 * based on the receiver. 
 	 * The messages  are in the alRxdMsgsFromAgents, where every element is list of msgs 
-	 * from same sender to different receivers.
+	 * from same sender to different receivers. The msgs from the travellers and those from
+	 * the locations are grouped in separate buckets, as the buckets handed to the agents of
+	 * one type are still in use while the msgs for the other type are grouped.
+	 * @param agentType : T or L, type of the senders
 	 */
-	private void aggregate() 
+	private void aggregate(String agentType) 
 	{
-		//Iterate through every element in the alRxdMsgsFromAgents.
-		//Each element is a list from the same sender, iterate thru the list.
-		//Depending on the receiver, create ArrayList to put the msg based on the receiver.
 		log.debug("aggregate");
-		mapMsgsForTx.clear();
-
-		for(ArrayList<Message>msgList:alRxdMsgsFromAgents)
-		{
-			for(Message msg:msgList)
-			{
-				//Check if the agent id is new or pre-existing and add to corresponding bin
-				if(mapMsgsForTx.containsKey(msg.getReceiver()))
-				{
-					mapMsgsForTx.get(msg.getReceiver()).add(msg);
-				}
-				else
-				{
-					ArrayList<Message> listMsg = new ArrayList<Message>();
-					listMsg.add(msg);
-					mapMsgsForTx.put(msg.getReceiver(), listMsg);
-				}//end else
-
-			}//end for msg
-		}//end for msglist
+		msgsForTx = agentType.equalsIgnoreCase(ConstantsDefinition.TRAVELLER)?locationBuckets:travellerBuckets;
+		msgsForTx.group(alRxdMsgsFromAgents);
 	}//end function
 
 	/**
@@ -347,27 +613,32 @@ public class PostOffice
 	 * @param strAgentType: type of agent expected
 	 * @return bool 
 	 */
-	private boolean validateMsg(ArrayList<Message> alRxdMsg, String agentType) 
+	private boolean validateMsg(ArrayList<ScheduleMessage> alRxdMsg, String agentType) 
 	{
-		log.debug("validate Msg from "+ agentType + alRxdMsg + alRxdMsgFrom);
+		if(log.isDebugEnabled())
+			log.debug("validate Msg from "+ agentType + alRxdMsg + bsRxdMsgFrom);
 		//Since all the msgs in this are from the same agent, hence only validate the first msg.
-		for(Message msg :alRxdMsg)
+		for(ScheduleMessage msg :alRxdMsg)
 		{
-			if(!msg.getSender().startsWith(agentType))
+			if(!msg.getSenderType().equals(agentType))
 			{
 				log.error("Expected msg from "+agentType+", received from "+msg.getSender());
 				return false;
 			}
 			
 			
-			int iAgentId = Integer.parseInt(msg.getSender().replace(agentType, "").split(ConstantsDefinition.SENDER_DELIMITER)[0]);
-			if(alRxdMsgFrom.contains(iAgentId))
+			//A FINALIZE msg is sent on behalf of a traveller which has been retired, and is not expected from.
+			if(msg.getStatus()==ConstantsDefinition.FINALIZE && agentType.equals(ConstantsDefinition.TRAVELLER))
+				continue;
+
+			int iAgentId = msg.getSenderId();
+			if(bsRxdMsgFrom.get(iAgentId))
 			{
 				/*log.error("Already received msg from "+iAgentId+". Returning false");
 				return false;*/
 			}
 			else
-				alRxdMsgFrom.add(iAgentId);
+				bsRxdMsgFrom.set(iAgentId);
 		}
 		return true;
 	}
@@ -376,40 +647,100 @@ public class PostOffice
 		time = System.currentTimeMillis();
 		//timeNano = System.nanoTime();
 		int iInitialCost = 0;
-		HashMap<Integer, ArrayList<Message>> hmReceivedMsgFromTraveller = new HashMap<>();
-		alRxdMsgFrom.clear();
+		HashMap<Integer, ArrayList<ScheduleMessage>> hmReceivedMsgFromTraveller = new HashMap<>();
+		bsRxdMsgFrom.clear();
+		superstep = new SuperstepExecutor(iParallelism);
+		if(bLeasedReservations && (alShardAddresses != null || bAsyncMode || bActorMode))
+		{
+			log.error("The lease mode is supported only in the lockstep rounds run by the PO. Ignoring the lease mode");
+			bLeasedReservations = false;
+		}
+		if(bSpaceTimePlanning && (alShardAddresses != null || bAsyncMode || bActorMode))
+		{
+			log.error("The space-time planning is supported only in the lockstep rounds run by the PO. Ignoring the space-time planning");
+			bSpaceTimePlanning = false;
+		}
+		if(alShardAddresses != null)
+		{
+			if(bAsyncMode || bActorMode)
+				log.error("The sharded mode runs in lockstep rounds. Ignoring the actor/asynchronous mode");
+			connectShards();
+		}
+		else if(bAsyncMode)
+			actorRuntime = new ActorRuntime(this::routeAsync);
+		else if(bActorMode)
+			actorRuntime = new ActorRuntime();
+
+		if(bContractNetwork && roadNetwork != null && hierarchy == null)
+			hierarchy = new ContractionHierarchy(roadNetwork);
 
+		//plan the paths of all the travellers
+		ArrayList<Travelers> alTravellers = registry.getTravellers();
 		for(Travelers traveller:alTravellers)
 		{
+			traveller.setLeasedReservations(bLeasedReservations);
+			traveller.setRoadNetwork(roadNetwork, heuristic, bContractNetwork?hierarchy:null);
+		}
+		ArrayList<ArrayList<ScheduleMessage>> alInitialMsgs = superstep.run(alTravellers, Travelers::generateSchedule);
+
+		for(int i=0; i<alTravellers.size(); i++)
+		{
+			Travelers traveller = alTravellers.get(i);
 			//traveller.setPostOffice(postOfice);
-			ArrayList<Message> alMsg = new ArrayList<>(); 
-			alMsg.addAll(traveller.generateSchedule());
+			ArrayList<ScheduleMessage> alMsg = new ArrayList<>(); 
+			alMsg.addAll(alInitialMsgs.get(i));
 			hmReceivedMsgFromTraveller.put(traveller.getAgentId(), alMsg);
-			alRxdMsgFrom.add(traveller.getAgentId());
+			bsRxdMsgFrom.set(traveller.getAgentId());
 			alRxdMsgsFromAgents.add(alMsg);
 			iInitialCost+=traveller.getInitialCost();
 		}
 
-		sendToLocation(hmReceivedMsgFromTraveller);
+		if(bAsyncMode && actorRuntime != null)
+		{
+			negotiateAsynchronously(alTravellers, alInitialMsgs);
+			actorRuntime.shutdown();
+			actorRuntime = null;
+		}
+		else if(actorRuntime != null)
+		{
+			sendToLocation(hmReceivedMsgFromTraveller);
 
-		ArrayList<Message> alMsgFromTraveller= sendBackAndForth();
-		
-		while(alMsgFromTraveller.size()>0)
+			ArrayList<ScheduleMessage> alMsgFromTraveller = routeRound();
+			while(alMsgFromTraveller.size()>0)
+			{
+				alRxdMsgsFromAgents.add(alMsgFromTraveller);
+				dispatch(ConstantsDefinition.TRAVELLER);
+				alMsgFromTraveller = routeRound();
+			}
+			actorRuntime.shutdown();
+			actorRuntime = null;
+		}
+		else
+		{
+			sendToLocation(hmReceivedMsgFromTraveller);
+			ArrayList<ScheduleMessage> alMsgFromTraveller= sendBackAndForth();
+
+			while(alMsgFromTraveller.size()>0 || bTravellersWaiting)
 			{
-			 	receiveMessage(alMsgFromTraveller);
-			 	alMsgFromTraveller.clear();
-			 	alMsgFromTraveller.addAll(sendBackAndForth());
+				collect(alMsgFromTraveller);
+				alMsgFromTraveller.clear();
+				alMsgFromTraveller.addAll(sendBackAndForth());
 			}
+		}
+		superstep.shutdown();
+		if(alShards != null)
+			closeShards();
 		
 //			log.info("Completed. TIME:"+(System.currentTimeMillis()-time)+"msec Solution Cost"+totalAgentCost+ " Initial Cost:"+iInitialCost+" Finalised:"+iFinalisedCount+" Terminated:"+iTerminatedCount+" Total:"+iTotalTravellers);
 		long iDifference;
-		if(iFinalisedCount==alTravellers.size())
+		if(iFinalisedCount==registry.getTravellers().size())
 		{
 			iDifference = totalAgentCost-iInitialCost;
 			log.info("Completed. TIME:"+(System.currentTimeMillis()-time)+"msec Solution Cost"+totalAgentCost+ " Initial Cost:"+iInitialCost+" Finalised:"+iFinalisedCount+" Terminated:"+iTerminatedCount+" Total:"+iTotalTravellers + " FinalisedInitialCost:"+finalisedAgentInitialCost+" difference:"+iDifference);
 		}
 		else
 			log.info("Completed. TIME:"+(System.currentTimeMillis()-time)+"msec Solution Cost"+totalAgentCost+ " Initial Cost:"+iInitialCost+" Finalised:"+iFinalisedCount+" Terminated:"+iTerminatedCount+" Total:"+iTotalTravellers + " FinalisedInitialCost:"+finalisedAgentInitialCost+" Difference:NA");
+		log.info("Path cache "+PathCache.getInstance());
 		
 		
 		
@@ -418,51 +749,37 @@ public class PostOffice
 	}
 
 	
-	private ArrayList<Message> sendBackAndForth() 
+	private ArrayList<ScheduleMessage> sendBackAndForth() 
 	{
 		log.debug("sendBackAndForth");
-		ArrayList<Message> listMsgFromLocation = new ArrayList<Message>();
-		for (LocationAgent locAgent:alLocationAgents)
-			listMsgFromLocation.addAll(locAgent.processMsg());
-		receiveMessage(listMsgFromLocation); //This will collect, aggregate the msgs and tx to Travellers
-
-
-		ArrayList<Message>alMsgFromTraveller = new ArrayList<Message>();
-		for(Travelers traveller:alTravellers)
+		ArrayList<ScheduleMessage> listMsgFromLocation = new ArrayList<ScheduleMessage>();
+		if(alShards != null)
+			listMsgFromLocation.addAll(processOnShards());
+		else
 		{
-			ArrayList<Message>alMsgs = traveller.processMsg();
-			
-			if(alMsgs!=null)
-			{
-				alMsgFromTraveller.addAll(alMsgs);
-				log.debug("Rxd "+alMsgs.size()+" from T"+traveller.getAgentId());
-			}
-			else 
+			//Only the locations which have been sent msgs, or hold leases, have work in this phase.
+			ArrayList<LocationAgent> alLocations = registry.takeActiveLocations();
+			iActiveLocationCount = alLocations.size();
+			for (ArrayList<ScheduleMessage> alMsgs:superstep.run(alLocations, LocationAgent::processMsg))
+				listMsgFromLocation.addAll(alMsgs);
+			//a lease is timed by the ticks of its location, which hence has to be run every round.
+			for(LocationAgent locAgent:alLocations)
 			{
-				
-				int iAgentStatus = traveller.getAgentStatus();
-				log.debug("Returned null. T"+traveller.getAgentId()+" status:"+iAgentStatus);
-				
-				if(iAgentStatus==ConstantsDefinition.FINALIZE && !hmAgentCost.containsKey(traveller.getAgentId()))
-				{
-					totalAgentCost += traveller.agentCost;
-					finalisedAgentInitialCost += traveller.getInitialCost();
-				//	log.info("Agent:"+traveller.getAgentId()+" agentCost:"+traveller.agentCost+" initial cost:"+traveller.getInitialCost());
-					hmAgentCost.put(traveller.getAgentId(), traveller.agentCost);
-					iFinalisedCount++;
-					log.debug("Finalised. T"+traveller.getAgentId()+ "totalAgentCost"+totalAgentCost+" finalInitCost"+finalisedAgentInitialCost);
-					
-				}
-				else if(iAgentStatus == ConstantsDefinition.TERMINATE)
-					iTerminatedCount++;
-				else
-					log.error("One of the message is null. AgentStatus="+iAgentStatus);
-				//remove it from the expected list
-				iNoTravellerAgents--;
-				log.debug("Returned null. T"+traveller.getAgentId()+" status:"+iAgentStatus+"Terminated"+iTerminatedCount+" Finalised"+iFinalisedCount);
-				bFinalisedRx = true;
+				if(locAgent.holdsLeases())
+					registry.activateLocation(locAgent.getLocationId());
 			}
 		}
+		collect(listMsgFromLocation); //This will collect, aggregate the msgs and tx to Travellers
+
+
+		ArrayList<ScheduleMessage>alMsgFromTraveller = new ArrayList<ScheduleMessage>();
+		bTravellersWaiting = false;
+		ArrayList<Travelers> alTravellers = registry.getActiveTravellers();
+		if(bSpaceTimePlanning)
+			shareReservations(alTravellers);
+		ArrayList<ArrayList<ScheduleMessage>> alTravellerMsgs = superstep.run(alTravellers, Travelers::processMsg);
+		for(int i=0; i<alTravellers.size(); i++)
+			collectTravellerMsgs(alTravellers.get(i), alTravellerMsgs.get(i), alMsgFromTraveller);
 		
 		if(bFinalisedRx)
 		{
@@ -471,29 +788,193 @@ public class PostOffice
 		return alMsgFromTraveller;
 	}
 
-	private void sendToLocation(HashMap<Integer, ArrayList<Message>> hmReceivedMsgFromTraveller) 
+	/**
+	 * This function takes a snapshot of the holds of all the locations, once the location phase
+	 * is over, and hands it to the travellers, which plan around it in the traveller phase.
+	 */
+	private void shareReservations(ArrayList<Travelers> alTravellers)
+	{
+		ReservationSnapshot.Builder builder = new ReservationSnapshot.Builder();
+		for(LocationAgent locAgent:registry.getLocations())
+			locAgent.addHolds(builder);
+		ReservationSnapshot reservations = builder.build();
+		log.debug("Reservations "+reservations);
+		for(Travelers traveller:alTravellers)
+			traveller.setReservations(reservations);
+	}
+
+	/**
+	 * This function hands the msgs of a phase to the PO. In the lease mode, the agents with
+	 * nothing new to send are silent, so the msgs are dispatched without waiting for msgs
+	 * from every agent.
+	 */
+	private void collect(ArrayList<ScheduleMessage> alMsgs)
+	{
+		if(!bLeasedReservations)
+		{
+			receiveMessage(alMsgs);
+			return;
+		}
+		String agentType = bRxFromTraveller?ConstantsDefinition.TRAVELLER:ConstantsDefinition.LOCATION;
+		if(validateMsg(alMsgs, agentType))
+		{
+			alRxdMsgsFromAgents.add(alMsgs);
+			dispatch(agentType);
+		}
+	}
+
+	/**
+	 * This function is the counterpart of sendBackAndForth in the actor mode. It waits till the
+	 * location actors, which have been sent msgs, have responded and routes their responses to
+	 * the traveller actors. It then waits for the responses of those travellers.
+	 * @return msgs from the travellers to be sent to the locations in the next round.
+	 */
+	private ArrayList<ScheduleMessage> routeRound()
+	{
+		log.debug("routeRound");
+		actorRuntime.awaitQuiescence();
+		ArrayList<ScheduleMessage> listMsgFromLocation = new ArrayList<ScheduleMessage>();
+		for(AgentActor<?> actor:actorRuntime.drainCompleted())
+			listMsgFromLocation.addAll(actor.takeOutput());
+		alRxdMsgsFromAgents.add(listMsgFromLocation);
+		dispatch(ConstantsDefinition.LOCATION); //This will aggregate the msgs and tx to the traveller actors
+
+		actorRuntime.awaitQuiescence();
+		ArrayList<ScheduleMessage> alMsgFromTraveller = new ArrayList<ScheduleMessage>();
+		for(AgentActor<?> actor:actorRuntime.drainCompleted())
+			collectTravellerMsgs((Travelers)actor.getAgent(), actor.takeOutput(), alMsgFromTraveller);
+		return alMsgFromTraveller;
+	}
+
+	/**
+	 * This function runs the negotiation in the asynchronous mode. The initial msgs of the
+	 * travellers are routed, after which the agents exchange msgs through routeAsync till
+	 * none of them has any msg to react to.
+	 */
+	private void negotiateAsynchronously(ArrayList<Travelers> alTravellers, ArrayList<ArrayList<ScheduleMessage>> alInitialMsgs)
 	{
-		//if(allMsgsRxd(ConstantsDefinition.TRAVELLER))
+		log.debug("negotiateAsynchronously");
+		alRxdMsgsFromAgents.clear();
+		synchronized (this)
+		{
+			for(int i=0; i<alTravellers.size(); i++)
+				routeFromTraveller(alTravellers.get(i), alInitialMsgs.get(i));
+		}
+
+		//Termination: no activation is pending, hence no msg is in transit either.
+		actorRuntime.awaitQuiescence();
+
+		for(Travelers traveller:alTravellers)
+		{
+			AgentActor<Travelers> actor = registry.getTravellerActor(traveller.getAgentId());
+			if(actor != null && actor.isAwaiting())
+				log.error("T"+traveller.getAgentId()+" is awaiting responses after the negotiation has terminated");
+		}
+	}
+
+	/**
+	 * This function is invoked by the ActorRuntime, in the asynchronous mode, with the msgs
+	 * returned by an agent. The msgs are routed to their receivers at once. It is synchronized
+	 * as the agents run on multiple threads, while the registry and the counters are shared.
+	 */
+	private synchronized void routeAsync(AgentActor<?> sender, ArrayList<ScheduleMessage> alMsgs)
+	{
+		if(sender.getAgent() instanceof Travelers)
 		{
-			//aggregate the msgs, and start sending to corresponding location agents.
-			aggregate();
+			routeFromTraveller((Travelers)sender.getAgent(), alMsgs);
+			return;
+		}
 
-			//reset the bRxFromTraveller
-			bRxFromTraveller = !bRxFromTraveller;
+		for(ScheduleMessage msg:alMsgs)
+		{
+			Travelers traveller = registry.getTraveller(msg.getReceiverId());
+			if(traveller != null)
+				travellerActor(traveller).tell(Collections.singletonList(msg));
+		}
+	}
 
-			//clear up the tmp store of received msgs.
-			alRxdMsgsFromAgents.clear();
+	/**
+	 * This function routes the msgs of a traveller to the location actors, creating the locations
+	 * not seen before. The traveller is made to await a response from every location other than
+	 * those being sent a REJECT or a FINALIZE.
+	 */
+	private void routeFromTraveller(Travelers traveller, ArrayList<ScheduleMessage> alMsgs)
+	{
+		ArrayList<ScheduleMessage> alMsgFromTraveller = new ArrayList<ScheduleMessage>();
+		collectTravellerMsgs(traveller, alMsgs, alMsgFromTraveller);
 
-			//increment the time counter
-			/*if(agentType.equalsIgnoreCase(ConstantsDefinition.LOCATION))
-				iTickCounter++;
-			 */
-			//send the msgs to respective Agents
-			transmitMessage(ConstantsDefinition.TRAVELLER);
+		int iAwaited = 0;
+		for(ScheduleMessage msg:alMsgFromTraveller)
+		{
+			if(msg.getStatus()!=ConstantsDefinition.REJECT && msg.getStatus()!=ConstantsDefinition.FINALIZE)
+				iAwaited++;
+		}
+		travellerActor(traveller).await(iAwaited);
 
+		int iHorizon = registry.getHorizon();
+		for(ScheduleMessage msg:alMsgFromTraveller)
+		{
+			LocationAgent locAgent = registry.getLocation(msg.getReceiverId());
+			if(locAgent == null)
+			{
+				//nothing to withdraw from a location which does not exist
+				if(msg.getStatus()==ConstantsDefinition.REJECT || msg.getStatus()==ConstantsDefinition.FINALIZE)
+					continue;
+				locAgent = createLocation(msg.getReceiverId());
+			}
+			locAgent.setHorizon(iHorizon);
+			locationActor(locAgent).tell(Collections.singletonList(msg));
+		}
+	}
 
-			log.debug(bRxFromTraveller);
-		}//end if all msgs have been received	
+	/**
+	 * This function collects the msgs returned by a traveller in a round. A traveller returns null
+	 * once it has finalised or terminated, after which it is no more expected to send msgs, and
+	 * is retired from the active travellers. The FINALIZE msgs of a finalised traveller are
+	 * collected then, for its locations to hold the finalised periods as constraints.
+	 */
+	private void collectTravellerMsgs(Travelers traveller, ArrayList<ScheduleMessage> alMsgs, ArrayList<ScheduleMessage> alMsgFromTraveller)
+	{
+		if(alMsgs!=null)
+		{
+			alMsgFromTraveller.addAll(alMsgs);
+			log.debug("Rxd "+alMsgs.size()+" from T"+traveller.getAgentId());
+			//In the lease mode, a traveller in its DW is silent till a location revokes its lease.
+			if(alMsgs.isEmpty() && bLeasedReservations)
+				bTravellersWaiting = true;
+		}
+		else if(!registry.isRetired(traveller.getAgentId()))
+		{
+			
+			int iAgentStatus = traveller.getAgentStatus();
+			log.debug("Returned null. T"+traveller.getAgentId()+" status:"+iAgentStatus);
+			
+			registry.retireTraveller(traveller.getAgentId());
+			if(iAgentStatus==ConstantsDefinition.FINALIZE)
+			{
+				totalAgentCost += traveller.agentCost;
+				finalisedAgentInitialCost += traveller.getInitialCost();
+			//	log.info("Agent:"+traveller.getAgentId()+" agentCost:"+traveller.agentCost+" initial cost:"+traveller.getInitialCost());
+				iFinalisedCount++;
+				log.debug("Finalised. T"+traveller.getAgentId()+ "totalAgentCost"+totalAgentCost+" finalInitCost"+finalisedAgentInitialCost);
+				alMsgFromTraveller.addAll(traveller.takeFinaliseMsgs());
+				
+			}
+			else if(iAgentStatus == ConstantsDefinition.TERMINATE)
+				iTerminatedCount++;
+			else
+				log.error("One of the message is null. AgentStatus="+iAgentStatus);
+			//remove it from the expected list
+			iNoTravellerAgents--;
+			log.debug("Returned null. T"+traveller.getAgentId()+" status:"+iAgentStatus+"Terminated"+iTerminatedCount+" Finalised"+iFinalisedCount);
+			bFinalisedRx = true;
+		}
+	}
+
+	private void sendToLocation(HashMap<Integer, ArrayList<ScheduleMessage>> hmReceivedMsgFromTraveller) 
+	{
+		//if(allMsgsRxd(ConstantsDefinition.TRAVELLER))
+		dispatch(ConstantsDefinition.TRAVELLER);
 	}
 
-}
\ No newline at end of file
+}
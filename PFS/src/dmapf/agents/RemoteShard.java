@@ -0,0 +1,110 @@
+package dmapf.agents;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import dmapf.model.ScheduleMessage;
+
+/**
+ * This class is the PO's end of the connection to a LocationShard. The location phase is
+ * split into requestProcess and readProcessed, so that the PO can start the phase on all
+ * the shards before waiting for any of them.
+ *
+ * @author st
+ *
+ */
+class RemoteShard
+{
+	private final InetSocketAddress address;
+	private final Socket socket;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	private int iLocationCount = 0; //number of location agents run on the shard, in the last location phase
+
+	RemoteShard(InetSocketAddress address) throws IOException
+	{
+		this.address = address;
+		socket = new Socket(address.getAddress(), address.getPort());
+		socket.setTcpNoDelay(true);
+		in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+	}
+
+	/**
+	 * @param hmLocationStrategies: strategies of the locations not scheduled by iAllocStrategy, indexed by location id
+	 */
+	void init(int iDWSize, int iAllocStrategy, Map<Integer, Integer> hmLocationStrategies, int iParallelism) throws IOException
+	{
+		out.writeInt(ShardProtocol.INIT);
+		out.writeInt(iDWSize);
+		out.writeInt(iAllocStrategy);
+		out.writeInt(hmLocationStrategies.size());
+		for(Map.Entry<Integer, Integer> locationStrategy:hmLocationStrategies.entrySet())
+		{
+			out.writeInt(locationStrategy.getKey());
+			out.writeInt(locationStrategy.getValue());
+		}
+		out.writeInt(iParallelism);
+		out.flush();
+	}
+
+	/**
+	 * Forwards the msgs to the shard.
+	 * @param alMsgLists: one list of msgs per location of the shard
+	 * @param iHorizon: earliest start date of the travellers still negotiating
+	 */
+	void deliver(List<ArrayList<ScheduleMessage>> alMsgLists, int iHorizon) throws IOException
+	{
+		out.writeInt(ShardProtocol.DELIVER);
+		out.writeInt(iHorizon);
+		out.writeInt(alMsgLists.size());
+		for(ArrayList<ScheduleMessage> msgList:alMsgLists)
+			ShardProtocol.writeMsgs(out, msgList);
+		out.flush();
+	}
+
+	void requestProcess() throws IOException
+	{
+		out.writeInt(ShardProtocol.PROCESS);
+		out.flush();
+	}
+
+	/**
+	 * @return the msgs from the locations of the shard, in the location phase requested last.
+	 */
+	ArrayList<ScheduleMessage> readProcessed() throws IOException
+	{
+		iLocationCount = in.readInt();
+		return ShardProtocol.readMsgs(in);
+	}
+
+	int getLocationCount() {
+		return iLocationCount;
+	}
+
+	void close() throws IOException
+	{
+		try
+		{
+			out.writeInt(ShardProtocol.SHUTDOWN);
+			out.flush();
+		}
+		finally
+		{
+			socket.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Shard@"+address;
+	}
+}
@@ -0,0 +1,183 @@
+package dmapf.agents;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * This class is a read-only copy of the holds of the locations, as they stand after a
+ * location phase: the blocked windows of the confirmed schedules, and the allocations of the
+ * proposed schedules. The travellers plan around it in the traveller phase which follows, so
+ * that a replanned path comes with the waits which the locations would impose on it, instead
+ * of the waits being learnt from the PROPOSE responses a round later.
+ *
+ * As in FreeGapIndex, a request can start at s only if s is in none of the open blocked
+ * windows. An allocation at o blocks (o - hold, o + hold), and keeps the id of its traveller,
+ * so that a traveller is not delayed by its own allocations, which its new request replaces.
+ *
+ * The snapshot is taken by the PO between the phases and is not changed once built, hence it
+ * is shared by all the travellers, on any number of threads.
+ *
+ * @author st
+ *
+ */
+final class ReservationSnapshot
+{
+	static final int CONFIRMED = -1; //traveller id of the windows of the confirmed schedules
+	private static final int NO_LOCATION = -1;
+
+	private final HashMap<Integer, Holds> hmHolds; //blocked windows of each location, by location id
+	private final int iWindows; //number of blocked windows of all the locations
+
+	private ReservationSnapshot(HashMap<Integer, Holds> hmHolds, int iWindows)
+	{
+		this.hmHolds = hmHolds;
+		this.iWindows = iWindows;
+	}
+
+	/**
+	 * @return the earliest start from iStart at which the traveller's request to the location
+	 * does not overlap the hold of any allocation of another traveller, or a confirmed schedule.
+	 */
+	int earliestStart(int iLocationId, int iStart, int iAgentId)
+	{
+		Holds holds = hmHolds.get(iLocationId);
+		return holds == null?iStart:holds.earliestStart(iStart, iAgentId);
+	}
+
+	int getLocationCount() {
+		return hmHolds.size();
+	}
+
+	int getWindowCount() {
+		return iWindows;
+	}
+
+	@Override
+	public String toString() {
+		return "locations:"+hmHolds.size()+" windows:"+iWindows;
+	}
+
+	/**
+	 * Blocked windows of a location, in the order of their start. The windows of different
+	 * allocations may overlap, as they are not merged.
+	 */
+	private static final class Holds
+	{
+		private final int[] arrBlockStarts; //exclusive start of each blocked window, sorted
+		private final int[] arrBlockEnds; //exclusive end of each blocked window, in the same order
+		private final int[] arrAgentIds; //traveller holding each window. CONFIRMED for a confirmed schedule.
+		private final int iMaxWidth; //largest width of a window
+
+		Holds(int[] arrBlockStarts, int[] arrBlockEnds, int[] arrAgentIds, int iMaxWidth)
+		{
+			this.arrBlockStarts = arrBlockStarts;
+			this.arrBlockEnds = arrBlockEnds;
+			this.arrAgentIds = arrAgentIds;
+			this.iMaxWidth = iMaxWidth;
+		}
+
+		/**
+		 * The windows starting at or before iStart - iMaxWidth end at or before iStart, so the
+		 * search begins after them. A window which moves the start past its end is followed by
+		 * the windows starting before the new start, in their order, since the start only rises.
+		 */
+		int earliestStart(int iStart, int iAgentId)
+		{
+			int iLow = 0;
+			int iHigh = arrBlockStarts.length;
+			int iFrom = iStart - iMaxWidth;
+			while(iLow < iHigh)
+			{
+				int iMid = (iLow + iHigh) >>> 1;
+				if(arrBlockStarts[iMid] <= iFrom)
+					iLow = iMid + 1;
+				else
+					iHigh = iMid;
+			}
+			for(int i=iLow; i<arrBlockStarts.length && arrBlockStarts[i] < iStart; i++)
+			{
+				if(iStart < arrBlockEnds[i] && arrAgentIds[i] != iAgentId)
+					iStart = arrBlockEnds[i];
+			}
+			return iStart;
+		}
+	}
+
+	/**
+	 * Collects the blocked windows location by location. The windows of a location are added
+	 * after startLocation, and sorted when the next location is started or the snapshot is built.
+	 */
+	static final class Builder
+	{
+		private final HashMap<Integer, Holds> hmHolds = new HashMap<Integer, Holds>();
+		private int iWindows = 0;
+		private int iLocationId = NO_LOCATION; //location whose windows are being added
+		private int[] arrBlockStarts = new int[16];
+		private int[] arrBlockEnds = new int[16];
+		private int[] arrAgentIds = new int[16];
+		private long[] arrSortKeys = new long[16];
+		private int iSize = 0;
+		private final KeySort sorter = new KeySort();
+
+		void startLocation(int iLocationId)
+		{
+			finishLocation();
+			this.iLocationId = iLocationId;
+		}
+
+		/**
+		 * Adds the open window (iBlockStart, iBlockEnd) held by the traveller, to the location started last.
+		 */
+		void addBlock(int iBlockStart, int iBlockEnd, int iAgentId)
+		{
+			if(iSize == arrBlockStarts.length)
+			{
+				int iCapacity = iSize << 1;
+				arrBlockStarts = Arrays.copyOf(arrBlockStarts, iCapacity);
+				arrBlockEnds = Arrays.copyOf(arrBlockEnds, iCapacity);
+				arrAgentIds = Arrays.copyOf(arrAgentIds, iCapacity);
+				arrSortKeys = new long[iCapacity];
+			}
+			arrBlockStarts[iSize] = iBlockStart;
+			arrBlockEnds[iSize] = iBlockEnd;
+			arrAgentIds[iSize] = iAgentId;
+			iSize++;
+		}
+
+		ReservationSnapshot build()
+		{
+			finishLocation();
+			return new ReservationSnapshot(hmHolds, iWindows);
+		}
+
+		/**
+		 * Sorts the windows of the location by their start, and holds them against the location.
+		 * A location without windows is left out.
+		 */
+		private void finishLocation()
+		{
+			if(iSize > 0 && iLocationId != NO_LOCATION)
+			{
+				for(int i=0; i<iSize; i++)
+					arrSortKeys[i] = KeySort.sortKey(arrBlockStarts[i], i);
+				sorter.sort(arrSortKeys, iSize);
+				int[] arrStarts = new int[iSize];
+				int[] arrEnds = new int[iSize];
+				int[] arrAgents = new int[iSize];
+				int iMaxWidth = 0;
+				for(int i=0; i<iSize; i++)
+				{
+					int iWindow = KeySort.getEntry(arrSortKeys[i]);
+					arrStarts[i] = arrBlockStarts[iWindow];
+					arrEnds[i] = arrBlockEnds[iWindow];
+					arrAgents[i] = arrAgentIds[iWindow];
+					iMaxWidth = Math.max(iMaxWidth, arrEnds[i] - arrStarts[i]);
+				}
+				hmHolds.put(iLocationId, new Holds(arrStarts, arrEnds, arrAgents, iMaxWidth));
+				iWindows += iSize;
+			}
+			iSize = 0;
+			iLocationId = NO_LOCATION;
+		}
+	}
+}
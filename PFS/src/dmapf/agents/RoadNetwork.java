@@ -0,0 +1,44 @@
+package dmapf.agents;
+
+import java.util.Collection;
+
+/**
+ * This interface gives the travellers access to the road network itself, rather than to
+ * the paths found on it by JGraphTUtil, so that a traveller can keep its own search and
+ * repair it as it excludes edges. See LifelongPlanner.
+ *
+ * The nodes and edges are identified by the ids used in the paths. The functions follow
+ * those of the JGraphT Graph, so that a network held in JGraphT is adapted by delegating to
+ * its graph, see JGraphTNetwork. In an undirected network, the outgoing and the incoming edges of a node are
+ * both the edges touching it. The node set is used only to precompute the landmarks of the
+ * LandmarkHeuristic.
+ *
+ * @author st
+ *
+ */
+public interface RoadNetwork
+{
+	Collection<String> vertexSet();
+
+	Collection<String> outgoingEdgesOf(String strNode);
+
+	Collection<String> incomingEdgesOf(String strNode);
+
+	String getEdgeSource(String strEdge);
+
+	String getEdgeTarget(String strEdge);
+
+	/**
+	 * @return length of the edge, in the unit of the distance at the end of a path.
+	 */
+	double getEdgeWeight(String strEdge);
+
+	/**
+	 * @return the node at the other end of the edge from strNode.
+	 */
+	default String getOppositeNode(String strEdge, String strNode)
+	{
+		String strSource = getEdgeSource(strEdge);
+		return strSource.equals(strNode)?getEdgeTarget(strEdge):strSource;
+	}
+}
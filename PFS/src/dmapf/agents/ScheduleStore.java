@@ -0,0 +1,200 @@
+package dmapf.agents;
+
+import java.util.Arrays;
+
+import dmapf.constants.ConstantsDefinition;
+
+/**
+ * This class holds a list of schedule entries of a location as parallel int arrays: the
+ * status of the msg, the period, the traveller id, the DW count and the property (length
+ * or speed) of the traveller. It replaces the lists of "status#start%end#Tid#dw" Strings,
+ * which were composed for every msg and split again at every step of the scheduling.
+ *
+ * The arrays are retained when the list is cleared, so a location reuses their capacity
+ * every time it reschedules.
+ *
+ * The first entry of each traveller is found by indexOfAgent through an open addressing
+ * table of the entry positions, hashed on the traveller id. The table is filled lazily, up
+ * to the entries added since the last lookup, so a list which is never looked up does not
+ * maintain it.
+ *
+ * @author st
+ *
+ */
+class ScheduleStore
+{
+	private static final int INITIAL_CAPACITY = 8;
+
+	private int[] arrStatus = new int[INITIAL_CAPACITY];
+	private int[] arrStart = new int[INITIAL_CAPACITY];
+	private int[] arrEnd = new int[INITIAL_CAPACITY];
+	private int[] arrAgentId = new int[INITIAL_CAPACITY];
+	private int[] arrDWCount = new int[INITIAL_CAPACITY];
+	private int[] arrProperty = new int[INITIAL_CAPACITY];
+	private int iSize = 0;
+	private int[] arrAgentSlots = new int[0]; //position+1 of the first entry of a traveller, hashed on its id. 0 if the slot is free.
+	private int iIndexed = 0; //number of entries added to arrAgentSlots
+
+	/**
+	 * @return index of the added entry.
+	 */
+	int add(int iStatus, int iStart, int iEnd, int iAgentId, int iDWCount, int iProperty)
+	{
+		if(iSize == arrStatus.length)
+			resize(iSize << 1);
+		arrStatus[iSize] = iStatus;
+		arrStart[iSize] = iStart;
+		arrEnd[iSize] = iEnd;
+		arrAgentId[iSize] = iAgentId;
+		arrDWCount[iSize] = iDWCount;
+		arrProperty[iSize] = iProperty;
+		return iSize++;
+	}
+
+	void clear()
+	{
+		iSize = 0;
+		resetIndex();
+	}
+
+	/**
+	 * Drops the entries from iSize onwards.
+	 */
+	void truncate(int iSize)
+	{
+		if(iSize < this.iSize)
+			this.iSize = iSize;
+		if(iSize < iIndexed)
+			resetIndex();
+	}
+
+	/**
+	 * Releases the capacity beyond the current size, down to the initial capacity.
+	 */
+	void trimToSize()
+	{
+		if(arrStatus.length > INITIAL_CAPACITY && arrStatus.length > iSize)
+			resize(Math.max(iSize, INITIAL_CAPACITY));
+		if(iIndexed == 0)
+			arrAgentSlots = new int[0];
+	}
+
+	int size() {
+		return iSize;
+	}
+
+	int getStatus(int i) {
+		return arrStatus[i];
+	}
+
+	void setStatus(int i, int iStatus) {
+		arrStatus[i] = iStatus;
+	}
+
+	int getStart(int i) {
+		return arrStart[i];
+	}
+
+	int getEnd(int i) {
+		return arrEnd[i];
+	}
+
+	int getAgentId(int i) {
+		return arrAgentId[i];
+	}
+
+	int getDWCount(int i) {
+		return arrDWCount[i];
+	}
+
+	int getProperty(int i) {
+		return arrProperty[i];
+	}
+
+	/**
+	 * @return position of the first entry of the traveller, -1 if it has none.
+	 */
+	int indexOfAgent(int iAgentId)
+	{
+		if(iIndexed < iSize)
+			indexEntries();
+		if(arrAgentSlots.length == 0)
+			return -1;
+		int iMask = arrAgentSlots.length - 1;
+		for(int iSlot = hash(iAgentId) & iMask; arrAgentSlots[iSlot] != 0; iSlot = (iSlot + 1) & iMask)
+		{
+			if(arrAgentId[arrAgentSlots[iSlot] - 1] == iAgentId)
+				return arrAgentSlots[iSlot] - 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds the entries from iIndexed to arrAgentSlots, keeping it at most half full.
+	 */
+	private void indexEntries()
+	{
+		if(arrAgentSlots.length < iSize << 1)
+		{
+			arrAgentSlots = new int[Integer.highestOneBit(Math.max(iSize, INITIAL_CAPACITY) - 1) << 2];
+			iIndexed = 0;
+		}
+		int iMask = arrAgentSlots.length - 1;
+		for(; iIndexed < iSize; iIndexed++)
+		{
+			int iSlot = hash(arrAgentId[iIndexed]) & iMask;
+			//the earlier entry of the traveller is retained
+			while(arrAgentSlots[iSlot] != 0 && arrAgentId[arrAgentSlots[iSlot] - 1] != arrAgentId[iIndexed])
+				iSlot = (iSlot + 1) & iMask;
+			if(arrAgentSlots[iSlot] == 0)
+				arrAgentSlots[iSlot] = iIndexed + 1;
+		}
+	}
+
+	private void resetIndex()
+	{
+		if(iIndexed > 0)
+		{
+			Arrays.fill(arrAgentSlots, 0);
+			iIndexed = 0;
+		}
+	}
+
+	private static int hash(int iAgentId)
+	{
+		int h = iAgentId * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return the entry in the String form used in the logs: status#start%end#Tid
+	 */
+	String toString(int i)
+	{
+		return arrStatus[i]+ConstantsDefinition.MSGBODY_DELIMITER+arrStart[i]+ConstantsDefinition.TIMEDURATION_DELIMITER+arrEnd[i]
+				+ConstantsDefinition.MSGBODY_DELIMITER+ConstantsDefinition.TRAVELLER+arrAgentId[i];
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder("[");
+		for(int i=0; i<iSize; i++)
+		{
+			if(i > 0)
+				sb.append(", ");
+			sb.append(toString(i));
+		}
+		return sb.append(']').toString();
+	}
+
+	private void resize(int iCapacity)
+	{
+		arrStatus = Arrays.copyOf(arrStatus, iCapacity);
+		arrStart = Arrays.copyOf(arrStart, iCapacity);
+		arrEnd = Arrays.copyOf(arrEnd, iCapacity);
+		arrAgentId = Arrays.copyOf(arrAgentId, iCapacity);
+		arrDWCount = Arrays.copyOf(arrDWCount, iCapacity);
+		arrProperty = Arrays.copyOf(arrProperty, iCapacity);
+	}
+}
@@ -0,0 +1,72 @@
+package dmapf.agents;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import dmapf.constants.ConstantsDefinition;
+import dmapf.model.ScheduleMessage;
+
+/**
+ * This class defines the frames exchanged between the PO and a LocationShard, and the
+ * encoding of the msgs in them. Every frame starts with its opcode. A msg is sent as its
+ * fields, so that neither side has to compose or parse the String form of the msg.
+ *
+ * The locations are partitioned across the shards by their edge id.
+ *
+ * @author st
+ *
+ */
+final class ShardProtocol
+{
+	static final int INIT = 1; //dw size, allocation strategy, count and (location id, strategy) pairs of the locations with their own strategy, parallelism of the shard
+	static final int DELIVER = 2; //horizon, and the msgs from the travellers, one list per location of the shard
+	static final int PROCESS = 3; //run the location phase. Reply: number of location agents run, msgs from the locations
+	static final int SHUTDOWN = 4;
+
+	private ShardProtocol()
+	{
+	}
+
+	/**
+	 * @return index of the shard hosting the location.
+	 */
+	static int shardOf(int iLocationId, int iShardCount)
+	{
+		return iLocationId % iShardCount;
+	}
+
+	static void writeMsgs(DataOutputStream out, List<ScheduleMessage> alMsgs) throws IOException
+	{
+		out.writeInt(alMsgs.size());
+		for(ScheduleMessage msg:alMsgs)
+		{
+			out.writeBoolean(msg.isFromTraveller());
+			out.writeInt(msg.getSenderId());
+			out.writeInt(msg.getReceiverId());
+			out.writeInt(msg.getStatus());
+			out.writeInt(msg.getStartTime());
+			out.writeInt(msg.getEndTime());
+			out.writeInt(msg.getDWCount());
+			out.writeInt(msg.getProperty());
+		}
+	}
+
+	static ArrayList<ScheduleMessage> readMsgs(DataInputStream in) throws IOException
+	{
+		int iSize = in.readInt();
+		ArrayList<ScheduleMessage> alMsgs = new ArrayList<ScheduleMessage>(iSize);
+		for(int i=0; i<iSize; i++)
+		{
+			String strSenderType = in.readBoolean()?ConstantsDefinition.TRAVELLER:ConstantsDefinition.LOCATION;
+			ScheduleMessage msg = new ScheduleMessage(strSenderType, in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+			int iProperty = in.readInt();
+			if(iProperty != ScheduleMessage.NO_PROPERTY)
+				msg.setProperty(iProperty);
+			alMsgs.add(msg);
+		}
+		return alMsgs;
+	}
+}
@@ -0,0 +1,239 @@
+package dmapf.agents;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.PriorityQueue;
+
+import org.apache.log4j.Logger;
+
+import dmapf.constants.ConstantsDefinition;
+
+/**
+ * This class finds the path of a traveller by space-time A*, ie. in time rather than in
+ * distance, around a ReservationSnapshot of the holds of the locations. An edge is entered
+ * at the earliest start from the arrival at its tail which the snapshot leaves free, so the
+ * path is the one which arrives first with the waits the locations would impose, rather than
+ * the shortest one.
+ *
+ * The traveller may wait at any node. Hence arriving at a node later never lets it leave
+ * earlier, and the earliest arrival at each node is the only state worth searching from:
+ * the search keeps one label per node, as Dijkstra's does, instead of one per node and time.
+ *
+ * An edge is crossed in the time the schedule of the traveller takes for it: at the speed to
+ * which the traveller is held by the edges it still occupies, which is carried along the
+ * label of each node. Hence the path is scheduled with the arrivals the search has found.
+ * As the held speed of a node is that of its earliest arrival, the search may miss a path
+ * arriving later at a node but crossing the edges after it faster.
+ *
+ * The estimate of the time to the destination is the time at the top speed without any wait,
+ * found by a reverse search from the destination which is resumed only as far as the nodes
+ * asked for (Reverse Resumable A*). It is kept between the calls, as neither the network nor
+ * the travel times change.
+ *
+ * A planner is kept by its traveller and is not shared across threads.
+ *
+ * @author st
+ *
+ */
+class SpaceTimePlanner
+{
+	public static final Logger log = Logger.getLogger(SpaceTimePlanner.class);
+	private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	/**
+	 * Time in which the traveller crosses an edge at a speed, without any wait.
+	 */
+	interface TravelTime
+	{
+		int of(String strEdge, int iSpeed);
+	}
+
+	/**
+	 * Speed to which the traveller is held on the edges after an edge it has crossed, given the
+	 * speed it was held to on that edge.
+	 */
+	interface HeldSpeed
+	{
+		int after(String strEdge, int iHeldSpeed);
+	}
+
+	private final RoadNetwork network;
+	private final TravelTime travelTime;
+	private final HeldSpeed heldSpeed;
+	private final String strSource;
+	private final String strDest;
+	private final int iAgentId;
+	private final int iSpeed; //top speed of the traveller, at which it is held at the source
+
+	private HashMap<String, Integer> hmRemaining = new HashMap<String, Integer>(); //time from each node settled by the reverse search to the destination
+	private HashMap<String, Integer> hmReverseReached = new HashMap<String, Integer>(); //least time to the destination found so far, by node
+	private PriorityQueue<Label> reverseQueue = new PriorityQueue<Label>();
+	private int iExpanded = 0; //number of nodes expanded in the last call
+
+	SpaceTimePlanner(RoadNetwork network, String strSource, String strDest, int iAgentId, int iSpeed, TravelTime travelTime, HeldSpeed heldSpeed)
+	{
+		this.network = network;
+		this.strSource = strSource;
+		this.strDest = strDest;
+		this.iAgentId = iAgentId;
+		this.iSpeed = iSpeed;
+		this.travelTime = travelTime;
+		this.heldSpeed = heldSpeed;
+		hmReverseReached.put(strDest, 0);
+		reverseQueue.add(new Label(0, 0, strDest));
+	}
+
+	/**
+	 * This function finds the path which reaches the destination first, starting at iStart,
+	 * entering each edge when the reservations leave it free, and not using the excluded edges.
+	 * @param reservations: holds of the locations, which are the edges of the network
+	 * @param alExcludedEdges: edges which the path must not use. null if none.
+	 * @return the path, in the form returned by JGraphTUtil.getPath: node%edge%node...%distance.
+	 * The waits are not part of it, they are found again as it is scheduled. null if the
+	 * destination cannot be reached.
+	 */
+	String getPath(int iStart, ReservationSnapshot reservations, Collection<String> alExcludedEdges)
+	{
+		iExpanded = 0;
+		HashSet<String> hsExcludedEdges = alExcludedEdges == null?new HashSet<String>():new HashSet<String>(alExcludedEdges);
+		HashMap<String, Integer> hmArrival = new HashMap<String, Integer>(); //earliest arrival found so far, by node
+		HashMap<String, String> hmReachedBy = new HashMap<String, String>(); //edge of the earliest arrival, by node
+		HashMap<String, Integer> hmHeldSpeed = new HashMap<String, Integer>(); //speed held to after the earliest arrival, by node
+		PriorityQueue<Label> queue = new PriorityQueue<Label>();
+
+		int iRemaining = remaining(strSource);
+		if(iRemaining != UNREACHABLE)
+		{
+			hmArrival.put(strSource, iStart);
+			hmHeldSpeed.put(strSource, iSpeed);
+			queue.add(new Label(iStart + iRemaining, iStart, strSource));
+		}
+		boolean bReached = false;
+		while(!queue.isEmpty())
+		{
+			Label label = queue.poll();
+			//superseded by an earlier arrival at the node
+			if(label.iTime > hmArrival.get(label.strNode))
+				continue;
+			iExpanded++;
+			if(label.strNode.equals(strDest))
+			{
+				bReached = true;
+				break;
+			}
+			int iHeldSpeed = hmHeldSpeed.get(label.strNode);
+			for(String strEdge:network.outgoingEdgesOf(label.strNode))
+			{
+				if(hsExcludedEdges.contains(strEdge))
+					continue;
+				String strNext = network.getOppositeNode(strEdge, label.strNode);
+				int iNextRemaining = remaining(strNext);
+				if(iNextRemaining == UNREACHABLE)
+					continue;
+				int iDepart = reservations.earliestStart(Integer.parseInt(strEdge), label.iTime, iAgentId);
+				int iArrival = iDepart + travelTime.of(strEdge, iHeldSpeed);
+				Integer iBest = hmArrival.get(strNext);
+				if(iBest == null || iArrival < iBest)
+				{
+					hmArrival.put(strNext, iArrival);
+					hmReachedBy.put(strNext, strEdge);
+					hmHeldSpeed.put(strNext, heldSpeed.after(strEdge, iHeldSpeed));
+					queue.add(new Label(iArrival + iNextRemaining, iArrival, strNext));
+				}
+			}
+		}
+		log.debug("Timed path from "+strSource+" to "+strDest+" expanded "+iExpanded+" nodes, arrives at "+hmArrival.get(strDest));
+		if(!bReached)
+		{
+			log.debug("No timed path from "+strSource+" to "+strDest+" without "+hsExcludedEdges);
+			return null;
+		}
+		return extractPath(hmReachedBy);
+	}
+
+	int getExpandedCount() {
+		return iExpanded;
+	}
+
+	/**
+	 * This function follows the edges of the earliest arrivals back from the destination.
+	 */
+	private String extractPath(HashMap<String, String> hmReachedBy)
+	{
+		LinkedList<String> llPath = new LinkedList<String>();
+		double dDistance = 0;
+		String strNode = strDest;
+		llPath.addFirst(strNode);
+		while(!strNode.equals(strSource))
+		{
+			String strEdge = hmReachedBy.get(strNode);
+			strNode = network.getOppositeNode(strEdge, strNode);
+			dDistance += network.getEdgeWeight(strEdge);
+			llPath.addFirst(strEdge);
+			llPath.addFirst(strNode);
+		}
+
+		StringBuilder sbPath = new StringBuilder();
+		for(String strElement:llPath)
+			sbPath.append(strElement).append(ConstantsDefinition.PATH_DELIMITOR);
+		return sbPath.append(dDistance).toString();
+	}
+
+	/**
+	 * Resumes the reverse search from the destination till the node is settled.
+	 * @return time from the node to the destination at the top speed without any wait. UNREACHABLE if there is no path.
+	 */
+	private int remaining(String strNode)
+	{
+		Integer iRemaining = hmRemaining.get(strNode);
+		while(iRemaining == null && !reverseQueue.isEmpty())
+		{
+			Label label = reverseQueue.poll();
+			if(hmRemaining.containsKey(label.strNode))
+				continue;
+			hmRemaining.put(label.strNode, label.iTime);
+			for(String strEdge:network.incomingEdgesOf(label.strNode))
+			{
+				String strPrevious = network.getOppositeNode(strEdge, label.strNode);
+				int iTime = label.iTime + travelTime.of(strEdge, iSpeed);
+				Integer iBest = hmReverseReached.get(strPrevious);
+				if(iBest == null || iTime < iBest)
+				{
+					hmReverseReached.put(strPrevious, iTime);
+					reverseQueue.add(new Label(iTime, iTime, strPrevious));
+				}
+			}
+			if(label.strNode.equals(strNode))
+				iRemaining = label.iTime;
+		}
+		return iRemaining == null?UNREACHABLE:iRemaining;
+	}
+
+	/**
+	 * Entry of the queues. The entries are ordered by the key, the arrival + the estimate in the
+	 * forward search and the time to the destination in the reverse one, and by the later time
+	 * among the same key, which is the nearer to the destination.
+	 */
+	private static final class Label implements Comparable<Label>
+	{
+		private final int iKey;
+		private final int iTime;
+		private final String strNode;
+
+		Label(int iKey, int iTime, String strNode)
+		{
+			this.iKey = iKey;
+			this.iTime = iTime;
+			this.strNode = strNode;
+		}
+
+		@Override
+		public int compareTo(Label label)
+		{
+			int iCompare = Integer.compare(iKey, label.iKey);
+			return iCompare != 0?iCompare:Integer.compare(label.iTime, iTime);
+		}
+	}
+}
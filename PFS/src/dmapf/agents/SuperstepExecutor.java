@@ -0,0 +1,121 @@
+package dmapf.agents;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import dmapf.model.ScheduleMessage;
+
+/**
+ * This class runs one phase (superstep) of the negotiation, ie. the processing of the
+ * received msgs by every Location agent or by every Traveller agent. The agents of a
+ * phase do not share any state, hence the phase is split across the worker threads
+ * of a ForkJoinPool. The call returns only after every agent of the phase has been
+ * processed, which is the barrier between the Location and the Traveller phases.
+ *
+ * The msgs produced by each agent are returned in the order of the agents in the
+ * given list, so that the PO merges them exactly as it would in a sequential run.
+ * With a parallelism of 1, the agents are processed sequentially on the calling thread.
+ *
+ * @author st
+ *
+ */
+class SuperstepExecutor
+{
+	private static final int SEQUENTIAL_THRESHOLD = 32; //below this many agents, a task is not split further
+
+	private ForkJoinPool pool; //null when the phases are run sequentially
+
+	/**
+	 * Function applied to every agent of a phase.
+	 */
+	interface AgentStep<T>
+	{
+		ArrayList<ScheduleMessage> process(T agent);
+	}
+
+	/**
+	 * @param iParallelism: number of worker threads. 1 to run the phases sequentially.
+	 */
+	SuperstepExecutor(int iParallelism)
+	{
+		if(iParallelism > 1)
+			pool = new ForkJoinPool(iParallelism);
+	}
+
+	/**
+	 * This function will apply the step to every agent in the list and wait till
+	 * all of them have completed.
+	 * @param alAgents: agents of the phase
+	 * @param step: function to be applied on each agent
+	 * @return list of msgs produced by each agent, in the order of alAgents. An entry is
+	 * null if the agent has returned null.
+	 */
+	<T> ArrayList<ArrayList<ScheduleMessage>> run(List<T> alAgents, AgentStep<T> step)
+	{
+		ArrayList<ArrayList<ScheduleMessage>> alOutputs = new ArrayList<ArrayList<ScheduleMessage>>(Collections.<ArrayList<ScheduleMessage>>nCopies(alAgents.size(), null));
+
+		if(pool == null || alAgents.size() <= SEQUENTIAL_THRESHOLD)
+		{
+			for(int i=0; i<alAgents.size(); i++)
+				alOutputs.set(i, step.process(alAgents.get(i)));
+		}
+		else
+			pool.invoke(new StepTask<T>(alAgents, step, alOutputs, 0, alAgents.size()));
+
+		return alOutputs;
+	}
+
+	boolean isParallel()
+	{
+		return pool != null;
+	}
+
+	void shutdown()
+	{
+		if(pool != null)
+			pool.shutdown();
+	}
+
+	/**
+	 * Processes the agents in [iFrom, iTo) of the list, splitting the range into halves
+	 * till it is small enough to be processed on one thread. Each agent writes only its
+	 * own slot in alOutputs.
+	 */
+	private static class StepTask<T> extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private final List<T> alAgents;
+		private final AgentStep<T> step;
+		private final ArrayList<ArrayList<ScheduleMessage>> alOutputs;
+		private final int iFrom;
+		private final int iTo;
+
+		StepTask(List<T> alAgents, AgentStep<T> step, ArrayList<ArrayList<ScheduleMessage>> alOutputs, int iFrom, int iTo)
+		{
+			this.alAgents = alAgents;
+			this.step = step;
+			this.alOutputs = alOutputs;
+			this.iFrom = iFrom;
+			this.iTo = iTo;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(iTo - iFrom <= SEQUENTIAL_THRESHOLD)
+			{
+				for(int i=iFrom; i<iTo; i++)
+					alOutputs.set(i, step.process(alAgents.get(i)));
+			}
+			else
+			{
+				int iMid = (iFrom + iTo) >>> 1;
+				invokeAll(new StepTask<T>(alAgents, step, alOutputs, iFrom, iMid),
+						new StepTask<T>(alAgents, step, alOutputs, iMid, iTo));
+			}
+		}
+	}
+}
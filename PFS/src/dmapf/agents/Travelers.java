@@ -1,7 +1,7 @@
 package dmapf.agents;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -9,8 +9,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.TreeMap;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
@@ -18,8 +16,8 @@ import org.apache.log4j.PropertyConfigurator;
 
 import dmapf.constants.ConstantsDefinition;
 import dmapf.model.EdgeDetail;
-import dmapf.model.Message;
-import dmapf.utils.DateUtil;
+import dmapf.model.PlanEntry;
+import dmapf.model.ScheduleMessage;
 import dmapf.utils.JGraphTUtil;
 
 /**
@@ -46,7 +44,7 @@ import dmapf.utils.JGraphTUtil;
  * @author st
  *
  */
-public class Travelers /* implements Runnable */
+public class Travelers
 {
 	private int agentId;
 	private String strSrcNode; 
@@ -66,13 +64,18 @@ public class Travelers /* implements Runnable */
 	public long agentCost=0; 
 
 	JGraphTUtil sUtil ;
+	private RoadNetwork roadNetwork; //network on which the path is searched by the planner. null to find the paths by JGraphTUtil.
+	private LifelongPlanner.Heuristic heuristic = LifelongPlanner.NO_ESTIMATE; //estimate of the distance to the destination, by which the planner is guided
+	private LifelongPlanner planner; //search retained between the replans, when a network is given
+	private ContractionHierarchy hierarchy; //finds the paths without exclusions on the network. null to find them by the planner.
+	private ReservationSnapshot reservations; //holds of the locations after the last location phase, which the alternate plan is timed around. null if not shared by the PO.
+	private SpaceTimePlanner timedPlanner; //searches the alternate path around the reservations, when a network is given
 	private int iSpeed;
 	private int iLength;
 	Integer agentStatus = ConstantsDefinition.RESERVE;
 	private static final int ALTERNATE = 0;
 	private static final int PROPOSED = 1;
 	private static final int INVALID = -1;
-	private static final int PERIOD_INDEX = 0;
 
 	boolean bWaitImposed = false; //maintains if any wait condition is imposed in received plans.
 	boolean bAcceptRxdFromAllLocations = false;
@@ -80,15 +83,22 @@ public class Travelers /* implements Runnable */
 	private int iDWSize;
 	boolean bFirstRun = true;
 	public static final Logger log = Logger.getLogger(Travelers.class);
-	private List<Message> alRxdMsg = new ArrayList<Message>();//list of rxd msgs from all agents
+	private List<ScheduleMessage> alRxdMsg = new ArrayList<ScheduleMessage>();//list of rxd msgs from all agents
+	private Mailbox mailbox = new Mailbox(); //msgs posted by the PO, taken in processMsg
+	private boolean bLeasedReservations = false; //whether the locations hold a DW reservation till the DW lapses, without it being sent every round
+	private int iNewResponses = 0; //number of msgs rxd in the current round, at the start of alRxdMsg. Used in the lease mode.
+	private ArrayList<ScheduleMessage> alFinaliseMsgs = new ArrayList<ScheduleMessage>(); //FINALIZE msgs composed as the traveller finalised, taken by the PO
 	boolean bFinalisedMessageRxd = false; //maintains whether finalised msg has been received from all locations.
-	HashMap<String, String> hmProposedPlan = new HashMap<String, String>(); //"L"edgeId, timeDuration from locations.
+	HashMap<Integer, ScheduleMessage> hmProposedPlan = new HashMap<Integer, ScheduleMessage>(); //msgs with the timeDuration from the locations, by locationId.
 	private boolean bOrderingConsistent =true; //maintains if the order of locations in the path has changed because of the received proposals.
-	ArrayList<String>alWaitLocations = new ArrayList<String>(); //startTime%endTime#LocationAgentId#Waitduration.
-	LinkedHashMap<String, String> hmReservedPlan = new LinkedHashMap<String, String>(); //plan sent for reservation .edgeId, start%end
-	ArrayList<String> alRevisedProposal = new ArrayList<String>(); //will maintain the plan with waits included. start%end#locationId
-	TreeMap<Integer, ArrayList<String>> mapSchedules ; //this will maintain the sorted schedule received from agents. startdate, start%end#locationId 
-	LinkedHashMap<String, String> hmAlternatePlan = new LinkedHashMap<String, String>(); //alternate plan generated .edgeId, start%end
+	ArrayList<ScheduleMessage>alWaitLocations = new ArrayList<ScheduleMessage>(); //proposals which impose a wait. The wait is the shift from the reserved plan.
+	LinkedHashMap<Integer, PlanEntry> hmReservedPlan = new LinkedHashMap<Integer, PlanEntry>(); //plan sent for reservation, by locationId
+	ArrayList<PlanEntry> alRevisedProposal = new ArrayList<PlanEntry>(); //will maintain the plan with waits included.
+	ArrayList<ScheduleMessage> alSortedProposals = new ArrayList<ScheduleMessage>(); //this will maintain the schedule received from agents, sorted by the startdate.
+	private long[] arrProposalKeys = new long[16]; //sort keys of alSortedProposals: startdate and index of the proposal. See KeySort.
+	private long[] arrReservedKeys = new long[16]; //sort keys of the reserved plan: startdate and index of the location. Used in getOrderedReservedLocations.
+	private KeySort sorter = new KeySort();
+	LinkedHashMap<Integer, PlanEntry> hmAlternatePlan = new LinkedHashMap<Integer, PlanEntry>(); //alternate plan generated, by locationId
 	ArrayList<String> alConstraintEdges = new ArrayList<String>(); //maintains the locationIds which should be excluded in the path. Cumulative list.
 	private int iDWCount = 1;
 	private int iProperty;
@@ -115,12 +125,12 @@ public class Travelers /* implements Runnable */
 	 *  This function will find the best path from the soruce
 	 *  to the destination for this agent.
 	 */
-	public  ArrayList<Message>  generateSchedule()
+	public  ArrayList<ScheduleMessage>  generateSchedule()
 	{
 		log.debug("Agent:"+this.agentId+" generateSchedule");
 		//The path is a space-separated string with node-id,followed by edge-id. The last
 		//entry in the string is the length of the path.
-		String path = sUtil.getPath(strSrcNode, strDestNode, null);
+		String path = findPath(null);
 		hmReservedPlan.clear();
 		hmReservedPlan.putAll(schedule(path, INVALID));
 
@@ -138,31 +148,19 @@ public class Travelers /* implements Runnable */
 		boolean bLatestSet = false;
 		int calLatest = 0;
 
-		Iterator<String>iterPlan = hmReservedPlan.keySet().iterator();
-		while(iterPlan.hasNext())
+		for(PlanEntry entry:hmReservedPlan.values())
 		{
-
-			try
+			int calCurrentEnd = entry.getEndTime();
+			strInitialSchedule=strInitialSchedule.concat(",")+entry.getLocationId()+EQUALS+entry.getPeriod();
+			if(!bLatestSet)
 			{
-				String loc = iterPlan.next();
-				String strSchedule = hmReservedPlan.get(loc);
-
-				String timeDuration = strSchedule.split(ConstantsDefinition.MSGBODY_DELIMITER)[0];
-				int calCurrentEnd = Integer.parseInt(timeDuration.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[1]);
-				strInitialSchedule=strInitialSchedule.concat(",")+loc+EQUALS+timeDuration;
-				if(!bLatestSet)
-				{
-					calLatest = Integer.parseInt(timeDuration.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[1]);
-					bLatestSet=true;
-				}
-				else
-				{
-					if(calCurrentEnd > calLatest)
-						calLatest = calCurrentEnd; 
-				}
-			}catch(Exception e)
+				calLatest = calCurrentEnd;
+				bLatestSet=true;
+			}
+			else
 			{
-				e.printStackTrace();
+				if(calCurrentEnd > calLatest)
+					calLatest = calCurrentEnd; 
 			}
 		}
 		lCost = calLatest - this.startDate;
@@ -176,12 +174,23 @@ public class Travelers /* implements Runnable */
 	/**
 	 * This function receives the path for each convoy agent and will generate the schedule for it.
 	 * String with the space separated list of node-arc-node. Last entry is the "double" distance length.
-	 *  @param result:Key:edgeId , Value: startTimeTIMEDURATIONDELIMITERendTime
+	 *  @param result:Key:locationId , Value: entry with the time period on the location
+	 */
+	public LinkedHashMap<Integer, PlanEntry> schedule(String path, int startDate)
+	{
+		return schedule(path, startDate, null);
+	}
+
+	/**
+	 * This function generates the schedule for the path as above. Given the reservations, each
+	 * arc is entered at the earliest start which the reservations leave free, ie. the plan has
+	 * the waits which the locations would impose on it built in.
+	 * @param reservations: holds of the locations. null to schedule without waits.
 	 */
-	public LinkedHashMap<String, String> schedule(String path, int startDate)
+	private LinkedHashMap<Integer, PlanEntry> schedule(String path, int startDate, ReservationSnapshot reservations)
 	{
 		int indexOfDistance = path.lastIndexOf(ConstantsDefinition.PATH_DELIMITOR); //This will mark the pos where the distance is given in the string.
-		LinkedHashMap<String,String> tmpplan = new LinkedHashMap<String, String>();
+		LinkedHashMap<Integer, PlanEntry> tmpplan = new LinkedHashMap<Integer, PlanEntry>();
 		if(indexOfDistance == -1)
 		{
 			log.error("distance not found in path "+path+ "of agent "+agentId);
@@ -220,25 +229,34 @@ public class Travelers /* implements Runnable */
 				//Compute time to move on the arc.
 
 				int iSpeedOfTravel = getMinSpeed(splitPath, iSplitPathIndex);
-				double distance = edge.getDistance()*1000;
-
-				int iTimeToTravelArc = (int)((distance / iSpeedOfTravel) * ConstantsDefinition.MINS_IN_1HR);
-				if(iTimeToTravelArc<1)
-					iTimeToTravelArc = 1;
-				log.debug("Agent:"+this.agentId+" speed:"+iSpeedOfTravel+" dist:"+distance+" timeToTravel:"+iTimeToTravelArc+ " iTPP:"+iTPP);
+				int iTimeToTravelArc = travelTime(edge, iSpeedOfTravel);
+				log.debug("Agent:"+this.agentId+" speed:"+iSpeedOfTravel+" dist:"+edge.getDistance()*1000+" timeToTravel:"+iTimeToTravelArc+ " iTPP:"+iTPP);
+				int iLocationId = Integer.parseInt(edge.getId());
+				if(reservations != null)
+					scheduledStartDateTime = reservations.earliestStart(iLocationId, scheduledStartDateTime, agentId);
 
 				endDate = scheduledStartDateTime + iTimeToTravelArc + iTPP;
-				String timePeriod = String.valueOf(scheduledStartDateTime).concat(ConstantsDefinition.TIMEDURATION_DELIMITER.concat(String.valueOf(endDate)));
+				PlanEntry entry = new PlanEntry(iLocationId, scheduledStartDateTime, endDate);
 				scheduledStartDateTime += iTimeToTravelArc;
 
 				//Add the time for the tail of the convoy to clear the arc.
-				tmpplan.put(edge.getId(),timePeriod);
+				tmpplan.put(iLocationId, entry);
 			}
 
 		}//end for
 		log.debug("Agent:"+this.agentId+" plan:"+tmpplan);
 		return tmpplan;
 	}
+
+	/**
+	 * @return time in which the arc is travelled at the given speed. At least 1.
+	 */
+	private static int travelTime(EdgeDetail edge, int iSpeedOfTravel)
+	{
+		double distance = edge.getDistance()*1000;
+		int iTimeToTravelArc = (int)((distance / iSpeedOfTravel) * ConstantsDefinition.MINS_IN_1HR);
+		return Math.max(iTimeToTravelArc, 1);
+	}
 	/** This function will find the edges occupied by the agent currently. This is done
 	 * by comparing the length of the agent to the length of the edges traversed, moving 
 	 * backward from iSplitPathIndex. 
@@ -273,30 +291,114 @@ public class Travelers /* implements Runnable */
 		return iMinSpeed;
 	}
 
+	/**
+	 * This function will find the speed to which the agent is held on the edges after the given
+	 * one, as getMinSpeed does, folded forward along the path: an edge no longer than the agent
+	 * holds it to the speed of the edge as well, a longer one ends what held it before.
+	 *
+	 * @param edge: edge the agent has crossed
+	 * @param iHeldSpeed: speed the agent was held to on the edge
+	 * @return Speed: held speed on the next edge
+	 */
+	private int getHeldSpeed(EdgeDetail edge, int iHeldSpeed) {
+		if(edge.getDistance() <= this.iLength)
+			return Math.min(iHeldSpeed, edge.getSpeed());
+		return this.getSpeed();
+	}
+
 	/**
 	 *  This function will receive the msg from the postoffice agent.
 	 *  The rxd msgs can have the following status: PROPOSE, DW_INIT, ...
 	 *  
 	 * @param arrayList
 	 */
-	public void receive(ArrayList<Message> alRxdMsgFromPO)
+	public void receive(ArrayList<ScheduleMessage> alRxdMsgFromPO)
 	{
 		log.debug("Traveller Agent:"+agentId);
-		alRxdMsg.clear();
+		//The list is handed over to the mailbox, it is not copied.
+		mailbox.post(alRxdMsgFromPO);
+	}
 
-		//	alRxdMsg =  Collections.synchronizedList(alRxdMsg);
+	Mailbox getMailbox() {
+		return mailbox;
+	}
 
-		//synchronized (alRxdMsg) 
-		{
-			alRxdMsg.addAll(alRxdMsgFromPO);
-			log.debug("Traveller"+agentId+": Msg List:"+alRxdMsg);
-		}
+	/**
+	 * In the lease mode, the DW msgs sent once all the locations have accepted are taken by
+	 * the locations as a request to hold the reservation till the DW lapses. The traveller
+	 * then sends a msg to a location only if the location changes its proposal.
+	 */
+	void setLeasedReservations(boolean bLeases) {
+		bLeasedReservations = bLeases;
+	}
 
+	/**
+	 * Given the network, the traveller finds its paths by LifelongPlanner, which repairs its
+	 * last search for the edges excluded since, instead of searching anew.
+	 * A path without exclusions, as the initial path, is found by the contraction hierarchy if given.
+	 * @param heuristic: estimate of the distance to the destination. Shared by the travellers.
+	 * @param hierarchy: contraction hierarchy of the network. Shared by the travellers. null if none.
+	 */
+	void setRoadNetwork(RoadNetwork network, LifelongPlanner.Heuristic heuristic, ContractionHierarchy hierarchy) {
+		roadNetwork = network;
+		this.heuristic = heuristic;
+		this.hierarchy = hierarchy;
+		planner = null;
+		timedPlanner = null;
 	}
 
-	public ArrayList<Message> processMsg()
+	/**
+	 * Given the reservations, the traveller times its alternate plan around them: on the road
+	 * network the path is searched by SpaceTimePlanner, else the path found as before is
+	 * scheduled with the waits the reservations impose. Set by the PO before each traveller phase.
+	 * @param reservations: snapshot of the holds of the locations. null to plan without them.
+	 */
+	void setReservations(ReservationSnapshot reservations) {
+		this.reservations = reservations;
+	}
+
+	/**
+	 * @return the path from the source to the destination without the excluded edges. null if none.
+	 */
+	private String findPath(ArrayList<String> alExcludedEdges)
+	{
+		if(roadNetwork == null)
+			return PathCache.getInstance().getPath(strSrcNode, strDestNode, alExcludedEdges);
+		if(hierarchy != null && (alExcludedEdges == null || alExcludedEdges.isEmpty()))
+			return hierarchy.getPath(strSrcNode, strDestNode);
+		if(planner == null)
+			planner = new LifelongPlanner(roadNetwork, strSrcNode, strDestNode, heuristic);
+		return planner.getPath(alExcludedEdges);
+	}
+
+	/**
+	 * @return the path which arrives first around the reservations, without the excluded edges.
+	 * The shortest path if there is no network to search it on. null if none.
+	 */
+	private String findTimedPath(ArrayList<String> alExcludedEdges)
+	{
+		if(roadNetwork == null)
+			return findPath(alExcludedEdges);
+		//the arcs are timed as schedule() times them. The estimate is at the speed of the traveller, which bounds that of every arc.
+		if(timedPlanner == null)
+			timedPlanner = new SpaceTimePlanner(roadNetwork, strSrcNode, strDestNode, agentId, this.getSpeed(),
+					(strEdge, iSpeedOfTravel) -> travelTime(sUtil.getEdgeDetail(strEdge), iSpeedOfTravel),
+					(strEdge, iHeldSpeed) -> getHeldSpeed(sUtil.getEdgeDetail(strEdge), iHeldSpeed));
+		return timedPlanner.getPath(startDate, reservations, alExcludedEdges);
+	}
+
+	public ArrayList<ScheduleMessage> processMsg()
 	{
 		log.debug("Agent:"+this.agentId+" processMsg. DWCount:"+iDWCount);
+		//Take the msgs posted since the last call. If none, the last msgs are processed again.
+		if(bLeasedReservations)
+			mergeResponses();
+		else if(!mailbox.isEmpty())
+		{
+			alRxdMsg = mailbox.drain();
+			if(log.isDebugEnabled())
+				log.debug("Traveller"+agentId+": Msg List:"+alRxdMsg);
+		}
 		if(bFinalisedMessageRxd)
 		{
 			agentStatus = ConstantsDefinition.FINALIZE;
@@ -314,6 +416,34 @@ public class Travelers /* implements Runnable */
 			return checkConsistency();
 		}
 	}
+	/**
+	 * In the lease mode, a location holding a reservation responds only when it changes its
+	 * proposal. Hence the msgs rxd in this round are merged with the last response of every
+	 * other location still in the reserved plan. The msgs rxd in this round are placed first.
+	 */
+	private void mergeResponses()
+	{
+		List<ScheduleMessage> alNewMsgs = mailbox.drain();
+		iNewResponses = alNewMsgs.size();
+		if(iNewResponses == 0)
+			return;
+
+		ArrayList<ScheduleMessage> alMerged = new ArrayList<ScheduleMessage>(alNewMsgs);
+		for(ScheduleMessage msg:alRxdMsg)
+		{
+			if(!hmReservedPlan.containsKey(msg.getSenderId()))
+				continue;
+			boolean bResponded = false;
+			for(int i=0; i<iNewResponses && !bResponded; i++)
+				bResponded = alNewMsgs.get(i).getSenderId() == msg.getSenderId();
+			if(!bResponded)
+				alMerged.add(msg);
+		}
+		alRxdMsg = alMerged;
+		if(log.isDebugEnabled())
+			log.debug("Traveller"+agentId+": Msg List:"+alRxdMsg);
+	}
+
 	/**
 	 * This function will check if the msgs received from the different
 	 * edges will make a consistent plan, with respect to the constraints 
@@ -323,7 +453,7 @@ public class Travelers /* implements Runnable */
 	 * 
 	 * @param alRxdMsg: List of rxd msgs from all edges.
 	 */
-	private ArrayList<Message>  checkConsistency()
+	private ArrayList<ScheduleMessage>  checkConsistency()
 	{
 		//move the proposes, DWs to a common structure
 		log.debug("Traveller agent"+this.agentId+" checking consistency ");
@@ -340,16 +470,17 @@ public class Travelers /* implements Runnable */
 		if(bPlanConsistent)
 		{
 			//update hmReserved. Iterate thru the rxd msg and update the timing of hmReserved 
-			for(Message msg:alRxdMsg)
+			for(ScheduleMessage msg:alRxdMsg)
 			{	
-				if(!hmReservedPlan.containsKey(msg.getSender().replace(ConstantsDefinition.LOCATION, "")))
-					log.error("Reserved plan does not contain entry for:" +msg.getSender().replace(ConstantsDefinition.LOCATION, ""));
+				int iLocationId = msg.getSenderId();
+				PlanEntry reserved = hmReservedPlan.get(iLocationId);
+				if(reserved == null)
+					log.error("Reserved plan does not contain entry for:" +iLocationId);
 
-				String strDuration = hmReservedPlan.get(msg.getSender().replace(ConstantsDefinition.LOCATION, ""));
-				String newDuration = msg.getBody().split(ConstantsDefinition.MSGBODY_DELIMITER)[1];
-				hmReservedPlan.put(msg.getSender().replace(ConstantsDefinition.LOCATION, ""), newDuration);
-				log.debug("Agent:"+this.agentId+ " Updating hmReservedPlan for location"+msg.getSender().replace(ConstantsDefinition.LOCATION, ""));
-				log.debug("Agent:"+this.agentId+ " updated reserved plan from "+strDuration +" to "+newDuration);
+				PlanEntry updated = new PlanEntry(iLocationId, msg.getStartTime(), msg.getEndTime());
+				hmReservedPlan.put(iLocationId, updated);
+				log.debug("Agent:"+this.agentId+ " Updating hmReservedPlan for location"+iLocationId);
+				log.debug("Agent:"+this.agentId+ " updated reserved plan from "+reserved +" to "+updated);
 
 			}
 			return transmitResponse();
@@ -373,10 +504,10 @@ public class Travelers /* implements Runnable */
 	 *  If alternate is of higher cost, accept the proposal and send the accept. If some of 
 	 *  the locations have to be reserved again, send reserve msg.
 	 */
-	private ArrayList<Message>  rescheduleAndTransmit() 
+	private ArrayList<ScheduleMessage>  rescheduleAndTransmit() 
 	{
-		log.debug("Agent:"+this.agentId+ " rescheduleD"+mapSchedules);
-		ArrayList<Message> alMessages = new ArrayList<Message>(); 
+		log.debug("Agent:"+this.agentId+ " rescheduleD"+alSortedProposals);
+		ArrayList<ScheduleMessage> alMessages = new ArrayList<ScheduleMessage>(); 
 		long lCostProposed = computeCostProposed();
 
 		if(bOrderingConsistent)
@@ -414,47 +545,46 @@ public class Travelers /* implements Runnable */
 			}
 		}
 		//Update hmReserved, if rejects are there, remove the entry from the hmReservedPlan
-		for(Message msg:alMessages)
+		for(ScheduleMessage msg:alMessages)
 		{	
-			String strDuration = hmReservedPlan.get(msg.getReceiver().replace(ConstantsDefinition.LOCATION, ""));
-			String newDuration = msg.getBody().split(ConstantsDefinition.MSGBODY_DELIMITER)[1];
-			String status = msg.getBody().split(ConstantsDefinition.MSGBODY_DELIMITER)[0];
-			if(status.equalsIgnoreCase(ConstantsDefinition.REJECT.toString()))
+			int iLocationId = msg.getReceiverId();
+			PlanEntry reserved = hmReservedPlan.get(iLocationId);
+			if(msg.getStatus() == ConstantsDefinition.REJECT)
 			{
-				hmReservedPlan.remove(msg.getReceiver().replace(ConstantsDefinition.LOCATION, ""));
-				log.debug("Agent:"+this.agentId+  " removed "+msg.getReceiver().replace(ConstantsDefinition.LOCATION, ""));
+				hmReservedPlan.remove(iLocationId);
+				log.debug("Agent:"+this.agentId+  " removed "+iLocationId);
 			}
 			else
 			{
-				hmReservedPlan.put(msg.getReceiver().replace(ConstantsDefinition.LOCATION, ""), newDuration);
-				log.debug("Agent:"+this.agentId+ " added "+msg.getReceiver().replace(ConstantsDefinition.LOCATION, ""));
+				hmReservedPlan.put(iLocationId, new PlanEntry(iLocationId, msg.getStartTime(), msg.getEndTime()));
+				log.debug("Agent:"+this.agentId+ " added "+iLocationId);
 			}
-			log.debug("Agent:"+this.agentId+ " updated reserved plan from "+strDuration +" to "+newDuration+ "for "+msg.getReceiver().replace(ConstantsDefinition.LOCATION, ""));
+			log.debug("Agent:"+this.agentId+ " updated reserved plan from "+reserved +" to "+hmReservedPlan.get(iLocationId)+ "for "+iLocationId);
 		}
 
 		//Check if there are older entries in hmReserved which should now be removed.
-		Iterator<String> iterKey = hmReservedPlan.keySet().iterator();
-		ArrayList<String> alDeletes = new ArrayList<String>();
+		Iterator<Integer> iterKey = hmReservedPlan.keySet().iterator();
+		ArrayList<Integer> alDeletes = new ArrayList<Integer>();
 		while(iterKey.hasNext())
 		{
-			String strLocation = iterKey.next();
+			int iLocationId = iterKey.next();
 			boolean bFound = false;
-			for(Message msg:alMessages)
+			for(ScheduleMessage msg:alMessages)
 			{
-				if(msg.getReceiver().equalsIgnoreCase(ConstantsDefinition.LOCATION.concat(strLocation)))
+				if(msg.getReceiverId() == iLocationId)
 				{
 					bFound = true;
 					break;
 				}
 			}
 			if(bFound == false)
-				alDeletes.add(strLocation);
+				alDeletes.add(iLocationId);
 		}
 
 		//remove the unused entries from hmReserved
 		log.debug("Agent:"+this.agentId+ " Removing entries for "+alDeletes+" from hmReservedPlan");
-		for(String strDelete:alDeletes)
-			hmReservedPlan.remove(strDelete);
+		for(Integer iDelete:alDeletes)
+			hmReservedPlan.remove(iDelete);
 		log.debug("Agent:"+this.agentId+ " hmReservedPlan:"+hmReservedPlan);
 		if(iDWCount <= iDWSize)
 		{
@@ -487,111 +617,38 @@ public class Travelers /* implements Runnable */
 	 * edge ids in order from it, then get the corresponding entry from the hmPropsedPlan
 	 * @param resetType: ALTERNATE/PROPOSED
 	 */
-	private ArrayList<Message> resetReservedPlan(int resetType) 
+	private ArrayList<ScheduleMessage> resetReservedPlan(int resetType) 
 	{
-		ArrayList<Message> alMessages = new ArrayList<Message>();
-		Iterator<String>iterReserved = hmReservedPlan.keySet().iterator();
+		ArrayList<ScheduleMessage> alMessages = new ArrayList<ScheduleMessage>();
+		Iterator<Integer>iterReserved = hmReservedPlan.keySet().iterator();
 
 		while(iterReserved.hasNext())
 		{
-			String strLocation = iterReserved.next(); //locationId without L
-			String strLocationId = ConstantsDefinition.LOCATION.concat(strLocation); //LlocationId
+			int iLocationId = iterReserved.next(); //locationId without L
 			if(resetType == ALTERNATE)
 			{
-				if(hmAlternatePlan.containsKey(strLocation))
+				PlanEntry alternate = hmAlternatePlan.get(iLocationId);
+				if(alternate != null)
 				{
-					Message msg = new Message();
-					msg.setReceiver(ConstantsDefinition.LOCATION.concat(strLocation));
-					String senderId = ConstantsDefinition.TRAVELLER.concat(String.valueOf(this.agentId));
-					switch(iProperty)
-					{
-					case ConstantsDefinition.LOCATION_SCHEDULE_LENGTH:
-						senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iLength));
-						break;
-					case ConstantsDefinition.LOCATION_SCHEDULE_SPEED:
-						senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iSpeed));
-						break;
-					}
-					msg.setSender(senderId);
-					log.debug("Agent:"+this.agentId+" transmit msg. sender "+msg.getSender());
-					
-					//msg.setSender(ConstantsDefinition.TRAVELLER.concat(String.valueOf(agentId)));
-					String strMsgBody = "";
-					String strStatus = ConstantsDefinition.RESERVE.toString();
-					String strDuration = hmAlternatePlan.get(strLocation);
-					strMsgBody = strStatus.concat(ConstantsDefinition.MSGBODY_DELIMITER)
-							.concat(strDuration).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-							.concat(String.valueOf(iDWCount));
-					//iDWCount++;
-					msg.setBody(strMsgBody);
-					alMessages.add(msg);
+					alMessages.add(composeMessage(ConstantsDefinition.RESERVE, alternate));
 				}
 				else //the location is no longer part of the alternate plan. Add a reject message
 				{
-					Message msg = new Message();
-					msg.setReceiver(ConstantsDefinition.LOCATION.concat(strLocation));
-					String senderId = ConstantsDefinition.TRAVELLER.concat(String.valueOf(this.agentId));
-					switch(iProperty)
-					{
-					case ConstantsDefinition.LOCATION_SCHEDULE_LENGTH:
-						senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iLength));
-						break;
-					case ConstantsDefinition.LOCATION_SCHEDULE_SPEED:
-						senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iSpeed));
-						break;
-					}
-					msg.setSender(senderId);
-					log.debug("Agent:"+this.agentId+" transmit msg. sender "+msg.getSender());
-					
-					//msg.setSender(ConstantsDefinition.TRAVELLER.concat(String.valueOf(agentId)));
-					String strMsgBody = "";
-					String strStatus = ConstantsDefinition.REJECT.toString();
-					String strDuration = hmProposedPlan.get(strLocationId);
-					strMsgBody = strStatus.concat(ConstantsDefinition.MSGBODY_DELIMITER)
-							.concat(strDuration).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-							.concat(String.valueOf(iDWCount));
-					//iDWCount++;
-					msg.setBody(strMsgBody);
-					alMessages.add(msg);
+					ScheduleMessage proposal = hmProposedPlan.get(iLocationId);
+					alMessages.add(composeMessage(ConstantsDefinition.REJECT, iLocationId, proposal.getStartTime(), proposal.getEndTime()));
 				}
 			}
 			else //resetType == PROPOSED
 			{
 				//Get the updated timeduration from the alRevisedProposal
-				int index = getUpdatedDetails(strLocation);
+				int index = getUpdatedDetails(iLocationId);
 				if(index!=INVALID)
 				{
-					String strRevised = alRevisedProposal.get(index);
-
-					Message msg = new Message();
-					msg.setReceiver(ConstantsDefinition.LOCATION.concat(strLocation));
-					String senderId = ConstantsDefinition.TRAVELLER.concat(String.valueOf(this.agentId));
-					switch(iProperty)
-					{
-					case ConstantsDefinition.LOCATION_SCHEDULE_LENGTH:
-						senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iLength));
-						break;
-					case ConstantsDefinition.LOCATION_SCHEDULE_SPEED:
-						senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iSpeed));
-						break;
-					}
-					msg.setSender(senderId);
-					log.debug("Agent:"+this.agentId+" transmit msg. sender "+msg.getSender());
-					
-					//msg.setSender(ConstantsDefinition.TRAVELLER.concat(String.valueOf(agentId)));
-					String strMsgBody = "";
-					String strStatus = ConstantsDefinition.RESERVE.toString();
-					String strDuration = strRevised.split(ConstantsDefinition.MSGBODY_DELIMITER)[0];
-					strMsgBody = strStatus.concat(ConstantsDefinition.MSGBODY_DELIMITER)
-							.concat(strDuration).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-							.concat(String.valueOf(iDWCount));
-					//	iDWCount++;
-					msg.setBody(strMsgBody);
-					alMessages.add(msg);
+					alMessages.add(composeMessage(ConstantsDefinition.RESERVE, alRevisedProposal.get(index)));
 				}//index!=INVALID
 				else 
 				{
-					log.error("Chosen to go with the proposed details, but edgeId "+strLocation+" is not in the alRevisedProposal");
+					log.error("Chosen to go with the proposed details, but edgeId "+iLocationId+" is not in the alRevisedProposal");
 				}
 			}
 			//update the hmReservedPlan
@@ -615,20 +672,19 @@ public class Travelers /* implements Runnable */
 	 * @param resetType: ALTERNATE/PROPOSED
 	 * @return alMessage: list of new remaining messages to be added
 	 */
-	private ArrayList<Message> addRemaining(ArrayList<Message> alMessages, int resetType) 
+	private ArrayList<ScheduleMessage> addRemaining(ArrayList<ScheduleMessage> alMessages, int resetType) 
 	{
-		ArrayList<Message> alRemainingMsgs = new ArrayList<Message>(); //
+		ArrayList<ScheduleMessage> alRemainingMsgs = new ArrayList<ScheduleMessage>(); //
 
 		if(resetType == ALTERNATE)
 		{
-			Iterator<String> iterAlt = hmAlternatePlan.keySet().iterator();
-			while(iterAlt.hasNext())
+			for(PlanEntry alternate:hmAlternatePlan.values())
 			{
-				String edgeId = iterAlt.next();
+				int edgeId = alternate.getLocationId();
 				boolean bFound  =false;
-				for(Message msg:alMessages)
+				for(ScheduleMessage msg:alMessages)
 				{
-					if(msg.getReceiver().equalsIgnoreCase(ConstantsDefinition.LOCATION.concat(edgeId)))
+					if(msg.getReceiverId() == edgeId)
 					{
 						bFound = true;
 						break;
@@ -638,43 +694,22 @@ public class Travelers /* implements Runnable */
 				if(!bFound) //no entry for the edge in the messages
 				{
 					log.debug("Agent:"+this.agentId+ " No entry for "+edgeId);
-					Message msg = new Message();
-					msg.setReceiver(ConstantsDefinition.LOCATION.concat(edgeId));
-					String duration = hmAlternatePlan.get(edgeId);
-					String senderId = ConstantsDefinition.TRAVELLER.concat(String.valueOf(this.agentId));
-					switch(iProperty)
-					{
-					case ConstantsDefinition.LOCATION_SCHEDULE_LENGTH:
-						senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iLength));
-						break;
-					case ConstantsDefinition.LOCATION_SCHEDULE_SPEED:
-						senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iSpeed));
-						break;
-					}
-					msg.setSender(senderId);
-					log.debug("Agent:"+this.agentId+" transmit msg. sender "+msg.getSender());
-					
-					//msg.setSender(ConstantsDefinition.TRAVELLER.concat(String.valueOf(agentId)));
-					String msgBody = ConstantsDefinition.RESERVE.toString().concat(ConstantsDefinition.MSGBODY_DELIMITER)
-							.concat(duration).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-							.concat(String.valueOf(iDWCount));
-					//	iDWCount++;
-					msg.setBody(msgBody);
-					log.debug("Agent:"+this.agentId+ " Adding "+msg+" to the remaining list");
+					ScheduleMessage msg = composeMessage(ConstantsDefinition.RESERVE, alternate);
+					if(log.isDebugEnabled())
+						log.debug("Agent:"+this.agentId+ " Adding "+msg+" to the remaining list");
 					alRemainingMsgs.add(msg);
 				}
-			}//end while iterAlt
+			}//end for alternate
 		}//end ALTERNATE
 		else //RPOPOSED
 		{
-			for(String strRevised:alRevisedProposal) //start%end#locationId
+			for(PlanEntry revised:alRevisedProposal)
 			{
-				String locationId = strRevised.split(ConstantsDefinition.MSGBODY_DELIMITER)[1];
-				String duration = strRevised.split(ConstantsDefinition.MSGBODY_DELIMITER)[0];
+				int locationId = revised.getLocationId();
 				boolean bFound  = false;
-				for(Message msg:alMessages)
+				for(ScheduleMessage msg:alMessages)
 				{
-					if(msg.getReceiver().equalsIgnoreCase(ConstantsDefinition.LOCATION.concat(locationId)))
+					if(msg.getReceiverId() == locationId)
 					{
 						bFound = true;
 						break;
@@ -684,28 +719,9 @@ public class Travelers /* implements Runnable */
 				if(!bFound) //no entry for the edge in the messages
 				{
 					log.debug("Agent:"+this.agentId+ " No entry for "+locationId);
-					Message msg = new Message();
-					msg.setReceiver(locationId);
-					String senderId = ConstantsDefinition.TRAVELLER.concat(String.valueOf(this.agentId));
-					switch(iProperty)
-					{
-					case ConstantsDefinition.LOCATION_SCHEDULE_LENGTH:
-						senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iLength));
-						break;
-					case ConstantsDefinition.LOCATION_SCHEDULE_SPEED:
-						senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iSpeed));
-						break;
-					}
-					msg.setSender(senderId);
-					log.debug("Agent:"+this.agentId+" transmit msg. sender "+msg.getSender());
-					
-					//msg.setSender(ConstantsDefinition.TRAVELLER.concat(String.valueOf(agentId)));
-					String msgBody = ConstantsDefinition.RESERVE.toString().concat(ConstantsDefinition.MSGBODY_DELIMITER)
-							.concat(duration).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-							.concat(String.valueOf(iDWCount));
-					//iDWCount++;
-					msg.setBody(msgBody);
-					log.debug("Agent:"+this.agentId+ " Adding "+msg+" to the remaining list");
+					ScheduleMessage msg = composeMessage(ConstantsDefinition.RESERVE, revised);
+					if(log.isDebugEnabled())
+						log.debug("Agent:"+this.agentId+ " Adding "+msg+" to the remaining list");
 					alRemainingMsgs.add(msg);
 				}
 			}//end for revisedProposal
@@ -718,13 +734,13 @@ public class Travelers /* implements Runnable */
 	 * and if it is found will return the index position else will return IVALID
 	 *  
 	 */
-	private int getUpdatedDetails(String strLocationId) 
+	private int getUpdatedDetails(int iLocationId) 
 	{
-		log.debug("Agent:"+this.agentId+ " Searching for strLocationId "+strLocationId+" in "+alRevisedProposal);
-		for(String strDetails:alRevisedProposal)
+		log.debug("Agent:"+this.agentId+ " Searching for iLocationId "+iLocationId+" in "+alRevisedProposal);
+		for(int i=0; i<alRevisedProposal.size(); i++)
 		{
-			if (strDetails.split(ConstantsDefinition.MSGBODY_DELIMITER)[1].equalsIgnoreCase(strLocationId))
-				return alRevisedProposal.indexOf(strDetails);
+			if (alRevisedProposal.get(i).getLocationId() == iLocationId)
+				return i;
 
 		}
 		return INVALID;
@@ -738,41 +754,24 @@ public class Travelers /* implements Runnable */
 	private long computeCostAlternate() {
 
 		boolean bFirst =true;
-		Integer beginningDate = -1;
-		Integer endingDate = -1;
+		int beginningDate = -1;
+		int endingDate = -1;
 
-		Iterator<String> iterAlter = hmAlternatePlan.keySet().iterator();
+		Iterator<PlanEntry> iterAlter = hmAlternatePlan.values().iterator();
 		while(iterAlter.hasNext())
 		{
-			String strLocation  = iterAlter.next();
-			String strDuration = hmAlternatePlan.get(strLocation);// 
-			log.debug("Agent:"+this.agentId+" strLoc:"+strLocation+" strDuration:"+strDuration);
+			PlanEntry alternate = iterAlter.next();
+			log.debug("Agent:"+this.agentId+" strLoc:"+alternate.getLocationId()+" strDuration:"+alternate);
 			if(bFirst)
 			{
 				bFirst = false;
-				try
-				{
-					beginningDate = Integer.parseInt(strDuration.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]);
-					endingDate = Integer.parseInt(strDuration.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[1]);
-				}
-				catch(Exception e)
-				{
-					log.error("Couldnt parse date"+strDuration.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]);
-				}
+				beginningDate = alternate.getStartTime();
+				endingDate = alternate.getEndTime();
 			}//end if first
 			else //check if it is the last entry
 			{
 				if(!iterAlter.hasNext())
-				{
-					try
-					{
-						endingDate = Integer.parseInt(strDuration.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[1]);
-					}
-					catch(Exception e)
-					{
-						log.error("Couldnt parse date"+strDuration.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[1]);
-					}
-				}
+					endingDate = alternate.getEndTime();
 			}
 		}//end iterAlternate
 		log.debug("Agent:"+this.agentId+ "alternate ending date:" +endingDate+ "starting date:"+ beginningDate);
@@ -784,7 +783,7 @@ public class Travelers /* implements Runnable */
 
 	/**
 	 *  This function will compute the cost of the proposed plan, which is maintained
-	 *  in sorted order in mapSchedules. There is a need for this function, because 
+	 *  in sorted order in alSortedProposals. There is a need for this function, because 
 	 *  in the proposed plan, because of the waits, there will be need to shift the 
 	 *  subsequent locations in accordance with the wait introduced. hence the cost 
 	 *  should be computed only afer the relevant shiftin has been done. However, since 
@@ -794,7 +793,7 @@ public class Travelers /* implements Runnable */
 	 */
 	private long computeCostProposed() 
 	{
-		// Iterate through the mapSchedules and using the information in the alWaits
+		// Iterate through the alSortedProposals and using the information in the alWaits
 		// get the waiting duration introduced and percolate the wait down the schedule.
 		// If in one of the successive location, another wait is introduced, go for the 
 		//maximal wait time, computed accordingly.
@@ -803,19 +802,18 @@ public class Travelers /* implements Runnable */
 		alRevisedProposal.clear();
 		alRevisedProposal.addAll(updateWaitsToProposedPlan());
 
-		for(String strRevised:alRevisedProposal)
+		for(PlanEntry revised:alRevisedProposal)
 		{
-			String timeDuration = strRevised.split(ConstantsDefinition.MSGBODY_DELIMITER)[0];
-			lCost+=(DateUtil.getDuration(timeDuration, TimeUnit.MINUTES)-iTPP);
+			lCost+=(revised.getEndTime() - revised.getStartTime() - iTPP);
 		}
 		lCost+=iTPP;
 		//If there is wait introduced in the start time itself then it will not be counted in the cost. 
 		//So check for the condition and add the additional wait time.
-		int revisedStartDate = Integer.parseInt(alRevisedProposal.get(0).split(ConstantsDefinition.MSGBODY_DELIMITER)[0].split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]);
+		int revisedStartDate = alRevisedProposal.get(0).getStartTime();
 		if(revisedStartDate > startDate)
 			lCost+= (revisedStartDate - startDate);
 		
-		log.debug("startTime:"+startDate+" revised start: "+alRevisedProposal.get(0).split(ConstantsDefinition.MSGBODY_DELIMITER)[0].split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]);
+		log.debug("startTime:"+startDate+" revised start: "+revisedStartDate);
 		log.debug("Agent:"+this.agentId+ " Compute cost proposed:"+lCost+" proposed:"+alRevisedProposal);
 		return lCost;
 	}
@@ -826,19 +824,16 @@ public class Travelers /* implements Runnable */
 	 *  Iterate thru the hmReservedPlan, check if it is in the waitlist,
 	 *  if so update the wait time. The order of the plan should be maintained
 	 *  as per the reserved plan with the waits incorporated
-	 * @return al of revised plans in sequence; each String contains start%end#locationId
+	 * @return al of revised plans in sequence
 	 */
-	private ArrayList<String> updateWaitsToProposedPlan() 
+	private ArrayList<PlanEntry> updateWaitsToProposedPlan() 
 	{
-		SimpleDateFormat sdf = new SimpleDateFormat(ConstantsDefinition.DATE_FORMAT);
-
-		ArrayList<String> altmpRevisedProposal = new ArrayList<String>(); //will maintain the plan with waits included. start%end#LocationId
-		Iterator<String>iterKey = hmReservedPlan.keySet().iterator(); //edgeId,start%end
+		ArrayList<PlanEntry> altmpRevisedProposal = new ArrayList<PlanEntry>(); //will maintain the plan with waits included.
 		log.debug("Agent:"+this.agentId+ " hmReservedPlan:"+hmReservedPlan.keySet());
 		int iTrickledDownWait = 0;
-		while(iterKey.hasNext())
+		for(PlanEntry reserved:hmReservedPlan.values())
 		{
-			String nextLocation = iterKey.next();
+			int nextLocation = reserved.getLocationId();
 			log.debug("Agent:"+this.agentId+ " nextLocation:"+nextLocation);
 			//Iterate thru the waits to see if the edge has a wait imposed on it.
 			//If yes, check if wait duration is consistent with the trickled-down wait.
@@ -849,87 +844,31 @@ public class Travelers /* implements Runnable */
 			//If there is a trickled-down wait, revise the proposed plan
 			//If there is no trickled-down wait, add it as is.
 
-			int iWaitIndex = locationHasWait(ConstantsDefinition.LOCATION.concat(nextLocation));
+			int iWaitIndex = locationHasWait(nextLocation);
 			log.debug("Agent:"+this.agentId+ " location has wait <<"+iWaitIndex);
 			if(iWaitIndex != INVALID) //location has wait
 			{
-				String strWaitEntry = alWaitLocations.get(iWaitIndex); //startTime%endTime#LocationAgentId#Waitduration.
-				log.debug("Agent:"+this.agentId+ " wait entry:" +strWaitEntry);
-				int iWaitDuration = Integer.parseInt(strWaitEntry.split(ConstantsDefinition.MSGBODY_DELIMITER)[2]);
+				ScheduleMessage waitProposal = alWaitLocations.get(iWaitIndex);
+				PlanEntry proposed = new PlanEntry(nextLocation, waitProposal.getStartTime(), waitProposal.getEndTime());
+				int iWaitDuration = proposed.getStartTime() - reserved.getStartTime();
+				log.debug("Agent:"+this.agentId+ " wait entry:" +proposed+" wait:"+iWaitDuration);
 
 				if(iWaitDuration >= iTrickledDownWait)
 				{
-					String strRevisedProposal = strWaitEntry.substring(0,strWaitEntry.indexOf(ConstantsDefinition.MSGBODY_DELIMITER)); //remove the LlocationId and wait duration from the entry
-					strRevisedProposal = strRevisedProposal.concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(nextLocation); //remove the wait duration from the entry
-					altmpRevisedProposal.add(strRevisedProposal);
-					log.debug("Agent:"+this.agentId+ " alRevisedProposal: "+altmpRevisedProposal);
-
+					altmpRevisedProposal.add(proposed);
 					iTrickledDownWait = iWaitDuration;
 				}
 				else //wait duration < trickled-down wait
 				{
-					try
-					{
-						int iAdditionalWait = iTrickledDownWait - iWaitDuration;
-						Integer calStartDate = Integer.parseInt(strWaitEntry.substring(0,strWaitEntry.indexOf(ConstantsDefinition.TIMEDURATION_DELIMITER)));
-						calStartDate += iAdditionalWait;
-
-						Integer calEndDate = Integer.parseInt(strWaitEntry.substring(strWaitEntry.indexOf(ConstantsDefinition.TIMEDURATION_DELIMITER)+1,strWaitEntry.indexOf(ConstantsDefinition.MSGBODY_DELIMITER)));
-						calEndDate += iAdditionalWait;
-
-
-						String strRevisedProposal = String.valueOf(calStartDate).concat(ConstantsDefinition.TIMEDURATION_DELIMITER)
-								.concat(String.valueOf(calEndDate)).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-								.concat(nextLocation);
-
-						altmpRevisedProposal.add(strRevisedProposal);
-						log.debug("Agent:"+this.agentId+ " alRevisedProposal: "+altmpRevisedProposal);
-					}
-					catch(Exception e)
-					{
-						log.error("Agent:"+this.agentId+ " Error parsing "+strWaitEntry.substring(0,strWaitEntry.indexOf(ConstantsDefinition.TIMEDURATION_DELIMITER))+" or "+strWaitEntry.substring(strWaitEntry.indexOf(ConstantsDefinition.TIMEDURATION_DELIMITER)+1,strWaitEntry.indexOf(ConstantsDefinition.MSGBODY_DELIMITER)));
-					}
+					altmpRevisedProposal.add(proposed.shift(iTrickledDownWait - iWaitDuration));
 				}//end else 
 			}//end if wait
 			else //no wait
 			{
-				String strWaitEntry = hmReservedPlan.get(nextLocation); //startTime%endTime
-
-				if(iTrickledDownWait > 0)
-				{
-					try
-					{
-						int iAdditionalWait = iTrickledDownWait ;
-						Integer calStartDate = Integer.parseInt(strWaitEntry.substring(0,strWaitEntry.indexOf(ConstantsDefinition.TIMEDURATION_DELIMITER)));
-						calStartDate += iAdditionalWait;
-
-						Integer calEndDate = Integer.parseInt(strWaitEntry.substring(strWaitEntry.indexOf(ConstantsDefinition.TIMEDURATION_DELIMITER)+1,strWaitEntry.length()));
-						calEndDate += iAdditionalWait;
-
-						String strRevisedProposal =String.valueOf(calStartDate).concat(ConstantsDefinition.TIMEDURATION_DELIMITER)
-								.concat(String.valueOf(calEndDate)).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-								.concat(nextLocation);
-						altmpRevisedProposal.add(strRevisedProposal);
-						log.debug("Agent:"+this.agentId+ " alRevisedProposal: "+altmpRevisedProposal);
-					}
-					catch(Exception e)
-					{
-						//log.error("Agent:"+this.agentId+ " Error parsing "+strWaitEntry.substring(0,strWaitEntry.indexOf(ConstantsDefinition.TIMEDURATION_DELIMITER))+" or "+strWaitEntry.substring(strWaitEntry.indexOf(ConstantsDefinition.TIMEDURATION_DELIMITER)+1,strWaitEntry.length()));
-						e.printStackTrace();
-					}
-				}
-				else
-				{
-					//add the plan as is
-					log.debug("Agent:"+this.agentId+ " strWaitEntry:"+strWaitEntry);
-					String strRevisedProposal = strWaitEntry;//.substring(0,strWaitEntry.indexOf(ConstantsDefinition.TIMEDURATION_DELIMITER)); //remove the LlocationId and wait duration from the entry
-					strRevisedProposal = strRevisedProposal.concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(nextLocation); //remove the wait duration from the entry
-
-					altmpRevisedProposal.add(strRevisedProposal);
-					log.debug("Agent:"+this.agentId+ " alRevisedProposal: "+altmpRevisedProposal);
-
-				}
+				//shift the reserved plan by the trickled-down wait, if any
+				altmpRevisedProposal.add(iTrickledDownWait > 0?reserved.shift(iTrickledDownWait):reserved);
 			}
+			log.debug("Agent:"+this.agentId+ " alRevisedProposal: "+altmpRevisedProposal);
 
 		}
 		log.debug(altmpRevisedProposal);
@@ -942,13 +881,13 @@ public class Travelers /* implements Runnable */
 	 * @param nextLocation: location id to be searched for in the list
 	 * @return
 	 */
-	private int locationHasWait(String nextLocation) 
+	private int locationHasWait(int nextLocation) 
 	{
 		log.debug("Agent:"+this.agentId+ " location has wait>>"+nextLocation);
-		for(String strEntry:alWaitLocations)
+		for(int i=0; i<alWaitLocations.size(); i++)
 		{
-			if(strEntry.contains(nextLocation))
-				return alWaitLocations.indexOf(strEntry);
+			if(alWaitLocations.get(i).getSenderId() == nextLocation)
+				return i;
 		}
 
 		return INVALID;
@@ -964,8 +903,7 @@ public class Travelers /* implements Runnable */
 			log.debug("Agent:"+this.agentId+ " Wait imposed on locations:"+alWaitLocations);
 			for(int i=0; i<alWaitLocations.size(); i++)
 			{
-				String strDesc = alWaitLocations.get(i); //start%end#locationId
-				alConstraintEdges.add(strDesc.split(ConstantsDefinition.MSGBODY_DELIMITER)[1].replace(ConstantsDefinition.LOCATION, ""));
+				alConstraintEdges.add(String.valueOf(alWaitLocations.get(i).getSenderId()));
 			}
 		}
 		else
@@ -979,12 +917,12 @@ public class Travelers /* implements Runnable */
 	 */
 	private void scheduleAlternate() 
 	{
-		String path = sUtil.getPath(strSrcNode, strDestNode, alConstraintEdges);
+		String path = reservations != null?findTimedPath(alConstraintEdges):findPath(alConstraintEdges);
 		log.debug("Agent:"+this.agentId+ " alternate path is"+path+ "with constraints on"+alConstraintEdges);
 		hmAlternatePlan.clear();
 
 		if(path!=null)
-			hmAlternatePlan.putAll(schedule(path, INVALID));
+			hmAlternatePlan.putAll(schedule(path, INVALID, reservations));
 
 	}
 	/**
@@ -1008,19 +946,8 @@ public class Travelers /* implements Runnable */
 		}
 		else
 		{
-			SimpleDateFormat sdf = new SimpleDateFormat(ConstantsDefinition.DATE_FORMAT);
-
-			ArrayList<String> alProposed = new ArrayList<String>();
-			Iterator<String>iterKey = hmProposedPlan.keySet().iterator();
-			while(iterKey.hasNext())
-			{
-				String loc = iterKey.next();
-				alProposed.add(hmProposedPlan.get(loc).concat(HASH).concat(loc));
-			}//end while
-
 			//sort the proposals by the starting time.
-			mapSchedules = new TreeMap<Integer, ArrayList<String>>();//startDate, startTime%endTime#LocationAgentId. 
-			mapSchedules.putAll(sortByStartingTime(alProposed));
+			sortByStartingTime(new ArrayList<ScheduleMessage>(hmProposedPlan.values()));
 
 			bOrderingConsistent = checkOrderingConsistency();
 
@@ -1039,62 +966,40 @@ public class Travelers /* implements Runnable */
 	 *  should always be after the reserved time,; it cannot be before the reserved time.
 	 *  if there is difference between the two (proposed - reserved), it should be positive
 	 *  and set as the wait time and the proposed edge should be added to the list.
-	 *  mapSchedules is the sorted list of proposed schedules,
+	 *  alSortedProposals is the sorted list of proposed schedules,
 	 *  hmReserved is the list of resevred timeslots. 
 	 * @return
 	 */
 	private void checkWait() 
 	{
-		Iterator<Integer>iterSortedSchedule = mapSchedules.keySet().iterator();
 		//SimpleDateFormat sdf = new SimpleDateFormat(ConstantsDefinition.DATE_FORMAT);
 
-		while(iterSortedSchedule.hasNext())
+		for(int i=0; i<alSortedProposals.size() ;i++)
 		{
-			Integer nextScheduleDate = iterSortedSchedule.next();
-			ArrayList<String>listEntries = mapSchedules.get(nextScheduleDate);
-
-			for(int i=0; i<listEntries.size() ;i++)
+			ScheduleMessage proposal = alSortedProposals.get(i);
+			PlanEntry reserved = hmReservedPlan.get(proposal.getSenderId());
+			log.debug("Agent:"+this.agentId+ " for location Id:"+ proposal.getSenderId()+" reserved:"+reserved+" proposed:"+proposal.getPeriod());
+			if(!proposal.samePeriod(reserved.getStartTime(), reserved.getEndTime()))
 			{
-				String strProposedDuration =  listEntries.get(i).split(ConstantsDefinition.MSGBODY_DELIMITER)[0];
-				String strLocationId = listEntries.get(i).split(ConstantsDefinition.MSGBODY_DELIMITER)[1].replace(ConstantsDefinition.LOCATION, "");
-				String strReservedDuration = hmReservedPlan.get(strLocationId);
-				log.debug("Agent:"+this.agentId+ " for location Id:"+ strLocationId+" reserved:"+strReservedDuration+" proposed:"+strProposedDuration);
-				int iDurationComparison = DateUtil.compareTimePeriod(strReservedDuration, strProposedDuration);
-				if(iDurationComparison != ConstantsDefinition.EQUAL)
-				{
-					//Wait introduced. proposed duration should be after the reserved duration
-					try
-					{
-						Integer proposedStartDate = Integer.parseInt(strProposedDuration.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]);
-						Integer reservedStartDate = Integer.parseInt(strReservedDuration.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]);
-
-						long iDiff = proposedStartDate - reservedStartDate;
-
-						if (iDiff < 0)
-						{
-							log.error("Agent:"+this.agentId+ " Proposed time" +proposedStartDate+" before reserved time " +reservedStartDate+". Shouldnt happen");
-						}
-						else
-						{
-							bWaitImposed = true;
-							alWaitLocations.add(listEntries.get(i).concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(String.valueOf(iDiff)));
-						}
-
+				//Wait introduced. proposed duration should be after the reserved duration
+				long iDiff = proposal.getStartTime() - reserved.getStartTime();
 
-					}
-					catch(Exception e)
-					{
-						log.debug("Agent:"+this.agentId+ " error in parsing either "+ strProposedDuration.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]
-								+" or "+strReservedDuration.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[0]);
-					}
+				if (iDiff < 0)
+				{
+					log.error("Agent:"+this.agentId+ " Proposed time" +proposal.getStartTime()+" before reserved time " +reserved.getStartTime()+". Shouldnt happen");
+				}
+				else
+				{
+					bWaitImposed = true;
+					alWaitLocations.add(proposal);
 				}
-
 			}
-		}//end while
+
+		}
 
 	}
 
-	/** This function will  iterate through the mapSchedules, which
+	/** This function will  iterate through the alSortedProposals, which
 	 * contains the start-time ordered list of proposals. It should
 	 * check if the order is consistent in terms of the sequence of the
 	 * locations proposed by the agent earlier. 
@@ -1102,38 +1007,30 @@ public class Travelers /* implements Runnable */
 	 */
 	private boolean checkOrderingConsistency()
 	{
-		Iterator<Integer>iterSortedSchedule = mapSchedules.keySet().iterator();//startdate, start%end#locationId
-		boolean bFirst = true;
-		ArrayList<String> alLocationNames = new ArrayList<String>(); //this will maintain the order of the locations for comparison.
-
-		while(iterSortedSchedule.hasNext())
+		for(int iSorted=1; iSorted<alSortedProposals.size(); iSorted++)
 		{
-			Integer nextScheduleDate = iterSortedSchedule.next();
-
 			//Check if there are two or more schedules for the same time. 
 			//Introduces an ordering inconsistency.
-			if(mapSchedules.get(nextScheduleDate).size() > 1)
+			if(KeySort.getKey(arrProposalKeys[iSorted]) == KeySort.getKey(arrProposalKeys[iSorted-1]))
 			{
 				return false;
 			}//end if
-
-			alLocationNames.add(mapSchedules.get(nextScheduleDate).get(0).split(ConstantsDefinition.MSGBODY_DELIMITER)[1].replace(ConstantsDefinition.LOCATION, ""));// start%end#locationId
 		}
 
 		//Get the list of locations in the ordered sequence of the startimte
 		//and compare with the plan proposed by the agent in hmReservedPlan. If same return true,
 		//else TODO
 
-		String[] listReservedLocations = getOrderedReservedLocations();
+		int[] listReservedLocations = getOrderedReservedLocations();
 
-		log.debug("Agent:"+this.agentId+ hmReservedPlan.keySet()+" and: "+alLocationNames);
+		log.debug("Agent:"+this.agentId+ hmReservedPlan.keySet()+" and: "+alSortedProposals);
 		//verify that the sizes of the two lists are same.
-		if(alLocationNames.size() == listReservedLocations.length)
+		if(alSortedProposals.size() == listReservedLocations.length)
 		{	
-			for(int iIndex = 0; iIndex < alLocationNames.size(); iIndex++)
+			for(int iIndex = 0; iIndex < alSortedProposals.size(); iIndex++)
 			{
 
-				if(!alLocationNames.get(iIndex).equalsIgnoreCase(listReservedLocations[iIndex]))
+				if(alSortedProposals.get(iIndex).getSenderId() != listReservedLocations[iIndex])
 				{
 					log.debug("Agent:"+this.agentId+  "not same in ordering");
 					return false;
@@ -1149,141 +1046,87 @@ public class Travelers /* implements Runnable */
 	/**
 	 *  This function will return the time-ordered sequence of reserved
 	 *  location Ids as String
-	 * @return Array of locationIds without L
+	 * @return Array of locationIds without L. INVALID after the locations with the same starttime as another.
 	 */
-	private String[] getOrderedReservedLocations() 
+	private int[] getOrderedReservedLocations() 
 	{
-		//Keep a hashmap indexed by duration
-		//SimpleDateFormat sdf = new SimpleDateFormat(ConstantsDefinition.DATE_FORMAT);
-
-		TreeMap<Integer, String> mapSchedules = new TreeMap<Integer, String>();
-		String[] locationIds = new String[hmReservedPlan.keySet().size()];
-
-		//Populate the sortedhashmap indexed with duration,
-		Iterator<String> iterSchedules = hmReservedPlan.keySet().iterator();
-		while(iterSchedules.hasNext())
+		//Keep the sort keys of the locations indexed by start time
+		int iLocations = hmReservedPlan.size();
+		int[] locationIds = new int[iLocations];
+		Arrays.fill(locationIds, INVALID);
+		int[] arrReservedLocations = new int[iLocations];
+		if(arrReservedKeys.length < iLocations)
+			arrReservedKeys = new long[Math.max(iLocations, arrReservedKeys.length << 1)];
+
+		//Populate the sort keys with the start time, 
+		int iLocation = 0;
+		for(PlanEntry reserved:hmReservedPlan.values())
 		{
-			String locationId = iterSchedules.next();
-			String timeDuration = hmReservedPlan.get(locationId);
-			String timeDurationSplit[] = timeDuration.split(ConstantsDefinition.TIMEDURATION_DELIMITER);
-
+			arrReservedLocations[iLocation] = reserved.getLocationId();
+			arrReservedKeys[iLocation] = KeySort.sortKey(reserved.getStartTime(), iLocation);
+			iLocation++;
+		}//end for all msg
+		sorter.sort(arrReservedKeys, iLocations);
 
-			Integer calStartTime = -1;
 
-			try
-			{ 
-				calStartTime = Integer.parseInt(timeDurationSplit[0]);
-			}
-			catch(Exception e)
-			{
-				log.error("Agent:"+this.agentId+ " Cannot parse "+timeDurationSplit[0]);
-			}
-			//Check if mapSchedule already contains an entry for that duration
-			if(mapSchedules.containsKey(calStartTime))
+		//Put the sorted elements into the array
+		int i=0;
+		for(int iSorted=0; iSorted<iLocations; iSorted++)
+		{
+			int locationId = arrReservedLocations[KeySort.getEntry(arrReservedKeys[iSorted])];
+			int calStartTime = KeySort.getKey(arrReservedKeys[iSorted]);
+			//Check if an entry has been made for that start time already
+			if(iSorted > 0 && calStartTime == KeySort.getKey(arrReservedKeys[iSorted-1]))
 			{
-				//Insert into the entry
 				log.error("Agent:"+this.agentId+ " Two elements with same starttime");
-				log.error("Making entry for loc: "+locationId+" startTime:"+calStartTime+" is conflicting with mapSchedule entry for:"+ mapSchedules.get(calStartTime)+" at same time.");
+				log.error("Making entry for loc: "+locationId+" startTime:"+calStartTime+" is conflicting with mapSchedule entry for:"+ locationIds[i-1]+" at same time.");
 				log.error("HmReservedPlan: "+hmReservedPlan);
 			}
 			else
 			{
-				//Create an arraylist, add msg to it and add the entry, value to the map
-				mapSchedules.put(calStartTime, locationId);
+				locationIds[i++] = locationId;
 			}
-
-
-		}//end for all msg
-
-
-		//Put the sorted elements into the array
-		Iterator<Integer> iterDates = mapSchedules.keySet().iterator();
-		int i=0;
-		while(iterDates.hasNext())
-		{
-			locationIds[i++] = mapSchedules.get(iterDates.next());
 		}
 		return locationIds;
 	}
 
 	/**
 	 * This function will take a list of schedules and sort them in the increasing order of 
-	 * starting time required. 
-	 * @param alSchedules: Each string is of the format startTime%endTime#AgentId
-	 * @return treemap:	startDate, startTime%endTime#LocationAgentId. 
-	 * An arrayList of string is required as the value to a key becoz two or more locations may propose
-	 * the same start date on their locations.
+	 * starting time required, into alSortedProposals.
+	 * @param alSchedules: proposals from the locations
+	 * Two or more locations may propose the same start date on their locations. They are
+	 * kept in the order of alSchedules, with the same key in arrProposalKeys.
 	 */
-	private TreeMap<Integer,ArrayList<String>> sortByStartingTime(ArrayList<String> alSchedules) 
+	private void sortByStartingTime(ArrayList<ScheduleMessage> alSchedules) 
 	{
-		//Keep a hashmap indexed by duration
-		TreeMap<Integer, ArrayList<String>> tmpMapSchedules = new TreeMap<Integer, ArrayList<String>>();
-
-		//	SimpleDateFormat sdf = new SimpleDateFormat(ConstantsDefinition.DATE_FORMAT);
-
-		//Populate the sortedhashmap indexed with duration, 
-		for(String msg:alSchedules)
-		{
-			String[] msgSplit = msg.split(ConstantsDefinition.MSGBODY_DELIMITER);
-			String[] timeDurationSplit = msgSplit[PERIOD_INDEX].split(ConstantsDefinition.TIMEDURATION_DELIMITER);
+		if(arrProposalKeys.length < alSchedules.size())
+			arrProposalKeys = new long[Math.max(alSchedules.size(), arrProposalKeys.length << 1)];
 
-			try 
-			{
-				int calStartTime = Integer.parseInt(timeDurationSplit[0]);
-
-				//Check if mapSchedule already contains an entry for that duration
-				if(tmpMapSchedules.containsKey(calStartTime))
-				{
-					//Insert into the entry
-					tmpMapSchedules.get(calStartTime).add(msg);
-				}
-				else
-				{
-					//Create an arraylist, add msg to it and add the entry, value to the map
-					ArrayList<String> listMsg = new ArrayList<String>();
-					listMsg.add(msg);
-					tmpMapSchedules.put(calStartTime, listMsg);
-				}
-			}
-			catch(Exception e)
-			{
-				log.error("Agent:"+this.agentId+ " Exception in parsing date "+timeDurationSplit[0]);
-			}
+		//Populate the sort keys with the start time, 
+		for(int i=0; i<alSchedules.size(); i++)
+			arrProposalKeys[i] = KeySort.sortKey(alSchedules.get(i).getStartTime(), i);
+		sorter.sort(arrProposalKeys, alSchedules.size());
 
-		}//end for all msg
-		return tmpMapSchedules;
+		alSortedProposals.clear();
+		for(int i=0; i<alSchedules.size(); i++)
+			alSortedProposals.add(alSchedules.get(KeySort.getEntry(arrProposalKeys[i])));
 	}//end function
 
 	/**
 	 *  This function will iterate through each location in the parameter
 	 *  and will formulate Msg objects and then will finally transmit it to the
 	 *  PO.
-	 * @param locationSchedules: Key: LocationId, Value:StartDateTIMEDURATIONDELIMITERendDate
+	 * @param locationSchedules: Key: LocationId, Value:entry with the time period
 	 */
-	public  ArrayList<Message>  transmitMessage()
+	public  ArrayList<ScheduleMessage>  transmitMessage()
 	{
-		ArrayList<Message>listMessages = new ArrayList<Message>();
-		for(String locationId:hmReservedPlan.keySet())
+		ArrayList<ScheduleMessage>listMessages = new ArrayList<ScheduleMessage>();
+		for(PlanEntry reserved:hmReservedPlan.values())
 		{
 			//Compose the message
-			Message msg = new Message();
-			msg.setReceiver(ConstantsDefinition.LOCATION.concat(locationId));
-			String senderId = ConstantsDefinition.TRAVELLER.concat(String.valueOf(this.agentId));
-			switch(iProperty)
-			{
-			case ConstantsDefinition.LOCATION_SCHEDULE_LENGTH:
-				senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iLength));
-				break;
-			case ConstantsDefinition.LOCATION_SCHEDULE_SPEED:
-				senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iSpeed));
-				break;
-			}
-			msg.setSender(senderId);
-			
-			msg.setBody(String.valueOf(ConstantsDefinition.RESERVE).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-					.concat(hmReservedPlan.get(locationId)).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-					.concat(String.valueOf(iDWCount)));
-			log.debug("Agent:"+this.agentId+" transmit msg. sender "+msg.getSender());
+			ScheduleMessage msg = composeMessage(ConstantsDefinition.RESERVE, reserved);
+			if(log.isDebugEnabled())
+				log.debug("Agent:"+this.agentId+" transmit msg "+msg);
 			//iDWCount++;
 			listMessages.add(msg);
 		}
@@ -1319,6 +1162,10 @@ public class Travelers /* implements Runnable */
 	{
 		return strDestNode;
 	}
+	public int getStartDate()
+	{
+		return startDate;
+	}
 	public void setStartDate(int startDate) 
 	{
 		this.startDate = startDate;
@@ -1338,30 +1185,6 @@ public class Travelers /* implements Runnable */
 	{
 		this.endDate = endDate;	
 	}
-	/*	@Override
-	public void run() {
-
-		//If it is the first run, generate the schedule and transmit the message.
-		//Else keep polling to check if new msgs have been received at the postOffice 
-		//and collect them.
-		if(bFirstRun)
-		{
-			bFirstRun = false;
-			generateSchedule();
-		}
-
-		else
-		{
-			alRxdMsg = Collections.synchronizedList(alRxdMsg);
-
-			synchronized (alRxdMsg) 
-			{
-				//Check for consistency 
-				checkConsistency(alRxdMsg);	
-			}
-		}	
-	}
-	 */
 	/** This function will be invoked when the plan
 	 * formed by the responses of the locations is consistent.
 	 * Depending on the status of the agent, the response msg has
@@ -1371,40 +1194,24 @@ public class Travelers /* implements Runnable */
 	 * if DW_INIT then DW_COUNT_x
 	 * if DW_COUNT_x where x = DWSize, then FINALISE;
 	 */
-	private ArrayList<Message> transmitResponse() 
+	private ArrayList<ScheduleMessage> transmitResponse() 
 	{
 		log.debug("Agent:"+this.agentId+" transmit Response>>"+agentStatus);
 		//		log.info("Agent:"+this.agentId+" iDWCount:"+(iDWCount+1));
 
-		ArrayList<Message>alResponseMsg = new ArrayList<Message>();
+		ArrayList<ScheduleMessage>alResponseMsg = new ArrayList<ScheduleMessage>();
 		if(agentStatus == ConstantsDefinition.RESERVE)
 		{
 			if(iDWCount + 1 <= iDWSize)
 			{
 				agentStatus = ConstantsDefinition.ACCEPT;
-				String senderId = ConstantsDefinition.TRAVELLER.concat(String.valueOf(this.agentId));
-				switch(iProperty)
+				for(ScheduleMessage msg:alRxdMsg)
 				{
-				case ConstantsDefinition.LOCATION_SCHEDULE_LENGTH:
-					senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iLength));
-					break;
-				case ConstantsDefinition.LOCATION_SCHEDULE_SPEED:
-					senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iSpeed));
-					break;
-				}
-				for(Message msg:alRxdMsg)
-				{
-					log.debug("Agent:"+this.agentId+" Rxd msg::"+msg);
-					Message respMsg = new Message();
-					respMsg.setReceiver(msg.getSender());
-					respMsg.setSender(senderId);
-					String msgBody[] = msg.getBody().split(ConstantsDefinition.MSGBODY_DELIMITER);
-					String respBody = ConstantsDefinition.ACCEPT.toString().concat(ConstantsDefinition.MSGBODY_DELIMITER)
-							.concat(msgBody[1]).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-							.concat(String.valueOf(iDWCount));
-					log.debug("Agent:"+this.agentId+" response msg. sender "+respMsg.getSender());
-					
-					respMsg.setBody(respBody);	
+					if(log.isDebugEnabled())
+						log.debug("Agent:"+this.agentId+" Rxd msg::"+msg);
+					ScheduleMessage respMsg = composeMessage(ConstantsDefinition.ACCEPT, msg.getSenderId(), msg.getStartTime(), msg.getEndTime());
+					if(log.isDebugEnabled())
+						log.debug("Agent:"+this.agentId+" response msg "+respMsg);
 					alResponseMsg.add(respMsg);
 				}
 				log.debug("Agent:"+this.agentId+" agentStatus"+agentStatus);
@@ -1426,35 +1233,12 @@ public class Travelers /* implements Runnable */
 			//If all agents have sent an accept, then initialise a DW or else
 			//there is atleast one agent which has sent a propose, which has been 
 			//found consistent, so send an accept again.
-			String senderId = ConstantsDefinition.TRAVELLER.concat(String.valueOf(this.agentId));
-			switch(iProperty)
-			{
-			case ConstantsDefinition.LOCATION_SCHEDULE_LENGTH:
-				senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iLength));
-				break;
-			case ConstantsDefinition.LOCATION_SCHEDULE_SPEED:
-				senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iSpeed));
-				break;
-			}
-			for(Message msg:alRxdMsg)
+			Integer responseStatus = bAcceptRxdFromAllLocations?ConstantsDefinition.DW:ConstantsDefinition.ACCEPT;
+			for(ScheduleMessage msg:alRxdMsg)
 			{
-				Message respMsg = new Message();
-				respMsg.setReceiver(msg.getSender());
-				respMsg.setSender(senderId);
-				String msgBody[] = msg.getBody().split(ConstantsDefinition.MSGBODY_DELIMITER);
-				String responseStatus= bAcceptRxdFromAllLocations?ConstantsDefinition.DW.toString():ConstantsDefinition.ACCEPT.toString();
-				String dwStatus = bAcceptRxdFromAllLocations?String.valueOf(ConstantsDefinition.DWINITCOUNT):String.valueOf(ConstantsDefinition.DW_UNINIT);
-				/*
-				 * String respBody =
-				 * responseStatus.concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(msgBody[1
-				 * ]) .concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(dwStatus);
-				 */
-				String respBody = responseStatus.concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(msgBody[1])
-						.concat(ConstantsDefinition.MSGBODY_DELIMITER).concat(String.valueOf(iDWCount));
-
-				respMsg.setBody(respBody);	
-				log.debug("Agent:"+this.agentId+" response msg. sender "+respMsg.getSender());
-				
+				ScheduleMessage respMsg = composeMessage(responseStatus, msg.getSenderId(), msg.getStartTime(), msg.getEndTime());
+				if(log.isDebugEnabled())
+					log.debug("Agent:"+this.agentId+" response msg "+respMsg);
 				alResponseMsg.add(respMsg);
 			}
 
@@ -1481,27 +1265,16 @@ public class Travelers /* implements Runnable */
 				String locations="";
 				for(int i=0; i<alRxdMsg.size(); i++)
 				{
-					locations = locations.concat(alRxdMsg.get(i).getSender().replace(ConstantsDefinition.LOCATION, "")).concat(EQUALS);
-
-					try
-					{
-						String timeDuration = alRxdMsg.get(i).getBody().split(ConstantsDefinition.MSGBODY_DELIMITER)[1];
-						locations = locations.concat(timeDuration).concat(HASH);
-
-						int calCurrentEnd = Integer.parseInt(timeDuration.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[1]);
-						if(i==0) 
-						{
-							calLatest = Integer.parseInt(timeDuration.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[1]);
-						}
-						else
-						{
-							if(calCurrentEnd > calLatest)
-								calLatest = calCurrentEnd; 
-						}
-					}catch(Exception e)
-					{
-						e.printStackTrace();
-					}
+					ScheduleMessage msg = alRxdMsg.get(i);
+					locations = locations.concat(String.valueOf(msg.getSenderId())).concat(EQUALS)
+							.concat(msg.getPeriod()).concat(HASH);
+					//the locations hold the finalised periods as constraints
+					if(agentStatus == ConstantsDefinition.FINALIZE)
+						alFinaliseMsgs.add(composeMessage(ConstantsDefinition.FINALIZE, msg.getSenderId(), msg.getStartTime(), msg.getEndTime()));
+
+					int calCurrentEnd = msg.getEndTime();
+					if(i==0 || calCurrentEnd > calLatest)
+						calLatest = calCurrentEnd; 
 				}
 				agentCost = calLatest-this.startDate;
 				log.debug("Finalised[ Agent Id:"+agentId+" Agent Cost:" + agentCost+" Final schedule:"+locations+ " init cost:"+lInitialCost+" init schedule:"+strInitialSchedule);
@@ -1511,25 +1284,10 @@ public class Travelers /* implements Runnable */
 		}//end if Accept received from all agents
 		else if(agentStatus == ConstantsDefinition.DW) 
 		{ 
-			String senderId = ConstantsDefinition.TRAVELLER.concat(String.valueOf(this.agentId));
-			switch(iProperty)
+			for(int i=0; i<alRxdMsg.size(); i++)
 			{
-			case ConstantsDefinition.LOCATION_SCHEDULE_LENGTH:
-				senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iLength));
-				break;
-			case ConstantsDefinition.LOCATION_SCHEDULE_SPEED:
-				senderId = senderId.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(this.iSpeed));
-				break;
-			}
-			for(Message msg:alRxdMsg)
-			{
-				Message respMsg = new Message();
-				respMsg.setReceiver(msg.getSender());
-				respMsg.setSender(senderId);
-				log.debug("Agent:"+this.agentId+" transmit msg. sender "+respMsg.getSender());
-				
-				String msgBody[] = msg.getBody().split(ConstantsDefinition.MSGBODY_DELIMITER);
-				log.debug(msg.getBody());
+				ScheduleMessage msg = alRxdMsg.get(i);
+				log.debug(msg);
 				//Check if the DW window has reached its DWSize, if so send finalise, else increment the count.
 				Integer msgStatus;
 				Integer dwCount;
@@ -1546,16 +1304,21 @@ public class Travelers /* implements Runnable */
 					bFinalisedMessageRxd = true;
 				}
 
+				//In the lease mode, the location holds the reservation till the DW lapses. Only a
+				//changed proposal, which is a new msg other than DW, has to be responded to.
+				if(bLeasedReservations && msgStatus == ConstantsDefinition.DW
+						&& (i >= iNewResponses || msg.getStatus() == ConstantsDefinition.DW))
+					continue;
+
 				/*
 				 * String respBody =
 				 * msgStatus.toString().concat(ConstantsDefinition.MSGBODY_DELIMITER)
 				 * .concat(msgBody[1]).concat(ConstantsDefinition.MSGBODY_DELIMITER)
 				 * .concat(String.valueOf(dwCount));
 				 */
-				String respBody = msgStatus.toString().concat(ConstantsDefinition.MSGBODY_DELIMITER)
-						.concat(msgBody[1]).concat(ConstantsDefinition.MSGBODY_DELIMITER)
-						.concat(String.valueOf(iDWCount));
-				respMsg.setBody(respBody);	
+				ScheduleMessage respMsg = composeMessage(msgStatus, msg.getSenderId(), msg.getStartTime(), msg.getEndTime());
+				if(log.isDebugEnabled())
+					log.debug("Agent:"+this.agentId+" transmit msg "+respMsg);
 				alResponseMsg.add(respMsg);
 			}
 			log.debug("Agent:"+this.agentId+" agentStatus"+agentStatus+" iDWCount:"+iDWCount);
@@ -1569,25 +1332,13 @@ public class Travelers /* implements Runnable */
 				String strFinalisedSchedule="";
 				for(int i=0; i<alRxdMsg.size(); i++)
 				{
-					locations = locations.concat(alRxdMsg.get(i).getSender().replace(ConstantsDefinition.LOCATION, "")).concat(EQUALS);
+					ScheduleMessage msg = alRxdMsg.get(i);
+					locations = locations.concat(String.valueOf(msg.getSenderId())).concat(EQUALS)
+							.concat(msg.getPeriod()).concat(HASH);
 
-					try
-					{
-						String timeDuration = alRxdMsg.get(i).getBody().split(ConstantsDefinition.MSGBODY_DELIMITER)[1];
-						locations = locations.concat(timeDuration).concat(HASH);
-						int calCurrentEnd = Integer.parseInt(timeDuration.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[1]);
-
-						if(i==0) {
-
-							calLatest = Integer.parseInt(timeDuration.split(ConstantsDefinition.TIMEDURATION_DELIMITER)[1]);
-						} else {
-							if(calCurrentEnd > calLatest)
-								calLatest = calCurrentEnd; 
-						}
-					}catch(Exception e)
-					{
-						e.printStackTrace();
-					}
+					int calCurrentEnd = msg.getEndTime();
+					if(i==0 || calCurrentEnd > calLatest)
+						calLatest = calCurrentEnd; 
 				}
 				agentCost = calLatest-this.startDate;
 				log.debug("Finalised[ Agent Id:"+agentId+" Agent Cost:" + agentCost+" Final schedule:"+locations+ " init cost:"+lInitialCost+" init schedule:"+strInitialSchedule);
@@ -1598,6 +1349,8 @@ public class Travelers /* implements Runnable */
 			message.addReceiver(new AID(ConstantsDefinition.PO_AGENT, AID.ISLOCALNAME));
 			myAgent.send(message);
 				 */
+				//The FINALIZE msgs are delivered by the PO, once it has retired the traveller.
+				alFinaliseMsgs = alResponseMsg;
 				return null;
 			}
 			return sendMessage(alResponseMsg);
@@ -1608,12 +1361,45 @@ public class Travelers /* implements Runnable */
 		return null;
 	}
 
-	private ArrayList<Message> sendMessage(ArrayList<Message> listMessages) 
+	/**
+	 * This function will compose the msg to be sent to a location. The speed or the length 
+	 * of the traveller is added to the msg if the locations schedule on it.
+	 * @param status: RESERVE, REJECT, ACCEPT, ...
+	 * @param iLocationId: id of the location without L
+	 * @param iStart: start of the time period
+	 * @param iEnd: end of the time period
+	 */
+	private ScheduleMessage composeMessage(Integer status, int iLocationId, int iStart, int iEnd)
+	{
+		ScheduleMessage msg = new ScheduleMessage(ConstantsDefinition.TRAVELLER, this.agentId, iLocationId, status, iStart, iEnd, iDWCount);
+		switch(iProperty)
+		{
+		case ConstantsDefinition.LOCATION_SCHEDULE_LENGTH:
+			msg.setProperty(this.iLength);
+			break;
+		case ConstantsDefinition.LOCATION_SCHEDULE_SPEED:
+			msg.setProperty(this.iSpeed);
+			break;
+		}
+		return msg;
+	}
+
+	/**
+	 * This function will compose the msg to be sent to a location from the 
+	 * entries of the plans.
+	 * @param entry: location and time period of the plan
+	 */
+	private ScheduleMessage composeMessage(Integer status, PlanEntry entry)
+	{
+		return composeMessage(status, entry.getLocationId(), entry.getStartTime(), entry.getEndTime());
+	}
+
+	private ArrayList<ScheduleMessage> sendMessage(ArrayList<ScheduleMessage> listMessages) 
 	{
 		iAgentsMessagedTo = 0;
-		for(Message msg:listMessages)
+		for(ScheduleMessage msg:listMessages)
 		{
-			if(!msg.getBody().split(ConstantsDefinition.MSGBODY_DELIMITER)[0].equalsIgnoreCase(ConstantsDefinition.REJECT.toString()))
+			if(msg.getStatus() != ConstantsDefinition.REJECT)
 				iAgentsMessagedTo++;
 		}
 		log.debug("Agent Id:"+agentId+" DWcount:"+iDWCount +" Return "+listMessages.size());
@@ -1630,24 +1416,22 @@ public class Travelers /* implements Runnable */
 	 */
 	private void divideBasedOnMsgType()
 	{
-		ArrayList<String> alAcceptedPlan = new ArrayList<String>();  //maintains the list of accepted locations.
-		hmProposedPlan.clear(); //edgeId, timeDuration
-		for(Message msg:alRxdMsg)
+		int iAcceptedLocations = 0;  //number of accepted locations.
+		hmProposedPlan.clear(); //locationId, proposal
+		for(ScheduleMessage msg:alRxdMsg)
 		{
-			log.debug(msg.toString());
-			String msgBody = msg.getBody();
-			String msgBodyContents[] = msgBody.split(ConstantsDefinition.MSGBODY_DELIMITER);
-			Integer msgStatus = Integer.parseInt(msgBodyContents[0]); 
+			log.debug(msg);
+			int msgStatus = msg.getStatus(); 
 			if(msgStatus == ConstantsDefinition.PROPOSE)
 			{
-				hmProposedPlan.put(msg.getSender(), msgBodyContents[1]);
+				hmProposedPlan.put(msg.getSenderId(), msg);
 			}
 			else if (msgStatus == ConstantsDefinition.ACCEPT)
 			{
 				//Add the accepted schedule to the list of the proposedPlan
-				//and then add the locationId to the list of AcceptedLocation.
-				hmProposedPlan.put(msg.getSender(),msgBodyContents[1]);
-				alAcceptedPlan.add(msg.getSender());
+				//and then count the location as accepted.
+				hmProposedPlan.put(msg.getSenderId(), msg);
+				iAcceptedLocations++;
 			}
 			else if(msgStatus == ConstantsDefinition.DW)
 			{
@@ -1656,7 +1440,7 @@ public class Travelers /* implements Runnable */
 				 * Integer.parseInt(msgBodyContents[ConstantsDefinition.DWCOUNT_INDEX]);
 				 * hmDW.put(msg.getSender(), iDWCount);
 				 */
-				hmProposedPlan.put(msg.getSender(),msgBodyContents[1]);
+				hmProposedPlan.put(msg.getSenderId(), msg);
 				log.debug("Agent:"+this.agentId+" DW received. Doing nothing in divide based on msg type");
 			}
 			else if(msgStatus == ConstantsDefinition.FINALIZE)
@@ -1669,9 +1453,9 @@ public class Travelers /* implements Runnable */
 			}
 		}//end for 
 
-		log.debug("Agent:"+this.agentId+" alAcceptedPlan.size()"+alAcceptedPlan.size()+" iAgentsMessagedTo"+iAgentsMessagedTo);
+		log.debug("Agent:"+this.agentId+" alAcceptedPlan.size()"+iAcceptedLocations+" iAgentsMessagedTo"+iAgentsMessagedTo);
 		//Check whether accpet has been recieved from all agents
-		if(alAcceptedPlan.size() == iAgentsMessagedTo)
+		if(iAcceptedLocations == iAgentsMessagedTo)
 			bAcceptRxdFromAllLocations = true;
 	}//end function
 
@@ -1679,10 +1463,21 @@ public class Travelers /* implements Runnable */
 		return agentStatus;
 	}
 
+	/**
+	 * @return the FINALIZE msgs composed as the traveller finalised, for the locations to hold
+	 * the finalised periods as constraints. They are handed out once. Empty if none.
+	 */
+	ArrayList<ScheduleMessage> takeFinaliseMsgs()
+	{
+		ArrayList<ScheduleMessage> alMsgs = alFinaliseMsgs;
+		alFinaliseMsgs = new ArrayList<ScheduleMessage>();
+		return alMsgs;
+	}
+
 	public long getInitialCost() 
 	{
 		return lInitialCost;
 	}
 
 
-}
\ No newline at end of file
+}
\ No newline at end of file
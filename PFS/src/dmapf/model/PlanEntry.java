@@ -0,0 +1,66 @@
+package dmapf.model;
+
+import dmapf.constants.ConstantsDefinition;
+
+/**
+ * This class is an entry in the plans of a traveller: the time period in which it is to
+ * travel a location. The reserved, alternate and revised plans of the traveller hold these
+ * entries, against the location id, so that the traveller compares and shifts the periods
+ * as ints rather than splitting and parsing startTime%endTime strings every round.
+ *
+ * @author st
+ *
+ */
+public class PlanEntry
+{
+	private final int iLocationId;
+	private final int iStartTime;
+	private final int iEndTime;
+
+	/**
+	 * Constructor
+	 * @param iLocationId: id of the location without the L
+	 * @param iStartTime: start of the time period
+	 * @param iEndTime: end of the time period
+	 */
+	public PlanEntry(int iLocationId, int iStartTime, int iEndTime)
+	{
+		this.iLocationId = iLocationId;
+		this.iStartTime = iStartTime;
+		this.iEndTime = iEndTime;
+	}
+
+	public int getLocationId() {
+		return iLocationId;
+	}
+
+	public int getStartTime() {
+		return iStartTime;
+	}
+
+	public int getEndTime() {
+		return iEndTime;
+	}
+
+	/**
+	 * @return the entry with its time period delayed by iWait
+	 */
+	public PlanEntry shift(int iWait)
+	{
+		return new PlanEntry(iLocationId, iStartTime + iWait, iEndTime + iWait);
+	}
+
+	/**
+	 * @return time period in the form startTimeTIMEDURATION_DELIMITERendTime
+	 */
+	public String getPeriod()
+	{
+		return String.valueOf(iStartTime).concat(ConstantsDefinition.TIMEDURATION_DELIMITER).concat(String.valueOf(iEndTime));
+	}
+
+	@Override
+	public String toString()
+	{
+		return getPeriod();
+	}
+}
@@ -0,0 +1,152 @@
+package dmapf.model;
+
+import dmapf.constants.ConstantsDefinition;
+
+/**
+ * This class is the typed form of the msgs exchanged between the Traveller and
+ * the Location agents through the PO. The status, time period, agent ids and the
+ * DW count are maintained as int fields, so that the PO and the agents do not have
+ * to split and parse the msg body at every hop.
+ *
+ * The String forms of the sender, receiver and body, as defined by Message, are
+ * composed only when they are asked for (eg. while logging) and retained thereafter.
+ * Setting the property clears the retained sender, which carries the property.
+ * sender: TagentId or TagentIdSENDER_DELIMITERproperty or LlocationId
+ * receiver: TagentId or LlocationId
+ * body: statusMSGBODY_DELIMITERstartTimeTIMEDURATION_DELIMITERendTimeMSGBODY_DELIMITERDWCount
+ *
+ * @author st
+ *
+ */
+public class ScheduleMessage extends Message
+{
+	public static final int NO_PROPERTY = -1; //property is sent only if the location schedules on speed/length
+
+	private String strSenderType; //T or L. The receiver is always of the other type.
+	private int iSenderId;
+	private int iReceiverId;
+	private int iStatus;
+	private int iStartTime;
+	private int iEndTime;
+	private int iDWCount;
+	private int iProperty = NO_PROPERTY; //speed or length of the traveller
+
+	/**
+	 * Constructor
+	 * @param strSenderType: ConstantsDefinition.TRAVELLER or ConstantsDefinition.LOCATION
+	 * @param iSenderId: id of the sender without the T/L
+	 * @param iReceiverId: id of the receiver without the T/L
+	 * @param iStatus: RESERVE, ACCEPT, DW, ...
+	 * @param iStartTime: start of the time period
+	 * @param iEndTime: end of the time period
+	 * @param iDWCount: DW count of the traveller
+	 */
+	public ScheduleMessage(String strSenderType, int iSenderId, int iReceiverId, int iStatus, int iStartTime, int iEndTime, int iDWCount)
+	{
+		this.strSenderType = strSenderType;
+		this.iSenderId = iSenderId;
+		this.iReceiverId = iReceiverId;
+		this.iStatus = iStatus;
+		this.iStartTime = iStartTime;
+		this.iEndTime = iEndTime;
+		this.iDWCount = iDWCount;
+	}
+
+	public String getSenderType() {
+		return strSenderType;
+	}
+
+	public String getReceiverType() {
+		return isFromTraveller()?ConstantsDefinition.LOCATION:ConstantsDefinition.TRAVELLER;
+	}
+
+	public boolean isFromTraveller() {
+		return ConstantsDefinition.TRAVELLER.equals(strSenderType);
+	}
+
+	public int getSenderId() {
+		return iSenderId;
+	}
+
+	public int getReceiverId() {
+		return iReceiverId;
+	}
+
+	public int getStatus() {
+		return iStatus;
+	}
+
+	public int getStartTime() {
+		return iStartTime;
+	}
+
+	public int getEndTime() {
+		return iEndTime;
+	}
+
+	public int getDWCount() {
+		return iDWCount;
+	}
+
+	public int getProperty() {
+		return iProperty;
+	}
+
+	public void setProperty(int iProperty) {
+		this.iProperty = iProperty;
+		super.setSender(null);
+	}
+
+	/**
+	 * @return time period in the form startTimeTIMEDURATION_DELIMITERendTime
+	 */
+	public String getPeriod()
+	{
+		return String.valueOf(iStartTime).concat(ConstantsDefinition.TIMEDURATION_DELIMITER).concat(String.valueOf(iEndTime));
+	}
+
+	/**
+	 * @return true if the time period of this msg is the same as iStart%iEnd
+	 */
+	public boolean samePeriod(int iStart, int iEnd)
+	{
+		return iStartTime == iStart && iEndTime == iEnd;
+	}
+
+	@Override
+	public String getSender()
+	{
+		if(super.getSender() == null)
+		{
+			String strSender = strSenderType.concat(String.valueOf(iSenderId));
+			if(iProperty != NO_PROPERTY)
+				strSender = strSender.concat(ConstantsDefinition.SENDER_DELIMITER).concat(String.valueOf(iProperty));
+			super.setSender(strSender);
+		}
+		return super.getSender();
+	}
+
+	@Override
+	public String getReceiver()
+	{
+		if(super.getReceiver() == null)
+			super.setReceiver(getReceiverType().concat(String.valueOf(iReceiverId)));
+		return super.getReceiver();
+	}
+
+	@Override
+	public String getBody()
+	{
+		if(super.getBody() == null)
+			super.setBody(String.valueOf(iStatus).concat(ConstantsDefinition.MSGBODY_DELIMITER)
+					.concat(getPeriod()).concat(ConstantsDefinition.MSGBODY_DELIMITER)
+					.concat(String.valueOf(iDWCount)));
+		return super.getBody();
+	}
+
+	@Override
+	public String toString()
+	{
+		return getSender().concat("->").concat(getReceiver()).concat(":").concat(getBody());
+	}
+}
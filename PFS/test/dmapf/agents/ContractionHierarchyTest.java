@@ -0,0 +1,96 @@
+package dmapf.agents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * This class compares the paths of the ContractionHierarchy with the shortest paths found
+ * by Dijkstra's search, on random networks and on a grid large enough for the witness
+ * searches to reach their limit.
+ *
+ * @author st
+ *
+ */
+public class ContractionHierarchyTest
+{
+	private static final int NETWORKS = 500;
+	private static final int QUERIES = 20;
+
+	@Test
+	public void testPathIsShortest()
+	{
+		Random random = new Random(7);
+		for(int n=0; n<NETWORKS; n++)
+		{
+			int iNodes = 2+random.nextInt(70);
+			TestRoadNetwork network = TestRoadNetwork.random(random, iNodes, random.nextInt(4*iNodes), random.nextBoolean());
+			ContractionHierarchy hierarchy = new ContractionHierarchy(network);
+			for(int i=0; i<QUERIES; i++)
+				checkShortest(network, hierarchy, network.node(random), network.node(random));
+		}
+	}
+
+	@Test
+	public void testPathIsShortestOnGrid()
+	{
+		Random random = new Random(5);
+		TestRoadNetwork network = TestRoadNetwork.grid(random, 60);
+		ContractionHierarchy hierarchy = new ContractionHierarchy(network);
+		for(int i=0; i<200; i++)
+			checkShortest(network, hierarchy, network.node(random), network.node(random));
+	}
+
+	@Test
+	public void testSharedAcrossThreads() throws Exception
+	{
+		Random random = new Random(9);
+		TestRoadNetwork network = TestRoadNetwork.grid(random, 30);
+		ContractionHierarchy hierarchy = new ContractionHierarchy(network);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			ArrayList<Future<?>> alQueries = new ArrayList<Future<?>>();
+			for(int t=0; t<8; t++)
+			{
+				long lSeed = random.nextLong();
+				alQueries.add(executor.submit(() -> {
+					Random threadRandom = new Random(lSeed);
+					for(int i=0; i<100; i++)
+						checkShortest(network, hierarchy, network.node(threadRandom), network.node(threadRandom));
+				}));
+			}
+			for(Future<?> query:alQueries)
+				query.get();
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testUnknownNode()
+	{
+		ContractionHierarchy hierarchy = new ContractionHierarchy(TestRoadNetwork.grid(new Random(1), 3));
+		assertNull(hierarchy.getPath("0", "9"));
+		assertNull(hierarchy.getPath("9", "0"));
+	}
+
+	private static void checkShortest(TestRoadNetwork network, ContractionHierarchy hierarchy, String strSource, String strDest)
+	{
+		String strPath = hierarchy.getPath(strSource, strDest);
+		double dExpected = network.distance(strSource, strDest, null);
+		if(strPath == null)
+			assertEquals("no path from "+strSource+" to "+strDest, Double.POSITIVE_INFINITY, dExpected, 0);
+		else
+			assertEquals(dExpected, network.checkPath(strPath, strSource, strDest, null), 1e-9);
+	}
+}
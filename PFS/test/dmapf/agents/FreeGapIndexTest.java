@@ -0,0 +1,135 @@
+package dmapf.agents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * This class compares the earliest starts of the FreeGapIndex with those found by moving the
+ * start on, one at a time, till no allocation holds it, as allocations are added and the
+ * windows before a rising horizon are dropped.
+ *
+ * @author st
+ *
+ */
+public class FreeGapIndexTest
+{
+	private static final int HOLD = LocationSchedule.TPP+LocationSchedule.GAP;
+	private static final int OPERATIONS = 100000;
+
+	@Test
+	public void testEarliestStart()
+	{
+		Random random = new Random(2);
+		FreeGapIndex index = new FreeGapIndex(HOLD);
+		ArrayList<Integer> alAllocations = new ArrayList<Integer>();
+		int iHorizon = Integer.MIN_VALUE; //highest horizon dropped before, from which the starts are asked for
+		for(int i=0; i<OPERATIONS; i++)
+		{
+			int iOperation = random.nextInt(20);
+			if(iOperation < 8)
+			{
+				int iStart = random.nextInt(2000);
+				index.add(iStart);
+				alAllocations.add(iStart);
+			}
+			else if(iOperation == 8)
+			{
+				int iDropHorizon = random.nextInt(2000);
+				int iEnded = 0;
+				for(int w=0; w<index.size(); w++)
+					if(index.getBlockEnd(w) <= iDropHorizon)
+						iEnded++;
+				assertEquals(iEnded, index.dropBefore(iDropHorizon));
+				iHorizon = Math.max(iHorizon, iDropHorizon);
+			}
+			else if(iOperation == 9 && random.nextInt(100) == 0)
+			{
+				index.clear();
+				alAllocations.clear();
+				iHorizon = Integer.MIN_VALUE;
+			}
+			else if(iOperation == 10)
+				index.trimToSize();
+			else
+			{
+				int iStart = Math.max(iHorizon, random.nextInt(2100) - 50);
+				assertEquals("earliest start from "+iStart, earliestStart(alAllocations, iStart), index.earliestStart(iStart));
+			}
+			checkWindows(index);
+		}
+	}
+
+	@Test
+	public void testCopyFrom()
+	{
+		Random random = new Random(4);
+		FreeGapIndex index = new FreeGapIndex(HOLD);
+		for(int i=0; i<100; i++)
+			index.add(random.nextInt(1000));
+		FreeGapIndex copy = new FreeGapIndex(HOLD);
+		copy.add(5);
+		copy.copyFrom(index);
+		assertEquals(index.size(), copy.size());
+		for(int w=0; w<index.size(); w++)
+		{
+			assertEquals(index.getBlockStart(w), copy.getBlockStart(w));
+			assertEquals(index.getBlockEnd(w), copy.getBlockEnd(w));
+		}
+		//the copy is independent of the index it was copied from
+		copy.add(2000);
+		assertEquals(index.size()+1, copy.size());
+	}
+
+	@Test
+	public void testAdjacentHolds()
+	{
+		FreeGapIndex index = new FreeGapIndex(HOLD);
+		index.add(10);
+		index.add(10+2*HOLD);
+		//the windows touch at 10+HOLD, which is free
+		assertEquals(2, index.size());
+		assertEquals(10+HOLD, index.earliestStart(11));
+		assertEquals(10+3*HOLD, index.earliestStart(10+HOLD+1));
+		assertEquals(10-HOLD, index.earliestStart(10-HOLD));
+	}
+
+	/**
+	 * The windows are sorted and do not overlap, though they may touch.
+	 */
+	private static void checkWindows(FreeGapIndex index)
+	{
+		for(int w=0; w<index.size(); w++)
+		{
+			assertTrue(index.getBlockStart(w) < index.getBlockEnd(w));
+			if(w > 0)
+				assertTrue(index.getBlockEnd(w-1) <= index.getBlockStart(w));
+		}
+	}
+
+	/**
+	 * @return the first start from iStart which is not within HOLD of an allocation
+	 */
+	private static int earliestStart(ArrayList<Integer> alAllocations, int iStart)
+	{
+		boolean bHeld = true;
+		while(bHeld)
+		{
+			bHeld = false;
+			for(int iAllocation:alAllocations)
+			{
+				if(Math.abs(iAllocation - iStart) < HOLD)
+				{
+					iStart++;
+					bHeld = true;
+					break;
+				}
+			}
+		}
+		return iStart;
+	}
+}
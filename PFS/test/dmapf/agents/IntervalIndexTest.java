@@ -0,0 +1,89 @@
+package dmapf.agents;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * This class compares the first conflicts found by the IntervalIndex with those found by
+ * scanning the periods, as they are added, truncated, trimmed and cleared.
+ *
+ * @author st
+ *
+ */
+public class IntervalIndexTest
+{
+	private static final int OPERATIONS = 200000;
+
+	@Test
+	public void testFirstConflict()
+	{
+		Random random = new Random(1);
+		IntervalIndex index = new IntervalIndex();
+		ArrayList<int[]> alPeriods = new ArrayList<int[]>();
+		for(int i=0; i<OPERATIONS; i++)
+		{
+			int iOperation = random.nextInt(20);
+			if(iOperation < 12)
+			{
+				int iStart = random.nextInt(1000);
+				int iEnd = iStart + 1 + random.nextInt(50);
+				index.add(iStart, iEnd);
+				alPeriods.add(new int[] {iStart, iEnd});
+			}
+			else if(iOperation == 12)
+			{
+				int iSize = random.nextInt(alPeriods.size()+1);
+				index.truncate(iSize);
+				while(alPeriods.size() > iSize)
+					alPeriods.remove(alPeriods.size()-1);
+			}
+			else if(iOperation == 13)
+				index.trimToSize();
+			else if(iOperation == 14 && random.nextInt(50) == 0)
+			{
+				index.clear();
+				alPeriods.clear();
+			}
+			else
+			{
+				int iStart = random.nextInt(1100);
+				int iFromIndex = random.nextInt(alPeriods.size()+2) - 1;
+				assertEquals("conflict with "+iStart+" from "+iFromIndex, firstConflict(alPeriods, iStart, iFromIndex), index.firstConflict(iStart, iFromIndex));
+			}
+			assertEquals(alPeriods.size(), index.size());
+		}
+		for(int i=0; i<alPeriods.size(); i++)
+		{
+			assertEquals(alPeriods.get(i)[0], index.getStart(i));
+			assertEquals(alPeriods.get(i)[1], index.getEnd(i));
+		}
+	}
+
+	@Test
+	public void testConflictEndsAtStart()
+	{
+		IntervalIndex index = new IntervalIndex();
+		index.add(10, 20);
+		index.add(0, 5);
+		assertEquals(-1, index.firstConflict(20, 0));
+		assertEquals(0, index.firstConflict(19, 0));
+		assertEquals(1, index.firstConflict(4, 1));
+		assertEquals(-1, index.firstConflict(5, 1));
+		assertEquals(-1, index.firstConflict(0, 2));
+	}
+
+	/**
+	 * @return the first position, from iFromIndex, of a period ending after iStart. -1 if none.
+	 */
+	private static int firstConflict(ArrayList<int[]> alPeriods, int iStart, int iFromIndex)
+	{
+		for(int i=Math.max(iFromIndex, 0); i<alPeriods.size(); i++)
+			if(iStart < alPeriods.get(i)[1])
+				return i;
+		return -1;
+	}
+}
@@ -0,0 +1,85 @@
+package dmapf.agents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.jgrapht.GraphPath;
+import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+import org.junit.Test;
+
+/**
+ * This class compares the paths found on a JGraphT graph adapted by JGraphTNetwork, by the
+ * LifelongPlanner and by the ContractionHierarchy, with the shortest paths JGraphT finds on
+ * the graph itself, as JGraphTUtil does.
+ *
+ * @author st
+ *
+ */
+public class JGraphTNetworkTest
+{
+	private static final int GRAPHS = 100;
+	private static final int PAIRS = 8;
+
+	@Test
+	public void testPathsMatchJGraphT()
+	{
+		Random random = new Random(11);
+		for(int n=0; n<GRAPHS; n++)
+		{
+			int iNodes = 2+random.nextInt(50);
+			SimpleDirectedWeightedGraph<Integer, DefaultWeightedEdge> graph = randomGraph(random, iNodes, iNodes+random.nextInt(3*iNodes));
+			JGraphTNetwork<Integer, DefaultWeightedEdge> network = new JGraphTNetwork<Integer, DefaultWeightedEdge>(graph,
+					node -> String.valueOf(node), edge -> graph.getEdgeSource(edge)+"-"+graph.getEdgeTarget(edge));
+			LandmarkHeuristic heuristic = new LandmarkHeuristic(network, LandmarkHeuristic.DEFAULT_LANDMARKS);
+			ContractionHierarchy hierarchy = new ContractionHierarchy(network);
+			for(int i=0; i<PAIRS; i++)
+			{
+				int iSource = random.nextInt(iNodes);
+				int iDest = random.nextInt(iNodes);
+				GraphPath<Integer, DefaultWeightedEdge> expected = DijkstraShortestPath.findPathBetween(graph, iSource, iDest);
+				String strSource = String.valueOf(iSource);
+				String strDest = String.valueOf(iDest);
+				checkPath(expected, new LifelongPlanner(network, strSource, strDest, heuristic).getPath(null));
+				checkPath(expected, hierarchy.getPath(strSource, strDest));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownNode()
+	{
+		SimpleDirectedWeightedGraph<Integer, DefaultWeightedEdge> graph = randomGraph(new Random(1), 4, 6);
+		new JGraphTNetwork<Integer, DefaultWeightedEdge>(graph, node -> String.valueOf(node), edge -> graph.getEdgeSource(edge)+"-"+graph.getEdgeTarget(edge))
+				.outgoingEdgesOf("4");
+	}
+
+	private static SimpleDirectedWeightedGraph<Integer, DefaultWeightedEdge> randomGraph(Random random, int iNodes, int iEdges)
+	{
+		SimpleDirectedWeightedGraph<Integer, DefaultWeightedEdge> graph = new SimpleDirectedWeightedGraph<Integer, DefaultWeightedEdge>(DefaultWeightedEdge.class);
+		for(int i=0; i<iNodes; i++)
+			graph.addVertex(i);
+		for(int i=0; i<iEdges; i++)
+		{
+			int iSource = random.nextInt(iNodes);
+			int iTarget = random.nextInt(iNodes);
+			if(iSource == iTarget)
+				continue;
+			DefaultWeightedEdge edge = graph.addEdge(iSource, iTarget);
+			if(edge != null)
+				graph.setEdgeWeight(edge, 0.5*(1+random.nextInt(9)));
+		}
+		return graph;
+	}
+
+	private static void checkPath(GraphPath<Integer, DefaultWeightedEdge> expected, String strPath)
+	{
+		if(expected == null)
+			assertNull(strPath);
+		else
+			assertEquals(strPath, expected.getWeight(), TestRoadNetwork.distanceOf(strPath), 1e-9);
+	}
+}
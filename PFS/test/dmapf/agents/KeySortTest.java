@@ -0,0 +1,84 @@
+package dmapf.agents;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * This class compares the order of the KeySort with that of a stable sort of the keys, for
+ * the insertion sort of a few entries and the counting sort of many, on keys of narrow and
+ * wide ranges, of either sign.
+ *
+ * @author st
+ *
+ */
+public class KeySortTest
+{
+	private static final int SORTS = 3000;
+
+	@Test
+	public void testStableOrder()
+	{
+		Random random = new Random(19);
+		KeySort sorter = new KeySort();
+		for(int n=0; n<SORTS; n++)
+		{
+			int iSize = random.nextInt(4) == 0?random.nextInt(2000):random.nextInt(64);
+			long[] arrKeys = new long[iSize + random.nextInt(4)];
+			int iRange = random.nextInt(4);
+			int iBase = random.nextInt();
+			for(int i=0; i<arrKeys.length; i++)
+			{
+				int iKey;
+				if(iRange == 0)
+					iKey = random.nextInt(5); //many equal keys
+				else if(iRange == 1)
+					iKey = random.nextInt(2000) - 1000; //either sign
+				else if(iRange == 2)
+					iKey = iBase + random.nextInt(1 << 20); //same upper byte, possibly wrapping
+				else
+					iKey = random.nextInt();
+				//the entries are not in order either, as after the requests of a location are dropped
+				arrKeys[i] = KeySort.sortKey(iKey, random.nextInt(iSize + 1));
+			}
+			long[] arrExpected = stableSort(arrKeys, iSize);
+			sorter.sort(arrKeys, iSize);
+			assertArrayEquals("sort of "+iSize+" keys", arrExpected, arrKeys);
+			if(random.nextInt(20) == 0)
+				sorter.trimToSize();
+		}
+	}
+
+	@Test
+	public void testSortKey()
+	{
+		long lSortKey = KeySort.sortKey(-7, 123);
+		assertEquals(-7, KeySort.getKey(lSortKey));
+		assertEquals(123, KeySort.getEntry(lSortKey));
+		lSortKey = KeySort.sortKey(Integer.MAX_VALUE, Integer.MAX_VALUE);
+		assertEquals(Integer.MAX_VALUE, KeySort.getKey(lSortKey));
+		assertEquals(Integer.MAX_VALUE, KeySort.getEntry(lSortKey));
+		lSortKey = KeySort.sortKey(Integer.MIN_VALUE, 0);
+		assertEquals(Integer.MIN_VALUE, KeySort.getKey(lSortKey));
+		assertEquals(0, KeySort.getEntry(lSortKey));
+	}
+
+	/**
+	 * @return the keys with the first iSize of them sorted by the stable sort of the JDK, and the others as they are
+	 */
+	private static long[] stableSort(long[] arrKeys, int iSize)
+	{
+		Long[] arrSorted = new Long[iSize];
+		for(int i=0; i<iSize; i++)
+			arrSorted[i] = arrKeys[i];
+		Arrays.sort(arrSorted, (a, b) -> Integer.compare(KeySort.getKey(a), KeySort.getKey(b)));
+		long[] arrExpected = arrKeys.clone();
+		for(int i=0; i<iSize; i++)
+			arrExpected[i] = arrSorted[i];
+		return arrExpected;
+	}
+}
@@ -0,0 +1,83 @@
+package dmapf.agents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * This class checks that the estimates of the LandmarkHeuristic are bounds of the distances
+ * found by Dijkstra's search, consistent along the edges, and that they lessen the nodes the
+ * LifelongPlanner expands without changing its paths.
+ *
+ * @author st
+ *
+ */
+public class LandmarkHeuristicTest
+{
+	private static final int NETWORKS = 300;
+
+	@Test
+	public void testEstimateIsConsistentBound()
+	{
+		Random random = new Random(17);
+		for(int n=0; n<NETWORKS; n++)
+		{
+			int iNodes = 2+random.nextInt(30);
+			TestRoadNetwork network = TestRoadNetwork.random(random, iNodes, random.nextInt(4*iNodes), random.nextBoolean());
+			LandmarkHeuristic heuristic = new LandmarkHeuristic(network, random.nextInt(10));
+			assertTrue(heuristic.getLandmarkCount() <= iNodes);
+			for(int i=0; i<5; i++)
+			{
+				String strDest = network.node(random);
+				for(String strNode:network.vertexSet())
+				{
+					double dEstimate = heuristic.estimate(strNode, strDest);
+					double dDistance = network.distance(strNode, strDest, null);
+					assertTrue("estimate "+dEstimate+" from "+strNode+" to "+strDest, dEstimate >= 0);
+					assertTrue("estimate "+dEstimate+" over the distance "+dDistance+" from "+strNode+" to "+strDest, dEstimate <= dDistance + 1e-9);
+					//the estimate of a node is within the edge length of those of the nodes after it, which reach the destination
+					for(String strEdge:network.outgoingEdgesOf(strNode))
+					{
+						String strNext = network.getOppositeNode(strEdge, strNode);
+						if(network.distance(strNext, strDest, null) != Double.POSITIVE_INFINITY)
+							assertTrue("estimate not consistent over "+strEdge,
+									dEstimate <= network.getEdgeWeight(strEdge) + heuristic.estimate(strNext, strDest) + 1e-9);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testEstimateLessensExpansions()
+	{
+		Random random = new Random(5);
+		TestRoadNetwork network = TestRoadNetwork.grid(random, 40);
+		LandmarkHeuristic heuristic = new LandmarkHeuristic(network, LandmarkHeuristic.DEFAULT_LANDMARKS);
+		long lExpanded = 0;
+		long lExpandedWithout = 0;
+		for(int i=0; i<50; i++)
+		{
+			String strSource = network.node(random);
+			String strDest = network.node(random);
+			LifelongPlanner planner = new LifelongPlanner(network, strSource, strDest, heuristic);
+			LifelongPlanner plannerWithout = new LifelongPlanner(network, strSource, strDest, LifelongPlanner.NO_ESTIMATE);
+			assertEquals(TestRoadNetwork.distanceOf(plannerWithout.getPath(null)), TestRoadNetwork.distanceOf(planner.getPath(null)), 1e-9);
+			lExpanded += planner.getExpandedCount();
+			lExpandedWithout += plannerWithout.getExpandedCount();
+		}
+		assertTrue("expanded "+lExpanded+" with the landmarks, "+lExpandedWithout+" without", lExpanded < lExpandedWithout);
+	}
+
+	@Test
+	public void testUnknownNode()
+	{
+		TestRoadNetwork network = TestRoadNetwork.grid(new Random(1), 3);
+		LandmarkHeuristic heuristic = new LandmarkHeuristic(network, 2);
+		assertEquals(0, heuristic.estimate("9", "0"), 0);
+		assertEquals(0, heuristic.estimate("0", "9"), 0);
+	}
+}
@@ -0,0 +1,98 @@
+package dmapf.agents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * This class compares the paths of the LifelongPlanner, as it repairs its search for the
+ * edges excluded and restored between the calls, with the paths found anew by Dijkstra's search.
+ *
+ * @author st
+ *
+ */
+public class LifelongPlannerTest
+{
+	private static final int NETWORKS = 500;
+	private static final int REPLANS = 12;
+
+	@Test
+	public void testRepairedPathIsShortest()
+	{
+		Random random = new Random(3);
+		for(int n=0; n<NETWORKS; n++)
+		{
+			int iNodes = 5+random.nextInt(60);
+			TestRoadNetwork network = TestRoadNetwork.random(random, iNodes, iNodes+random.nextInt(3*iNodes), random.nextBoolean());
+			String strSource = network.node(random);
+			String strDest = network.node(random);
+			LifelongPlanner.Heuristic heuristic = random.nextBoolean()?LifelongPlanner.NO_ESTIMATE:new LandmarkHeuristic(network, 1+random.nextInt(6));
+			LifelongPlanner planner = new LifelongPlanner(network, strSource, strDest, heuristic);
+			ArrayList<String> alEdges = network.edgeSet();
+			ArrayList<String> alExcluded = new ArrayList<String>();
+			for(int i=0; i<REPLANS; i++)
+			{
+				checkShortest(network, planner.getPath(alExcluded), strSource, strDest, alExcluded);
+				//exclude an edge, or now and then restore one
+				if(!alExcluded.isEmpty() && random.nextInt(4) == 0)
+					alExcluded.remove(random.nextInt(alExcluded.size()));
+				else
+					alExcluded.add(alEdges.get(random.nextInt(alEdges.size())));
+			}
+		}
+	}
+
+	@Test
+	public void testExcludingThePathEdges()
+	{
+		Random random = new Random(5);
+		TestRoadNetwork network = TestRoadNetwork.grid(random, 30);
+		String strSource = "0";
+		String strDest = String.valueOf(30*30-1);
+		LifelongPlanner planner = new LifelongPlanner(network, strSource, strDest, LifelongPlanner.NO_ESTIMATE);
+		ArrayList<String> alExcluded = new ArrayList<String>();
+		String strPath = planner.getPath(alExcluded);
+		int iFirstExpanded = planner.getExpandedCount();
+		for(int i=0; i<10; i++)
+		{
+			checkShortest(network, strPath, strSource, strDest, alExcluded);
+			//exclude an edge of the current path, as a traveller does
+			String[] arrPath = strPath.split("%");
+			alExcluded.add(arrPath[1+2*random.nextInt((arrPath.length-2)/2)]);
+			strPath = planner.getPath(alExcluded);
+			assertTrue("repair expanded "+planner.getExpandedCount()+" of the "+iFirstExpanded+" of the first search",
+					planner.getExpandedCount() < iFirstExpanded);
+		}
+	}
+
+	@Test
+	public void testUnreachableDestination()
+	{
+		TestRoadNetwork network = new TestRoadNetwork(3, true);
+		String strEdge = network.addEdge(0, 1, 1);
+		network.addEdge(1, 2, 1);
+		LifelongPlanner planner = new LifelongPlanner(network, "2", "0", LifelongPlanner.NO_ESTIMATE);
+		assertNull(planner.getPath(null));
+		planner = new LifelongPlanner(network, "0", "2", LifelongPlanner.NO_ESTIMATE);
+		assertEquals(2, TestRoadNetwork.distanceOf(planner.getPath(null)), 0);
+		ArrayList<String> alExcluded = new ArrayList<String>();
+		alExcluded.add(strEdge);
+		assertNull(planner.getPath(alExcluded));
+		alExcluded.clear();
+		assertEquals(2, TestRoadNetwork.distanceOf(planner.getPath(alExcluded)), 0);
+	}
+
+	private static void checkShortest(TestRoadNetwork network, String strPath, String strSource, String strDest, ArrayList<String> alExcluded)
+	{
+		double dExpected = network.distance(strSource, strDest, alExcluded);
+		if(strPath == null)
+			assertEquals("no path from "+strSource+" to "+strDest, Double.POSITIVE_INFINITY, dExpected, 0);
+		else
+			assertEquals(dExpected, network.checkPath(strPath, strSource, strDest, alExcluded), 1e-9);
+	}
+}
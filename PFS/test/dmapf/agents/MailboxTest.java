@@ -0,0 +1,123 @@
+package dmapf.agents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import dmapf.constants.ConstantsDefinition;
+import dmapf.model.ScheduleMessage;
+
+/**
+ * This class checks that the Mailbox hands over every msg posted to it once, in the order of
+ * posting, with one thread posting and draining, and with several threads posting while the
+ * agent drains.
+ *
+ * @author st
+ *
+ */
+public class MailboxTest
+{
+	private static final int PRODUCERS = 4;
+	private static final int BATCHES = 20000;
+
+	@Test
+	public void testOrderOfPosting()
+	{
+		Random random = new Random(23);
+		Mailbox mailbox = new Mailbox();
+		ArrayList<ScheduleMessage> alPosted = new ArrayList<ScheduleMessage>();
+		int iSequence = 0;
+		for(int i=0; i<10000; i++)
+		{
+			if(random.nextInt(3) > 0)
+			{
+				ArrayList<ScheduleMessage> batch = new ArrayList<ScheduleMessage>();
+				int iSize = random.nextInt(4);
+				for(int m=0; m<iSize; m++)
+					batch.add(msg(0, iSequence++));
+				mailbox.post(batch);
+				alPosted.addAll(batch);
+				assertFalse(mailbox.isEmpty());
+			}
+			else
+			{
+				assertEquals(alPosted, mailbox.drain());
+				assertTrue(mailbox.isEmpty());
+				alPosted.clear();
+			}
+		}
+	}
+
+	@Test
+	public void testSingleBatchNotCopied()
+	{
+		Mailbox mailbox = new Mailbox();
+		assertTrue(mailbox.drain().isEmpty());
+		ArrayList<ScheduleMessage> batch = new ArrayList<ScheduleMessage>();
+		batch.add(msg(0, 0));
+		mailbox.post(batch);
+		assertSame(batch, mailbox.drain());
+		assertTrue(mailbox.isEmpty());
+	}
+
+	@Test
+	public void testConcurrentProducers() throws InterruptedException
+	{
+		Mailbox mailbox = new Mailbox();
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(PRODUCERS);
+		for(int p=0; p<PRODUCERS; p++)
+		{
+			int iProducer = p;
+			Thread producer = new Thread(() -> {
+				try
+				{
+					start.await();
+					for(int i=0; i<BATCHES; i++)
+					{
+						ArrayList<ScheduleMessage> batch = new ArrayList<ScheduleMessage>();
+						batch.add(msg(iProducer, 2*i));
+						batch.add(msg(iProducer, 2*i+1));
+						mailbox.post(batch);
+					}
+				}
+				catch(InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				finally
+				{
+					done.countDown();
+				}
+			});
+			producer.start();
+		}
+
+		//the msgs of each producer are received in the order it posted them
+		int[] arrNext = new int[PRODUCERS];
+		start.countDown();
+		boolean bDone = false;
+		while(!bDone)
+		{
+			bDone = done.getCount() == 0;
+			List<ScheduleMessage> alMsgs = mailbox.drain();
+			for(ScheduleMessage msg:alMsgs)
+				assertEquals("msg of producer "+msg.getSenderId(), arrNext[msg.getSenderId()]++, msg.getStartTime());
+		}
+		assertTrue(mailbox.isEmpty());
+		for(int p=0; p<PRODUCERS; p++)
+			assertEquals(2*BATCHES, arrNext[p]);
+	}
+
+	private static ScheduleMessage msg(int iSenderId, int iSequence) {
+		return new ScheduleMessage(ConstantsDefinition.LOCATION, iSenderId, 1, ConstantsDefinition.PROPOSE, iSequence, iSequence+1, 0);
+	}
+}
@@ -0,0 +1,106 @@
+package dmapf.agents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import dmapf.constants.ConstantsDefinition;
+
+/**
+ * This class checks the schedules of LocationSchedule.maximiseSatisfy: every request is
+ * allocated once, no two holds overlap, nor do they overlap a constraint, and the requests
+ * honoured at their requested start are as many as in the best of all the subsets of them.
+ *
+ * @author st
+ *
+ */
+public class MaximiseSatisfyTest
+{
+	private static final int HOLD = LocationSchedule.TPP+LocationSchedule.GAP;
+	private static final int SCHEDULES = 2000;
+
+	@Test
+	public void testHonoursMostRequests()
+	{
+		Random random = new Random(13);
+		for(int n=0; n<SCHEDULES; n++)
+		{
+			LocationSchedule schedule = new LocationSchedule(1);
+			ArrayList<Integer> alConstraints = new ArrayList<Integer>();
+			int iConstraints = random.nextInt(4);
+			for(int i=0; i<iConstraints; i++)
+			{
+				int iStart = random.nextInt(80);
+				alConstraints.add(iStart);
+				schedule.addConstraint(iStart);
+			}
+			ScheduleStore reservations = schedule.getReservations();
+			int iRequests = random.nextInt(13);
+			for(int i=0; i<iRequests; i++)
+			{
+				int iStart = random.nextInt(80);
+				reservations.add(ConstantsDefinition.RESERVE, iStart, iStart+1+random.nextInt(10), i+1, 0, 0);
+			}
+			schedule.maximiseSatisfy();
+			checkSchedule(schedule, alConstraints);
+		}
+	}
+
+	private static void checkSchedule(LocationSchedule schedule, ArrayList<Integer> alConstraints)
+	{
+		ScheduleStore reservations = schedule.getReservations();
+		ScheduleStore proposed = schedule.getProposed();
+		assertEquals(reservations.size(), proposed.size());
+		int iHonoured = 0;
+		for(int i=0; i<proposed.size(); i++)
+		{
+			int iRequest = reservations.indexOfAgent(proposed.getAgentId(i));
+			assertTrue("allocation of T"+proposed.getAgentId(i)+" without a request", iRequest != -1);
+			//a request is only shifted later, by the same amount at both ends
+			int iShift = proposed.getStart(i) - reservations.getStart(iRequest);
+			assertTrue(iShift >= 0);
+			assertEquals(reservations.getEnd(iRequest) + iShift, proposed.getEnd(i));
+			if(iShift == 0)
+				iHonoured++;
+			for(int j=0; j<i; j++)
+			{
+				assertTrue("T"+proposed.getAgentId(j)+" allocated twice", proposed.getAgentId(j) != proposed.getAgentId(i));
+				assertTrue("holds of "+proposed.toString(j)+" and "+proposed.toString(i)+" overlap",
+						Math.abs(proposed.getStart(i) - proposed.getStart(j)) >= HOLD);
+			}
+			for(int iConstraint:alConstraints)
+				assertTrue(proposed.toString(i)+" overlaps the constraint at "+iConstraint, Math.abs(proposed.getStart(i) - iConstraint) >= HOLD);
+		}
+		assertEquals("requests honoured", mostHonoured(reservations, alConstraints), iHonoured);
+	}
+
+	/**
+	 * @return the largest number of requests which can be allocated at their requested start
+	 * together, found by trying every subset of them.
+	 */
+	private static int mostHonoured(ScheduleStore reservations, ArrayList<Integer> alConstraints)
+	{
+		int iMost = 0;
+		for(int iSubset=0; iSubset < 1<<reservations.size(); iSubset++)
+		{
+			boolean bCompatible = true;
+			for(int i=0; i<reservations.size() && bCompatible; i++)
+			{
+				if((iSubset & 1<<i) == 0)
+					continue;
+				for(int iConstraint:alConstraints)
+					bCompatible &= Math.abs(reservations.getStart(i) - iConstraint) >= HOLD;
+				for(int j=0; j<i; j++)
+					if((iSubset & 1<<j) != 0)
+						bCompatible &= Math.abs(reservations.getStart(i) - reservations.getStart(j)) >= HOLD;
+			}
+			if(bCompatible)
+				iMost = Math.max(iMost, Integer.bitCount(iSubset));
+		}
+		return iMost;
+	}
+}
@@ -0,0 +1,108 @@
+package dmapf.agents;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * This class compares the earliest starts of the ReservationSnapshot with those found by
+ * moving the start past every window which holds it, till none does.
+ *
+ * @author st
+ *
+ */
+public class ReservationSnapshotTest
+{
+	private static final int SNAPSHOTS = 1000;
+
+	@Test
+	public void testEarliestStart()
+	{
+		Random random = new Random(7);
+		for(int n=0; n<SNAPSHOTS; n++)
+		{
+			HashMap<Integer, ArrayList<int[]>> hmWindows = new HashMap<Integer, ArrayList<int[]>>();
+			ReservationSnapshot snapshot = randomSnapshot(random, 1+random.nextInt(10), hmWindows);
+			for(int i=0; i<50; i++)
+			{
+				int iLocationId = random.nextInt(12);
+				int iStart = random.nextInt(250) - 20;
+				int iAgentId = random.nextInt(4) - 1;
+				assertEquals("location "+iLocationId+" from "+iStart+" for T"+iAgentId,
+						earliestStart(hmWindows.get(iLocationId), iStart, iAgentId), snapshot.earliestStart(iLocationId, iStart, iAgentId));
+			}
+		}
+	}
+
+	@Test
+	public void testCounts()
+	{
+		ReservationSnapshot.Builder builder = new ReservationSnapshot.Builder();
+		builder.startLocation(1);
+		builder.addBlock(0, 10, 2);
+		builder.addBlock(5, 7, ReservationSnapshot.CONFIRMED);
+		builder.startLocation(2);
+		builder.startLocation(3);
+		builder.addBlock(3, 4, 1);
+		ReservationSnapshot snapshot = builder.build();
+		assertEquals(2, snapshot.getLocationCount());
+		assertEquals(3, snapshot.getWindowCount());
+		assertEquals(7, snapshot.earliestStart(1, 6, 2));
+		assertEquals(10, snapshot.earliestStart(1, 6, 1));
+		assertEquals(10, snapshot.earliestStart(1, 10, 1));
+		assertEquals(6, snapshot.earliestStart(2, 6, 1));
+	}
+
+	/**
+	 * @return a snapshot of random windows, of mostly equal widths as the holds of the
+	 * allocations, on up to iLocations locations. The windows are held in hmWindows as well.
+	 */
+	static ReservationSnapshot randomSnapshot(Random random, int iLocations, HashMap<Integer, ArrayList<int[]>> hmWindows)
+	{
+		ReservationSnapshot.Builder builder = new ReservationSnapshot.Builder();
+		for(int l=0; l<iLocations; l++)
+		{
+			//a location without windows is left as is
+			if(random.nextInt(3) == 0)
+				continue;
+			builder.startLocation(l);
+			ArrayList<int[]> alWindows = new ArrayList<int[]>();
+			hmWindows.put(l, alWindows);
+			int iCount = random.nextInt(20);
+			for(int i=0; i<iCount; i++)
+			{
+				int iMiddle = random.nextInt(200) - 10;
+				int iHold = random.nextInt(4) == 0?1+random.nextInt(30):6;
+				int[] arrWindow = {iMiddle - iHold, iMiddle + iHold, random.nextInt(4) - 1};
+				alWindows.add(arrWindow);
+				builder.addBlock(arrWindow[0], arrWindow[1], arrWindow[2]);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return the start moved past the open windows of the other travellers it falls in, till it falls in none.
+	 */
+	static int earliestStart(ArrayList<int[]> alWindows, int iStart, int iAgentId)
+	{
+		boolean bMoved = alWindows != null;
+		while(bMoved)
+		{
+			bMoved = false;
+			for(int[] arrWindow:alWindows)
+			{
+				if(arrWindow[2] != iAgentId && arrWindow[0] < iStart && iStart < arrWindow[1])
+				{
+					iStart = arrWindow[1];
+					bMoved = true;
+				}
+			}
+		}
+		return iStart;
+	}
+}
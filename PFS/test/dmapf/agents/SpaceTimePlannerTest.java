@@ -0,0 +1,189 @@
+package dmapf.agents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * This class compares the arrivals of the paths of the SpaceTimePlanner, scheduled around the
+ * ReservationSnapshot, with the earliest arrivals found by relaxing every edge from every node
+ * and held speed till none improves.
+ *
+ * The planner keeps one label per node, so it may arrive later than the earliest arrival when
+ * an edge holds the traveller to a lower speed. Where no edge does, it arrives first.
+ *
+ * @author st
+ *
+ */
+public class SpaceTimePlannerTest
+{
+	private static final int NETWORKS = 500;
+	private static final int REPLANS = 4;
+
+	private int[] arrTime; //time of each edge at the speed of 100
+	private int[] arrLength;
+	private int[] arrLimit; //speed limit of each edge
+	private int iTopSpeed;
+	private int iShortLength; //length up to which an edge holds the traveller to its speed limit
+
+	private int travelTime(String strEdge, int iSpeed) {
+		return Math.max(1, arrTime[Integer.parseInt(strEdge)]*100/iSpeed);
+	}
+
+	private int heldSpeed(String strEdge, int iHeldSpeed)
+	{
+		int iEdge = Integer.parseInt(strEdge);
+		return arrLength[iEdge] <= iShortLength?Math.min(iHeldSpeed, arrLimit[iEdge]):iTopSpeed;
+	}
+
+	@Test
+	public void testArrivalAgainstEarliest()
+	{
+		Random random = new Random(7);
+		for(int n=0; n<NETWORKS; n++)
+		{
+			int iNodes = 5+random.nextInt(60);
+			TestRoadNetwork network = TestRoadNetwork.random(random, iNodes, iNodes+random.nextInt(3*iNodes), random.nextBoolean());
+			ArrayList<String> alEdges = network.edgeSet();
+			iTopSpeed = 40+random.nextInt(60);
+			iShortLength = random.nextInt(12);
+			//without any limit under the top speed, the traveller is never held to a lower speed
+			boolean bUnlimited = random.nextInt(4) == 0;
+			arrTime = new int[alEdges.size()];
+			arrLength = new int[alEdges.size()];
+			arrLimit = new int[alEdges.size()];
+			for(int e=0; e<alEdges.size(); e++)
+			{
+				arrTime[e] = 1+random.nextInt(20);
+				arrLength[e] = random.nextInt(20);
+				arrLimit[e] = bUnlimited?iTopSpeed+random.nextInt(50):10+random.nextInt(120);
+			}
+			HashMap<Integer, ArrayList<int[]>> hmWindows = new HashMap<Integer, ArrayList<int[]>>();
+			ReservationSnapshot snapshot = ReservationSnapshotTest.randomSnapshot(random, alEdges.size(), hmWindows);
+
+			int iAgentId = 1+random.nextInt(3);
+			String strSource = network.node(random);
+			String strDest = network.node(random);
+			int iStart = random.nextInt(20);
+			SpaceTimePlanner planner = new SpaceTimePlanner(network, strSource, strDest, iAgentId, iTopSpeed, this::travelTime, this::heldSpeed);
+			for(int i=0; i<REPLANS; i++)
+			{
+				HashSet<String> hsExcluded = new HashSet<String>();
+				for(String strEdge:alEdges)
+					if(random.nextInt(6) == 0)
+						hsExcluded.add(strEdge);
+				Integer iEarliest = earliestArrival(network, hmWindows, strSource, strDest, iStart, iAgentId, hsExcluded);
+				String strPath = planner.getPath(iStart, snapshot, hsExcluded);
+				if(iEarliest == null)
+				{
+					assertNull(strPath);
+					continue;
+				}
+				assertNotNull("no path from "+strSource+" to "+strDest+" arriving at "+iEarliest, strPath);
+				network.checkPath(strPath, strSource, strDest, hsExcluded);
+				int iArrival = arrival(strPath, snapshot, iStart, iAgentId);
+				assertTrue("arrival "+iArrival+" before the earliest "+iEarliest, iArrival >= iEarliest);
+				if(bUnlimited)
+					assertEquals(iEarliest.intValue(), iArrival);
+			}
+		}
+	}
+
+	@Test
+	public void testWaitsForTheHold()
+	{
+		TestRoadNetwork network = new TestRoadNetwork(3, true);
+		network.addEdge(0, 1, 1);
+		network.addEdge(1, 2, 1);
+		network.addEdge(0, 2, 1);
+		iTopSpeed = 100;
+		iShortLength = 0;
+		arrTime = new int[] {5, 5, 30};
+		arrLength = new int[] {1, 1, 1};
+		arrLimit = new int[] {100, 100, 100};
+		SpaceTimePlanner planner = new SpaceTimePlanner(network, "0", "2", 1, iTopSpeed, this::travelTime, this::heldSpeed);
+		assertEquals("0%0%1%1%2%2.0", planner.getPath(0, new ReservationSnapshot.Builder().build(), null));
+
+		//edge 1 is held till 40 by another traveller, so the direct edge arrives first
+		ReservationSnapshot.Builder builder = new ReservationSnapshot.Builder();
+		builder.startLocation(1);
+		builder.addBlock(0, 40, 2);
+		ReservationSnapshot snapshot = builder.build();
+		assertEquals("0%2%2%1.0", planner.getPath(0, snapshot, null));
+		//its own hold does not delay the traveller
+		planner = new SpaceTimePlanner(network, "0", "2", 2, iTopSpeed, this::travelTime, this::heldSpeed);
+		assertEquals("0%0%1%1%2%2.0", planner.getPath(0, snapshot, null));
+	}
+
+	/**
+	 * This function schedules the path as the traveller does, at the speed held by the edges crossed.
+	 * @return arrival at the end of the path
+	 */
+	private int arrival(String strPath, ReservationSnapshot snapshot, int iStart, int iAgentId)
+	{
+		String[] arrPath = strPath.split("%");
+		int iTime = iStart;
+		int iSpeed = iTopSpeed;
+		for(int i=1; i+1<arrPath.length-1; i+=2)
+		{
+			iTime = snapshot.earliestStart(Integer.parseInt(arrPath[i]), iTime, iAgentId) + travelTime(arrPath[i], iSpeed);
+			iSpeed = heldSpeed(arrPath[i], iSpeed);
+		}
+		return iTime;
+	}
+
+	/**
+	 * This function finds the earliest arrival at each node and held speed, by relaxing every
+	 * edge till no arrival improves.
+	 * @return earliest arrival at strDest at any speed. null if it cannot be reached.
+	 */
+	private Integer earliestArrival(TestRoadNetwork network, HashMap<Integer, ArrayList<int[]>> hmWindows,
+			String strSource, String strDest, int iStart, int iAgentId, HashSet<String> hsExcluded)
+	{
+		HashMap<String, HashMap<Integer, Integer>> hmArrivals = new HashMap<String, HashMap<Integer, Integer>>(); //arrival by held speed, by node
+		hmArrivals.put(strSource, new HashMap<Integer, Integer>());
+		hmArrivals.get(strSource).put(iTopSpeed, iStart);
+		boolean bImproved = true;
+		while(bImproved)
+		{
+			bImproved = false;
+			for(String strNode:new ArrayList<String>(hmArrivals.keySet()))
+			{
+				for(Integer iSpeed:new ArrayList<Integer>(hmArrivals.get(strNode).keySet()))
+				{
+					int iTime = hmArrivals.get(strNode).get(iSpeed);
+					for(String strEdge:network.outgoingEdgesOf(strNode))
+					{
+						if(hsExcluded.contains(strEdge))
+							continue;
+						int iArrival = ReservationSnapshotTest.earliestStart(hmWindows.get(Integer.parseInt(strEdge)), iTime, iAgentId)
+								+ travelTime(strEdge, iSpeed);
+						HashMap<Integer, Integer> hmNext = hmArrivals.computeIfAbsent(network.getOppositeNode(strEdge, strNode), k -> new HashMap<Integer, Integer>());
+						int iNextSpeed = heldSpeed(strEdge, iSpeed);
+						Integer iBest = hmNext.get(iNextSpeed);
+						if(iBest == null || iArrival < iBest)
+						{
+							hmNext.put(iNextSpeed, iArrival);
+							bImproved = true;
+						}
+					}
+				}
+			}
+		}
+		HashMap<Integer, Integer> hmDest = hmArrivals.get(strDest);
+		if(hmDest == null)
+			return null;
+		int iEarliest = Integer.MAX_VALUE;
+		for(int iArrival:hmDest.values())
+			iEarliest = Math.min(iEarliest, iArrival);
+		return iEarliest;
+	}
+}
@@ -0,0 +1,202 @@
+package dmapf.agents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import dmapf.constants.ConstantsDefinition;
+
+/**
+ * This class is a road network for the tests of the searches, with the shortest distances
+ * found by a plain Dijkstra's search to compare the paths of the searches with.
+ * The nodes are numbered from 0 and the edges are numbered in the order they are added, so
+ * that the edge ids are location ids as well. The weights are multiples of 0.5, so that the
+ * distances are summed without rounding.
+ *
+ * @author st
+ *
+ */
+class TestRoadNetwork implements RoadNetwork
+{
+	private final boolean bDirected;
+	private final ArrayList<String> alNodes = new ArrayList<String>();
+	private final LinkedHashMap<String, String[]> hmEnds = new LinkedHashMap<String, String[]>(); //source and target, by edge
+	private final HashMap<String, Double> hmWeights = new HashMap<String, Double>();
+	private final HashMap<String, ArrayList<String>> hmOutgoing = new HashMap<String, ArrayList<String>>();
+	private final HashMap<String, ArrayList<String>> hmIncoming = new HashMap<String, ArrayList<String>>();
+
+	TestRoadNetwork(int iNodes, boolean bDirected)
+	{
+		this.bDirected = bDirected;
+		for(int i=0; i<iNodes; i++)
+		{
+			String strNode = String.valueOf(i);
+			alNodes.add(strNode);
+			hmOutgoing.put(strNode, new ArrayList<String>());
+			hmIncoming.put(strNode, new ArrayList<String>());
+		}
+	}
+
+	/**
+	 * @return a network of iNodes nodes with up to iEdges edges between random nodes, of
+	 * weights from 0.5 to 4.5. Parallel edges are kept, loops are not.
+	 */
+	static TestRoadNetwork random(Random random, int iNodes, int iEdges, boolean bDirected)
+	{
+		TestRoadNetwork network = new TestRoadNetwork(iNodes, bDirected);
+		for(int i=0; i<iEdges; i++)
+		{
+			int iSource = random.nextInt(iNodes);
+			int iTarget = random.nextInt(iNodes);
+			if(iSource != iTarget)
+				network.addEdge(iSource, iTarget, 0.5*(1+random.nextInt(9)));
+		}
+		return network;
+	}
+
+	/**
+	 * @return an undirected iSide x iSide grid of weights from 1 to 9.
+	 */
+	static TestRoadNetwork grid(Random random, int iSide)
+	{
+		TestRoadNetwork network = new TestRoadNetwork(iSide*iSide, false);
+		for(int i=0; i<iSide*iSide; i++)
+		{
+			if(i%iSide+1 < iSide)
+				network.addEdge(i, i+1, 1+random.nextInt(9));
+			if(i+iSide < iSide*iSide)
+				network.addEdge(i, i+iSide, 1+random.nextInt(9));
+		}
+		return network;
+	}
+
+	/**
+	 * @return id of the edge added
+	 */
+	String addEdge(int iSource, int iTarget, double dWeight)
+	{
+		String strEdge = String.valueOf(hmEnds.size());
+		String strSource = String.valueOf(iSource);
+		String strTarget = String.valueOf(iTarget);
+		hmEnds.put(strEdge, new String[] {strSource, strTarget});
+		hmWeights.put(strEdge, dWeight);
+		hmOutgoing.get(strSource).add(strEdge);
+		hmIncoming.get(strTarget).add(strEdge);
+		if(!bDirected)
+		{
+			hmOutgoing.get(strTarget).add(strEdge);
+			hmIncoming.get(strSource).add(strEdge);
+		}
+		return strEdge;
+	}
+
+	ArrayList<String> edgeSet() {
+		return new ArrayList<String>(hmEnds.keySet());
+	}
+
+	String node(Random random) {
+		return alNodes.get(random.nextInt(alNodes.size()));
+	}
+
+	@Override
+	public Collection<String> vertexSet() {
+		return Collections.unmodifiableList(alNodes);
+	}
+
+	@Override
+	public Collection<String> outgoingEdgesOf(String strNode) {
+		return hmOutgoing.get(strNode);
+	}
+
+	@Override
+	public Collection<String> incomingEdgesOf(String strNode) {
+		return hmIncoming.get(strNode);
+	}
+
+	@Override
+	public String getEdgeSource(String strEdge) {
+		return hmEnds.get(strEdge)[0];
+	}
+
+	@Override
+	public String getEdgeTarget(String strEdge) {
+		return hmEnds.get(strEdge)[1];
+	}
+
+	@Override
+	public double getEdgeWeight(String strEdge) {
+		return hmWeights.get(strEdge);
+	}
+
+	/**
+	 * This function finds the shortest distance by Dijkstra's search.
+	 * @param alExcludedEdges: edges not to be used. null if none.
+	 * @return Double.POSITIVE_INFINITY if strDest cannot be reached.
+	 */
+	double distance(String strSource, String strDest, Collection<String> alExcludedEdges)
+	{
+		HashSet<String> hsExcluded = alExcludedEdges == null?new HashSet<String>():new HashSet<String>(alExcludedEdges);
+		HashMap<String, Double> hmSettled = new HashMap<String, Double>();
+		PriorityQueue<Object[]> queue = new PriorityQueue<Object[]>((a, b) -> Double.compare((Double)a[0], (Double)b[0]));
+		queue.add(new Object[] {0.0, strSource});
+		while(!queue.isEmpty())
+		{
+			Object[] entry = queue.poll();
+			String strNode = (String)entry[1];
+			if(hmSettled.containsKey(strNode))
+				continue;
+			hmSettled.put(strNode, (Double)entry[0]);
+			for(String strEdge:outgoingEdgesOf(strNode))
+			{
+				String strNext = getOppositeNode(strEdge, strNode);
+				if(!hsExcluded.contains(strEdge) && !hmSettled.containsKey(strNext))
+					queue.add(new Object[] {(Double)entry[0] + getEdgeWeight(strEdge), strNext});
+			}
+		}
+		Double dDistance = hmSettled.get(strDest);
+		return dDistance == null?Double.POSITIVE_INFINITY:dDistance;
+	}
+
+	/**
+	 * This function checks that the path, in the form node%edge%node...%distance, goes from
+	 * strSource to strDest over adjacent edges which are not excluded, and that the distance
+	 * at its end is the sum of their weights.
+	 * @return the distance of the path
+	 */
+	double checkPath(String strPath, String strSource, String strDest, Collection<String> alExcludedEdges)
+	{
+		String[] arrPath = strPath.split(ConstantsDefinition.PATH_DELIMITOR);
+		assertEquals("source of "+strPath, strSource, arrPath[0]);
+		assertEquals("destination of "+strPath, strDest, arrPath[arrPath.length-2]);
+		String strNode = strSource;
+		double dSum = 0;
+		for(int i=1; i+1<arrPath.length-1; i+=2)
+		{
+			String strEdge = arrPath[i];
+			assertTrue("edge "+strEdge+" does not leave "+strNode+" in "+strPath, outgoingEdgesOf(strNode).contains(strEdge));
+			assertFalse("excluded edge "+strEdge+" in "+strPath, alExcludedEdges != null && alExcludedEdges.contains(strEdge));
+			strNode = getOppositeNode(strEdge, strNode);
+			assertEquals("node after "+strEdge+" in "+strPath, strNode, arrPath[i+1]);
+			dSum += getEdgeWeight(strEdge);
+		}
+		double dDistance = distanceOf(strPath);
+		assertEquals("distance of "+strPath, dSum, dDistance, 1e-9);
+		return dDistance;
+	}
+
+	/**
+	 * @return the distance at the end of the path
+	 */
+	static double distanceOf(String strPath) {
+		return Double.parseDouble(strPath.substring(strPath.lastIndexOf(ConstantsDefinition.PATH_DELIMITOR)+1));
+	}
+}